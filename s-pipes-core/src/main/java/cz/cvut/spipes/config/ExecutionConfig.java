@@ -33,6 +33,30 @@ public class ExecutionConfig {
         );
     }
 
+    /**
+     * @return maximal number of pipeline modules that are executed concurrently,
+     * 1 means that modules are executed sequentially.
+     */
+    public static int getParallelism() {
+        return Integer.parseInt(CoreConfigProperies.get("execution.parallelism", "1"));
+    }
+
+    /**
+     * @return maximal number of parsed queries kept in {@link cz.cvut.spipes.util.QueryCache},
+     * 0 disables the cache.
+     */
+    public static int getQueryCacheSize() {
+        return Integer.parseInt(CoreConfigProperies.get("execution.queryCacheSize", "1000"));
+    }
+
+    /**
+     * @return true if outputs of modules consumed by other modules are kept on disk
+     * during pipeline execution instead of in memory.
+     */
+    public static boolean isDiskBackedContext() {
+        return Boolean.parseBoolean(CoreConfigProperies.get("execution.diskBackedContext", "false"));
+    }
+
     public static String getDevelopmentServiceUrl() {
         return CoreConfigProperies.get("execution.developmentServiceUrl", "http://localhost:8080/s-pipes/");
     }
@@ -0,0 +1,33 @@
+package cz.cvut.spipes.config;
+
+import cz.cvut.spipes.util.CoreConfigProperies;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+public class StreamResourceConfig {
+
+    /**
+     * @return directory, possibly shared by several processes, within which each stream resource registry
+     * creates its own directory to store contents of registered resources
+     */
+    public static Path getSpoolDirectoryPath() {
+        return Paths.get(CoreConfigProperies.get(
+            "streamResources.spoolDirectoryPath",
+            ExecutionConfig.getTempDirectoryPath().resolve("s-pipes-stream-resources").toString()));
+    }
+
+    /**
+     * @return maximal total size of stored stream resources in bytes, least recently used resources
+     * are evicted first when the size is exceeded
+     */
+    public static long getMaxTotalSize() {
+        return Long.parseLong(CoreConfigProperies.get("streamResources.maxTotalSize", "1073741824"));
+    }
+
+    /**
+     * @return time in milliseconds after which a stream resource that was not accessed is evicted
+     */
+    public static long getTimeToLiveMillis() {
+        return Long.parseLong(CoreConfigProperies.get("streamResources.timeToLiveMillis", "3600000"));
+    }
+}
@@ -19,6 +19,7 @@ public class KBSS_MODULE {
     public static final Property has_debug_mode_flag = property("has-debug-mode-flag");
     public static final Property is_parse_text = property("is-parse-text");
     public static final Property has_max_iteration_count = property("has-max-iteration-count");
+    public static final Property is_skip_unaffected_queries = property("is-skip-unaffected-queries");
     public static final Property has_resource_uri = property("has-resource-uri");
     public static final Property stop_iteration_on_stable_triple_count = property("stop-iteration-on-stable-triple-count");
 
@@ -0,0 +1,150 @@
+package cz.cvut.spipes.engine;
+
+import cz.cvut.spipes.config.ExecutionConfig;
+import cz.cvut.spipes.exception.SPipesException;
+import cz.cvut.spipes.modules.Module;
+import org.apache.commons.io.FileUtils;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.tdb.TDBFactory;
+import org.apache.jena.tdb.base.file.Location;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps outputs of modules of one pipeline execution on disk, see {@link ExecutionConfig#isDiskBackedContext()}.
+ * <p>
+ * Output of each module that is consumed by other modules is copied to a named graph of a TDB dataset
+ * within a directory of the execution. Every output has its own dataset, so that
+ * outputs can be written concurrently and, once all consumers of an output are executed, its dataset
+ * can be removed from disk (TDB does not reclaim space of removed triples). Output of the output module
+ * stays in memory. Output of a module that cannot be replaced also stays in memory and, as it may be a view
+ * of outputs of its input modules, the outputs of its input modules are kept until the execution is closed.
+ * All remaining datasets are removed when the execution is closed.
+ * <p>
+ * The class is thread-safe as long as each module is stored at most once.
+ */
+class DiskBackedExecution implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DiskBackedExecution.class);
+
+    private static final String GRAPH_URI_PREFIX = "http://onto.fel.cvut.cz/ontologies/s-pipes/module-output/";
+
+    private final Path directory;
+    private final Map<Module, AtomicInteger> module2PendingConsumerCountMap = new IdentityHashMap<>();
+    private final Map<Module, Path> module2DatasetDirectoryMap = Collections.synchronizedMap(new IdentityHashMap<>());
+    private final Set<Module> modulesWithInMemoryOutput = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+    private final AtomicInteger lastDatasetId = new AtomicInteger();
+
+    /**
+     * @param pipelineExecutionId id of the execution
+     * @param outputModule        output module of the executed pipeline
+     */
+    DiskBackedExecution(long pipelineExecutionId, Module outputModule) {
+        try {
+            directory = Files.createTempDirectory(ExecutionConfig.getTempDirectoryPath(), "execution-" + pipelineExecutionId + "-");
+        } catch (IOException e) {
+            throw new SPipesException("Directory of pipeline execution " + pipelineExecutionId + " could not be created.", e);
+        }
+        LOG.debug("Keeping outputs of modules of pipeline execution {} in directory {}.", pipelineExecutionId, directory);
+        countConsumers(outputModule, Collections.newSetFromMap(new IdentityHashMap<>()));
+    }
+
+    Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Moves output of the executed module to disk and releases outputs of its input modules
+     * that are not needed anymore. Output of the output module is kept untouched.
+     *
+     * @param module executed module
+     */
+    void storeOutput(Module module) {
+        if (!module2PendingConsumerCountMap.containsKey(module)) {
+            // output of the output module may be a view of outputs of its input modules, they are released on close
+            return;
+        }
+        ExecutionContext outputContext = module.getOutputContext();
+        if (outputContext != null && !module.isOutputContextReplaceable()) {
+            LOG.debug("Keeping output of module {} in memory as it cannot be replaced.", module.getLabel());
+            modulesWithInMemoryOutput.add(module);
+        } else if (outputContext != null && !module2DatasetDirectoryMap.containsKey(module)) {
+            Path datasetDirectory = directory.resolve("module-" + lastDatasetId.incrementAndGet());
+            LOG.debug("Storing output of module {} to directory {}.", module.getLabel(), datasetDirectory);
+
+            Dataset dataset = TDBFactory.createDataset(datasetDirectory.toString());
+            module2DatasetDirectoryMap.put(module, datasetDirectory);
+            Model model = dataset.getNamedModel(GRAPH_URI_PREFIX + datasetDirectory.getFileName());
+            model.add(outputContext.getDefaultModel());
+            model.setNsPrefixes(outputContext.getDefaultModel().getNsPrefixMap());
+            module.setOutputContext(ExecutionContextFactory.createContext(model, outputContext.getVariablesBinding()));
+        }
+        if (modulesWithInMemoryOutput.contains(module)) {
+            // output kept in memory may be a view of outputs of input modules, they are released on close
+            return;
+        }
+        for (Module inputModule : module.getInputModules()) {
+            AtomicInteger inputPendingConsumerCount = module2PendingConsumerCountMap.get(inputModule);
+            if (inputPendingConsumerCount != null && inputPendingConsumerCount.decrementAndGet() == 0) {
+                release(inputModule);
+            }
+        }
+    }
+
+    /**
+     * Copies the context to memory, so that it can be used after the execution is closed.
+     */
+    ExecutionContext materialize(ExecutionContext context) {
+        Model model = ModelFactory.createDefaultModel();
+        model.add(context.getDefaultModel());
+        model.setNsPrefixes(context.getDefaultModel().getNsPrefixMap());
+        return ExecutionContextFactory.createContext(model, context.getVariablesBinding());
+    }
+
+    /**
+     * Removes all datasets of the execution from disk.
+     */
+    @Override
+    public void close() {
+        List<Module> modules;
+        synchronized (module2DatasetDirectoryMap) {
+            modules = new ArrayList<>(module2DatasetDirectoryMap.keySet());
+        }
+        modules.forEach(this::release);
+        LOG.debug("Removing directory {}.", directory);
+        FileUtils.deleteQuietly(directory.toFile());
+    }
+
+    private void release(Module module) {
+        Path datasetDirectory = module2DatasetDirectoryMap.remove(module);
+        if (datasetDirectory == null) {
+            return;
+        }
+        LOG.debug("Releasing output of module {} stored in directory {}.", module.getLabel(), datasetDirectory);
+        TDBFactory.release(Location.create(datasetDirectory.toString()));
+        FileUtils.deleteQuietly(datasetDirectory.toFile());
+    }
+
+    private void countConsumers(Module module, Set<Module> visitedModules) {
+        if (!visitedModules.add(module)) {
+            return;
+        }
+        for (Module inputModule : module.getInputModules()) {
+            module2PendingConsumerCountMap.computeIfAbsent(inputModule, m -> new AtomicInteger()).incrementAndGet();
+            countConsumers(inputModule, visitedModules);
+        }
+    }
+}
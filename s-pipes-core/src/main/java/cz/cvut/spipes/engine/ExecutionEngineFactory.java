@@ -1,8 +1,11 @@
 package cz.cvut.spipes.engine;
 
+import cz.cvut.spipes.config.ExecutionConfig;
+
 public class ExecutionEngineFactory {
     public static ExecutionEngine createEngine() {
-        final ExecutionEngine e = new ExecutionEngineImpl();
+        final int parallelism = ExecutionConfig.getParallelism();
+        final ExecutionEngine e = (parallelism > 1) ? new ParallelExecutionEngineImpl(parallelism) : new ExecutionEngineImpl();
         e.addProgressListener(new LoggingProgressListener());
         return e;
     }
@@ -1,16 +1,20 @@
 package cz.cvut.spipes.engine;
 
+import cz.cvut.spipes.config.ExecutionConfig;
 import cz.cvut.spipes.modules.Module;
+import cz.cvut.spipes.util.JenaUtils;
 import org.apache.jena.rdf.model.Model;
-import org.apache.jena.rdf.model.ModelFactory;
 import org.apache.jena.rdf.model.Resource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.time.Instant;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -18,21 +22,48 @@ class ExecutionEngineImpl implements ExecutionEngine {
 
     private static Logger LOG = LoggerFactory.getLogger(ExecutionEngineImpl.class);
 
-    private Set<ProgressListener> listeners = new HashSet<>();
+    // engine may be shared by concurrent executions, listeners are copied on modification
+    Set<ProgressListener> listeners = new CopyOnWriteArraySet<>();
 
-    private static int i = 0 ;
+    private static final AtomicLong lastPipelineExecutionId = new AtomicLong();
 
     public ExecutionContext executePipeline(final Module module, final ExecutionContext inputContext) {
         LOG.info("Executing script {} with context {}.", module.getResource(), inputContext.toSimpleString());
-        final long pipelineExecutionId = Instant.now().toEpochMilli()*1000+(i++);
+        final long pipelineExecutionId = createPipelineExecutionId();
 
         fire((l) -> {l.pipelineExecutionStarted(pipelineExecutionId); return null;});
-        ExecutionContext outputContext = _executePipeline(pipelineExecutionId, module, inputContext, null);
+        final DiskBackedExecution diskBackedExecution = createDiskBackedExecution(pipelineExecutionId, module);
+        ExecutionContext outputContext;
+        try {
+            outputContext = _executePipeline(pipelineExecutionId, module, inputContext, null, diskBackedExecution);
+            if (diskBackedExecution != null) {
+                outputContext = diskBackedExecution.materialize(outputContext);
+            }
+        } finally {
+            if (diskBackedExecution != null) {
+                diskBackedExecution.close();
+            }
+        }
         fire((l) -> {l.pipelineExecutionFinished(pipelineExecutionId); return null;});
         return outputContext;
     }
 
-    private void fire(final Function<ProgressListener,Void> function) {
+    /**
+     * Creates unique id of pipeline execution, which is derived from current time (in microseconds).
+     */
+    long createPipelineExecutionId() {
+        long timeBasedId = Instant.now().toEpochMilli() * 1000;
+        return lastPipelineExecutionId.updateAndGet(lastId -> Math.max(lastId + 1, timeBasedId));
+    }
+
+    /**
+     * @return storage of outputs of modules of the execution, or null if outputs are kept in memory
+     */
+    DiskBackedExecution createDiskBackedExecution(long pipelineExecutionId, Module outputModule) {
+        return ExecutionConfig.isDiskBackedContext() ? new DiskBackedExecution(pipelineExecutionId, outputModule) : null;
+    }
+
+    void fire(final Function<ProgressListener,Void> function) {
         listeners.forEach( (listener) -> {
             try {
                 function.apply(listener);
@@ -42,7 +73,8 @@ class ExecutionEngineImpl implements ExecutionEngine {
         });
     }
 
-    private ExecutionContext _executePipeline(long pipelineExecutionId, Module module, ExecutionContext context, String predecessorId) {
+    private ExecutionContext _executePipeline(long pipelineExecutionId, Module module, ExecutionContext context, String predecessorId,
+                                              DiskBackedExecution diskBackedExecution) {
         final String moduleExecutionId = pipelineExecutionId + "-"+module.hashCode() + "-"+context.hashCode();
 
 
@@ -60,7 +92,7 @@ class ExecutionEngineImpl implements ExecutionEngine {
             if (module.getExecutionContext() != null) {
                 LOG.debug("Execution context for module {} already set.", module);
             } else {
-                module.setInputContext(context);
+                module.setInputContext(createSourceModuleContext(context));
 
                 LOG.info(" ##### " + module.getLabel());
                 if (LOG.isTraceEnabled()) {
@@ -71,13 +103,16 @@ class ExecutionEngineImpl implements ExecutionEngine {
                     LOG.trace("Returning output context {}", outputContext.toSimpleString());
                 }
                 module.addOutputBindings(context.getVariablesBinding());
+                if (diskBackedExecution != null) {
+                    diskBackedExecution.storeOutput(module);
+                }
             }
             fire((l) -> {l.moduleExecutionFinished(pipelineExecutionId, moduleExecutionId, module); return null;});
             return module.getOutputContext();
         }
 
         Map<Resource, ExecutionContext> resource2ContextMap = module.getInputModules().stream()
-                .collect(Collectors.toMap(Module::getResource, mod -> this._executePipeline(pipelineExecutionId, mod, context, moduleExecutionId)));
+                .collect(Collectors.toMap(Module::getResource, mod -> this._executePipeline(pipelineExecutionId, mod, context, moduleExecutionId, diskBackedExecution)));
 
 
         LOG.info(" ##### " + module.getLabel());
@@ -94,10 +129,24 @@ class ExecutionEngineImpl implements ExecutionEngine {
             LOG.trace("Returning output context {}", outputContext.toSimpleString());
         }
         module.addOutputBindings(mergedContext.getVariablesBinding());
+        if (diskBackedExecution != null) {
+            diskBackedExecution.storeOutput(module);
+        }
         fire((l) -> {l.moduleExecutionFinished(pipelineExecutionId, moduleExecutionId, module); return null;});
         return module.getOutputContext();
     }
 
+    /**
+     * Creates input context of a module without input modules. Modules may modify their input model,
+     * thus each module gets its own union over the pipeline input, which is never modified through the union.
+     */
+    ExecutionContext createSourceModuleContext(ExecutionContext context) {
+        return ExecutionContextFactory.createContext(
+            JenaUtils.createDynamicUnion(context.getDefaultModel()),
+            new VariablesBinding(context.getVariablesBinding().asQuerySolution())
+        );
+    }
+
     private ExecutionContext createMergedExecutionContext(ExecutionContext executionContext, VariablesBinding additionalVariablesBinding) {
         VariablesBinding mergedVarsBinding = new VariablesBinding(executionContext.getVariablesBinding().asQuerySolution());
         mergedVarsBinding.extendConsistently(additionalVariablesBinding);
@@ -105,12 +154,13 @@ class ExecutionEngineImpl implements ExecutionEngine {
     }
 
 
-    // TODO optimize :
-    //      1) dynamic union -- ModelFactory.createUnion()
-    //      2) modules should not modify Model but create new ones + immutable Model
-    private ExecutionContext mergeContexts(Map<Resource, ExecutionContext> resource2ContextMap) {
+    /**
+     * Merges output contexts of input modules. The merged model is a new union, thus modifications of the model
+     * made by the module are not visible in outputs of the input modules, see {@link cz.cvut.spipes.util.UnionGraph}.
+     */
+    ExecutionContext mergeContexts(Map<Resource, ExecutionContext> resource2ContextMap) {
 
-        Model newModel = ModelFactory.createDefaultModel();
+        List<Model> models = new ArrayList<>();
         VariablesBinding variablesBinding = new VariablesBinding();
 
 
@@ -120,7 +170,7 @@ class ExecutionEngineImpl implements ExecutionEngine {
             ExecutionContext context = e.getValue();
 
             // merge models
-            newModel.add(context.getDefaultModel());
+            models.add(context.getDefaultModel());
 
             // merge variable bindings
             VariablesBinding b = e.getValue().getVariablesBinding();
@@ -133,20 +183,18 @@ class ExecutionEngineImpl implements ExecutionEngine {
         });
 
 
+        Model newModel = JenaUtils.createDynamicUnion(models.toArray(new Model[0]));
+
         return ExecutionContextFactory.createContext(newModel, variablesBinding);
     }
 
     @Override
     public void addProgressListener(final ProgressListener listener) {
-        if (!listeners.contains(listener)) {
-            listeners.add(listener);
-        }
+        listeners.add(listener);
     }
 
     @Override
     public void removeProgressListener(final ProgressListener listener) {
-        if (listeners.contains(listener)) {
-            listeners.remove(listener);
-        }
+        listeners.remove(listener);
     }
 }
\ No newline at end of file
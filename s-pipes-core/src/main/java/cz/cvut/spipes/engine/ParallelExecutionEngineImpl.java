@@ -0,0 +1,192 @@
+package cz.cvut.spipes.engine;
+
+import cz.cvut.spipes.exception.SPipesException;
+import cz.cvut.spipes.modules.Module;
+import org.apache.jena.rdf.model.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+/**
+ * Execution engine that executes independent branches of a pipeline concurrently.
+ *
+ * Modules of the pipeline are sorted topologically and each module is scheduled on a bounded
+ * thread pool as soon as all of its input modules are finished. Outputs of the input modules
+ * are merged before the module is executed, the same way as in {@link ExecutionEngineImpl}.
+ * Notifications of progress listeners are serialized, thus listeners do not need to be thread-safe.
+ */
+class ParallelExecutionEngineImpl extends ExecutionEngineImpl {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ParallelExecutionEngineImpl.class);
+
+    private final int parallelism;
+
+    /**
+     * @param parallelism maximal number of modules executed at the same time
+     */
+    ParallelExecutionEngineImpl(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive, but was " + parallelism + ".");
+        }
+        this.parallelism = parallelism;
+    }
+
+    @Override
+    public ExecutionContext executePipeline(final Module module, final ExecutionContext inputContext) {
+        LOG.info("Executing script {} with context {} using {} threads.", module.getResource(), inputContext.toSimpleString(), parallelism);
+        final long pipelineExecutionId = createPipelineExecutionId();
+
+        fire((l) -> {l.pipelineExecutionStarted(pipelineExecutionId); return null;});
+        final ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        final DiskBackedExecution diskBackedExecution = createDiskBackedExecution(pipelineExecutionId, module);
+        ExecutionContext outputContext;
+        try {
+            outputContext = _executePipeline(pipelineExecutionId, module, inputContext, executor, diskBackedExecution);
+            if (diskBackedExecution != null) {
+                outputContext = diskBackedExecution.materialize(outputContext);
+            }
+        } finally {
+            executor.shutdownNow();
+            if (diskBackedExecution != null) {
+                diskBackedExecution.close();
+            }
+        }
+        fire((l) -> {l.pipelineExecutionFinished(pipelineExecutionId); return null;});
+        return outputContext;
+    }
+
+    @Override
+    synchronized void fire(final Function<ProgressListener, Void> function) {
+        super.fire(function);
+    }
+
+    private ExecutionContext _executePipeline(long pipelineExecutionId, Module outputModule, ExecutionContext context, ExecutorService executor,
+                                              DiskBackedExecution diskBackedExecution) {
+
+        final Map<Module, String> predecessorIds = new IdentityHashMap<>();
+        final List<Module> sortedModules = sortTopologically(pipelineExecutionId, outputModule, context, predecessorIds);
+
+        LOG.debug("Scheduling {} modules of the pipeline {}.", sortedModules.size(), pipelineExecutionId);
+
+        final Map<Module, CompletableFuture<ExecutionContext>> module2FutureMap = new IdentityHashMap<>();
+        for (Module module : sortedModules) {
+            final List<CompletableFuture<ExecutionContext>> inputFutures = new ArrayList<>();
+            module.getInputModules().forEach(m -> inputFutures.add(module2FutureMap.get(m)));
+
+            final CompletableFuture<ExecutionContext> future = CompletableFuture
+                .allOf(inputFutures.toArray(new CompletableFuture[0]))
+                .thenApplyAsync(
+                    v -> executeModule(pipelineExecutionId, module, context, predecessorIds.get(module), diskBackedExecution),
+                    executor
+                );
+            module2FutureMap.put(module, future);
+        }
+
+        try {
+            return module2FutureMap.get(outputModule).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new SPipesException("Execution of pipeline " + pipelineExecutionId + " failed.", e.getCause());
+        }
+    }
+
+    /**
+     * Executes the module assuming that all its input modules are already finished.
+     */
+    private ExecutionContext executeModule(long pipelineExecutionId, Module module, ExecutionContext context, String predecessorId,
+                                           DiskBackedExecution diskBackedExecution) {
+        final String moduleExecutionId = getModuleExecutionId(pipelineExecutionId, module, context);
+
+        // module has run already
+        if (module.getOutputContext() != null) {
+            module.addOutputBindings(context.getVariablesBinding());
+            fire((l) -> {l.moduleExecutionFinished(pipelineExecutionId, moduleExecutionId, module); return null;});
+            return module.getOutputContext();
+        }
+
+        final ExecutionContext inputContext;
+        if (module.getInputModules().isEmpty()) {
+            inputContext = createSourceModuleContext(context);
+        } else {
+            Map<Resource, ExecutionContext> resource2ContextMap = new HashMap<>();
+            module.getInputModules().forEach(m -> resource2ContextMap.put(m.getResource(), m.getOutputContext()));
+            inputContext = mergeContexts(resource2ContextMap);
+        }
+
+        fire((l) -> {l.moduleExecutionStarted(pipelineExecutionId, moduleExecutionId, module, inputContext, predecessorId); return null;});
+
+        if (module.getInputModules().isEmpty() && module.getExecutionContext() != null) {
+            LOG.debug("Execution context for module {} already set.", module);
+        } else {
+            module.setInputContext(inputContext);
+
+            LOG.info(" ##### " + module.getLabel());
+            if (LOG.isTraceEnabled()) {
+                LOG.trace("Using input context {}", inputContext.toTruncatedSimpleString());
+            }
+            ExecutionContext outputContext = module.execute();
+            if (LOG.isTraceEnabled()) {
+                LOG.trace("Returning output context {}", outputContext.toSimpleString());
+            }
+            module.addOutputBindings(inputContext.getVariablesBinding());
+            if (diskBackedExecution != null) {
+                diskBackedExecution.storeOutput(module);
+            }
+        }
+        fire((l) -> {l.moduleExecutionFinished(pipelineExecutionId, moduleExecutionId, module); return null;});
+        return module.getOutputContext();
+    }
+
+    /**
+     * Returns modules the output module depends on (including the output module) so that every module
+     * is preceded by all its input modules. As a side effect, for each module it records execution id
+     * of the first module that uses its output.
+     */
+    private List<Module> sortTopologically(long pipelineExecutionId, Module outputModule, ExecutionContext context,
+                                           Map<Module, String> predecessorIds) {
+        final List<Module> sortedModules = new ArrayList<>();
+        final Set<Module> visitedModules = Collections.newSetFromMap(new IdentityHashMap<>());
+        final Set<Module> finishedModules = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        predecessorIds.put(outputModule, null);
+        visit(pipelineExecutionId, outputModule, context, predecessorIds, visitedModules, finishedModules, sortedModules);
+        return sortedModules;
+    }
+
+    private void visit(long pipelineExecutionId, Module module, ExecutionContext context, Map<Module, String> predecessorIds,
+                       Set<Module> visitedModules, Set<Module> finishedModules, List<Module> sortedModules) {
+        if (finishedModules.contains(module)) {
+            return;
+        }
+        if (!visitedModules.add(module)) {
+            throw new SPipesException("Pipeline contains a cycle through module " + module.getResource() + ".");
+        }
+        final String moduleExecutionId = getModuleExecutionId(pipelineExecutionId, module, context);
+        for (Module inputModule : module.getInputModules()) {
+            if (!predecessorIds.containsKey(inputModule)) {
+                predecessorIds.put(inputModule, moduleExecutionId);
+            }
+            visit(pipelineExecutionId, inputModule, context, predecessorIds, visitedModules, finishedModules, sortedModules);
+        }
+        finishedModules.add(module);
+        sortedModules.add(module);
+    }
+
+    private String getModuleExecutionId(long pipelineExecutionId, Module module, ExecutionContext context) {
+        return pipelineExecutionId + "-" + module.hashCode() + "-" + context.hashCode();
+    }
+}
@@ -243,4 +243,19 @@ public class PipelineFactory {
     public static Module loadModulePipeline(Resource returnModuleRes) {
         return loadAllModules(returnModuleRes.getModel()).get(returnModuleRes);
     }
+
+    /**
+     * Creates template of the pipeline ending in the return module, which can be instantiated
+     * without loading modules of the script again.
+     *
+     * @param returnModuleRes configuration resource of the return module
+     * @return template of the pipeline or null if the return module cannot be loaded
+     */
+    public static PipelineTemplate createPipelineTemplate(Resource returnModuleRes) {
+        Module returnModule = loadModulePipeline(returnModuleRes);
+        if (returnModule == null) {
+            return null;
+        }
+        return PipelineTemplate.create(returnModule);
+    }
 }
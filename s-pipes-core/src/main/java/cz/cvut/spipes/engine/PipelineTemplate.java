@@ -0,0 +1,100 @@
+package cz.cvut.spipes.engine;
+
+import cz.cvut.spipes.modules.Module;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.jena.rdf.model.Resource;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Topology of a pipeline ending in a return module, i.e. configuration resources and types of the modules
+ * and links between them.
+ * <p>
+ * The template is created once per script and instantiated for each execution, which creates new modules
+ * without querying the script again. Modules that are not connected to the return module are not part
+ * of the template.
+ */
+public class PipelineTemplate {
+
+    private final List<Resource> moduleResources;
+    private final List<Class<? extends Module>> moduleClasses;
+    private final List<int[]> inputModuleIndexes;
+
+    private PipelineTemplate(List<Resource> moduleResources,
+                             List<Class<? extends Module>> moduleClasses,
+                             List<int[]> inputModuleIndexes) {
+        this.moduleResources = Collections.unmodifiableList(moduleResources);
+        this.moduleClasses = Collections.unmodifiableList(moduleClasses);
+        this.inputModuleIndexes = Collections.unmodifiableList(inputModuleIndexes);
+    }
+
+    /**
+     * Creates template of pipeline from loaded modules.
+     *
+     * @param returnModule module producing output of the pipeline, with input modules set
+     * @return template of the pipeline
+     */
+    static PipelineTemplate create(@NotNull Module returnModule) {
+        List<Module> modules = new ArrayList<>();
+        Map<Module, Integer> module2Index = new IdentityHashMap<>();
+        modules.add(returnModule);
+        module2Index.put(returnModule, 0);
+
+        List<int[]> inputModuleIndexes = new ArrayList<>();
+        for (int i = 0; i < modules.size(); i++) {
+            List<Module> inputModules = modules.get(i).getInputModules();
+            int[] indexes = new int[inputModules.size()];
+            for (int j = 0; j < inputModules.size(); j++) {
+                Module inputModule = inputModules.get(j);
+                Integer index = module2Index.get(inputModule);
+                if (index == null) {
+                    index = modules.size();
+                    modules.add(inputModule);
+                    module2Index.put(inputModule, index);
+                }
+                indexes[j] = index;
+            }
+            inputModuleIndexes.add(indexes);
+        }
+
+        List<Resource> moduleResources = new ArrayList<>(modules.size());
+        List<Class<? extends Module>> moduleClasses = new ArrayList<>(modules.size());
+        modules.forEach(m -> {
+            moduleResources.add(m.getResource());
+            moduleClasses.add(m.getClass());
+        });
+        return new PipelineTemplate(moduleResources, moduleClasses, inputModuleIndexes);
+    }
+
+    /**
+     * Creates new modules of the pipeline.
+     *
+     * @return return module of the pipeline
+     */
+    public Module instantiate() {
+        List<Module> modules = new ArrayList<>(moduleClasses.size());
+        for (int i = 0; i < moduleClasses.size(); i++) {
+            Module module = PipelineFactory.instantiateModule(moduleClasses.get(i));
+            module.setConfigurationResource(moduleResources.get(i));
+            modules.add(module);
+        }
+        for (int i = 0; i < modules.size(); i++) {
+            List<Module> inputModules = modules.get(i).getInputModules();
+            for (int index : inputModuleIndexes.get(i)) {
+                inputModules.add(modules.get(index));
+            }
+        }
+        return modules.get(0);
+    }
+
+    public Resource getReturnModuleResource() {
+        return moduleResources.get(0);
+    }
+
+    public int getModuleCount() {
+        return moduleResources.size();
+    }
+}
@@ -15,10 +15,10 @@ import cz.cvut.spipes.modules.Module;
 import cz.cvut.spipes.util.Rdf4jUtils;
 import cz.cvut.spipes.util.TempFileUtils;
 import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
 import org.apache.jena.rdf.model.Property;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.ResourceFactory;
-import org.apache.jena.riot.RDFLanguages;
 import org.apache.jena.util.FileUtils;
 import org.eclipse.rdf4j.model.Statement;
 import org.eclipse.rdf4j.model.ValueFactory;
@@ -28,8 +28,6 @@ import org.eclipse.rdf4j.repository.RepositoryException;
 import org.eclipse.rdf4j.repository.RepositoryResult;
 import org.eclipse.rdf4j.repository.config.RepositoryConfigException;
 import org.eclipse.rdf4j.repository.sail.SailRepository;
-import org.eclipse.rdf4j.rio.RDFFormat;
-import org.eclipse.rdf4j.rio.RDFParseException;
 import org.eclipse.rdf4j.rio.turtle.TurtleWriter;
 import org.eclipse.rdf4j.rio.turtle.TurtleWriterFactory;
 import org.jetbrains.annotations.NotNull;
@@ -43,6 +41,8 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 public class AdvancedLoggingProgressListener implements ProgressListener {
     private static final Logger LOG =
@@ -50,10 +50,13 @@ public class AdvancedLoggingProgressListener implements ProgressListener {
     /**
      * Maps pipeline executions and module executions to the transformation object.
      */
-    private static final Map<String, Object> executionMap = new HashMap<>();
-    private static final Map<String, Object> metadataMap = new HashMap<>();
-    private static final Map<String, EntityManager> entityManagerMap = new HashMap<>();
-    private static final Map<Long, Path> logDir = new HashMap<>();
+    private static final Map<String, Object> executionMap = new ConcurrentHashMap<>();
+    /**
+     * Maps pipeline executions to the name of the pipeline.
+     */
+    private static final Map<String, Object> metadataMap = new ConcurrentHashMap<>();
+    private static final Map<String, EntityManager> entityManagerMap = new ConcurrentHashMap<>();
+    private static final Map<Long, Path> logDir = new ConcurrentHashMap<>();
     private static final String P_HAS_PART =
         Vocabulary.ONTOLOGY_IRI_dataset_descriptor + "/has-part";
     private static final String P_HAS_NEXT =
@@ -67,6 +70,13 @@ public class AdvancedLoggingProgressListener implements ProgressListener {
     static final Property P_DATA_REPOSITORY_NAME = getParameter("p-data-repository-name");
     static final Property P_PIPELINE_EXECUTION_GROUP_ID = getParameter("p-execution-group-id");
     static final Property PIPELINE_EXECUTION_GROUP_ID = getParameter("has-pipeline-execution-group-id");
+    static final Property P_IS_ASYNCHRONOUS = getParameter("p-is-asynchronous");
+    static final Property P_QUEUE_SIZE = getParameter("p-queue-size");
+    static final Property P_BATCH_SIZE = getParameter("p-batch-size");
+    static final Property P_IS_DROPPING_SNAPSHOTS = getParameter("p-is-dropping-snapshots");
+    private static final int DEFAULT_QUEUE_SIZE = 1000;
+    private static final int DEFAULT_BATCH_SIZE = 20;
+    private static final int RAW_DATA_BATCH_SIZE = 10000;
 
     static {
         final Map<String, String> props = new HashMap<>();
@@ -81,12 +91,29 @@ public class AdvancedLoggingProgressListener implements ProgressListener {
     private String pipelineExecutionGroupId;
     private EntityManagerFactory metadataEmf = null;
     private EntityManagerFactory dataEmf = null;
+    /**
+     * If true, metadata and dataset snapshots are written by a background thread
+     * and metadata of finished modules are persisted in batches.
+     */
+    private boolean isAsynchronous;
+    private int queueSize;
+    private int batchSize;
+    private boolean isDroppingSnapshots;
+    private volatile WriteBehindExecutor writer;
+    private int activePipelineExecutionCount;
+    private final Map<Long, List<ModuleExecutionRecord>> pendingModuleExecutions = new HashMap<>();
 
     public AdvancedLoggingProgressListener(Resource configResource) {
         rdf4jServerUrl = getStringPropertyValue(configResource, P_RDF4J_SERVER_URL);
         metadataRepositoryName = getStringPropertyValue(configResource, P_METADATA_REPOSITORY_NAME);
         dataRepositoryName = getStringPropertyValue(configResource, P_DATA_REPOSITORY_NAME);
         pipelineExecutionGroupId = getStringPropertyValue(configResource, P_PIPELINE_EXECUTION_GROUP_ID);
+        isAsynchronous = Boolean.parseBoolean(getLexicalPropertyValue(configResource, P_IS_ASYNCHRONOUS));
+        queueSize = Optional.ofNullable(getLexicalPropertyValue(configResource, P_QUEUE_SIZE))
+            .map(Integer::parseInt).orElse(DEFAULT_QUEUE_SIZE);
+        batchSize = Optional.ofNullable(getLexicalPropertyValue(configResource, P_BATCH_SIZE))
+            .map(Integer::parseInt).orElse(DEFAULT_BATCH_SIZE);
+        isDroppingSnapshots = Boolean.parseBoolean(getLexicalPropertyValue(configResource, P_IS_DROPPING_SNAPSHOTS));
 
         if (
             (metadataRepositoryName != null)
@@ -104,6 +131,7 @@ public class AdvancedLoggingProgressListener implements ProgressListener {
 
     @Override
     public void pipelineExecutionStarted(final long pipelineExecutionId) {
+        final Date startDate = new Date();
         Thing pipelineExecution = new Thing();
         pipelineExecution.setId(getPipelineExecutionIri(pipelineExecutionId));
         pipelineExecution.setTypes(Collections.singleton(Vocabulary.s_c_transformation));
@@ -113,11 +141,16 @@ public class AdvancedLoggingProgressListener implements ProgressListener {
         pipelineExecutionDir.toFile().mkdir();
         logDir.put(pipelineExecutionId, pipelineExecutionDir);
 
-        final EntityManager metadataEM = getMetadataEmf().createEntityManager();
-        synchronized (metadataEM) {
-            persistPipelineExecutionStarted(metadataEM, pipelineExecutionId, pipelineExecution);
-            entityManagerMap.put(pipelineExecution.getId(), metadataEM);
+        if (isAsynchronous) {
+            startWriter();
         }
+        final EntityManager metadataEM = getMetadataEmf().createEntityManager();
+        entityManagerMap.put(pipelineExecution.getId(), metadataEM);
+        execute(() -> {
+            synchronized (metadataEM) {
+                persistPipelineExecutionStarted(metadataEM, pipelineExecutionId, pipelineExecution, startDate);
+            }
+        });
 
 //        final EntityManager em = PersistenceFactory.createEntityManager();
 //        synchronized (em) {
@@ -126,11 +159,11 @@ public class AdvancedLoggingProgressListener implements ProgressListener {
 //        entityManagerMap.put(pipelineExecution.getId(), em);
     }
 
-    private void persistPipelineExecutionStarted(final EntityManager em, long pipelineExecutionId, Thing pipelineExecution) {
+    private void persistPipelineExecutionStarted(final EntityManager em, long pipelineExecutionId, Thing pipelineExecution,
+                                                 final Date startDate) {
         em.getTransaction().begin();
 
         // new
-        Date startDate = new Date();
         addProperty(pipelineExecution, SPIPES.has_pipeline_execution_start_date, startDate);
         addProperty(pipelineExecution, SPIPES.has_pipeline_execution_start_date_unix, startDate.getTime());
         if (pipelineExecutionGroupId != null) {
@@ -164,16 +197,16 @@ public class AdvancedLoggingProgressListener implements ProgressListener {
             } catch (IOException e) {
                 e.printStackTrace();
             }
-            entityManagerMap.remove(em);
+            entityManagerMap.remove(getPipelineExecutionIri(pipelineExecutionId));
             em.close();
             logDir.remove(pipelineExecutionId);
         }
     }
 
-    private void persistPipelineExecutionFinished(final EntityManager em, final long pipelineExecutionId) {
+    private void persistPipelineExecutionFinished(final EntityManager em, final long pipelineExecutionId,
+                                                  final Date finishDate) {
         if (em.isOpen()) {
             LOG.debug("Saving metadata about finished pipeline execution {}.", pipelineExecutionId);
-            Date finishDate = new Date();
             em.getTransaction().begin();
 
             String pipelineExecutionIri = getPipelineExecutionIri(pipelineExecutionId);
@@ -186,7 +219,7 @@ public class AdvancedLoggingProgressListener implements ProgressListener {
             addProperty(pipelineExecution, SPIPES.has_pipeline_execution_finish_date, finishDate);
             addProperty(pipelineExecution, SPIPES.has_pipeline_execution_finish_date_unix, finishDate.getTime());
             addProperty(pipelineExecution, SPIPES.has_pipeline_execution_duration, computeDuration(startDate, finishDate));
-            addProperty(pipelineExecution, SPIPES.has_pipeline_name, metadataMap.get(SPIPES.has_pipeline_name.toString()));
+            addProperty(pipelineExecution, SPIPES.has_pipeline_name, metadataMap.remove(pipelineExecutionIri));
 
             em.getTransaction().commit();
             em.close();
@@ -210,11 +243,23 @@ public class AdvancedLoggingProgressListener implements ProgressListener {
     @Override
     public void pipelineExecutionFinished(final long pipelineExecutionId) {
         final EntityManager em = entityManagerMap.get(getPipelineExecutionIri(pipelineExecutionId));
+        final Date finishDate = new Date();
 
-        synchronized (em) {
-            persistPipelineExecutionFinished(em, pipelineExecutionId);
-            entityManagerMap.remove(em);
-            executionMap.remove(getPipelineExecutionIri(pipelineExecutionId));
+        if (isAsynchronous) {
+            List<ModuleExecutionRecord> batch = removeBatch(pipelineExecutionId);
+            if (batch != null) {
+                execute(() -> persistModuleExecutionsFinished(em, pipelineExecutionId, batch));
+            }
+        }
+        execute(() -> {
+            synchronized (em) {
+                persistPipelineExecutionFinished(em, pipelineExecutionId, finishDate);
+                entityManagerMap.remove(getPipelineExecutionIri(pipelineExecutionId));
+                executionMap.remove(getPipelineExecutionIri(pipelineExecutionId));
+            }
+        });
+        if (isAsynchronous) {
+            stopWriter();
         }
     }
 
@@ -255,7 +300,7 @@ public class AdvancedLoggingProgressListener implements ProgressListener {
         // save metadata
 
         // save data
-        saveModelToFile(moduleExecution.getHas_input().getId(), inputContext.getDefaultModel());
+        saveModelSnapshot(moduleExecution.getHas_input().getId(), inputContext.getDefaultModel());
     }
 
     @Override
@@ -269,95 +314,175 @@ public class AdvancedLoggingProgressListener implements ProgressListener {
             (Transformation) executionMap.get(getModuleExecutionIri(moduleExecutionId));
 
         // construct model
-        Map<String, Set<Object>> properties = new HashMap<>();
-        properties.put(P_HAS_PART, Collections.singleton(URI.create(moduleExecution.getId())));
-
         Thing output = new Thing();
         output.setId(
             getModulesSourceDatasetSnapshotUrl(pipelineExecutionId, moduleExecutionId, SnapshotRole.OUTPUT_GRAPH)
         );
         moduleExecution.setHas_output(Collections.singleton(output));
 
+        // new
+        Date finishDate = new Date();
+        Date startDate = (Date) getSingletonPropertyValue(moduleExecution, SPIPES.has_module_execution_start_date);
+        addProperty(moduleExecution, SPIPES.has_module_execution_finish_date, finishDate);
+        addProperty(moduleExecution, SPIPES.has_module_execution_finish_date_unix, finishDate.getTime());
+        addProperty(moduleExecution, SPIPES.has_module_execution_duration, computeDuration(startDate, finishDate));
+        addProperty(moduleExecution, SPIPES.has_output_model_triple_count, module.getOutputContext().getDefaultModel().size());
+        addProperty(moduleExecution, SPIPES.has_pipeline_name, module.getResource().toString().replaceAll("\\/[^.]*$", ""));
+        metadataMap.putIfAbsent(
+            getPipelineExecutionIri(pipelineExecutionId),
+            module.getResource().toString().replaceAll("\\/[^.]*$", "")
+        );
+
+        // input binding
+        SourceDatasetSnapshot inputBindings = new SourceDatasetSnapshot(); //TODO type is not saved
+        inputBindings.setId(
+            getModulesSourceDatasetSnapshotUrl(pipelineExecutionId, moduleExecutionId, SnapshotRole.INPUT_BINDING)
+        );
+        addProperty(
+            moduleExecution,
+            ResourceFactory.createProperty(P_HAS_INPUT_BINDDING),
+            URI.create(inputBindings.getId())
+        );
+
+        ModuleExecutionRecord record = new ModuleExecutionRecord(
+            moduleExecution,
+            output,
+            inputBindings,
+            module.getExecutionContext().getVariablesBinding().getModel()
+        );
+
+        // save metadata
+        if (isAsynchronous) {
+            List<ModuleExecutionRecord> batch = addToBatch(pipelineExecutionId, record);
+            if (batch != null) {
+                execute(() -> persistModuleExecutionsFinished(em, pipelineExecutionId, batch));
+            }
+        } else {
+            persistModuleExecutionsFinished(em, pipelineExecutionId, Collections.singletonList(record));
+        }
+
+        // save data
+        saveModelSnapshot(output.getId(), module.getOutputContext().getDefaultModel());
+    }
+
+    private void persistModuleExecutionsFinished(final EntityManager em,
+                                                 final long pipelineExecutionId,
+                                                 final List<ModuleExecutionRecord> records) {
         synchronized (em) {
             if (em.isOpen()) {
-                Date finishDate = new Date();
                 em.getTransaction().begin();
                 String pipelineExecutionIri = getPipelineExecutionIri(pipelineExecutionId);
                 final EntityDescriptor pd = new EntityDescriptor(URI.create(pipelineExecutionIri));
                 final Transformation pipelineExecution =
                     em.find(Transformation.class, pipelineExecutionIri, pd);
 
+                Map<String, Set<Object>> properties = new HashMap<>();
+                Set<Object> parts = new HashSet<>();
+                records.forEach(r -> parts.add(URI.create(r.moduleExecution.getId())));
+                properties.put(P_HAS_PART, parts);
                 pipelineExecution.setProperties(properties);
 
-                if (moduleExecution.getProperties() != null && moduleExecution.getProperties().containsKey(
-                    P_HAS_NEXT)) {
-                    String nextId = moduleExecution.getProperties().get(P_HAS_NEXT).iterator()
-                        .next().toString();
-                    Thing next = new Thing();
-                    next.setId(nextId);
-                    em.merge(next, pd);
+                for (ModuleExecutionRecord record : records) {
+                    Transformation moduleExecution = record.moduleExecution;
+                    if (moduleExecution.getProperties() != null && moduleExecution.getProperties().containsKey(
+                        P_HAS_NEXT)) {
+                        String nextId = moduleExecution.getProperties().get(P_HAS_NEXT).iterator()
+                            .next().toString();
+                        Thing next = new Thing();
+                        next.setId(nextId);
+                        em.merge(next, pd);
+                    }
+
+                    final Thing input = moduleExecution.getHas_input();
+                    em.merge(input, pd);
+                    em.merge(record.output, pd);
+                    em.merge(moduleExecution, pd);
+                    em.merge(record.inputBindings, pd);
+
+                    // save metadata
+                    writeRawData(em, URI.create(record.inputBindings.getId()), record.inputBindingModel);
                 }
 
-                // new
-                Date startDate = (Date) getSingletonPropertyValue(moduleExecution, SPIPES.has_module_execution_start_date);
-                addProperty(moduleExecution, SPIPES.has_module_execution_finish_date, finishDate);
-                addProperty(moduleExecution, SPIPES.has_module_execution_finish_date_unix, finishDate.getTime());
-                addProperty(moduleExecution, SPIPES.has_module_execution_duration, computeDuration(startDate, finishDate));
-                addProperty(moduleExecution, SPIPES.has_output_model_triple_count, module.getOutputContext().getDefaultModel().size());
-                addProperty(moduleExecution, SPIPES.has_pipeline_name, module.getResource().toString().replaceAll("\\/[^.]*$", ""));
-                if(!metadataMap.containsKey(SPIPES.has_pipeline_name.toString())){
-                    metadataMap.put(SPIPES.has_pipeline_name.toString(), module.getResource().toString().replaceAll("\\/[^.]*$", ""));
-                }
-
-                // input binding
-                SourceDatasetSnapshot inputBindings = new SourceDatasetSnapshot(); //TODO type is not saved
-                inputBindings.setId(
-                    getModulesSourceDatasetSnapshotUrl(pipelineExecutionId, moduleExecutionId, SnapshotRole.INPUT_BINDING)
-                );
-                addProperty(
-                    moduleExecution,
-                    ResourceFactory.createProperty(P_HAS_INPUT_BINDDING),
-                    URI.create(inputBindings.getId())
-                );
-
+                em.getTransaction().commit();
+            }
+        }
+    }
 
-                final Thing input = moduleExecution.getHas_input();
-                em.merge(input, pd);
-                em.merge(output, pd);
-                em.merge(moduleExecution, pd);
-                em.merge(inputBindings, pd);
+    /**
+     * Adds the record to the batch of the pipeline execution.
+     *
+     * @return records of the batch if it is full, null otherwise
+     */
+    private List<ModuleExecutionRecord> addToBatch(long pipelineExecutionId, ModuleExecutionRecord record) {
+        synchronized (pendingModuleExecutions) {
+            List<ModuleExecutionRecord> batch =
+                pendingModuleExecutions.computeIfAbsent(pipelineExecutionId, id -> new ArrayList<>());
+            batch.add(record);
+            if (batch.size() < batchSize) {
+                return null;
+            }
+            pendingModuleExecutions.remove(pipelineExecutionId);
+            return batch;
+        }
+    }
 
-                // save metadata
-                Model ibModel = module.getExecutionContext().getVariablesBinding().getModel();
+    private List<ModuleExecutionRecord> removeBatch(long pipelineExecutionId) {
+        synchronized (pendingModuleExecutions) {
+            return pendingModuleExecutions.remove(pipelineExecutionId);
+        }
+    }
 
-                writeRawData(em, URI.create(inputBindings.getId()), ibModel);
+    /**
+     * Executes the task, in background if the listener is asynchronous.
+     */
+    private void execute(Runnable task) {
+        if (isAsynchronous) {
+            writer.submit(task);
+        } else {
+            task.run();
+        }
+    }
 
+    /**
+     * Executes the task that can be skipped if the logging does not keep up with the pipeline.
+     */
+    private void executeOptional(Supplier<Runnable> taskFactory) {
+        if (isAsynchronous) {
+            writer.submitOptional(taskFactory);
+        } else {
+            taskFactory.get().run();
+        }
+    }
 
-                em.getTransaction().commit();
-            }
+    private synchronized void startWriter() {
+        if (writer == null) {
+            writer = new WriteBehindExecutor(LOCAL_NAME, queueSize, isDroppingSnapshots);
         }
+        activePipelineExecutionCount++;
+    }
 
-        // save data
-        saveModelToFile(output.getId(), module.getOutputContext().getDefaultModel());
+    private synchronized void stopWriter() {
+        activePipelineExecutionCount--;
+        if (activePipelineExecutionCount == 0) {
+            writer.shutdown();
+            writer = null;
+        }
     }
 
     private void writeRawData(EntityManager em, URI contextUri, Model model) {
 
         RepositoryConnection connection = null;
         try {
-            StringWriter w = new StringWriter();
-            model.write(w, RDFLanguages.NTRIPLES.getName());
-
             connection = em.unwrap(Repository.class).getConnection();
 
             connection.begin();
-            connection.add(
-                new StringReader(w.getBuffer().toString()),
-                "",
-                RDFFormat.N3,
+            Rdf4jUtils.addModel(
+                connection,
+                model,
+                RAW_DATA_BATCH_SIZE,
                 connection.getValueFactory().createIRI(contextUri.toString()));
             connection.commit();
-        } catch (final RepositoryException | RDFParseException | RepositoryConfigException | IOException e) {
+        } catch (final RepositoryException | RepositoryConfigException e) {
             LOG.error(e.getMessage(), e);
         } finally {
             if (connection != null && connection.isOpen()) {
@@ -380,6 +505,24 @@ public class AdvancedLoggingProgressListener implements ProgressListener {
     }
 
 
+    /**
+     * Saves the model to file, in background if the listener is asynchronous. Models of a running pipeline
+     * may still change (e.g. unions over outputs of other modules), thus the background task writes a copy
+     * made by the calling thread. The copy is made only if the snapshot is not dropped.
+     */
+    private void saveModelSnapshot(String filePath, Model model) {
+        if (isAsynchronous) {
+            executeOptional(() -> {
+                final Model snapshot = ModelFactory.createDefaultModel();
+                snapshot.setNsPrefixes(model.getNsPrefixMap());
+                snapshot.add(model);
+                return () -> saveModelToFile(filePath, snapshot);
+            });
+        } else {
+            saveModelToFile(filePath, model);
+        }
+    }
+
     private void saveModelToFile(String filePath, Model model) {
         File file = Paths.get(URI.create(filePath)).toFile();
         try (OutputStream fileIs = new FileOutputStream(file)) {
@@ -428,6 +571,14 @@ public class AdvancedLoggingProgressListener implements ProgressListener {
         return resource.getProperty(property).getObject().toString();
     }
 
+    private String getLexicalPropertyValue(@NotNull Resource resource, @NotNull Property property) {
+        org.apache.jena.rdf.model.Statement st = resource.getProperty(property);
+        if (st == null) {
+            return null;
+        }
+        return st.getObject().isLiteral() ? st.getLiteral().getLexicalForm() : st.getObject().toString();
+    }
+
     private void addProperty(@NotNull Thing thing, @NotNull Property property, @NotNull Object value) {
         if (thing.getProperties() == null) {
             thing.setProperties(new HashMap<>());
@@ -469,6 +620,26 @@ public class AdvancedLoggingProgressListener implements ProgressListener {
         return (newDate.getTime() - oldDate.getTime());
     }
 
+    /**
+     * Metadata of finished module execution waiting to be persisted.
+     */
+    private static class ModuleExecutionRecord {
+        private final Transformation moduleExecution;
+        private final Thing output;
+        private final SourceDatasetSnapshot inputBindings;
+        private final Model inputBindingModel;
+
+        ModuleExecutionRecord(Transformation moduleExecution,
+                              Thing output,
+                              SourceDatasetSnapshot inputBindings,
+                              Model inputBindingModel) {
+            this.moduleExecution = moduleExecution;
+            this.output = output;
+            this.inputBindings = inputBindings;
+            this.inputBindingModel = inputBindingModel;
+        }
+    }
+
     private enum SnapshotRole {
         INPUT_GRAPH("input"),
         OUTPUT_GRAPH("output"),
@@ -35,6 +35,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class SemanticLoggingProgressListener implements ProgressListener {
     private static final Logger LOG =
@@ -43,11 +44,11 @@ public class SemanticLoggingProgressListener implements ProgressListener {
     /**
      * Maps pipeline executions and module executions to the transformation object.
      */
-    private static final Map<String, Object> executionMap = new HashMap<>();
+    private static final Map<String, Object> executionMap = new ConcurrentHashMap<>();
 
-    private static final Map<String, EntityManager> entityManagerMap = new HashMap<>();
+    private static final Map<String, EntityManager> entityManagerMap = new ConcurrentHashMap<>();
 
-    private static final Map<Long, Path> logDir= new HashMap<>();
+    private static final Map<Long, Path> logDir= new ConcurrentHashMap<>();
 
     private static final String P_HAS_PART =
         Vocabulary.ONTOLOGY_IRI_dataset_descriptor + "/has-part";
@@ -107,7 +108,7 @@ public class SemanticLoggingProgressListener implements ProgressListener {
                 } catch (IOException e) {
                     e.printStackTrace();
                 }
-                entityManagerMap.remove(em);
+                entityManagerMap.remove(getPipelineExecutionIri(pipelineExecutionId));
                 em.close();
                 logDir.remove(pipelineExecutionId);
             }
@@ -0,0 +1,114 @@
+package cz.cvut.spipes.logging;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Executes logging tasks one by one in a background thread, in the order they were submitted.
+ * <p>
+ * Tasks wait in a bounded queue. When the queue is full, submission of a task blocks until there is space
+ * in the queue, which slows down the pipeline to the speed of the logging. Optional tasks,
+ * e.g. saving of dataset snapshots, can be dropped instead.
+ */
+class WriteBehindExecutor {
+
+    private static final Logger LOG = LoggerFactory.getLogger(WriteBehindExecutor.class);
+
+    private static final Runnable SHUTDOWN_TASK = () -> {};
+
+    private final BlockingQueue<Runnable> queue;
+    private final boolean isDroppingOptionalTasks;
+    private final AtomicLong droppedTaskCount = new AtomicLong();
+    private final Thread thread;
+
+    /**
+     * @param name                    name of the background thread
+     * @param queueSize               maximal number of tasks waiting for execution
+     * @param isDroppingOptionalTasks if true, optional tasks are dropped when the queue is full
+     */
+    WriteBehindExecutor(String name, int queueSize, boolean isDroppingOptionalTasks) {
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.isDroppingOptionalTasks = isDroppingOptionalTasks;
+        this.thread = new Thread(this::run, name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Submits the task, waiting for space in the queue if necessary.
+     */
+    void submit(Runnable task) {
+        try {
+            queue.put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting to submit logging task.", e);
+        }
+    }
+
+    /**
+     * Submits the task created by the factory. If the queue is full and dropping of optional tasks is enabled,
+     * the task is dropped without being created, thus costly preparation of the task (e.g. a copy of a model)
+     * is done only for tasks that are going to be executed.
+     */
+    void submitOptional(Supplier<Runnable> taskFactory) {
+        if (!isDroppingOptionalTasks) {
+            submit(taskFactory.get());
+            return;
+        }
+        // the queue has a single consumer, thus free space can only grow until the task is offered,
+        // unless other threads submit tasks concurrently
+        if (queue.remainingCapacity() == 0 || !queue.offer(taskFactory.get())) {
+            long count = droppedTaskCount.incrementAndGet();
+            LOG.warn("Logging queue is full, dropping optional task ({} dropped so far).", count);
+        }
+    }
+
+    /**
+     * Waits until all tasks submitted before this call are executed.
+     *
+     * @return false if the timeout elapsed before the tasks were executed
+     */
+    boolean awaitSubmittedTasks(long timeout, TimeUnit unit) throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        submit(latch::countDown);
+        return latch.await(timeout, unit);
+    }
+
+    /**
+     * Stops the background thread after all submitted tasks are executed.
+     */
+    void shutdown() {
+        submit(SHUTDOWN_TASK);
+    }
+
+    long getDroppedTaskCount() {
+        return droppedTaskCount.get();
+    }
+
+    private void run() {
+        while (true) {
+            Runnable task;
+            try {
+                task = queue.take();
+            } catch (InterruptedException e) {
+                LOG.warn("Logging thread interrupted, {} tasks were not executed.", queue.size());
+                return;
+            }
+            if (task == SHUTDOWN_TASK) {
+                return;
+            }
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                LOG.error("Logging task failed.", e);
+            }
+        }
+    }
+}
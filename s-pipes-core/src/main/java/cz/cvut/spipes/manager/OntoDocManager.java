@@ -86,7 +86,7 @@ public class OntoDocManager implements OntologyDocumentManager {
         }
     }
 
-    public static OntologyDocumentManager getInstance() {
+    public static synchronized OntologyDocumentManager getInstance() {
         if (sInstance == null) {
             sInstance = new OntoDocManager(OntDocumentManager.getInstance());
         }
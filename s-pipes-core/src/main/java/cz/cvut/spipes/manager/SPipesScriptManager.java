@@ -1,6 +1,7 @@
 package cz.cvut.spipes.manager;
 
 import cz.cvut.spipes.engine.PipelineFactory;
+import cz.cvut.spipes.engine.PipelineTemplate;
 import cz.cvut.spipes.exception.ResourceNotFoundException;
 import cz.cvut.spipes.exception.ResourceNotUniqueException;
 import cz.cvut.spipes.modules.Module;
@@ -9,6 +10,7 @@ import cz.cvut.spipes.registry.ResourceRegistry;
 import cz.cvut.spipes.repository.SMScriptCollectionRepository;
 import cz.cvut.spipes.repository.ScriptCollectionRepository;
 import cz.cvut.spipes.util.JenaPipelineUtils;
+import cz.cvut.spipes.util.QueryCache;
 import org.apache.jena.rdf.model.Resource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -16,7 +18,9 @@ import org.slf4j.LoggerFactory;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Registers resources to contexts.
@@ -39,6 +43,8 @@ public class SPipesScriptManager {
     private ResourceRegistry functionRegistry;
     private ResourceRegistry moduleRegistry;
     private OntologyDocumentManager ontoDocManager;
+    // function uri -> pipeline of its return module, cleared when scripts are reloaded
+    private final Map<String, PipelineTemplate> functionPipelineTemplates = new ConcurrentHashMap<>();
 
     private void registerAll(OntologyDocumentManager ontoDocManager, Collection<String> globalScripts) {
         List<Resource> functions = scriptsRepository.getFunctions(globalScripts);
@@ -46,6 +52,8 @@ public class SPipesScriptManager {
 
         functionRegistry = new JenaResourceRegistry(functions);
         moduleRegistry = new JenaResourceRegistry(modules);
+        functionPipelineTemplates.clear();
+        QueryCache.get().clear();
 
         OntoDocManager.registerAllSPINModules();
     }
@@ -96,10 +104,19 @@ public class SPipesScriptManager {
         // TODO interface to return URI+Context would be more appropriate (jena*.Resource ?)
         String resourceUri = functionRegistry.getResourceUri(functionId);
         String resourceContextUri = functionRegistry.getContexts(resourceUri).iterator().next();
-        Resource functionRes = scriptsRepository.getResource(resourceUri, resourceContextUri);
 
-        Resource returnModuleRes = getReturnModule(functionRes);
-        return PipelineFactory.loadModulePipeline(returnModuleRes);
+        PipelineTemplate pipelineTemplate = functionPipelineTemplates.get(resourceUri);
+        if (pipelineTemplate == null) {
+            Resource functionRes = scriptsRepository.getResource(resourceUri, resourceContextUri);
+            Resource returnModuleRes = getReturnModule(functionRes);
+            pipelineTemplate = PipelineFactory.createPipelineTemplate(returnModuleRes);
+            if (pipelineTemplate == null) {
+                return null;
+            }
+            LOG.debug("Caching pipeline of function {} with {} modules.", resourceUri, pipelineTemplate.getModuleCount());
+            functionPipelineTemplates.put(resourceUri, pipelineTemplate);
+        }
+        return pipelineTemplate.instantiate();
     }
 
 
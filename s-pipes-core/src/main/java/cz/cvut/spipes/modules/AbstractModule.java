@@ -9,6 +9,7 @@ import cz.cvut.spipes.engine.ExecutionContextFactory;
 import cz.cvut.spipes.engine.VariablesBinding;
 import cz.cvut.spipes.exception.ValidationConstraintFailedException;
 import cz.cvut.spipes.util.JenaUtils;
+import cz.cvut.spipes.util.QueryCache;
 import org.apache.jena.atlas.lib.NotImplemented;
 import org.apache.jena.ontology.OntModel;
 import org.apache.jena.query.*;
@@ -19,7 +20,6 @@ import org.apache.jena.vocabulary.RDFS;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.topbraid.spin.arq.ARQFactory;
 import org.topbraid.spin.model.Ask;
 import org.topbraid.spin.model.Construct;
 import org.topbraid.spin.model.SPINFactory;
@@ -131,6 +131,16 @@ public abstract class AbstractModule implements Module {
         return outputContext;
     }
 
+    @Override
+    public boolean isOutputContextReplaceable() {
+        return true;
+    }
+
+    @Override
+    public void setOutputContext(ExecutionContext outputContext) {
+        this.outputContext = outputContext;
+    }
+
     @Override
     public void setInputContext(ExecutionContext executionContext) {
         this.executionContext = executionContext;
@@ -256,7 +266,7 @@ public abstract class AbstractModule implements Module {
 //                TemplateCall templateCall = SPINFactory.asTemplateCall(queryRes);
 //            }
 
-            Query query = ARQFactory.get().createQuery(spinQuery);
+            Query query = QueryCache.get().getQuery(spinQuery);
 
             QueryExecution execution = QueryExecutionFactory.create(query, model, bindings);
 
@@ -430,7 +440,7 @@ public abstract class AbstractModule implements Module {
                 LOG.debug("Saving module's computed output to file {}.", saveModelToTemporaryFile(computedModel));
             }
             return ExecutionContextFactory.createContext(
-                JenaUtils.createUnion(executionContext.getDefaultModel(), computedModel)
+                JenaUtils.createDynamicUnion(executionContext.getDefaultModel(), computedModel)
             );
         }
     }
@@ -6,17 +6,17 @@ import cz.cvut.spipes.config.ExecutionConfig;
 import cz.cvut.spipes.constants.KBSS_MODULE;
 import cz.cvut.spipes.constants.SML;
 import cz.cvut.spipes.engine.ExecutionContext;
+import cz.cvut.spipes.util.IncrementalConstructQuery;
 import cz.cvut.spipes.util.JenaUtils;
+import cz.cvut.spipes.util.QueryCache;
 import cz.cvut.spipes.util.QueryUtils;
 import org.apache.jena.query.Query;
-import org.apache.jena.query.QueryFactory;
 import org.apache.jena.query.QuerySolution;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
 import org.apache.jena.rdf.model.Resource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.topbraid.spin.arq.ARQFactory;
 import org.topbraid.spin.model.Construct;
 import org.topbraid.spin.system.SPINModuleRegistry;
 import org.topbraid.spin.vocabulary.SP;
@@ -61,6 +61,16 @@ public class ApplyConstructModule extends AbstractModule {
      */
     private int iterationCount;
 
+    //kbss:isSkipUnaffectedQueries
+    /**
+     * Whether queries unaffected by the previous iteration should be skipped, i.e. in each iteration only queries
+     * whose triple patterns use a predicate of a triple inferred in previous iteration are evaluated again.
+     * Queries with monotonic WHERE clause are evaluated again semi-naively, i.e. only for solutions that use
+     * a triple inferred in previous iteration, see {@link IncrementalConstructQuery}. Other queries are evaluated
+     * against the whole model. The iteration stops as soon as no new triple is inferred.
+     */
+    private boolean isSkipUnaffectedQueries;
+
     public ApplyConstructModule() {
         // TODO move elsewhere
         SPINModuleRegistry.get().init(); //TODO -- downloads spin from the web (should be cached instead)
@@ -90,6 +100,14 @@ public class ApplyConstructModule extends AbstractModule {
         isReplace = replace;
     }
 
+    public boolean isSkipUnaffectedQueries() {
+        return isSkipUnaffectedQueries;
+    }
+
+    public void setSkipUnaffectedQueries(boolean skipUnaffectedQueries) {
+        isSkipUnaffectedQueries = skipUnaffectedQueries;
+    }
+
     public List<Resource> getConstructQueries() {
         return constructQueries;
     }
@@ -115,11 +133,15 @@ public class ApplyConstructModule extends AbstractModule {
             .sorted(Comparator.comparing(this::getQueryComment))
             .collect(Collectors.toList());
 
+        if (isSkipUnaffectedQueries) {
+            return this.createOutputContext(isReplace, inferSkippingUnaffectedQueries(defaultModel, bindings, constructQueriesSorted));
+        }
+
         while (nNew > 0 && count++ < iterationCount) {
             //      set up variable bindings
 
             Model inferredInSingleIterationModel = ModelFactory.createDefaultModel();
-            Model extendedInferredModel = JenaUtils.createUnion(defaultModel, inferredModel);
+            Model extendedInferredModel = JenaUtils.createDynamicUnion(defaultModel, inferredModel);
 
             for (int i = 0; i < constructQueriesSorted.size(); i++) {
                 Construct spinConstructRes = constructQueriesSorted.get(i);
@@ -132,12 +154,7 @@ public class ApplyConstructModule extends AbstractModule {
                     );
                 }
 
-                Query query;
-                if (parseText) {
-                    query = QueryFactory.create(spinConstructRes.getProperty(SP.text).getLiteral().getString());
-                } else {
-                    query = ARQFactory.get().createQuery(spinConstructRes);
-                }
+                Query query = createQuery(spinConstructRes);
 
                 Model constructedModel = QueryUtils.execConstruct(query, extendedInferredModel, bindings);
 
@@ -160,6 +177,64 @@ public class ApplyConstructModule extends AbstractModule {
         return this.createOutputContext(isReplace, inferredModel);
     }
 
+    private Model inferSkippingUnaffectedQueries(Model defaultModel, QuerySolution bindings, List<Construct> constructQueriesSorted) {
+
+        List<IncrementalConstructQuery> queries = constructQueriesSorted.stream()
+            .map(this::createQuery)
+            .map(IncrementalConstructQuery::new)
+            .collect(Collectors.toList());
+
+        Model inferredModel = ModelFactory.createDefaultModel();
+        Model deltaModel = null;
+
+        int count = 0;
+
+        while (count++ < iterationCount) {
+
+            Model extendedInferredModel = JenaUtils.createDynamicUnion(defaultModel, inferredModel);
+            Model inferredInSingleIterationModel = ModelFactory.createDefaultModel();
+            Model newDeltaModel = ModelFactory.createDefaultModel();
+
+            for (int i = 0; i < queries.size(); i++) {
+
+                if (!queries.get(i).isAffectedBy(deltaModel)) {
+                    if (LOG.isTraceEnabled()) {
+                        LOG.trace(
+                            "Skipping iteration {}/{} of {}/{} query \"{}\" as it is not affected by previous iteration.",
+                            count, iterationCount, i + 1, queries.size(), getQueryComment(constructQueriesSorted.get(i))
+                        );
+                    }
+                    continue;
+                }
+
+                Model constructedModel = queries.get(i).execConstruct(extendedInferredModel, deltaModel, bindings);
+
+                constructedModel.listStatements()
+                    .filterDrop(extendedInferredModel::contains)
+                    .forEachRemaining(newDeltaModel::add);
+                inferredInSingleIterationModel.add(constructedModel);
+            }
+
+            LOG.debug("Iteration {}/{} inferred {} new triples.", count, iterationCount, newDeltaModel.size());
+
+            inferredModel.add(inferredInSingleIterationModel);
+
+            if (newDeltaModel.isEmpty()) {
+                break;
+            }
+            deltaModel = newDeltaModel;
+        }
+
+        return inferredModel;
+    }
+
+    private Query createQuery(Construct spinConstructRes) {
+        if (parseText) {
+            return QueryCache.get().getQuery(spinConstructRes.getProperty(SP.text).getLiteral().getString());
+        }
+        return QueryCache.get().getQuery(spinConstructRes);
+    }
+
     @Override
     public String getTypeURI() {
         return SML.ApplyConstruct.getURI();
@@ -181,5 +256,6 @@ public class ApplyConstructModule extends AbstractModule {
 
         parseText = this.getPropertyValue(KBSS_MODULE.is_parse_text, false);
         iterationCount = this.getPropertyValue(KBSS_MODULE.has_max_iteration_count, 1);
+        isSkipUnaffectedQueries = this.getPropertyValue(KBSS_MODULE.is_skip_unaffected_queries, false);
     }
 }
@@ -48,10 +48,27 @@ public interface Module {
     List<Module> getInputModules();
 
 
-    //void setOutputContext(ExecutionContext);
     // TODO execute should not return Execution context
     ExecutionContext getOutputContext();
 
+    /**
+     * Returns true if output context of already executed module can be replaced by {@link #setOutputContext}.
+     * Modules that do not support it keep their original output context.
+     */
+    default boolean isOutputContextReplaceable() {
+        return false;
+    }
+
+    /**
+     * Replaces output context of already executed module, e.g. by its copy kept on disk.
+     * Called only if {@link #isOutputContextReplaceable()} returns true.
+     *
+     * @throws UnsupportedOperationException if the module does not support replacement of its output context
+     */
+    default void setOutputContext(ExecutionContext outputContext) {
+        throw new UnsupportedOperationException("Module " + getLabel() + " does not support replacement of its output context.");
+    }
+
     // TODO should not be here !!!! but rather generalized
     void addOutputBindings(VariablesBinding variablesBinding);
 }
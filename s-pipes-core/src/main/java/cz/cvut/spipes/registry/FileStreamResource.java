@@ -0,0 +1,120 @@
+package cz.cvut.spipes.registry;
+
+import cz.cvut.spipes.exception.SPipesException;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Stream resource whose content is stored in a file. The content is read through a memory-mapped buffer,
+ * thus it is not copied to the heap unless {@link #getContent()} is called.
+ * <p>
+ * Opened streams keep the resource reachable, as {@link StreamResourceRegistry} deletes the file only
+ * after the resource is garbage collected.
+ */
+public class FileStreamResource implements StreamResource {
+
+    private final String uri;
+    private final Path file;
+    private final String contentType;
+    private final long contentLength;
+
+    public FileStreamResource(String uri, Path file, String contentType, long contentLength) {
+        this.uri = uri;
+        this.file = file;
+        this.contentType = contentType;
+        this.contentLength = contentLength;
+    }
+
+    @Override
+    public String getUri() {
+        return uri;
+    }
+
+    @Override
+    public byte[] getContent() {
+        try {
+            return Files.readAllBytes(file);
+        } catch (IOException e) {
+            throw new SPipesException("Could not read content of stream resource " + uri + " from file " + file + ".", e);
+        }
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        if (contentLength > Integer.MAX_VALUE) {
+            return new ResourceInputStream(Files.newInputStream(file), this);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // the mapping remains valid after the channel is closed
+            return new ResourceInputStream(
+                new ByteBufferInputStream(channel.map(FileChannel.MapMode.READ_ONLY, 0, contentLength)), this);
+        }
+    }
+
+    @Override
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    private static class ResourceInputStream extends FilterInputStream {
+
+        // keeps the resource reachable while the stream is read
+        private final FileStreamResource resource;
+
+        private ResourceInputStream(InputStream in, FileStreamResource resource) {
+            super(in);
+            this.resource = resource;
+        }
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int readLength = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, readLength);
+            return readLength;
+        }
+
+        @Override
+        public long skip(long n) {
+            int skipLength = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + skipLength);
+            return skipLength;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -1,32 +1,105 @@
 package cz.cvut.spipes.registry;
 
+import cz.cvut.spipes.config.StreamResourceConfig;
+import cz.cvut.spipes.exception.SPipesException;
+import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.lang.ref.WeakReference;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Registry of stream resources, e.g. files uploaded to be processed by pipelines.
+ * <p>
+ * Content of each registered resource is spooled to a file within a directory of the registry created
+ * in {@link StreamResourceConfig#getSpoolDirectoryPath()}, and it is served through memory-mapped streams, see {@link FileStreamResource}. Resources are evicted
+ * when they were not accessed for {@link StreamResourceConfig#getTimeToLiveMillis()} or, least recently used first,
+ * when their total size exceeds {@link StreamResourceConfig#getMaxTotalSize()}. The most recently used resource
+ * is never evicted due to the size limit.
+ * <p>
+ * An evicted resource cannot be found anymore, but its file is deleted only after all stream resources
+ * returned for it were garbage collected, so that pipelines still holding the resource can read it.
+ * <p>
+ * The spool directory may be shared by several processes, thus each registry holds a lock of its own directory
+ * while the process is running. Directories of other registries that are not locked anymore, i.e. that were left
+ * by terminated processes, are deleted when the registry is created.
+ */
 public class StreamResourceRegistry {
     private static final Logger LOG = LoggerFactory.getLogger(StreamResourceRegistry.class);
 
     private static StreamResourceRegistry instance;
-    private Set<String> resourcePrefixMap = new HashSet<>();
+    private Set<String> resourcePrefixMap = ConcurrentHashMap.newKeySet();
     private static final String PERSISTENT_CONTEXT_PREFIX = "http://onto.fel.cvut.cz/resources/";
-    private Map<String, WeakReference<StreamResource>> id2resourcesMap = new HashMap<>();
 
-    private StreamResourceRegistry() {
+    private static final String DIRECTORY_PREFIX = "registry-";
+    private static final String LOCK_FILE_NAME = "registry.lock";
+
+    private final Path spoolDirectory;
+    // held until the process terminates, so that other processes do not delete the directory
+    private final FileLock spoolDirectoryLock;
+    private final long maxTotalSize;
+    private final long timeToLiveMillis;
+
+    // access-ordered, thus the least recently used resource is the first one, guarded by this
+    private final LinkedHashMap<String, SpooledResource> id2resourcesMap = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalSize;
+
+    // handles returned to callers, each keeps its resource file until the handle is garbage collected, guarded by this
+    private final ReferenceQueue<StreamResource> releasedHandles = new ReferenceQueue<>();
+    private final Set<Handle> handles = new HashSet<>();
+
+    /**
+     * @param spoolRootDirectory directory, possibly shared by several processes, within which the registry
+     *                           creates its own directory for contents of resources
+     */
+    StreamResourceRegistry(Path spoolRootDirectory, long maxTotalSize, long timeToLiveMillis) {
+        this.maxTotalSize = maxTotalSize;
+        this.timeToLiveMillis = timeToLiveMillis;
+        try {
+            Files.createDirectories(spoolRootDirectory);
+            deleteAbandonedDirectories(spoolRootDirectory);
+            spoolDirectory = Files.createTempDirectory(spoolRootDirectory, DIRECTORY_PREFIX);
+            spoolDirectoryLock = FileChannel.open(
+                spoolDirectory.resolve(LOCK_FILE_NAME), StandardOpenOption.CREATE, StandardOpenOption.WRITE
+            ).lock();
+        } catch (IOException e) {
+            throw new SPipesException("Could not create spool directory of stream resources in " + spoolRootDirectory + ".", e);
+        }
+        LOG.debug("Spooling stream resources to directory {}.", spoolDirectory);
     }
 
-    public static StreamResourceRegistry getInstance() {
+    public static synchronized StreamResourceRegistry getInstance() {
         if (instance == null) {
-            instance = new StreamResourceRegistry();
+            instance = new StreamResourceRegistry(
+                StreamResourceConfig.getSpoolDirectoryPath(),
+                StreamResourceConfig.getMaxTotalSize(),
+                StreamResourceConfig.getTimeToLiveMillis()
+            );
             instance.resourcePrefixMap.add(PERSISTENT_CONTEXT_PREFIX);
             return instance;
         }
         return instance;
     }
 
+    Path getSpoolDirectory() {
+        return spoolDirectory;
+    }
+
     public void registerResourcePrefix(String resourcePrefix) {
         resourcePrefixMap.add(resourcePrefix);
     }
@@ -36,47 +109,197 @@ public class StreamResourceRegistry {
     }
 
     public StreamResource getResourceById(String id) {
-        return id2resourcesMap.get(id).get();
+        return getResource(id, id);
     }
 
     public StreamResource getResourceByUrl(String url) {
         LOG.debug("Trying to find resource with url {}", url);
-        if (LOG.isTraceEnabled()) {
-            LOG.trace("Resource map content: {}", id2resourcesMap);
-        }
         String id = resourcePrefixMap.stream()
                 .filter(url::startsWith)
                 .findAny().map(p -> url.substring(p.length()))
                 .orElse(null);
         LOG.debug("- found {}", id);
-        StreamResource res = id2resourcesMap.get(id).get();
-        if (res == null) {
+        if (id == null) {
             return null;
         }
-        return new StringStreamResource(url, res.getContent(), res.getContentType()); //TODO remove
+        return getResource(id, url);
     }
 
     public StreamResource registerResource(String id, byte[] content, String contentType) {
+        try {
+            return registerResource(id, new ByteArrayInputStream(content), contentType);
+        } catch (IOException e) {
+            throw new SPipesException("Could not store content of stream resource " + id + ".", e);
+        }
+    }
+
+    /**
+     * Registers resource with content copied from the stream. The stream is not closed.
+     */
+    public StreamResource registerResource(String id, InputStream content, String contentType) throws IOException {
         LOG.debug("Registering resource with id {}", id);
-        StreamResource res = new StringStreamResource(id, content, contentType);
-        id2resourcesMap.put(id, new WeakReference<>(res));
-        if (LOG.isTraceEnabled()) {
-            LOG.trace("Resource map after the registration has {} entries: {}", id2resourcesMap.size(), id2resourcesMap);
+        Files.createDirectories(spoolDirectory);
+        Path file = Files.createTempFile(spoolDirectory, "resource-", ".bin");
+        long size;
+        try {
+            size = Files.copy(content, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        LOG.debug("Content of resource {} with {} bytes stored to file {}.", id, size, file);
+
+        SpooledResource resource = new SpooledResource(file, contentType, size);
+        synchronized (this) {
+            deleteReleasedResources();
+            SpooledResource replacedResource = id2resourcesMap.put(id, resource);
+            totalSize += size;
+            if (replacedResource != null) {
+                evict(id, replacedResource);
+            }
+            evictResources();
+            if (LOG.isTraceEnabled()) {
+                LOG.trace("Resource map after the registration has {} entries with {} bytes: {}",
+                    id2resourcesMap.size(), totalSize, id2resourcesMap.keySet());
+            }
+            return createHandle(id, resource);
+        }
+    }
+
+    private synchronized StreamResource getResource(String id, String uri) {
+        deleteReleasedResources();
+        SpooledResource resource = id2resourcesMap.get(id);
+        if (resource == null) {
+            return null;
+        }
+        resource.lastAccessTime = System.currentTimeMillis();
+        evictResources();
+        return createHandle(uri, resource);
+    }
+
+    private StreamResource createHandle(String uri, SpooledResource resource) {
+        StreamResource streamResource = new FileStreamResource(uri, resource.file, resource.contentType, resource.size);
+        handles.add(new Handle(streamResource, resource, releasedHandles));
+        resource.handleCount++;
+        return streamResource;
+    }
+
+    /**
+     * Deletes files of evicted resources whose handles were all garbage collected.
+     */
+    synchronized void deleteReleasedResources() {
+        Reference<? extends StreamResource> reference;
+        while ((reference = releasedHandles.poll()) != null) {
+            Handle handle = (Handle) reference;
+            handles.remove(handle);
+            handle.resource.handleCount--;
+            if (handle.resource.isEvicted && handle.resource.handleCount == 0) {
+                deleteFile(handle.resource);
+            }
         }
-        cleanUpUnusedResources();
-        return res;
     }
 
-    private void cleanUpUnusedResources() {
-        List<String> keys = id2resourcesMap.entrySet().stream()
-            .filter(e -> e.getValue().get() == null)
-            .map(Map.Entry::getKey)
-            .collect(Collectors.toList());
-        if (LOG.isTraceEnabled()) {
-            LOG.trace("Clearing {} resources from resource map: {}", keys.size(), keys);
+    /**
+     * Evicts expired resources and resources exceeding the total size, which are the first ones in the map.
+     */
+    private void evictResources() {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<String, SpooledResource>> it = id2resourcesMap.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, SpooledResource> e = it.next();
+            boolean isExpired = now - e.getValue().lastAccessTime > timeToLiveMillis;
+            boolean isOverLimit = totalSize > maxTotalSize && it.hasNext();
+            if (!isExpired && !isOverLimit) {
+                return;
+            }
+            LOG.debug("Evicting resource {} ({}).", e.getKey(), isExpired ? "expired" : "total size exceeded");
+            it.remove();
+            evict(e.getKey(), e.getValue());
+        }
+    }
+
+    private void evict(String id, SpooledResource resource) {
+        totalSize -= resource.size;
+        resource.isEvicted = true;
+        if (resource.handleCount == 0) {
+            deleteFile(resource);
+        } else {
+            LOG.debug("Deletion of file {} of resource {} postponed, the resource is still used.", resource.file, id);
+        }
+    }
+
+    private void deleteFile(SpooledResource resource) {
+        try {
+            Files.deleteIfExists(resource.file);
+        } catch (IOException e) {
+            LOG.warn("Could not delete file {} of a stream resource.", resource.file, e);
+        }
+    }
+
+    /**
+     * Deletes directories of registries whose processes terminated, i.e. whose lock files are not locked.
+     */
+    private static void deleteAbandonedDirectories(Path spoolRootDirectory) {
+        try (DirectoryStream<Path> directories = Files.newDirectoryStream(spoolRootDirectory, DIRECTORY_PREFIX + "*")) {
+            for (Path directory : directories) {
+                Path lockFile = directory.resolve(LOCK_FILE_NAME);
+                if (!Files.isDirectory(directory) || !Files.exists(lockFile)) {
+                    // directory of a registry that is just being created
+                    continue;
+                }
+                if (isAbandoned(lockFile)) {
+                    LOG.debug("Deleting directory {} left by terminated process.", directory);
+                    FileUtils.deleteQuietly(directory.toFile());
+                }
+            }
+        } catch (IOException e) {
+            LOG.warn("Could not clean spool directory {}.", spoolRootDirectory, e);
+        }
+    }
+
+    private static boolean isAbandoned(Path lockFile) {
+        try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.WRITE)) {
+            FileLock lock = channel.tryLock();
+            if (lock == null) {
+                return false;
+            }
+            lock.release();
+            return true;
+        } catch (OverlappingFileLockException e) {
+            // locked by another registry of this process
+            return false;
+        } catch (IOException e) {
+            LOG.warn("Could not check lock file {}.", lockFile, e);
+            return false;
+        }
+    }
+
+    private static class SpooledResource {
+
+        private final Path file;
+        private final String contentType;
+        private final long size;
+        private long lastAccessTime = System.currentTimeMillis();
+        private int handleCount;
+        private boolean isEvicted;
+
+        private SpooledResource(Path file, String contentType, long size) {
+            this.file = file;
+            this.contentType = contentType;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Reference enqueued once the stream resource returned to a caller is garbage collected.
+     */
+    private static class Handle extends PhantomReference<StreamResource> {
+
+        private final SpooledResource resource;
+
+        private Handle(StreamResource streamResource, SpooledResource resource, ReferenceQueue<StreamResource> queue) {
+            super(streamResource, queue);
+            this.resource = resource;
         }
-        keys.forEach(
-            k -> id2resourcesMap.remove(k)
-        );
     }
 }
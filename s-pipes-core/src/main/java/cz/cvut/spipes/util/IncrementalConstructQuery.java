@@ -0,0 +1,227 @@
+package cz.cvut.spipes.util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QuerySolution;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.sparql.core.PathBlock;
+import org.apache.jena.sparql.core.TriplePath;
+import org.apache.jena.sparql.syntax.Element;
+import org.apache.jena.sparql.syntax.ElementDataset;
+import org.apache.jena.sparql.syntax.ElementExists;
+import org.apache.jena.sparql.syntax.ElementGroup;
+import org.apache.jena.sparql.syntax.ElementMinus;
+import org.apache.jena.sparql.syntax.ElementNamedGraph;
+import org.apache.jena.sparql.syntax.ElementNotExists;
+import org.apache.jena.sparql.syntax.ElementOptional;
+import org.apache.jena.sparql.syntax.ElementPathBlock;
+import org.apache.jena.sparql.syntax.ElementService;
+import org.apache.jena.sparql.syntax.ElementSubQuery;
+import org.apache.jena.sparql.syntax.ElementTriplesBlock;
+import org.apache.jena.sparql.syntax.ElementUnion;
+import org.apache.jena.sparql.syntax.ElementVisitorBase;
+import org.apache.jena.sparql.syntax.ElementWalker;
+import org.apache.jena.sparql.syntax.syntaxtransform.ElementTransformCopyBase;
+import org.apache.jena.sparql.syntax.syntaxtransform.ElementTransformer;
+
+/**
+ * Construct query evaluated repeatedly on a growing model, e.g. in iterations of a rule set.
+ * <p>
+ * Once the query was evaluated, it needs to be evaluated again only if the triples added to the model
+ * since then (delta) contain a predicate of its triple patterns, see {@link QueryUtils#getPatternPredicates(Query)}.
+ * If the WHERE clause of the query is monotonic, i.e. it consists only of groups of triple patterns, FILTER, BIND
+ * and VALUES clauses, the query is evaluated semi-naively: once for each triple pattern whose predicate is in delta,
+ * with the pattern matched only against delta, so that solutions using only the triples known before
+ * are not derived again. Otherwise, the query is evaluated against the whole model.
+ */
+public class IncrementalConstructQuery {
+
+    private static final Node DELTA_GRAPH = NodeFactory.createURI("http://onto.fel.cvut.cz/ontologies/s-pipes/delta-graph");
+
+    private final Query query;
+
+    // null represents any predicate
+    private final Set<Node> predicates;
+
+    // queries restricting one of the triple patterns with the predicate to delta, null if the query is not monotonic
+    private final Map<Node, List<Query>> predicate2DeltaQueriesMap;
+
+    public IncrementalConstructQuery(Query query) {
+        this.query = query;
+        this.predicates = QueryUtils.getPatternPredicates(query);
+        this.predicate2DeltaQueriesMap = (predicates != null && isMonotonic(query)) ? createDeltaQueries(query) : null;
+    }
+
+    public Query getQuery() {
+        return query;
+    }
+
+    /**
+     * Returns true if the query is evaluated only against delta after its first evaluation.
+     */
+    public boolean isSemiNaive() {
+        return predicate2DeltaQueriesMap != null;
+    }
+
+    /**
+     * Returns true if the result of the query might change by adding the delta to the model.
+     *
+     * @param deltaModel triples added since previous evaluation, null if the query was not evaluated yet
+     */
+    public boolean isAffectedBy(Model deltaModel) {
+        return deltaModel == null || QueryUtils.containsAnyPredicate(deltaModel, predicates);
+    }
+
+    /**
+     * Evaluates the query. If delta is given, the query must have been evaluated against the model without delta
+     * and it returns at least the triples constructed from solutions that use a triple of delta.
+     *
+     * @param model      the model to query, including triples of delta
+     * @param deltaModel triples added since previous evaluation, null if the query was not evaluated yet
+     * @param bindings   input binding used within the query
+     * @return constructed triples
+     */
+    public Model execConstruct(Model model, Model deltaModel, QuerySolution bindings) {
+        if (deltaModel == null || predicate2DeltaQueriesMap == null) {
+            return QueryUtils.execConstruct(query, model, bindings);
+        }
+        Dataset dataset = DatasetFactory.create(model);
+        dataset.addNamedModel(DELTA_GRAPH.getURI(), deltaModel);
+
+        Model constructedModel = ModelFactory.createDefaultModel();
+        predicate2DeltaQueriesMap.forEach((predicate, deltaQueries) -> {
+            if (deltaModel.getGraph().contains(Node.ANY, predicate, Node.ANY)) {
+                deltaQueries.forEach(q -> constructedModel.add(QueryUtils.execConstruct(q, dataset, bindings)));
+            }
+        });
+        return constructedModel;
+    }
+
+    /**
+     * Returns true if solutions of the query cannot be invalidated by adding triples to the model
+     * and the query does not aggregate or limit them.
+     */
+    private static boolean isMonotonic(Query query) {
+        if (!query.isConstructType() || query.hasDatasetDescription() || query.hasAggregators() || query.hasGroupBy() || query.hasHaving()
+            || query.hasLimit() || query.hasOffset() || query.getQueryPattern() == null) {
+            return false;
+        }
+        AtomicBoolean isMonotonic = new AtomicBoolean(true);
+        ElementWalker.walk(query.getQueryPattern(), new ElementVisitorBase() {
+            @Override
+            public void visit(ElementTriplesBlock el) {
+                isMonotonic.set(false);
+            }
+
+            @Override
+            public void visit(ElementUnion el) {
+                isMonotonic.set(false);
+            }
+
+            @Override
+            public void visit(ElementOptional el) {
+                isMonotonic.set(false);
+            }
+
+            @Override
+            public void visit(ElementMinus el) {
+                isMonotonic.set(false);
+            }
+
+            @Override
+            public void visit(ElementExists el) {
+                isMonotonic.set(false);
+            }
+
+            @Override
+            public void visit(ElementNotExists el) {
+                isMonotonic.set(false);
+            }
+
+            @Override
+            public void visit(ElementNamedGraph el) {
+                isMonotonic.set(false);
+            }
+
+            @Override
+            public void visit(ElementDataset el) {
+                isMonotonic.set(false);
+            }
+
+            @Override
+            public void visit(ElementService el) {
+                isMonotonic.set(false);
+            }
+
+            @Override
+            public void visit(ElementSubQuery el) {
+                isMonotonic.set(false);
+            }
+        });
+        return isMonotonic.get();
+    }
+
+    private static Map<Node, List<Query>> createDeltaQueries(Query query) {
+        List<ElementPathBlock> blocks = new ArrayList<>();
+        ElementWalker.walk(query.getQueryPattern(), new ElementVisitorBase() {
+            @Override
+            public void visit(ElementPathBlock el) {
+                blocks.add(el);
+            }
+        });
+
+        Map<Node, List<Query>> predicate2DeltaQueriesMap = new LinkedHashMap<>();
+        for (ElementPathBlock block : blocks) {
+            List<TriplePath> triplePaths = block.getPattern().getList();
+            for (int i = 0; i < triplePaths.size(); i++) {
+                Query deltaQuery = query.cloneQuery();
+                deltaQuery.setQueryPattern(restrictToDelta(query.getQueryPattern(), block, i));
+                predicate2DeltaQueriesMap
+                    .computeIfAbsent(triplePaths.get(i).getPredicate(), p -> new ArrayList<>())
+                    .add(deltaQuery);
+            }
+        }
+        return predicate2DeltaQueriesMap;
+    }
+
+    /**
+     * Returns copy of the pattern with the triple pattern at the index of the block matched only against delta.
+     */
+    private static Element restrictToDelta(Element pattern, ElementPathBlock block, int index) {
+        return ElementTransformer.transform(pattern, new ElementTransformCopyBase() {
+            @Override
+            public Element transform(ElementPathBlock el) {
+                if (el != block) {
+                    return el;
+                }
+                List<TriplePath> triplePaths = el.getPattern().getList();
+                ElementGroup group = new ElementGroup();
+                addPathBlock(group, triplePaths.subList(0, index));
+                ElementPathBlock deltaBlock = new ElementPathBlock();
+                deltaBlock.addTriplePath(triplePaths.get(index));
+                group.addElement(new ElementNamedGraph(DELTA_GRAPH, deltaBlock));
+                addPathBlock(group, triplePaths.subList(index + 1, triplePaths.size()));
+                return group;
+            }
+        });
+    }
+
+    private static void addPathBlock(ElementGroup group, List<TriplePath> triplePaths) {
+        if (triplePaths.isEmpty()) {
+            return;
+        }
+        PathBlock pathBlock = new PathBlock();
+        triplePaths.forEach(pathBlock::add);
+        group.addElement(new ElementPathBlock(pathBlock));
+    }
+}
@@ -10,6 +10,7 @@ import java.util.Comparator;
 import java.util.List;
 import java.util.stream.Stream;
 import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.jena.graph.Graph;
 import org.apache.jena.graph.compose.MultiUnion;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
@@ -38,6 +39,8 @@ public class JenaUtils {
         List<Resource> resList;
         if (model.getGraph() instanceof MultiUnion) {
              resList = ModelFactory.createModelForGraph(((MultiUnion) model.getGraph()).getBaseGraph()).listResourcesWithProperty(RDF.type, OWL.Ontology).toList();
+        } else if ((model.getGraph() instanceof UnionGraph) && (((UnionGraph) model.getGraph()).getBaseGraph() != null)) {
+             resList = ModelFactory.createModelForGraph(((UnionGraph) model.getGraph()).getBaseGraph()).listResourcesWithProperty(RDF.type, OWL.Ontology).toList();
         } else {
             resList = model.listResourcesWithProperty(RDF.type, OWL.Ontology).toList();
         }
@@ -105,6 +108,20 @@ public class JenaUtils {
         return outputModel;
     }
 
+    /**
+     * Creates union of models without copying their triples. Changes of the union
+     * are never propagated to the provided models (see {@link UnionGraph}), which are expected
+     * not to change while the union is used.
+     *
+     * @param model models to be merged
+     * @return model backed by union of graphs of the provided models
+     */
+    public static Model createDynamicUnion(Model... model) {
+        return ModelFactory.createModelForGraph(
+            new UnionGraph(Stream.of(model).map(Model::getGraph).toArray(Graph[]::new))
+        );
+    }
+
     public static void saveModelToTemporaryFile(Model model) {
         try {
             Path file = Files.createTempFile("model-output-", ".ttl");
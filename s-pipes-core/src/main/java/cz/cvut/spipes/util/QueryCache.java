@@ -0,0 +1,176 @@
+package cz.cvut.spipes.util;
+
+import cz.cvut.spipes.config.ExecutionConfig;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QueryFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.topbraid.spin.arq.ARQFactory;
+
+/**
+ * Size-bounded cache of parsed queries shared by all modules.
+ * <p>
+ * Queries represented in SPIN are cached by their resource, i.e. by the node of the query within the graph
+ * of its model, so that a cache hit neither prints nor parses the query. The cache must be cleared when
+ * the graphs of scripts are modified in place, e.g. when scripts are reloaded, see {@link #clear()}.
+ * Textual queries are cached by their text. Texts which change in each iteration of a module, e.g. due to
+ * substitution of markers, should be parsed directly instead, as they would only evict other queries.
+ * Least recently used queries are evicted when the cache is full.
+ * <p>
+ * Hit and miss counts are exposed through JMX, see {@link QueryCacheMXBean}.
+ * <p>
+ * Returned queries are shared and must not be modified.
+ */
+public class QueryCache implements QueryCacheMXBean {
+
+    private static final Logger LOG = LoggerFactory.getLogger(QueryCache.class);
+
+    public static final String OBJECT_NAME = "cz.cvut.spipes:type=QueryCache";
+
+    private static final QueryCache INSTANCE = createInstance();
+
+    private final int maxSize;
+    private final Map<Object, Query> cache;
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    QueryCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.cache = new LinkedHashMap<Object, Query>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, Query> eldest) {
+                return size() > QueryCache.this.maxSize;
+            }
+        };
+    }
+
+    private static QueryCache createInstance() {
+        QueryCache cache = new QueryCache(ExecutionConfig.getQueryCacheSize());
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(cache, new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            LOG.warn("Could not register query cache in MBean server.", e);
+        }
+        return cache;
+    }
+
+    public static QueryCache get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns ARQ query corresponding to the SPIN query.
+     *
+     * @param spinQuery query represented in SPIN
+     * @return parsed query
+     */
+    public Query getQuery(org.topbraid.spin.model.Query spinQuery) {
+        return getQuery(
+            new SpinQueryKey(spinQuery.getModel().getGraph(), spinQuery.asNode()),
+            () -> ARQFactory.get().createQuery(spinQuery.getModel(), ARQFactory.get().createCommandString(spinQuery))
+        );
+    }
+
+    /**
+     * Returns query parsed from the text.
+     *
+     * @param queryString text of the query
+     * @return parsed query
+     */
+    public Query getQuery(String queryString) {
+        return getQuery(queryString, () -> QueryFactory.create(queryString));
+    }
+
+    @Override
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    @Override
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    @Override
+    public synchronized int getSize() {
+        return cache.size();
+    }
+
+    @Override
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    @Override
+    public synchronized void clear() {
+        cache.clear();
+    }
+
+    private Query getQuery(Object key, Supplier<Query> querySupplier) {
+        if (maxSize <= 0) {
+            missCount.incrementAndGet();
+            return querySupplier.get();
+        }
+        synchronized (this) {
+            Query query = cache.get(key);
+            if (query != null) {
+                hitCount.incrementAndGet();
+                return query;
+            }
+        }
+        missCount.incrementAndGet();
+        Query query = querySupplier.get();
+        // result variables are computed lazily, initialize them before the query is shared
+        query.setResultVars();
+        synchronized (this) {
+            cache.put(key, query);
+        }
+        if (LOG.isTraceEnabled()) {
+            LOG.trace("Query cache miss, hits: {}, misses: {}, size: {}.", hitCount.get(), missCount.get(), getSize());
+        }
+        return query;
+    }
+
+    private static class SpinQueryKey {
+        // graphs are compared by identity, their content is not expected to change until the cache is cleared
+        private final Graph graph;
+        private final Node node;
+
+        SpinQueryKey(Graph graph, Node node) {
+            this.graph = graph;
+            this.node = node;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof SpinQueryKey)) {
+                return false;
+            }
+            SpinQueryKey that = (SpinQueryKey) o;
+            return graph == that.graph && node.equals(that.node);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(System.identityHashCode(graph), node);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "QueryCache[hits=" + hitCount.get() + ", misses=" + missCount.get() + ", size=" + getSize() + "]";
+    }
+}
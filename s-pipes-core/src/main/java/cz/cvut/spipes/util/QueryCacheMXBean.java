@@ -0,0 +1,33 @@
+package cz.cvut.spipes.util;
+
+/**
+ * Management interface of {@link QueryCache}, registered in the platform MBean server
+ * under {@link QueryCache#OBJECT_NAME}.
+ */
+public interface QueryCacheMXBean {
+
+    /**
+     * @return number of queries returned from the cache
+     */
+    long getHitCount();
+
+    /**
+     * @return number of queries that had to be parsed
+     */
+    long getMissCount();
+
+    /**
+     * @return number of cached queries
+     */
+    int getSize();
+
+    /**
+     * @return maximal number of cached queries
+     */
+    int getMaxSize();
+
+    /**
+     * Removes all cached queries.
+     */
+    void clear();
+}
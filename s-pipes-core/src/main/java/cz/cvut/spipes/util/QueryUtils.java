@@ -3,11 +3,20 @@ package cz.cvut.spipes.util;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import org.apache.jena.graph.Node;
 import org.apache.jena.query.ARQ;
+import org.apache.jena.query.Dataset;
 import org.apache.jena.query.ParameterizedSparqlString;
 import org.apache.jena.query.Query;
 import org.apache.jena.query.QueryExecution;
@@ -16,9 +25,33 @@ import org.apache.jena.query.QuerySolution;
 import org.apache.jena.query.ResultSet;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.sparql.expr.E_Function;
+import org.apache.jena.sparql.expr.Expr;
+import org.apache.jena.sparql.expr.ExprAggregator;
+import org.apache.jena.sparql.expr.ExprFunction;
+import org.apache.jena.sparql.expr.ExprFunctionOp;
+import org.apache.jena.sparql.expr.ExprList;
+import org.apache.jena.sparql.expr.ExprNone;
+import org.apache.jena.sparql.expr.ExprVar;
+import org.apache.jena.sparql.expr.NodeValue;
 import org.apache.jena.sparql.mgt.Explain;
+import org.apache.jena.sparql.pfunction.PropertyFunctionRegistry;
+import org.apache.jena.sparql.syntax.ElementAssign;
+import org.apache.jena.sparql.syntax.ElementBind;
+import org.apache.jena.sparql.syntax.ElementDataset;
+import org.apache.jena.sparql.syntax.ElementExists;
+import org.apache.jena.sparql.syntax.ElementFilter;
+import org.apache.jena.sparql.syntax.ElementNamedGraph;
+import org.apache.jena.sparql.syntax.ElementNotExists;
+import org.apache.jena.sparql.syntax.ElementPathBlock;
+import org.apache.jena.sparql.syntax.ElementService;
+import org.apache.jena.sparql.syntax.ElementSubQuery;
+import org.apache.jena.sparql.syntax.ElementTriplesBlock;
+import org.apache.jena.sparql.syntax.ElementVisitorBase;
+import org.apache.jena.sparql.syntax.ElementWalker;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.topbraid.spin.system.SPINModuleRegistry;
 
 public class QueryUtils {
 
@@ -41,6 +74,18 @@ public class QueryUtils {
         return query.replaceAll("\\s*#\\s*\\$\\{" + markerName + "\\}", Matcher.quoteReplacement(replacedValue));
     }
 
+    /**
+     * Returns true if the query contains marker in syntax #${MARKER_NAME},
+     * see {@link #substituteMarkers(String, String, String)}.
+     *
+     * @param markerName name of the marker
+     * @param query      query to be checked
+     * @return true if the marker is found within the query
+     */
+    public static boolean containsMarker(String markerName, String query) {
+        return Pattern.compile("\\s*#\\s*\\$\\{" + markerName + "\\}").matcher(query).find();
+    }
+
 
     public static String nextResultsToValuesClause(ResultSet resultSet, int rowsCount) {
         StringBuffer clauseBuffer = new StringBuffer();
@@ -53,6 +98,24 @@ public class QueryUtils {
         return clauseBuffer.toString();
     }
 
+    /**
+     * Returns VALUES clause containing the given rows.
+     *
+     * @param vars names of the variables of the clause
+     * @param rows rows of the clause, each row must bind all the variables
+     * @return VALUES clause
+     */
+    public static String toValuesClause(List<String> vars, List<QuerySolution> rows) {
+        StringBuilder clauseBuilder = new StringBuilder();
+        clauseBuilder
+            .append("\n")
+            .append(getValuesClauseHeader(vars));
+        rows.forEach(row -> clauseBuilder.append(getValuesClauseRow(vars, row)));
+        clauseBuilder.append("}\n");
+
+        return clauseBuilder.toString();
+    }
+
     public static String serializeToSparql(RDFNode rdfNode) {
         ParameterizedSparqlString pss= new ParameterizedSparqlString();
         pss.appendNode(rdfNode);
@@ -62,7 +125,11 @@ public class QueryUtils {
 
 
     private static String getValuesClauseHeader(ResultSet resultSet) {
-        return resultSet.getResultVars().stream()
+        return getValuesClauseHeader(resultSet.getResultVars());
+    }
+
+    private static String getValuesClauseHeader(List<String> vars) {
+        return vars.stream()
             .map(v -> "?" + v)
             .collect(Collectors.joining(" ", "VALUES (", ") {\n"));
     }
@@ -76,17 +143,19 @@ public class QueryUtils {
 
             QuerySolution querySolution = resultSet.next();
 
-            valuesBuffer.append(
-                resultSet.getResultVars().stream()
-                    .map(querySolution::get)
-                    .map(QueryUtils::serializeToSparql)
-                    .collect(Collectors.joining(" ", "  (", ")\n"))
-            );
+            valuesBuffer.append(getValuesClauseRow(resultSet.getResultVars(), querySolution));
         }
 
         return  valuesBuffer.toString();
     }
 
+    private static String getValuesClauseRow(List<String> vars, QuerySolution querySolution) {
+        return vars.stream()
+            .map(querySolution::get)
+            .map(QueryUtils::serializeToSparql)
+            .collect(Collectors.joining(" ", "  (", ")\n"));
+    }
+
     /**
      * Executes construct query and if it fails executes it with additional debugging information.
      * @param query
@@ -104,6 +173,22 @@ public class QueryUtils {
     }
 
 
+    /**
+     * Executes construct query on the dataset and if it fails executes it with additional debugging information.
+     * @param query Query to be executed.
+     * @param dataset Dataset that is queried.
+     * @param bindings Input binding used within the query.
+     * @return Model with constructed triples.
+     */
+    public static Model execConstruct(Query query, Dataset dataset, QuerySolution bindings) {
+        return execQuery(
+            QueryExecution::execConstruct,
+            query,
+            () -> QueryExecutionFactory.create(query, dataset, bindings),
+            bindings
+        );
+    }
+
     /**
      * Executes construct query and if it fails executes it with additional debugging information.
      * @param query Query to be executed.
@@ -137,11 +222,38 @@ public class QueryUtils {
         );
     }
 
+    /**
+     * Executes select query, processes its result set by the given function and closes the execution.
+     * If the execution or processing fails, the query is executed and processed again with additional debugging information.
+     * @param query Query to be executed.
+     * @param model Model that is queried.
+     * @param bindings Input binding used within the query.
+     * @param resultProcessor Function that consumes the result set.
+     * @return Value returned by the function.
+     */
+    public static <T> T execSelect(Query query, Model model, QuerySolution bindings, Function<ResultSet, T> resultProcessor) {
+        return execQuery(
+            qe -> {
+                try (QueryExecution execution = qe) {
+                    return resultProcessor.apply(execution.execSelect());
+                }
+            },
+            query,
+            model,
+            bindings
+        );
+    }
+
     private static <T >T execQuery(QueryExecutor<T>  queryExecutor, Query query, Model model, QuerySolution bindings) {
+        return execQuery(queryExecutor, query, () -> QueryExecutionFactory.create(query, model, bindings), bindings);
+    }
+
+    private static <T >T execQuery(QueryExecutor<T>  queryExecutor, Query query, Supplier<QueryExecution> executionFactory,
+                                   QuerySolution bindings) {
         try {
             return execQuery(
                 queryExecutor,
-                QueryExecutionFactory.create(query, model, bindings),
+                executionFactory.get(),
                 false);
         } catch (RuntimeException ex) {
             LOG.error("Failed execution of query [1] for binding [2], due to exception [3]. " +
@@ -154,7 +266,7 @@ public class QueryUtils {
         LOG.error("Executing query [1] again to diagnose the cause ...");
         return execQuery(
             queryExecutor,
-            QueryExecutionFactory.create(query, model, bindings),
+            executionFactory.get(),
             true);
     }
 
@@ -166,6 +278,176 @@ public class QueryUtils {
         return queryExecutor.execQuery(execution);
     }
 
+    /**
+     * Returns predicates of triple patterns within the WHERE clause of the query, i.e. the query result
+     * can change only if triples with one of the predicates are added to the queried model.
+     * Returns null if the query might depend on triples with any predicate,
+     * e.g. if it contains a variable in predicate position, property function (which might query the model),
+     * property path, sub-query, SERVICE or GRAPH clause or (NOT) EXISTS within any expression of the query.
+     *
+     * @param query the query to analyze
+     * @return set of predicates or null if the predicates cannot be determined.
+     */
+    public static Set<Node> getPatternPredicates(Query query) {
+        if (query.getQueryPattern() == null) {
+            return Collections.emptySet();
+        }
+        Set<Node> predicates = new HashSet<>();
+        AtomicBoolean isAnyPredicate = new AtomicBoolean(containsPatternExpr(getSolutionModifierExprs(query)));
+
+        ElementWalker.walk(query.getQueryPattern(), new ElementVisitorBase() {
+            @Override
+            public void visit(ElementTriplesBlock el) {
+                el.getPattern().forEach(t -> addPredicate(t.getPredicate()));
+            }
+
+            @Override
+            public void visit(ElementPathBlock el) {
+                el.getPattern().forEach(tp -> {
+                    if (tp.isTriple()) {
+                        addPredicate(tp.getPredicate());
+                    } else {
+                        isAnyPredicate.set(true);
+                    }
+                });
+            }
+
+            @Override
+            public void visit(ElementFilter el) {
+                checkExpr(el.getExpr());
+            }
+
+            @Override
+            public void visit(ElementBind el) {
+                checkExpr(el.getExpr());
+            }
+
+            @Override
+            public void visit(ElementAssign el) {
+                checkExpr(el.getExpr());
+            }
+
+            @Override
+            public void visit(ElementExists el) {
+                isAnyPredicate.set(true);
+            }
+
+            @Override
+            public void visit(ElementNotExists el) {
+                isAnyPredicate.set(true);
+            }
+
+            @Override
+            public void visit(ElementNamedGraph el) {
+                isAnyPredicate.set(true);
+            }
+
+            @Override
+            public void visit(ElementDataset el) {
+                isAnyPredicate.set(true);
+            }
+
+            @Override
+            public void visit(ElementService el) {
+                isAnyPredicate.set(true);
+            }
+
+            @Override
+            public void visit(ElementSubQuery el) {
+                isAnyPredicate.set(true);
+            }
+
+            private void checkExpr(Expr expr) {
+                if (containsPatternExpr(Collections.singletonList(expr))) {
+                    isAnyPredicate.set(true);
+                }
+            }
+
+            private void addPredicate(Node predicate) {
+                if (predicate.isConcrete() && !isPropertyFunction(predicate)) {
+                    predicates.add(predicate);
+                } else {
+                    isAnyPredicate.set(true);
+                }
+            }
+        });
+
+        return isAnyPredicate.get() ? null : predicates;
+    }
+
+    /**
+     * Returns true if the predicate is a property function of ARQ or SPIN (magic property).
+     */
+    private static boolean isPropertyFunction(Node predicate) {
+        return predicate.isURI()
+            && (PropertyFunctionRegistry.get().manages(predicate.getURI())
+            || SPINModuleRegistry.get().getFunction(predicate.getURI(), null) != null);
+    }
+
+    /**
+     * Returns true if the model contains a triple with one of the predicates.
+     *
+     * @param model      the model to check
+     * @param predicates set of predicates, null represents any predicate
+     * @return true if a triple with one of the predicates exists in the model
+     */
+    public static boolean containsAnyPredicate(Model model, Set<Node> predicates) {
+        if (predicates == null) {
+            return !model.isEmpty();
+        }
+        return predicates.stream().anyMatch(p -> model.getGraph().contains(Node.ANY, p, Node.ANY));
+    }
+
+    /**
+     * Returns expressions of the query outside of its WHERE clause, i.e. of SELECT, GROUP BY, HAVING and ORDER BY.
+     */
+    private static List<Expr> getSolutionModifierExprs(Query query) {
+        List<Expr> exprs = new LinkedList<>();
+        if (query.getProject() != null) {
+            exprs.addAll(query.getProject().getExprs().values());
+        }
+        if (query.getGroupBy() != null) {
+            exprs.addAll(query.getGroupBy().getExprs().values());
+        }
+        if (query.getHavingExprs() != null) {
+            exprs.addAll(query.getHavingExprs());
+        }
+        if (query.getOrderBy() != null) {
+            query.getOrderBy().forEach(c -> exprs.add(c.getExpression()));
+        }
+        return exprs;
+    }
+
+    /**
+     * Returns true if any of the expressions contains a graph pattern, e.g. (NOT) EXISTS,
+     * a call of non-builtin function, which might query the active model (e.g. SPIN function with body),
+     * or cannot be analyzed.
+     */
+    private static boolean containsPatternExpr(List<Expr> exprs) {
+        for (Expr expr : exprs) {
+            if (expr == null || expr instanceof NodeValue || expr instanceof ExprVar || expr instanceof ExprNone) {
+                continue;
+            }
+            if (expr instanceof ExprFunctionOp || expr instanceof E_Function) {
+                return true;
+            }
+            if (expr instanceof ExprFunction) {
+                if (containsPatternExpr(((ExprFunction) expr).getArgs())) {
+                    return true;
+                }
+            } else if (expr instanceof ExprAggregator) {
+                ExprList aggregatorExprs = ((ExprAggregator) expr).getAggregator().getExprList();
+                if (aggregatorExprs != null && containsPatternExpr(aggregatorExprs.getList())) {
+                    return true;
+                }
+            } else {
+                // unknown expression might depend on any triple
+                return true;
+            }
+        }
+        return false;
+    }
+
     private static String getStackTrace(Throwable t) {
         StringWriter sw = new StringWriter();
         t.printStackTrace(new PrintWriter(sw));
@@ -1,7 +1,18 @@
 package cz.cvut.spipes.util;
 
-import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.util.iterator.ExtendedIterator;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.ValueFactory;
 import org.eclipse.rdf4j.repository.Repository;
+import org.eclipse.rdf4j.repository.RepositoryConnection;
 import org.eclipse.rdf4j.repository.RepositoryException;
 import org.eclipse.rdf4j.repository.config.RepositoryConfig;
 import org.eclipse.rdf4j.repository.config.RepositoryConfigException;
@@ -45,4 +56,75 @@ public class Rdf4jUtils {
             }
         }
     }
+
+    /**
+     * Adds triples of the model to the repository. Triples are converted to statements one by one
+     * and sent to the repository in batches, so the model is never serialized as a whole.
+     * Transaction of the connection is neither started nor committed by this method.
+     *
+     * @param connection connection to the repository
+     * @param model      model to add
+     * @param batchSize  number of statements sent to the repository at once
+     * @param contexts   contexts to add the statements to, none means the default context
+     * @return number of added statements
+     */
+    public static long addModel(RepositoryConnection connection, Model model, int batchSize, Resource... contexts) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive, but was " + batchSize + ".");
+        }
+        ValueFactory valueFactory = connection.getValueFactory();
+        List<Statement> batch = new ArrayList<>(batchSize);
+        long count = 0;
+        ExtendedIterator<Triple> it = model.getGraph().find(Node.ANY, Node.ANY, Node.ANY);
+        try {
+            while (it.hasNext()) {
+                batch.add(toStatement(valueFactory, it.next()));
+                if (batch.size() == batchSize) {
+                    connection.add(batch, contexts);
+                    count += batch.size();
+                    batch.clear();
+                }
+            }
+        } finally {
+            it.close();
+        }
+        if (!batch.isEmpty()) {
+            connection.add(batch, contexts);
+            count += batch.size();
+        }
+        LOG.debug("Added {} statements to repository in batches of {}.", count, batchSize);
+        return count;
+    }
+
+    public static Statement toStatement(ValueFactory valueFactory, Triple triple) {
+        return valueFactory.createStatement(
+            (Resource) toValue(valueFactory, triple.getSubject()),
+            (IRI) toValue(valueFactory, triple.getPredicate()),
+            toValue(valueFactory, triple.getObject())
+        );
+    }
+
+    /**
+     * Converts concrete Jena node to RDF4J value. Blank nodes keep their labels, so the same blank node
+     * is converted to the same value.
+     */
+    public static Value toValue(ValueFactory valueFactory, Node node) {
+        if (node.isURI()) {
+            return valueFactory.createIRI(node.getURI());
+        }
+        if (node.isBlank()) {
+            return valueFactory.createBNode(node.getBlankNodeLabel());
+        }
+        if (node.isLiteral()) {
+            String language = node.getLiteralLanguage();
+            if (language != null && !language.isEmpty()) {
+                return valueFactory.createLiteral(node.getLiteralLexicalForm(), language);
+            }
+            return valueFactory.createLiteral(
+                node.getLiteralLexicalForm(),
+                valueFactory.createIRI(node.getLiteralDatatypeURI())
+            );
+        }
+        throw new IllegalArgumentException("Node " + node + " cannot be converted to RDF4J value.");
+    }
 }
@@ -0,0 +1,265 @@
+package cz.cvut.spipes.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.apache.jena.graph.Factory;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.GraphEvents;
+import org.apache.jena.graph.GraphUtil;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.graph.impl.GraphBase;
+import org.apache.jena.shared.PrefixMapping;
+import org.apache.jena.shared.impl.PrefixMappingImpl;
+import org.apache.jena.util.iterator.ExtendedIterator;
+import org.apache.jena.util.iterator.NiceIterator;
+import org.apache.jena.util.iterator.WrappedIterator;
+
+/**
+ * Read-mostly union of graphs that does not copy triples of the underlying graphs.
+ * <p>
+ * Triple patterns are evaluated by each underlying graph using its own indexes. Duplicates are suppressed
+ * by asking previous graphs whether they contain the triple, instead of collecting all returned triples
+ * into a set as {@link org.apache.jena.graph.compose.MultiUnion} does.
+ * <p>
+ * The underlying graphs are never modified by this graph. Added triples are kept in a separate graph,
+ * while the first deletion copies all triples into a private graph (copy-on-write)
+ * which is used for all subsequent operations. Thus, two unions over the same graphs never see changes
+ * made through each other.
+ * <p>
+ * Underlying graphs that are unions themselves are replaced by their underlying graphs (including graphs of their
+ * added triples), so that triple lookups do not recurse through nested unions. Changes of the underlying graphs,
+ * including triples added to nested unions, remain visible through the union until the copy is made.
+ * Once a nested union is copied due to a deletion, its later changes are not visible through this union.
+ * <p>
+ * The size is not cached, as the underlying graphs may change. It is computed from the size of the largest
+ * graph and the triples of the other graphs.
+ * <p>
+ * The union may be read by more threads at the same time and its modifications are serialized. As with other
+ * graphs, triples must not be added or deleted while another thread iterates over the union.
+ */
+public class UnionGraph extends GraphBase {
+
+    // replaced as a whole on modification, thus readers always see consistent state
+    private volatile State state;
+
+    // graphs the union was created from, before nested unions were flattened
+    private final List<Graph> sourceGraphs;
+
+    public UnionGraph(Graph... graphs) {
+        this.sourceGraphs = Collections.unmodifiableList(new ArrayList<>(Arrays.asList(graphs)));
+        List<Graph> baseGraphs = new ArrayList<>();
+        for (Graph graph : graphs) {
+            List<Graph> flattenedGraphs = (graph instanceof UnionGraph)
+                ? ((UnionGraph) graph).getGraphsForNesting()
+                : Collections.singletonList(graph);
+            for (Graph flattenedGraph : flattenedGraphs) {
+                if (baseGraphs.stream().noneMatch(g -> g == flattenedGraph)) {
+                    baseGraphs.add(flattenedGraph);
+                }
+            }
+        }
+        this.state = new State(Collections.unmodifiableList(baseGraphs), null, null);
+    }
+
+    /**
+     * @return true if the union was copied into private graph due to deletion of a triple.
+     */
+    public boolean isCopied() {
+        return state.copiedGraph != null;
+    }
+
+    /**
+     * @return first of the graphs the union was created from or null if there is none.
+     */
+    public Graph getBaseGraph() {
+        return sourceGraphs.isEmpty() ? null : sourceGraphs.get(0);
+    }
+
+    @Override
+    protected PrefixMapping createPrefixMapping() {
+        PrefixMapping prefixMapping = new PrefixMappingImpl();
+        sourceGraphs.forEach(g -> prefixMapping.setNsPrefixes(g.getPrefixMapping()));
+        return prefixMapping;
+    }
+
+    @Override
+    protected ExtendedIterator<Triple> graphBaseFind(Triple triplePattern) {
+        State s = state;
+        if (s.copiedGraph != null) {
+            return s.copiedGraph.find(triplePattern);
+        }
+        List<Graph> graphs = s.graphs;
+        ExtendedIterator<Triple> it = NiceIterator.emptyIterator();
+        for (int i = 0; i < graphs.size(); i++) {
+            final int graphIndex = i;
+            ExtendedIterator<Triple> graphIt = graphs.get(i).find(triplePattern);
+            if (graphIndex > 0) {
+                graphIt = graphIt.filterDrop(t -> containsInPreviousGraphs(graphs, graphIndex, t));
+            }
+            it = it.andThen(graphIt);
+        }
+        // removal through iterator would modify underlying graphs
+        return WrappedIterator.createNoRemove(it);
+    }
+
+    @Override
+    protected boolean graphBaseContains(Triple t) {
+        State s = state;
+        if (s.copiedGraph != null) {
+            return s.copiedGraph.contains(t);
+        }
+        return s.graphs.stream().anyMatch(g -> g.contains(t));
+    }
+
+    /**
+     * Returns number of distinct triples, see {@link #countDistinctTriples(List)}.
+     */
+    @Override
+    protected int graphBaseSize() {
+        State s = state;
+        if (s.copiedGraph != null) {
+            return s.copiedGraph.size();
+        }
+        return countDistinctTriples(s.graphs);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        State s = state;
+        if (s.copiedGraph != null) {
+            return s.copiedGraph.isEmpty();
+        }
+        return s.graphs.stream().allMatch(Graph::isEmpty);
+    }
+
+    @Override
+    public synchronized void performAdd(Triple t) {
+        State s = state;
+        if (s.copiedGraph != null) {
+            s.copiedGraph.add(t);
+            return;
+        }
+        if (s.baseGraphs.stream().anyMatch(g -> g.contains(t))) {
+            return;
+        }
+        if (s.addedGraph == null) {
+            s = new State(s.baseGraphs, Factory.createDefaultGraph(), null);
+            state = s;
+        } else if (s.addedGraph.contains(t)) {
+            return;
+        }
+        s.addedGraph.add(t);
+    }
+
+    @Override
+    public synchronized void performDelete(Triple t) {
+        if (state.copiedGraph == null) {
+            if (!graphBaseContains(t)) {
+                return;
+            }
+            copy();
+        }
+        state.copiedGraph.delete(t);
+    }
+
+    @Override
+    public synchronized void clear() {
+        state = new State(Collections.emptyList(), null, Factory.createDefaultGraph());
+        getEventManager().notifyEvent(this, GraphEvents.removeAll);
+    }
+
+    /**
+     * Returns graphs that represent this union within another union. The graph of added triples is created
+     * if it does not exist yet, so that triples added later are visible through the other union.
+     */
+    private synchronized List<Graph> getGraphsForNesting() {
+        State s = state;
+        if (s.copiedGraph != null) {
+            return Collections.singletonList(s.copiedGraph);
+        }
+        if (s.addedGraph == null) {
+            s = new State(s.baseGraphs, Factory.createDefaultGraph(), null);
+            state = s;
+        }
+        return s.graphs;
+    }
+
+    private void copy() {
+        Graph graph = Factory.createDefaultGraph();
+        state.graphs.forEach(g -> GraphUtil.addInto(graph, g));
+        state = new State(Collections.emptyList(), null, graph);
+    }
+
+    /**
+     * Counts distinct triples of the graphs. The largest graph is counted by its size, only triples
+     * of the other graphs are iterated.
+     */
+    private static int countDistinctTriples(List<Graph> graphs) {
+        if (graphs.isEmpty()) {
+            return 0;
+        }
+        int largestGraphIndex = 0;
+        int largestGraphSize = -1;
+        for (int i = 0; i < graphs.size(); i++) {
+            int graphSize = graphs.get(i).size();
+            if (graphSize > largestGraphSize) {
+                largestGraphIndex = i;
+                largestGraphSize = graphSize;
+            }
+        }
+        List<Graph> orderedGraphs = new ArrayList<>(graphs);
+        orderedGraphs.add(0, orderedGraphs.remove(largestGraphIndex));
+
+        int size = largestGraphSize;
+        for (int i = 1; i < orderedGraphs.size(); i++) {
+            ExtendedIterator<Triple> it = orderedGraphs.get(i).find(Node.ANY, Node.ANY, Node.ANY);
+            try {
+                while (it.hasNext()) {
+                    if (!containsInPreviousGraphs(orderedGraphs, i, it.next())) {
+                        size++;
+                    }
+                }
+            } finally {
+                it.close();
+            }
+        }
+        return size;
+    }
+
+    private static boolean containsInPreviousGraphs(List<Graph> graphs, int graphIndex, Triple t) {
+        for (int i = 0; i < graphIndex; i++) {
+            if (graphs.get(i).contains(t)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Immutable state of the union, except for content of the added and copied graphs.
+     */
+    private static class State {
+
+        private final List<Graph> baseGraphs;
+        private final Graph addedGraph;
+        private final Graph copiedGraph;
+        // base graphs followed by the added graph
+        private final List<Graph> graphs;
+
+        private State(List<Graph> baseGraphs, Graph addedGraph, Graph copiedGraph) {
+            this.baseGraphs = baseGraphs;
+            this.addedGraph = addedGraph;
+            this.copiedGraph = copiedGraph;
+            if (addedGraph == null) {
+                this.graphs = baseGraphs;
+            } else {
+                List<Graph> graphs = new ArrayList<>(baseGraphs);
+                graphs.add(addedGraph);
+                this.graphs = Collections.unmodifiableList(graphs);
+            }
+        }
+    }
+}
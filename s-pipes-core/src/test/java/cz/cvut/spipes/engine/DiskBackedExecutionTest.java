@@ -0,0 +1,207 @@
+package cz.cvut.spipes.engine;
+
+import cz.cvut.spipes.modules.Module;
+import cz.cvut.spipes.util.JenaUtils;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.ResourceFactory;
+import org.apache.jena.vocabulary.RDFS;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DiskBackedExecutionTest {
+
+    @Test
+    public void storeOutputKeepsOutputOfConsumedModuleOnDisk() {
+        StubModule inputModule = new StubModule("input");
+        StubModule outputModule = new StubModule("output", inputModule);
+
+        try (DiskBackedExecution execution = new DiskBackedExecution(1, outputModule)) {
+            ExecutionContext inMemoryContext = inputModule.getOutputContext();
+            execution.storeOutput(inputModule);
+
+            assertNotSame(inMemoryContext, inputModule.getOutputContext());
+            assertTrue(inputModule.getOutputContext().getDefaultModel().isIsomorphicWith(inMemoryContext.getDefaultModel()));
+            assertTrue(Files.isDirectory(execution.getDirectory().resolve("module-1")));
+        }
+    }
+
+    @Test
+    public void storeOutputKeepsOutputOfOutputModuleInMemory() {
+        StubModule inputModule = new StubModule("input");
+        StubModule outputModule = new StubModule("output", inputModule);
+
+        try (DiskBackedExecution execution = new DiskBackedExecution(1, outputModule)) {
+            ExecutionContext outputContext = outputModule.getOutputContext();
+            execution.storeOutput(inputModule);
+            execution.storeOutput(outputModule);
+
+            assertSame(outputContext, outputModule.getOutputContext());
+            assertEquals(1, inputModule.getOutputContext().getDefaultModel().size());
+        }
+    }
+
+    @Test
+    public void storeOutputReleasesOutputConsumedByAllConsumers() {
+        StubModule inputModule = new StubModule("input");
+        StubModule consumer1 = new StubModule("consumer-1", inputModule);
+        StubModule consumer2 = new StubModule("consumer-2", inputModule);
+        StubModule outputModule = new StubModule("output", consumer1, consumer2);
+
+        try (DiskBackedExecution execution = new DiskBackedExecution(1, outputModule)) {
+            Path inputDirectory = execution.getDirectory().resolve("module-1");
+            execution.storeOutput(inputModule);
+            execution.storeOutput(consumer1);
+            assertTrue(Files.isDirectory(inputDirectory));
+
+            execution.storeOutput(consumer2);
+            assertFalse(Files.exists(inputDirectory));
+        }
+    }
+
+    @Test
+    public void storeOutputKeepsOutputInMemoryIfModuleCannotReplaceIt() {
+        StubModule inputModule = new StubModule("input");
+        inputModule.isOutputContextReplaceable = false;
+        StubModule outputModule = new StubModule("output", inputModule);
+
+        try (DiskBackedExecution execution = new DiskBackedExecution(1, outputModule)) {
+            ExecutionContext inMemoryContext = inputModule.getOutputContext();
+            execution.storeOutput(inputModule);
+
+            assertSame(inMemoryContext, inputModule.getOutputContext());
+            assertFalse(Files.exists(execution.getDirectory().resolve("module-1")));
+        }
+    }
+
+    @Test
+    public void storeOutputKeepsInputsOfModuleWhoseOutputCannotBeReplaced() {
+        StubModule inputModule = new StubModule("input");
+        StubModule viewModule = new StubModule("view", inputModule);
+        viewModule.isOutputContextReplaceable = false;
+        StubModule outputModule = new StubModule("output", viewModule);
+
+        try (DiskBackedExecution execution = new DiskBackedExecution(1, outputModule)) {
+            Path inputDirectory = execution.getDirectory().resolve("module-1");
+            execution.storeOutput(inputModule);
+            // output of the module is a view of output of its input module stored on disk
+            viewModule.outputContext = ExecutionContextFactory.createContext(
+                JenaUtils.createDynamicUnion(inputModule.getOutputContext().getDefaultModel())
+            );
+            execution.storeOutput(viewModule);
+            execution.storeOutput(outputModule);
+
+            assertTrue(Files.isDirectory(inputDirectory));
+            assertEquals(1, viewModule.getOutputContext().getDefaultModel().size());
+            assertTrue(viewModule.getOutputContext().getDefaultModel().contains(inputModule.getResource(), RDFS.label));
+        }
+    }
+
+    @Test
+    public void closeRemovesDirectoryOfExecution() {
+        StubModule inputModule = new StubModule("input");
+        StubModule outputModule = new StubModule("output", inputModule);
+
+        DiskBackedExecution execution = new DiskBackedExecution(1, outputModule);
+        execution.storeOutput(inputModule);
+        ExecutionContext materializedContext = execution.materialize(inputModule.getOutputContext());
+        execution.close();
+
+        assertFalse(Files.exists(execution.getDirectory()));
+        assertEquals(1, materializedContext.getDefaultModel().size());
+    }
+
+    private static class StubModule implements Module {
+
+        private final Resource resource;
+        private List<Module> inputModules;
+        private ExecutionContext outputContext;
+        private boolean isOutputContextReplaceable = true;
+
+        StubModule(String name, Module... inputModules) {
+            this.resource = ResourceFactory.createResource("http://example.org/" + name);
+            this.inputModules = Arrays.asList(inputModules);
+            Model model = ModelFactory.createDefaultModel();
+            model.add(resource, RDFS.label, name);
+            this.outputContext = ExecutionContextFactory.createContext(model);
+        }
+
+        @Override
+        public String getTypeURI() {
+            return "http://example.org/stub-module";
+        }
+
+        @Override
+        public String getLabel() {
+            return resource.getLocalName();
+        }
+
+        @Override
+        public void setInputContext(ExecutionContext context) {
+        }
+
+        @Override
+        public ExecutionContext getExecutionContext() {
+            return null;
+        }
+
+        @Override
+        public void setConfigurationResource(Resource moduleResource) {
+        }
+
+        @Override
+        public ExecutionContext execute() {
+            return outputContext;
+        }
+
+        @Override
+        public void loadConfiguration() {
+        }
+
+        @Override
+        public Resource getResource() {
+            return resource;
+        }
+
+        @Override
+        public void setInputModules(List<Module> inputModules) {
+            this.inputModules = inputModules;
+        }
+
+        @Override
+        public List<Module> getInputModules() {
+            return inputModules;
+        }
+
+        @Override
+        public ExecutionContext getOutputContext() {
+            return outputContext;
+        }
+
+        @Override
+        public boolean isOutputContextReplaceable() {
+            return isOutputContextReplaceable;
+        }
+
+        @Override
+        public void setOutputContext(ExecutionContext outputContext) {
+            assertTrue(isOutputContextReplaceable, "Output context of module " + getLabel() + " cannot be replaced.");
+            this.outputContext = outputContext;
+        }
+
+        @Override
+        public void addOutputBindings(VariablesBinding variablesBinding) {
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package cz.cvut.spipes.engine;
+
+import cz.cvut.spipes.modules.Module;
+import cz.cvut.spipes.test.JenaTestUtils;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.apache.jena.ontology.OntModel;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.ResourceFactory;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Executes the same pipeline by many threads sharing one engine, as the web service does
+ * for concurrent requests.
+ */
+public class ExecutionEngineConcurrencyTest {
+
+    private static final int THREAD_COUNT = 8;
+    private static final int EXECUTION_COUNT = 200;
+
+    @Test
+    public void executePipelineIsolatesConcurrentExecutions() throws Exception {
+        JenaTestUtils.mapLocalSPipesDefinitionFiles();
+        OntModel configModel = JenaTestUtils.loadOntologyClosureFromResources("/module/bind-with-constant/config.ttl");
+        List<Module> outputModules = PipelineFactory.loadPipelines(configModel);
+        PipelineTemplate template = PipelineFactory.createPipelineTemplate(outputModules.get(0).getResource());
+
+        ExecutionEngine engine = new ExecutionEngineImpl();
+        RecordingProgressListener listener = new RecordingProgressListener();
+        engine.addProgressListener(listener);
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<String>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < EXECUTION_COUNT; i++) {
+                final String name = "user-" + i;
+                results.add(executor.submit(() -> {
+                    start.await();
+                    ExecutionContext inputContext = ExecutionContextFactory.createContext(
+                        new VariablesBinding("name", ResourceFactory.createPlainLiteral(name))
+                    );
+                    RDFNode greeting = engine.executePipeline(template.instantiate(), inputContext)
+                        .getVariablesBinding().getNode("greetingMessage");
+                    return greeting.toString();
+                }));
+            }
+            start.countDown();
+
+            for (int i = 0; i < EXECUTION_COUNT; i++) {
+                assertEquals("Hello user-" + i, results.get(i).get(30, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(EXECUTION_COUNT, listener.startedPipelineExecutions.size(), "Pipeline execution ids are not unique.");
+        assertEquals(listener.startedPipelineExecutions, listener.finishedPipelineExecutions);
+    }
+
+    private static class RecordingProgressListener implements ProgressListener {
+
+        private final Set<Long> startedPipelineExecutions = ConcurrentHashMap.newKeySet();
+        private final Set<Long> finishedPipelineExecutions = ConcurrentHashMap.newKeySet();
+
+        @Override
+        public void pipelineExecutionStarted(long pipelineExecutionId) {
+            startedPipelineExecutions.add(pipelineExecutionId);
+        }
+
+        @Override
+        public void pipelineExecutionFinished(long pipelineExecutionId) {
+            finishedPipelineExecutions.add(pipelineExecutionId);
+        }
+
+        @Override
+        public void moduleExecutionStarted(long pipelineExecutionId, String moduleExecutionId, Module outputModule,
+                                           ExecutionContext inputContext, String predecessorId) {
+        }
+
+        @Override
+        public void moduleExecutionFinished(long pipelineExecutionId, String moduleExecutionId, Module module) {
+        }
+    }
+}
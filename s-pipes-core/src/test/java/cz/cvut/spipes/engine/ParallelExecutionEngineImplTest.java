@@ -0,0 +1,217 @@
+package cz.cvut.spipes.engine;
+
+import cz.cvut.spipes.modules.Module;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.ResourceFactory;
+import org.apache.jena.vocabulary.RDFS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+public class ParallelExecutionEngineImplTest {
+
+    @Test
+    public void executePipelineRunsIndependentBranchesConcurrently() {
+        CountDownLatch branchesStarted = new CountDownLatch(2);
+
+        LabelModule source = new LabelModule("source", null);
+        LabelModule branch1 = new LabelModule("branch-1", branchesStarted, source);
+        LabelModule branch2 = new LabelModule("branch-2", branchesStarted, source);
+        LabelModule merge = new LabelModule("merge", null, branch1, branch2);
+
+        ExecutionEngine engine = new ParallelExecutionEngineImpl(2);
+        ExecutionContext outputContext = engine.executePipeline(merge, ExecutionContextFactory.createEmptyContext());
+
+        assertTrue(branch1.isAwaitSucceeded(), "Branches of the pipeline were not executed concurrently.");
+        assertTrue(branch2.isAwaitSucceeded(), "Branches of the pipeline were not executed concurrently.");
+        assertEquals(1, source.getExecutionCount(), "Shared input module must be executed once.");
+        assertEquals(4, outputContext.getDefaultModel().size());
+    }
+
+    @Test
+    public void executePipelineProducesSameOutputAsSequentialEngine() {
+        ExecutionContext sequentialOutput = new ExecutionEngineImpl().executePipeline(
+            createDiamondPipeline(), ExecutionContextFactory.createEmptyContext()
+        );
+        ExecutionContext parallelOutput = new ParallelExecutionEngineImpl(4).executePipeline(
+            createDiamondPipeline(), ExecutionContextFactory.createEmptyContext()
+        );
+
+        assertTrue(sequentialOutput.getDefaultModel().isIsomorphicWith(parallelOutput.getDefaultModel()));
+    }
+
+    @Test
+    public void executePipelinePropagatesModuleFailure() {
+        LabelModule source = new LabelModule("source", null);
+        Module failing = new LabelModule("failing", null, source) {
+            @Override
+            public ExecutionContext execute() {
+                throw new IllegalStateException("Module failed.");
+            }
+        };
+        LabelModule merge = new LabelModule("merge", null, failing);
+
+        ExecutionEngine engine = new ParallelExecutionEngineImpl(2);
+
+        assertThrows(IllegalStateException.class,
+            () -> engine.executePipeline(merge, ExecutionContextFactory.createEmptyContext()));
+    }
+
+    @Test
+    public void executePipelineIsolatesModulesModifyingTheirInput() {
+        Resource writtenResource = ResourceFactory.createResource("http://example.org/written");
+        Model inputModel = ModelFactory.createDefaultModel();
+        inputModel.add(ResourceFactory.createResource("http://example.org/input"), RDFS.label, "input");
+
+        LabelModule source = new LabelModule("source", null);
+        Module writer = new LabelModule("writer", null, source) {
+            @Override
+            public ExecutionContext execute() {
+                getExecutionContext().getDefaultModel().add(writtenResource, RDFS.label, "written");
+                return super.execute();
+            }
+        };
+        LabelModule reader = new LabelModule("reader", null, source);
+        LabelModule sourceWriter = new LabelModule("source-writer", null) {
+            @Override
+            public ExecutionContext execute() {
+                getExecutionContext().getDefaultModel().add(writtenResource, RDFS.comment, "written");
+                return super.execute();
+            }
+        };
+        LabelModule merge = new LabelModule("merge", null, writer, reader, sourceWriter);
+
+        ExecutionContext outputContext = new ParallelExecutionEngineImpl(4).executePipeline(
+            merge, ExecutionContextFactory.createContext(inputModel)
+        );
+
+        assertEquals(1, inputModel.size());
+        assertEquals(2, source.getOutputContext().getDefaultModel().size());
+        assertFalse(reader.getOutputContext().getDefaultModel().contains(writtenResource, null));
+        assertTrue(outputContext.getDefaultModel().contains(writtenResource, RDFS.label));
+        assertTrue(outputContext.getDefaultModel().contains(writtenResource, RDFS.comment));
+    }
+
+    private Module createDiamondPipeline() {
+        LabelModule source = new LabelModule("source", null);
+        LabelModule branch1 = new LabelModule("branch-1", null, source);
+        LabelModule branch2 = new LabelModule("branch-2", null, source);
+        return new LabelModule("merge", null, branch1, branch2);
+    }
+
+    /**
+     * Appends triple with its label to the input model.
+     */
+    private static class LabelModule implements Module {
+
+        private final Resource resource;
+        private final CountDownLatch latch;
+        private final AtomicInteger executionCount = new AtomicInteger();
+        private List<Module> inputModules;
+        private ExecutionContext executionContext;
+        private ExecutionContext outputContext;
+        private volatile boolean awaitSucceeded;
+
+        LabelModule(String name, CountDownLatch latch, Module... inputModules) {
+            this.resource = ResourceFactory.createResource("http://example.org/" + name);
+            this.latch = latch;
+            this.inputModules = new LinkedList<>(Arrays.asList(inputModules));
+        }
+
+        @Override
+        public ExecutionContext execute() {
+            executionCount.incrementAndGet();
+            if (latch != null) {
+                latch.countDown();
+                try {
+                    awaitSucceeded = latch.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            Model model = ModelFactory.createDefaultModel();
+            model.add(executionContext.getDefaultModel());
+            model.add(resource, RDFS.label, getLabel());
+            outputContext = ExecutionContextFactory.createContext(model);
+            return outputContext;
+        }
+
+        boolean isAwaitSucceeded() {
+            return awaitSucceeded;
+        }
+
+        int getExecutionCount() {
+            return executionCount.get();
+        }
+
+        @Override
+        public String getTypeURI() {
+            return "http://example.org/label-module";
+        }
+
+        @Override
+        public String getLabel() {
+            return resource.getLocalName();
+        }
+
+        @Override
+        public void setInputContext(ExecutionContext context) {
+            this.executionContext = context;
+        }
+
+        @Override
+        public ExecutionContext getExecutionContext() {
+            return executionContext;
+        }
+
+        @Override
+        public void setConfigurationResource(Resource moduleResource) {
+        }
+
+        @Override
+        public void loadConfiguration() {
+        }
+
+        @Override
+        public Resource getResource() {
+            return resource;
+        }
+
+        @Override
+        public void setInputModules(List<Module> inputModules) {
+            this.inputModules = inputModules;
+        }
+
+        @Override
+        public List<Module> getInputModules() {
+            return inputModules;
+        }
+
+        @Override
+        public ExecutionContext getOutputContext() {
+            return outputContext;
+        }
+
+        @Override
+        public void setOutputContext(ExecutionContext outputContext) {
+            this.outputContext = outputContext;
+        }
+
+        @Override
+        public void addOutputBindings(VariablesBinding variablesBinding) {
+            VariablesBinding mergedVarsBinding = new VariablesBinding(outputContext.getVariablesBinding().asQuerySolution());
+            mergedVarsBinding.extendConsistently(variablesBinding);
+            outputContext = ExecutionContextFactory.createContext(outputContext.getDefaultModel(), mergedVarsBinding);
+        }
+    }
+}
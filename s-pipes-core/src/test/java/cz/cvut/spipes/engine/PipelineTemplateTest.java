@@ -0,0 +1,38 @@
+package cz.cvut.spipes.engine;
+
+import cz.cvut.spipes.modules.Module;
+import cz.cvut.spipes.test.JenaTestUtils;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.apache.jena.ontology.OntModel;
+import org.apache.jena.rdf.model.Resource;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import org.junit.jupiter.api.Test;
+
+public class PipelineTemplateTest {
+
+    private static final String SML = "http://topbraid.org/sparqlmotionlib#";
+
+    @Test
+    public void instantiateCreatesModulesConnectedToReturnModule() {
+        JenaTestUtils.mapLocalSPipesDefinitionFiles();
+        OntModel ontModel = JenaTestUtils.loadOntologyClosureFromResources("/pipeline/config.ttl");
+        Resource returnModuleRes = ontModel.getResource(SML + "bind-greeting-2");
+
+        PipelineTemplate template = PipelineFactory.createPipelineTemplate(returnModuleRes);
+        Module module1 = template.instantiate();
+        Module module2 = template.instantiate();
+
+        assertEquals(3, template.getModuleCount());
+        assertEquals(returnModuleRes, module1.getResource());
+        assertEquals(getInputModuleResources(module1), getInputModuleResources(module2));
+        assertEquals(2, module1.getInputModules().size());
+        assertNotSame(module1, module2);
+        assertNotSame(module1.getInputModules().get(0), module2.getInputModules().get(0));
+    }
+
+    private Set<Resource> getInputModuleResources(Module module) {
+        return module.getInputModules().stream().map(Module::getResource).collect(Collectors.toSet());
+    }
+}
@@ -0,0 +1,84 @@
+package cz.cvut.spipes.logging;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+public class WriteBehindExecutorTest {
+
+    @Test
+    public void submitExecutesTasksInOrder() throws Exception {
+        WriteBehindExecutor executor = new WriteBehindExecutor("test-writer", 5, false);
+        List<Integer> executed = new CopyOnWriteArrayList<>();
+
+        for (int i = 0; i < 100; i++) {
+            final int taskId = i;
+            executor.submit(() -> executed.add(taskId));
+        }
+
+        assertTrue(executor.awaitSubmittedTasks(5, TimeUnit.SECONDS));
+        assertEquals(100, executed.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, executed.get(i).intValue());
+        }
+        executor.shutdown();
+    }
+
+    @Test
+    public void submitOptionalDropsTasksWhenQueueIsFull() throws Exception {
+        WriteBehindExecutor executor = new WriteBehindExecutor("test-writer", 2, true);
+        CountDownLatch blockingTaskStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> executed = new CopyOnWriteArrayList<>();
+        AtomicInteger createdTaskCount = new AtomicInteger();
+
+        executor.submit(() -> {
+            blockingTaskStarted.countDown();
+            awaitQuietly(release);
+        });
+        assertTrue(blockingTaskStarted.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 5; i++) {
+            final int taskId = i;
+            executor.submitOptional(() -> {
+                createdTaskCount.incrementAndGet();
+                return () -> executed.add(taskId);
+            });
+        }
+        release.countDown();
+
+        assertTrue(executor.awaitSubmittedTasks(5, TimeUnit.SECONDS));
+        assertEquals(2, executed.size());
+        assertEquals(3, executor.getDroppedTaskCount());
+        // dropped tasks are not even created
+        assertEquals(2, createdTaskCount.get());
+        executor.shutdown();
+    }
+
+    @Test
+    public void taskFailureDoesNotStopExecutor() throws Exception {
+        WriteBehindExecutor executor = new WriteBehindExecutor("test-writer", 5, false);
+        List<Integer> executed = new CopyOnWriteArrayList<>();
+
+        executor.submit(() -> {
+            throw new IllegalStateException("Task failed.");
+        });
+        executor.submit(() -> executed.add(1));
+
+        assertTrue(executor.awaitSubmittedTasks(5, TimeUnit.SECONDS));
+        assertEquals(1, executed.size());
+        executor.shutdown();
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
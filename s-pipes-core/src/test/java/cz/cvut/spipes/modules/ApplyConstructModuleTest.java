@@ -11,6 +11,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
+import org.topbraid.spin.system.SPINModuleRegistry;
 
 
 public class ApplyConstructModuleTest extends AbstractModuleTestHelper {
@@ -130,6 +131,45 @@ public class ApplyConstructModuleTest extends AbstractModuleTestHelper {
         executeConstructIterations(2,3, createSimpleModel(), false);
     }
 
+    @Test
+    public void executeConstructThreeIterationsSkippingUnaffectedQueriesWithoutInputModel() {
+        executeConstructIterations(3,2, ModelFactory.createDefaultModel(), false, true);
+    }
+
+    @Test
+    public void executeConstructTwoIterationsSkippingUnaffectedQueriesWithoutModelReplace() {
+        executeConstructIterations(2,3, createSimpleModel(), false, true);
+    }
+
+    @Test
+    public void executeConstructThreeIterationsSkippingUnaffectedQueriesWithSpinFunction() {
+        // second query reads predicate produced by first query only through SPIN function
+        final ApplyConstructModule m = (ApplyConstructModule) getRootModule("spin-function-iteration-config.ttl");
+        SPINModuleRegistry.get().registerAll(getOntModel("spin-function-iteration-config.ttl"), null);
+        m.setInputContext(ExecutionContextFactory.createContext(ModelFactory.createDefaultModel()));
+        m.loadConfiguration();
+        m.setSkipUnaffectedQueries(true);
+        m.setIterationCount(3);
+
+        final ExecutionContext eo = m.executeSelf();
+
+        assertEquals(2, eo.getDefaultModel().size());
+    }
+
+    @Test
+    public void executeConstructThreeIterationsSkippingUnaffectedQueriesWithPropertyFunction() {
+        // second query reads triples produced by first query only through property function list:member
+        final ApplyConstructModule m = (ApplyConstructModule) getRootModule("property-function-iteration-config.ttl");
+        m.setInputContext(ExecutionContextFactory.createContext(ModelFactory.createDefaultModel()));
+        m.loadConfiguration();
+        m.setSkipUnaffectedQueries(true);
+        m.setIterationCount(3);
+
+        final ExecutionContext eo = m.executeSelf();
+
+        assertEquals(3, eo.getDefaultModel().size());
+    }
+
     @Test
     @Disabled
     public void executeConstructStopsIfIterationDoesNotProduceNewTriples() {
@@ -155,10 +195,15 @@ public class ApplyConstructModuleTest extends AbstractModuleTestHelper {
     }
 
     private void executeConstructIterations(int iterationCount, int expectedNumberOfResults, Model inputModel, boolean isReplace) {
+        executeConstructIterations(iterationCount, expectedNumberOfResults, inputModel, isReplace, false);
+    }
+
+    private void executeConstructIterations(int iterationCount, int expectedNumberOfResults, Model inputModel, boolean isReplace, boolean isSkipUnaffectedQueries) {
         final ApplyConstructModule m = (ApplyConstructModule) getRootModule("iteration-config.ttl");
         m.setInputContext( ExecutionContextFactory.createContext(inputModel));
         m.loadConfiguration();
         m.setReplace(isReplace);
+        m.setSkipUnaffectedQueries(isSkipUnaffectedQueries);
 
         m.setIterationCount(iterationCount);
 
@@ -0,0 +1,157 @@
+package cz.cvut.spipes.registry;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StreamResourceRegistryTest {
+
+    private Path spoolDirectory;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        spoolDirectory = Files.createTempDirectory("stream-resources-");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        FileUtils.deleteQuietly(spoolDirectory.toFile());
+    }
+
+    @Test
+    public void registerResourceStoresContentOfStream() throws IOException {
+        StreamResourceRegistry registry = new StreamResourceRegistry(spoolDirectory, 1000, 60000);
+        byte[] content = "a,b\n1,2\n".getBytes(StandardCharsets.UTF_8);
+
+        registry.registerResource("id", new ByteArrayInputStream(content), "text/csv");
+        StreamResource resource = registry.getResourceById("id");
+
+        assertEquals(content.length, resource.getContentLength());
+        assertEquals("text/csv", resource.getContentType());
+        try (InputStream is = resource.getInputStream()) {
+            assertArrayEquals(content, IOUtils.toByteArray(is));
+        }
+        assertArrayEquals(content, resource.getContent());
+    }
+
+    @Test
+    public void registerResourceEvictsLeastRecentlyUsedResourcesExceedingTotalSize() throws InterruptedException {
+        StreamResourceRegistry registry = new StreamResourceRegistry(spoolDirectory, 25, 60000);
+
+        registry.registerResource("first", new byte[10], null);
+        registry.registerResource("second", new byte[10], null);
+        registry.getResourceById("first");
+        registry.registerResource("third", new byte[10], null);
+
+        assertNotNull(registry.getResourceById("first"));
+        assertNull(registry.getResourceById("second"));
+        assertNotNull(registry.getResourceById("third"));
+        assertSpooledFileCount(registry, 2);
+    }
+
+    @Test
+    public void registerResourceKeepsResourceLargerThanTotalSize() {
+        StreamResourceRegistry registry = new StreamResourceRegistry(spoolDirectory, 5, 60000);
+
+        registry.registerResource("id", new byte[10], null);
+
+        assertEquals(10, registry.getResourceById("id").getContentLength());
+    }
+
+    @Test
+    public void getResourceByIdReturnsNullForExpiredResource() throws InterruptedException {
+        StreamResourceRegistry registry = new StreamResourceRegistry(spoolDirectory, 1000, 1);
+
+        registry.registerResource("id", new byte[10], null);
+        Thread.sleep(10);
+
+        assertNull(registry.getResourceById("id"));
+        assertSpooledFileCount(registry, 0);
+    }
+
+    @Test
+    public void registerResourceReplacesContentOfResourceWithSameId() throws InterruptedException {
+        StreamResourceRegistry registry = new StreamResourceRegistry(spoolDirectory, 1000, 60000);
+
+        registry.registerResource("id", new byte[]{1}, null);
+        registry.registerResource("id", new byte[]{2, 3}, null);
+
+        assertArrayEquals(new byte[]{2, 3}, registry.getResourceById("id").getContent());
+        assertSpooledFileCount(registry, 1);
+    }
+
+    @Test
+    public void evictedResourceRemainsReadableWhileItIsUsed() throws IOException, InterruptedException {
+        StreamResourceRegistry registry = new StreamResourceRegistry(spoolDirectory, 15, 60000);
+
+        StreamResource usedResource = registry.registerResource("first", new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10}, null);
+        registry.registerResource("second", new byte[10], null);
+
+        assertNull(registry.getResourceById("first"));
+        try (InputStream is = usedResource.getInputStream()) {
+            assertEquals(10, IOUtils.toByteArray(is).length);
+        }
+        assertEquals(10, usedResource.getContent()[9]);
+        assertEquals(2, getSpooledFileCount(registry));
+
+        usedResource = null;
+        assertSpooledFileCount(registry, 1);
+    }
+
+    @Test
+    public void createRegistryDeletesDirectoriesOfTerminatedProcesses() throws IOException {
+        Path oldDirectory = Files.createDirectory(spoolDirectory.resolve("registry-old"));
+        Files.createFile(oldDirectory.resolve("registry.lock"));
+        Files.createTempFile(oldDirectory, "resource-", ".bin");
+        Path otherFile = Files.createTempFile(spoolDirectory, "other-", ".txt");
+
+        new StreamResourceRegistry(spoolDirectory, 1000, 60000);
+
+        assertTrue(Files.notExists(oldDirectory));
+        assertTrue(Files.exists(otherFile));
+    }
+
+    @Test
+    public void createRegistryKeepsResourcesOfRunningRegistry() throws IOException {
+        StreamResourceRegistry runningRegistry = new StreamResourceRegistry(spoolDirectory, 1000, 60000);
+        byte[] content = {1, 2, 3};
+        runningRegistry.registerResource("id", content, null);
+
+        StreamResourceRegistry registry = new StreamResourceRegistry(spoolDirectory, 1000, 60000);
+
+        assertNotEquals(runningRegistry.getSpoolDirectory(), registry.getSpoolDirectory());
+        assertArrayEquals(content, runningRegistry.getResourceById("id").getContent());
+    }
+
+    /**
+     * Files of evicted resources are deleted once their handles are garbage collected.
+     */
+    private void assertSpooledFileCount(StreamResourceRegistry registry, int expectedCount) throws InterruptedException {
+        for (int i = 0; i < 100 && getSpooledFileCount(registry) != expectedCount; i++) {
+            System.gc();
+            Thread.sleep(10);
+            registry.deleteReleasedResources();
+        }
+        assertEquals(expectedCount, getSpooledFileCount(registry));
+    }
+
+    private int getSpooledFileCount(StreamResourceRegistry registry) {
+        return registry.getSpoolDirectory().toFile().list((dir, name) -> name.startsWith("resource-")).length;
+    }
+}
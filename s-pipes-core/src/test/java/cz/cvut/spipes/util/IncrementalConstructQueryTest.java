@@ -0,0 +1,100 @@
+package cz.cvut.spipes.util;
+
+import org.apache.jena.query.QueryFactory;
+import org.apache.jena.query.QuerySolutionMap;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.Resource;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+public class IncrementalConstructQueryTest {
+
+    private static final String NS = "http://example.org/";
+    private static final String PREFIX = "PREFIX : <" + NS + ">\n";
+    private static final String TRANSITIVE_QUERY = PREFIX + "CONSTRUCT { ?x :p ?z } WHERE { ?x :p ?y . ?y :p ?z }";
+
+    @Test
+    public void isSemiNaiveReturnsTrueForMonotonicQuery() {
+        assertTrue(createQuery(TRANSITIVE_QUERY).isSemiNaive());
+        assertTrue(createQuery(PREFIX + "CONSTRUCT { ?x :q ?z } WHERE { ?x :p ?y FILTER(?y != :a) BIND(?y AS ?z) }")
+            .isSemiNaive());
+    }
+
+    @Test
+    public void isSemiNaiveReturnsFalseForNonMonotonicQuery() {
+        assertFalse(createQuery(PREFIX + "CONSTRUCT { ?x :q ?y } WHERE { ?x :p ?y OPTIONAL { ?y :p ?z } }")
+            .isSemiNaive());
+        assertFalse(createQuery(PREFIX + "CONSTRUCT { ?x :q ?y } WHERE { ?x :p ?y FILTER NOT EXISTS { ?y :p ?x } }")
+            .isSemiNaive());
+        assertFalse(createQuery(PREFIX + "CONSTRUCT { ?x :q ?y } WHERE { ?x :p ?y } LIMIT 1").isSemiNaive());
+        assertFalse(createQuery(PREFIX + "CONSTRUCT { ?x :q ?y } WHERE { ?x :p+ ?y }").isSemiNaive());
+    }
+
+    @Test
+    public void isAffectedByReturnsTrueOnlyIfDeltaContainsPredicateOfQuery() {
+        IncrementalConstructQuery query = createQuery(TRANSITIVE_QUERY);
+        Model deltaModel = ModelFactory.createDefaultModel();
+
+        assertTrue(query.isAffectedBy(null));
+        assertFalse(query.isAffectedBy(deltaModel));
+        deltaModel.add(deltaModel.createResource(NS + "a"), deltaModel.createProperty(NS + "q"), "b");
+        assertFalse(query.isAffectedBy(deltaModel));
+        deltaModel.add(deltaModel.createResource(NS + "a"), deltaModel.createProperty(NS + "p"), "b");
+        assertTrue(query.isAffectedBy(deltaModel));
+    }
+
+    @Test
+    public void execConstructWithDeltaReturnsOnlyTriplesFromSolutionsUsingDelta() {
+        IncrementalConstructQuery query = createQuery(TRANSITIVE_QUERY);
+        Model model = createChain(4);
+        Model deltaModel = ModelFactory.createDefaultModel();
+        deltaModel.add(resource(3), deltaModel.createProperty(NS + "p"), resource(4));
+        model.add(deltaModel);
+
+        Model constructedModel = query.execConstruct(model, deltaModel, new QuerySolutionMap());
+
+        Model expectedModel = ModelFactory.createDefaultModel();
+        expectedModel.add(resource(2), expectedModel.createProperty(NS + "p"), resource(4));
+        assertTrue(constructedModel.isIsomorphicWith(expectedModel));
+    }
+
+    @Test
+    public void execConstructIteratedOnDeltaComputesTransitiveClosure() {
+        int nodeCount = 20;
+        IncrementalConstructQuery query = createQuery(TRANSITIVE_QUERY);
+        Model model = createChain(nodeCount - 1);
+
+        Model deltaModel = null;
+        while (deltaModel == null || !deltaModel.isEmpty()) {
+            Model constructedModel = query.execConstruct(model, deltaModel, new QuerySolutionMap());
+            deltaModel = constructedModel.difference(model);
+            model.add(deltaModel);
+        }
+
+        assertEquals(nodeCount * (nodeCount - 1) / 2, model.size());
+    }
+
+    private IncrementalConstructQuery createQuery(String queryString) {
+        return new IncrementalConstructQuery(QueryFactory.create(queryString));
+    }
+
+    /**
+     * Returns model with triples :a0 :p :a1, ..., :a(n-1) :p :an.
+     */
+    private Model createChain(int length) {
+        Model model = ModelFactory.createDefaultModel();
+        Property p = model.createProperty(NS + "p");
+        for (int i = 0; i < length; i++) {
+            model.add(resource(i), p, resource(i + 1));
+        }
+        return model;
+    }
+
+    private Resource resource(int index) {
+        return ModelFactory.createDefaultModel().createResource(NS + "a" + index);
+    }
+}
@@ -0,0 +1,109 @@
+package cz.cvut.spipes.util;
+
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import org.apache.jena.query.Query;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.vocabulary.RDF;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.topbraid.spin.model.SPINFactory;
+import org.topbraid.spin.vocabulary.SP;
+
+public class QueryCacheTest {
+
+    private static final String QUERY_1 = "CONSTRUCT { ?s a ?o } WHERE { ?s a ?o }";
+    private static final String QUERY_2 = "SELECT * WHERE { ?s ?p ?o }";
+    private static final String QUERY_3 = "ASK { ?s ?p ?o }";
+    private static final String QUERY_IRI = "http://example.org/query";
+
+    @Test
+    public void getQueryReturnsCachedQuery() {
+        QueryCache cache = new QueryCache(10);
+
+        Query query = cache.getQuery(QUERY_1);
+
+        assertSame(query, cache.getQuery(QUERY_1));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void getQueryEvictsLeastRecentlyUsedQuery() {
+        QueryCache cache = new QueryCache(2);
+
+        Query query1 = cache.getQuery(QUERY_1);
+        Query query2 = cache.getQuery(QUERY_2);
+        cache.getQuery(QUERY_1);
+        cache.getQuery(QUERY_3);
+
+        assertEquals(2, cache.getSize());
+        assertSame(query1, cache.getQuery(QUERY_1));
+        assertNotSame(query2, cache.getQuery(QUERY_2));
+    }
+
+    @Test
+    public void getQueryWithZeroSizeDoesNotCache() {
+        QueryCache cache = new QueryCache(0);
+
+        assertNotSame(cache.getQuery(QUERY_1), cache.getQuery(QUERY_1));
+        assertEquals(0, cache.getSize());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void getQueryReturnsCachedQueryOfSameSpinQueryResource() {
+        QueryCache cache = new QueryCache(10);
+        Model model = createSpinQueryModel(QUERY_1, "ex");
+
+        Query query = cache.getQuery(asSpinQuery(model));
+
+        assertSame(query, cache.getQuery(asSpinQuery(model)));
+        assertNotSame(query, cache.getQuery(asSpinQuery(createSpinQueryModel(QUERY_1, "ex"))));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void getQueryDoesNotReturnStaleSpinQueryAfterClear() {
+        QueryCache cache = new QueryCache(10);
+        Model model = createSpinQueryModel(QUERY_1, "ex");
+        cache.getQuery(asSpinQuery(model));
+
+        model.getResource(QUERY_IRI)
+            .removeAll(RDF.type).addProperty(RDF.type, SP.Select)
+            .removeAll(SP.text).addProperty(SP.text, QUERY_2);
+        cache.clear();
+
+        assertTrue(cache.getQuery(asSpinQuery(model)).isSelectType());
+    }
+
+    @Test
+    public void getQueryExposesCountsThroughMBeanServer() throws JMException {
+        QueryCache.get().getQuery(QUERY_1);
+        QueryCache.get().getQuery(QUERY_1);
+
+        Object hitCount = ManagementFactory.getPlatformMBeanServer()
+            .getAttribute(new ObjectName(QueryCache.OBJECT_NAME), "HitCount");
+
+        assertEquals(QueryCache.get().getHitCount(), hitCount);
+    }
+
+    private Model createSpinQueryModel(String queryString, String prefix) {
+        Model model = ModelFactory.createDefaultModel();
+        model.setNsPrefix(prefix, "http://example.org/");
+        model.createResource(QUERY_IRI)
+            .addProperty(RDF.type, SP.Construct)
+            .addProperty(SP.text, queryString);
+        return model;
+    }
+
+    private org.topbraid.spin.model.Query asSpinQuery(Model model) {
+        return SPINFactory.asQuery(model.getResource(QUERY_IRI));
+    }
+}
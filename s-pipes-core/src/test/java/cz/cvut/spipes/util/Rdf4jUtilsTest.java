@@ -0,0 +1,53 @@
+package cz.cvut.spipes.util;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Literal;
+import org.eclipse.rdf4j.model.vocabulary.XMLSchema;
+import org.eclipse.rdf4j.repository.Repository;
+import org.eclipse.rdf4j.repository.RepositoryConnection;
+import org.eclipse.rdf4j.repository.sail.SailRepository;
+import org.eclipse.rdf4j.sail.memory.MemoryStore;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.Test;
+
+public class Rdf4jUtilsTest {
+
+    @Test
+    public void addModelAddsAllStatementsToContext() {
+        Model model = ModelFactory.createDefaultModel();
+        for (int i = 0; i < 25; i++) {
+            Resource r = model.createResource("http://example.org/resource-" + i);
+            r.addProperty(RDF.type, RDFS.Resource);
+            r.addProperty(RDFS.label, model.createLiteral("Resource " + i, "en"));
+            r.addLiteral(RDFS.comment, i);
+            r.addProperty(RDFS.seeAlso, model.createResource());
+        }
+
+        Repository repository = new SailRepository(new MemoryStore());
+        repository.init();
+        try (RepositoryConnection connection = repository.getConnection()) {
+            IRI context = connection.getValueFactory().createIRI("http://example.org/context");
+
+            connection.begin();
+            long count = Rdf4jUtils.addModel(connection, model, 7, context);
+            connection.commit();
+
+            assertEquals(model.size(), count);
+            assertEquals(model.size(), connection.size(context));
+            IRI resource = connection.getValueFactory().createIRI("http://example.org/resource-3");
+            Literal label = (Literal) connection.getStatements(resource,
+                connection.getValueFactory().createIRI(RDFS.label.getURI()), null).next().getObject();
+            assertEquals("en", label.getLanguage().orElse(null));
+            Literal comment = (Literal) connection.getStatements(resource,
+                connection.getValueFactory().createIRI(RDFS.comment.getURI()), null).next().getObject();
+            assertEquals(XMLSchema.LONG, comment.getDatatype());
+        } finally {
+            repository.shutDown();
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package cz.cvut.spipes.util;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.ResourceFactory;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class UnionGraphTest {
+
+    private static final Resource PERSON = ResourceFactory.createResource("http://example.org/person");
+    private static final Resource ANIMAL = ResourceFactory.createResource("http://example.org/animal");
+
+    @Test
+    public void findReturnsSharedTriplesOnce() {
+        Model model1 = createModel(PERSON, ANIMAL);
+        Model model2 = createModel(PERSON);
+
+        Model union = JenaUtils.createDynamicUnion(model1, model2);
+
+        assertEquals(2, union.listStatements().toList().size());
+        assertEquals(2, union.size());
+        assertEquals(1, union.listStatements(PERSON, null, (Resource) null).toList().size());
+    }
+
+    @Test
+    public void addDoesNotModifyUnderlyingModels() {
+        Model model1 = createModel(PERSON);
+        Model model2 = createModel(ANIMAL);
+
+        Model union = JenaUtils.createDynamicUnion(model1, model2);
+        union.add(PERSON, RDFS.label, "person");
+
+        assertEquals(3, union.size());
+        assertEquals(1, model1.size());
+        assertEquals(1, model2.size());
+        assertFalse(((UnionGraph) union.getGraph()).isCopied());
+    }
+
+    @Test
+    public void removeCopiesUnderlyingModels() {
+        Model model1 = createModel(PERSON);
+        Model model2 = createModel(ANIMAL);
+
+        Model union = JenaUtils.createDynamicUnion(model1, model2);
+        union.remove(PERSON, RDF.type, RDFS.Class);
+
+        assertTrue(((UnionGraph) union.getGraph()).isCopied());
+        assertEquals(1, union.size());
+        assertTrue(model1.contains(PERSON, RDF.type, RDFS.Class));
+        assertTrue(union.isIsomorphicWith(model2));
+    }
+
+    @Test
+    public void sizeIsUpdatedByModificationsOfUnion() {
+        Model union = JenaUtils.createDynamicUnion(createModel(PERSON), createModel(PERSON, ANIMAL));
+        assertEquals(2, union.size());
+
+        union.add(PERSON, RDF.type, RDFS.Class);
+        assertEquals(2, union.size());
+        union.add(PERSON, RDFS.label, "person");
+        union.add(PERSON, RDFS.label, "person");
+        assertEquals(3, union.size());
+        union.remove(ANIMAL, RDF.type, RDFS.Class);
+        assertEquals(2, union.size());
+        union.add(ANIMAL, RDFS.label, "animal");
+        assertEquals(3, union.size());
+    }
+
+    @Test
+    public void sizeReflectsModificationOfUnderlyingModelAfterUnionIsBuilt() {
+        Model model1 = createModel(PERSON);
+        Model model2 = createModel(ANIMAL);
+        Model union = JenaUtils.createDynamicUnion(model1, model2);
+        assertEquals(2, union.size());
+
+        model2.add(PERSON, RDF.type, RDFS.Class);
+        model2.add(PERSON, RDFS.label, "person");
+
+        assertEquals(3, union.size());
+        assertEquals(3, union.listStatements().toList().size());
+    }
+
+    @Test
+    public void sizeReflectsModificationOfUnderlyingModelThatKeepsItsSize() {
+        Model model1 = createModel(PERSON);
+        Model model2 = createModel(ANIMAL);
+        Model union = JenaUtils.createDynamicUnion(model1, model2);
+        assertEquals(2, union.size());
+
+        model2.remove(ANIMAL, RDF.type, RDFS.Class);
+        model2.add(PERSON, RDF.type, RDFS.Class);
+
+        assertEquals(1, union.size());
+        assertFalse(union.isEmpty());
+    }
+
+    @Test
+    public void deeplyNestedUnionReturnsTriplesOfAllModels() {
+        int depth = 200;
+        Model union = createModel(PERSON);
+        for (int i = 0; i < depth; i++) {
+            Model model = ModelFactory.createDefaultModel();
+            model.add(ResourceFactory.createResource("http://example.org/resource-" + i), RDF.type, RDFS.Class);
+            union = JenaUtils.createDynamicUnion(union, model);
+        }
+
+        assertEquals(depth + 1, union.size());
+        assertTrue(union.contains(PERSON, RDF.type, RDFS.Class));
+        assertEquals(depth + 1, union.listStatements(null, RDF.type, RDFS.Class).toList().size());
+        assertTrue(((UnionGraph) union.getGraph()).getBaseGraph() instanceof UnionGraph);
+    }
+
+    @Test
+    public void modificationOfUnionIsNotVisibleInOtherUnionOverSameModels() {
+        Model model1 = createModel(PERSON);
+        Model model2 = createModel(ANIMAL);
+        Model union1 = JenaUtils.createDynamicUnion(model1, model2);
+        Model union2 = JenaUtils.createDynamicUnion(model1, model2);
+
+        union1.add(PERSON, RDFS.label, "person");
+        union2.remove(PERSON, RDF.type, RDFS.Class);
+
+        assertEquals(3, union1.size());
+        assertTrue(union1.contains(PERSON, RDF.type, RDFS.Class));
+        assertEquals(1, union2.size());
+        assertFalse(union2.contains(PERSON, RDFS.label, (RDFNode) null));
+    }
+
+    @Test
+    public void nestedUnionReflectsModificationOfInnerUnion() {
+        Model inner = JenaUtils.createDynamicUnion(createModel(PERSON));
+        Model outer = JenaUtils.createDynamicUnion(inner, createModel(ANIMAL));
+        assertEquals(2, outer.size());
+
+        inner.add(PERSON, RDFS.label, "person");
+
+        assertEquals(3, outer.size());
+        assertTrue(outer.contains(PERSON, RDFS.label, "person"));
+    }
+
+    @Test
+    public void unionCanBeReadConcurrently() throws Exception {
+        Model model1 = createModel();
+        Model model2 = createModel();
+        for (int i = 0; i < 1000; i++) {
+            Resource cls = ResourceFactory.createResource("http://example.org/class-" + i);
+            model1.add(cls, RDF.type, RDFS.Class);
+            if (i % 2 == 0) {
+                model2.add(cls, RDF.type, RDFS.Class);
+                model2.add(cls, RDFS.label, "class " + i);
+            }
+        }
+        Model union = JenaUtils.createDynamicUnion(model1, model2);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Integer>> sizes = new ArrayList<>();
+            List<Future<Integer>> listedSizes = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                sizes.add(executor.submit(() -> (int) union.size()));
+                listedSizes.add(executor.submit(() -> union.listStatements().toList().size()));
+            }
+            for (int i = 0; i < 16; i++) {
+                assertEquals(1500, sizes.get(i).get());
+                assertEquals(1500, listedSizes.get(i).get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void unionCanBeModifiedConcurrently() throws Exception {
+        Model union = JenaUtils.createDynamicUnion(createModel(PERSON), createModel(ANIMAL));
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                final int threadIndex = i;
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < 100; j++) {
+                        union.add(PERSON, RDFS.label, "label " + threadIndex + "-" + j);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(802, union.size());
+        assertEquals(802, union.listStatements().toList().size());
+    }
+
+    private Model createModel(Resource... classes) {
+        Model model = ModelFactory.createDefaultModel();
+        for (Resource cls : classes) {
+            model.add(cls, RDF.type, RDFS.Class);
+        }
+        return model;
+    }
+}
@@ -5,18 +5,117 @@ import cz.cvut.kbss.jopa.model.*;
 import cz.cvut.kbss.ontodriver.jena.config.JenaOntoDriverProperties;
 import org.apache.jena.query.Dataset;
 import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 public class JopaPersistenceUtils {
 
+    // maximal number of idle factories, the least recently released factories are closed first
+    static final int MAX_IDLE_FACTORY_COUNT = 8;
+
+    // idle factories with memory store and disabled second level cache, the least recently released first
+    private static final Deque<IdleFactory> IDLE_FACTORIES = new ArrayDeque<>();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(JopaPersistenceUtils::closeIdleFactories));
+    }
+
     JopaPersistenceUtils(){}
-    
+
+    /**
+     * Returns entity manager over the model, which must be released by
+     * {@link #releaseEntityManager(String, String, EntityManager)}.
+     * <p>
+     * Factories with memory store are pooled, thus the persistence unit is not created for each call.
+     * A factory is used by a single entity manager at a time, as its entity managers share the store,
+     * and its second level cache is disabled, so entities loaded from other models are never returned.
+     * At most {@link #MAX_IDLE_FACTORY_COUNT} idle factories are kept, the least recently released ones
+     * are closed.
+     */
+    public static EntityManager acquireEntityManager(String packageToScan, String language, Model model) {
+        EntityManagerFactory emf = pollIdleFactory(Arrays.asList(packageToScan, language));
+        if (emf == null) {
+            emf = createEntityManagerFactoryWithMemoryStore(packageToScan, language, false);
+        }
+        EntityManager em = emf.createEntityManager();
+        getDataset(em).setDefaultModel(model);
+        return em;
+    }
+
+    /**
+     * Closes the entity manager acquired by {@link #acquireEntityManager(String, String, Model)}
+     * and returns its factory to the pool.
+     */
+    public static void releaseEntityManager(String packageToScan, String language, EntityManager em) {
+        EntityManagerFactory emf = em.getEntityManagerFactory();
+        try {
+            getDataset(em).setDefaultModel(ModelFactory.createDefaultModel());
+        } finally {
+            em.close();
+        }
+        EntityManagerFactory evictedEmf = null;
+        synchronized (IDLE_FACTORIES) {
+            IDLE_FACTORIES.addLast(new IdleFactory(Arrays.asList(packageToScan, language), emf));
+            if (IDLE_FACTORIES.size() > MAX_IDLE_FACTORY_COUNT) {
+                evictedEmf = IDLE_FACTORIES.removeFirst().emf;
+            }
+        }
+        if (evictedEmf != null) {
+            evictedEmf.close();
+        }
+    }
+
+    /**
+     * Closes all idle factories of the pool. Called on shutdown of the JVM.
+     */
+    public static void closeIdleFactories() {
+        List<IdleFactory> idleFactories;
+        synchronized (IDLE_FACTORIES) {
+            idleFactories = new ArrayList<>(IDLE_FACTORIES);
+            IDLE_FACTORIES.clear();
+        }
+        idleFactories.forEach(f -> f.emf.close());
+    }
+
+    /**
+     * Removes the most recently released idle factory with the key from the pool.
+     *
+     * @return the factory or null if there is none
+     */
+    private static EntityManagerFactory pollIdleFactory(List<String> key) {
+        synchronized (IDLE_FACTORIES) {
+            Iterator<IdleFactory> it = IDLE_FACTORIES.descendingIterator();
+            while (it.hasNext()) {
+                IdleFactory idleFactory = it.next();
+                if (idleFactory.key.equals(key)) {
+                    it.remove();
+                    return idleFactory.emf;
+                }
+            }
+        }
+        return null;
+    }
+
     public static EntityManagerFactory createEntityManagerFactoryWithMemoryStore(
         String packageToScan,
         String language
     ) {
+        return createEntityManagerFactoryWithMemoryStore(packageToScan, language, true);
+    }
+
+    private static EntityManagerFactory createEntityManagerFactoryWithMemoryStore(
+        String packageToScan,
+        String language,
+        boolean isCacheEnabled
+    ) {
 
         Map<String, String> persistenceProperties = new HashMap<>();
         persistenceProperties.put(JOPAPersistenceProperties.ONTOLOGY_PHYSICAL_URI_KEY, "local://temporary");
@@ -24,6 +123,7 @@ public class JopaPersistenceUtils {
         persistenceProperties.put(JOPAPersistenceProperties.LANG, language);
         persistenceProperties.put(JOPAPersistenceProperties.SCAN_PACKAGE, packageToScan);
         persistenceProperties.put(PersistenceProperties.JPA_PERSISTENCE_PROVIDER, JOPAPersistenceProvider.class.getName());
+        persistenceProperties.put(JOPAPersistenceProperties.CACHE_ENABLED, Boolean.toString(isCacheEnabled));
 
 
         persistenceProperties.put(JenaOntoDriverProperties.IN_MEMORY, "true");
@@ -48,4 +148,16 @@ public class JopaPersistenceUtils {
         JopaPersistenceUtils.getDataset(em).setDefaultModel(model);
         return em;
     }
-}
\ No newline at end of file
+
+    private static class IdleFactory {
+
+        // package to scan and language of the factory
+        private final List<String> key;
+        private final EntityManagerFactory emf;
+
+        private IdleFactory(List<String> key, EntityManagerFactory emf) {
+            this.key = key;
+            this.emf = emf;
+        }
+    }
+}
@@ -1,7 +1,6 @@
 package cz.cvut.spipes.modules;
 
 import cz.cvut.kbss.jopa.model.EntityManager;
-import cz.cvut.kbss.jopa.model.EntityManagerFactory;
 import cz.cvut.sforms.SFormsVocabularyJena;
 import cz.cvut.sforms.model.Question;
 import cz.cvut.sforms.transformation.SForms2TextTransformer;
@@ -24,6 +23,9 @@ import java.util.function.Predicate;
 /**
  * For input Q&A models constructs textual view of specified questions. Each textual view represent the question
  * and its sub-questions recursively.
+ * <p>
+ * Each execution loads the questions by its own entity manager, whose persistence unit is taken from a pool
+ * (see {@link JopaPersistenceUtils#acquireEntityManager(String, String, Model)}).
  */
 public class ConstructTextualViewModule extends AnnotatedAbstractModule {
 
@@ -63,28 +65,25 @@ public class ConstructTextualViewModule extends AnnotatedAbstractModule {
 
         Model constructedModel = ModelFactory.createDefaultModel();
 
-        EntityManagerFactory emf = JopaPersistenceUtils.createEntityManagerFactoryWithMemoryStore(
-            FormUtils.SFORMS_MODEL_PACKAGE_NAME,
-            language
-        );
-        EntityManager em = emf.createEntityManager();
-
-        JopaPersistenceUtils.getDataset(em).setDefaultModel(inpModel);
-
         TextTransformerConfig cfg = new TextTransformerConfig();
         cfg.setSerializeAnswers(this.isSerializeAnswers);
         cfg.setSerializeUnansweredQuestions(this.isSerializeUnansweredQuestions);
         cfg.setIndentationString(this.indentationString);
         SForms2TextTransformer t = new SForms2TextTransformer();
 
-        for (Resource qR: questions) {
-            Question q = em.find(Question.class, qR.getURI());
-
-            constructedModel.add(
-                qR,
-                SFormsVocabularyJena.s_p_textual_view,
-                t.serialize(q, cfg)
-            );
+        EntityManager em = createEntityManager(inpModel);
+        try {
+            for (Resource qR: questions) {
+                Question q = em.find(Question.class, qR.getURI());
+
+                constructedModel.add(
+                    qR,
+                    SFormsVocabularyJena.s_p_textual_view,
+                    t.serialize(q, cfg)
+                );
+            }
+        } finally {
+            JopaPersistenceUtils.releaseEntityManager(FormUtils.SFORMS_MODEL_PACKAGE_NAME, language, em);
         }
 
         return createOutputContext(isReplace, constructedModel);
@@ -127,6 +126,10 @@ public class ConstructTextualViewModule extends AnnotatedAbstractModule {
         return TYPE_URI;
     }
 
+    EntityManager createEntityManager(Model inputModel) {
+        return JopaPersistenceUtils.acquireEntityManager(FormUtils.SFORMS_MODEL_PACKAGE_NAME, language, inputModel);
+    }
+
     private List<Resource> getQuestions(Model formModel, boolean isProcessNonRootQuestions) {
         Predicate<Resource> isRootQuestion =
             q -> ! formModel.listResourcesWithProperty(
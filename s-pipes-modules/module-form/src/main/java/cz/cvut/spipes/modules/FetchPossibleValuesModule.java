@@ -5,6 +5,7 @@ import cz.cvut.sforms.SFormsVocabularyJena;
 import cz.cvut.spipes.constants.KBSS_MODULE;
 import cz.cvut.spipes.constants.SML;
 import cz.cvut.spipes.engine.ExecutionContext;
+import cz.cvut.spipes.exception.SPipesException;
 import cz.cvut.spipes.form.JenaFormUtils;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
@@ -12,21 +13,37 @@ import org.apache.jena.rdf.model.Resource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Inputs are forms using Q&A model. Possible values of questions are added to questions that does not have
  * any value attached and contains possible value query.
+ * <p>
+ * Possible values of distinct queries are fetched concurrently and they are cached across executions,
+ * see {@link PossibleValuesCache}.
  */
 public class FetchPossibleValuesModule extends AnnotatedAbstractModule {
 
     private static final Logger LOG = LoggerFactory.getLogger(FetchPossibleValuesModule.class);
     private static final String TYPE_URI = KBSS_MODULE.uri + "fetch-possible-values";
+    private static final String TYPE_PREFIX = TYPE_URI + "/";
 
     @Parameter(urlPrefix = SML.uri, name = "replace")
     private boolean isReplace = false;
 
+    /** The maximal number of possible values requests sent at the same time. */
+    @Parameter(urlPrefix = TYPE_PREFIX, name = "max-concurrent-requests")
+    private Integer maxConcurrentRequests = 8;
+
 
     @Override
     ExecutionContext executeSelf() {
@@ -35,29 +52,25 @@ public class FetchPossibleValuesModule extends AnnotatedAbstractModule {
 
         Model constructedModel = ModelFactory.createDefaultModel();
 
-        Map<String, PossibleValuesQueryProcessor> query2possibleValue = new HashMap<>();
+        Map<String, List<Resource>> query2questions = new LinkedHashMap<>();
 
         JenaFormUtils.getQuestions(inpModel)
             .filterKeep(q -> q.hasProperty(SFormsVocabularyJena.s_p_has_possible_values_query))
             .filterKeep(q -> !q.hasProperty(SFormsVocabularyJena.s_p_has_possible_value))
             .forEachRemaining(
-                q -> {
-
-                    String possibleValuesQuery = getPossibleValuesQuery(q);
-                    PossibleValuesQueryProcessor qProcessor = query2possibleValue.get(possibleValuesQuery);
-                    if (qProcessor == null) {
-                        qProcessor = new PossibleValuesQueryProcessor(possibleValuesQuery);
-                        LOG.debug("Retrieved {} new possible values for question {}.",
-                            qProcessor.getPossibleValuesCount(), q.getURI());
-                        query2possibleValue.put(possibleValuesQuery, qProcessor);
-                    } else {
-                        LOG.debug("Using cache of {} possible values for question {}.",
-                            qProcessor.getPossibleValuesCount(), q.getURI());
-                    }
-                    qProcessor.addQuestion(q);
-                }
+                q -> query2questions.computeIfAbsent(getPossibleValuesQuery(q), k -> new LinkedList<>()).add(q)
             );
 
+        Map<String, PossibleValuesQueryProcessor> query2possibleValue = fetchPossibleValues(query2questions.keySet());
+        query2questions.forEach(
+            (possibleValuesQuery, questions) -> {
+                PossibleValuesQueryProcessor qProcessor = query2possibleValue.get(possibleValuesQuery);
+                LOG.debug("Using {} possible values for {} questions.",
+                    qProcessor.getPossibleValuesCount(), questions.size());
+                questions.forEach(qProcessor::addQuestion);
+            }
+        );
+
         query2possibleValue.values().forEach(
             qP -> {
                 constructedModel.add(qP.getPossibleValuesModel());
@@ -72,6 +85,37 @@ public class FetchPossibleValuesModule extends AnnotatedAbstractModule {
         return createOutputContext(isReplace, constructedModel);
     }
 
+    /**
+     * Fetches possible values of the queries concurrently, using at most maxConcurrentRequests threads.
+     */
+    private Map<String, PossibleValuesQueryProcessor> fetchPossibleValues(Collection<String> possibleValuesQueries) {
+        Map<String, PossibleValuesQueryProcessor> query2possibleValue = new HashMap<>();
+        if (possibleValuesQueries.isEmpty()) {
+            return query2possibleValue;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(maxConcurrentRequests, possibleValuesQueries.size()));
+        try {
+            Map<String, Future<PossibleValuesQueryProcessor>> query2future = new LinkedHashMap<>();
+            possibleValuesQueries.forEach(
+                q -> query2future.put(q, executor.submit(() -> new PossibleValuesQueryProcessor(q)))
+            );
+            for (Map.Entry<String, Future<PossibleValuesQueryProcessor>> e : query2future.entrySet()) {
+                query2possibleValue.put(e.getKey(), e.getValue().get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SPipesException("Interrupted while fetching possible values.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new SPipesException("Fetching of possible values failed.", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return query2possibleValue;
+    }
+
     public String getPossibleValuesQuery(Resource question) {
         return question
             .getRequiredProperty(SFormsVocabularyJena.s_p_has_possible_values_query)
@@ -88,6 +132,14 @@ public class FetchPossibleValuesModule extends AnnotatedAbstractModule {
         isReplace = replace;
     }
 
+    public Integer getMaxConcurrentRequests() {
+        return maxConcurrentRequests;
+    }
+
+    public void setMaxConcurrentRequests(Integer maxConcurrentRequests) {
+        this.maxConcurrentRequests = maxConcurrentRequests;
+    }
+
     @Override
     public String getTypeURI() {
         return TYPE_URI;
@@ -0,0 +1,117 @@
+package cz.cvut.spipes.modules;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Size and time bounded cache of possible values shared by all form modules.
+ * <p>
+ * Possible values are cached by their query (URL). Values older than the time to live are revalidated
+ * by a conditional request if the server provided ETag or Last-Modified header, otherwise they are fetched again.
+ * Expired values are still returned if the request fails. Least recently used values are evicted
+ * when the cache is full. The class is thread-safe.
+ */
+class PossibleValuesCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PossibleValuesCache.class);
+
+    private static final int MAX_SIZE = 1000;
+    private static final long TIME_TO_LIVE_MILLIS = 10 * 60 * 1000;
+    private static final PossibleValuesCache INSTANCE = new PossibleValuesCache(new RestTemplate(), MAX_SIZE, TIME_TO_LIVE_MILLIS);
+
+    private final RestTemplate restTemplate;
+    private final int maxSize;
+    private final long timeToLiveMillis;
+    private final Map<String, CachedValues> cache; // guarded by itself
+
+    PossibleValuesCache(RestTemplate restTemplate, int maxSize, long timeToLiveMillis) {
+        this.restTemplate = restTemplate;
+        this.maxSize = maxSize;
+        this.timeToLiveMillis = timeToLiveMillis;
+        this.cache = new LinkedHashMap<String, CachedValues>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedValues> eldest) {
+                return size() > PossibleValuesCache.this.maxSize;
+            }
+        };
+    }
+
+    static PossibleValuesCache get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns possible values retrieved by the query.
+     *
+     * @param possibleValuesQuery URL of the possible values
+     * @return possible values in turtle or null if they could not be retrieved
+     */
+    String getPossibleValues(String possibleValuesQuery) {
+        CachedValues cachedValues;
+        synchronized (cache) {
+            cachedValues = cache.get(possibleValuesQuery);
+        }
+        if (cachedValues != null && !cachedValues.isExpired()) {
+            return cachedValues.content;
+        }
+
+        final HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.ACCEPT, "text/turtle");
+        if (cachedValues != null) {
+            if (cachedValues.eTag != null) {
+                headers.setIfNoneMatch(cachedValues.eTag);
+            }
+            if (cachedValues.lastModified != -1) {
+                headers.setIfModifiedSince(cachedValues.lastModified);
+            }
+        }
+        final HttpEntity<Object> entity = new HttpEntity<>(null, headers);
+        final URI urlWithQuery = URI.create(possibleValuesQuery);
+        try {
+            final ResponseEntity<String> result = restTemplate.exchange(urlWithQuery, HttpMethod.GET, entity,
+                String.class);
+            if (cachedValues != null && result.getStatusCode() == HttpStatus.NOT_MODIFIED) {
+                LOG.debug("Possible values of {} were not modified.", urlWithQuery);
+                cachedValues = new CachedValues(cachedValues.content, cachedValues.eTag, cachedValues.lastModified);
+            } else {
+                cachedValues = new CachedValues(
+                    result.getBody(), result.getHeaders().getETag(), result.getHeaders().getLastModified());
+            }
+        } catch (Exception e) {
+            LOG.error("Error when requesting remote data, url: {}.", urlWithQuery, e);
+            return (cachedValues != null) ? cachedValues.content : null;
+        }
+        synchronized (cache) {
+            cache.put(possibleValuesQuery, cachedValues);
+        }
+        return cachedValues.content;
+    }
+
+    private class CachedValues {
+
+        private final String content;
+        private final String eTag;
+        private final long lastModified;
+        private final long fetchTime = System.currentTimeMillis();
+
+        private CachedValues(String content, String eTag, long lastModified) {
+            this.content = content;
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+        }
+
+        private boolean isExpired() {
+            return System.currentTimeMillis() - fetchTime >= timeToLiveMillis;
+        }
+    }
+}
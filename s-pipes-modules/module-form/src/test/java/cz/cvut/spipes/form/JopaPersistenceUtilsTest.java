@@ -0,0 +1,71 @@
+package cz.cvut.spipes.form;
+
+import cz.cvut.kbss.jopa.model.EntityManager;
+import cz.cvut.kbss.jopa.model.EntityManagerFactory;
+import cz.cvut.sforms.util.FormUtils;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JopaPersistenceUtilsTest {
+
+    private static final String LANGUAGE = "en";
+
+    @BeforeEach
+    void setUp() {
+        JopaPersistenceUtils.closeIdleFactories();
+    }
+
+    @AfterEach
+    void tearDown() {
+        JopaPersistenceUtils.closeIdleFactories();
+    }
+
+    @Test
+    void acquireEntityManagerReusesReleasedFactory() {
+        EntityManager em = acquireEntityManager();
+        EntityManagerFactory emf = em.getEntityManagerFactory();
+        releaseEntityManager(em);
+
+        EntityManager reusedEm = acquireEntityManager();
+
+        assertSame(emf, reusedEm.getEntityManagerFactory());
+        releaseEntityManager(reusedEm);
+    }
+
+    @Test
+    void releaseEntityManagerClosesLeastRecentlyReleasedFactoryOverLimit() {
+        List<EntityManager> entityManagers = new ArrayList<>();
+        for (int i = 0; i <= JopaPersistenceUtils.MAX_IDLE_FACTORY_COUNT; i++) {
+            entityManagers.add(acquireEntityManager());
+        }
+        EntityManagerFactory firstEmf = entityManagers.get(0).getEntityManagerFactory();
+        EntityManagerFactory lastEmf = entityManagers.get(entityManagers.size() - 1).getEntityManagerFactory();
+
+        entityManagers.forEach(this::releaseEntityManager);
+
+        assertFalse(firstEmf.isOpen());
+        assertTrue(lastEmf.isOpen());
+
+        JopaPersistenceUtils.closeIdleFactories();
+
+        assertFalse(lastEmf.isOpen());
+    }
+
+    private EntityManager acquireEntityManager() {
+        return JopaPersistenceUtils.acquireEntityManager(
+            FormUtils.SFORMS_MODEL_PACKAGE_NAME, LANGUAGE, ModelFactory.createDefaultModel());
+    }
+
+    private void releaseEntityManager(EntityManager em) {
+        JopaPersistenceUtils.releaseEntityManager(FormUtils.SFORMS_MODEL_PACKAGE_NAME, LANGUAGE, em);
+    }
+}
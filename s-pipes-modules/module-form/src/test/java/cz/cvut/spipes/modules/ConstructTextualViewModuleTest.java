@@ -1,14 +1,24 @@
 package cz.cvut.spipes.modules;
 
 
+import cz.cvut.kbss.jopa.model.EntityManager;
 import cz.cvut.sforms.SFormsVocabularyJena;
+import cz.cvut.sforms.model.Question;
 import cz.cvut.spipes.engine.ExecutionContext;
 import cz.cvut.spipes.engine.ExecutionContextFactory;
+import cz.cvut.spipes.form.JenaFormUtils;
 import cz.cvut.spipes.test.JenaTestUtils;
 import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.vocabulary.RDFS;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 class ConstructTextualViewModuleTest {
 
@@ -33,11 +43,53 @@ class ConstructTextualViewModuleTest {
         assertEquals(1, outputTexutalViewsCount);
     }
 
+    @Test
+    void executeSelfRepeatedly_attachTextualViewOfCurrentInput() {
+
+        getModuleWithLoadedSampleForm().executeSelf();
+
+        ConstructTextualViewModule module = getModuleWithLoadedSampleForm();
+        Model inputModel = module.getExecutionContext().getDefaultModel();
+        Resource question = inputModel.getResource("http://vfn.cz/ontologies/fss-form/patient-data-q");
+        question.removeAll(RDFS.label);
+        question.addProperty(RDFS.label, "Changed patient's data");
+        Model outputModel = module.executeSelf().getDefaultModel();
+
+        String textualView = outputModel.getRequiredProperty(question, SFormsVocabularyJena.s_p_textual_view).getString();
+        assertTrue(textualView.contains("Changed patient's data"));
+    }
+
+    @Test
+    void executeSelfWithUnsetProcessNonRootQuestion_loadRootQuestionsOnly() {
+        EntityManager[] entityManager = new EntityManager[1];
+        ConstructTextualViewModule module = new ConstructTextualViewModule() {
+            @Override
+            EntityManager createEntityManager(Model inputModel) {
+                entityManager[0] = mock(EntityManager.class, delegatesTo(super.createEntityManager(inputModel)));
+                return entityManager[0];
+            }
+        };
+        setSampleForm(module);
+        module.setProcessNonRootQuestions(false);
+        Model inputModel = module.getExecutionContext().getDefaultModel();
+
+        module.executeSelf();
+
+        JenaFormUtils.getQuestions(inputModel).forEachRemaining(q -> {
+            boolean isRootQuestion = !inputModel.listResourcesWithProperty(SFormsVocabularyJena.s_p_has_related_question, q).hasNext();
+            verify(entityManager[0], times(isRootQuestion ? 1 : 0)).find(Question.class, q.getURI());
+        });
+    }
+
     private ConstructTextualViewModule getModuleWithLoadedSampleForm() {
         ConstructTextualViewModule module = new ConstructTextualViewModule();
+        setSampleForm(module);
+        return module;
+    }
+
+    private void setSampleForm(ConstructTextualViewModule module) {
         Model inputModel = JenaTestUtils.laodModelFromResource("/sample-form.ttl");
         ExecutionContext inputEC = ExecutionContextFactory.createContext(inputModel);
         module.setInputContext(inputEC);
-        return module;
     }
 }
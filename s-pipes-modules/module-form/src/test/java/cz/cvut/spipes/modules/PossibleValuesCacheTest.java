@@ -0,0 +1,95 @@
+package cz.cvut.spipes.modules;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Runs the cache against a local server of possible values that supports conditional requests by ETag.
+ */
+class PossibleValuesCacheTest {
+
+    private static final String ETAG = "\"v1\"";
+    private static final String POSSIBLE_VALUES = "<http://example.org/value-1> <http://www.w3.org/2000/01/rdf-schema#label> \"value 1\" .";
+
+    private HttpServer server;
+    private String url;
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private final AtomicInteger notModifiedCount = new AtomicInteger();
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/possible-values", this::handlePossibleValues);
+        server.start();
+        url = "http://localhost:" + server.getAddress().getPort() + "/possible-values";
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void getPossibleValuesReturnsCachedValuesWithinTimeToLive() {
+        PossibleValuesCache cache = new PossibleValuesCache(new RestTemplate(), 10, 60000);
+
+        assertEquals(POSSIBLE_VALUES, cache.getPossibleValues(url));
+        assertEquals(POSSIBLE_VALUES, cache.getPossibleValues(url));
+
+        assertEquals(1, requestCount.get());
+    }
+
+    @Test
+    void getPossibleValuesRevalidatesExpiredValues() {
+        PossibleValuesCache cache = new PossibleValuesCache(new RestTemplate(), 10, 0);
+
+        assertEquals(POSSIBLE_VALUES, cache.getPossibleValues(url));
+        assertEquals(POSSIBLE_VALUES, cache.getPossibleValues(url));
+
+        assertEquals(2, requestCount.get());
+        assertEquals(1, notModifiedCount.get());
+    }
+
+    @Test
+    void getPossibleValuesEvictsLeastRecentlyUsedValues() {
+        PossibleValuesCache cache = new PossibleValuesCache(new RestTemplate(), 1, 60000);
+
+        cache.getPossibleValues(url + "?q=1");
+        cache.getPossibleValues(url + "?q=2");
+        cache.getPossibleValues(url + "?q=1");
+
+        assertEquals(3, requestCount.get());
+    }
+
+    private void handlePossibleValues(HttpExchange exchange) throws IOException {
+        requestCount.incrementAndGet();
+        try {
+            exchange.getResponseHeaders().set("ETag", ETAG);
+            if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModifiedCount.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+            byte[] response = POSSIBLE_VALUES.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/turtle");
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(response);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+}
@@ -5,18 +5,17 @@ import cz.cvut.spipes.engine.ExecutionContext;
 import cz.cvut.spipes.engine.ExecutionContextFactory;
 import cz.cvut.spipes.sutime.AnnforModel;
 import cz.cvut.spipes.sutime.DescriptorModel;
+import cz.cvut.spipes.sutime.TemporalAnnotator;
 import edu.stanford.nlp.ling.CoreAnnotations;
 import edu.stanford.nlp.ling.CoreLabel;
-import edu.stanford.nlp.pipeline.*;
+import edu.stanford.nlp.pipeline.Annotation;
 import edu.stanford.nlp.time.TimeAnnotations;
-import edu.stanford.nlp.time.TimeAnnotator;
 import edu.stanford.nlp.time.TimeExpression;
 import edu.stanford.nlp.util.CoreMap;
-import java.io.IOException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.stream.Collectors;
 
 import org.apache.jena.rdf.model.*;
 import org.apache.jena.vocabulary.RDF;
@@ -33,9 +32,24 @@ public class SUTimeModule extends AbstractModule {
 
     public static final String TYPE_URI = KBSS_MODULE.getURI() + "temporal-v0.1";
 
+    private static final ThreadLocal<SimpleDateFormat> DATE_FORMAT = ThreadLocal.withInitial(() -> new SimpleDateFormat("yyyy-MM-dd"));
+    private static final int CACHE_SIZE = 10000;
+    private static final TemporalAnnotator ANNOTATOR = new TemporalAnnotator(SUTimeModule::extractDates, CACHE_SIZE);
+
     private List<Path> ruleFilePaths = new LinkedList<>();
     private String documentDate; // TODO support other formats ?
 
+    /**
+     * Whether relative expressions (e.g. "tomorrow") refer to the configured document date.
+     * By default, they refer to the current date even if the document date is configured.
+     */
+    private boolean isAnchoredToDocumentDate;
+
+    /**
+     * Number of threads annotating literals.
+     */
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
 
     public SUTimeModule() {
     }
@@ -48,13 +62,20 @@ public class SUTimeModule extends AbstractModule {
     @Override
     public void loadConfiguration() {
 
+        isAnchoredToDocumentDate = this.getPropertyValue(DescriptorModel.is_anchored_to_document_date, false);
         if (this.resource.getProperty(DescriptorModel.has_document_date) != null) { // TODO set current date if not specified
-            documentDate = getEffectiveValue(DescriptorModel.has_document_date).asLiteral().toString();
+            documentDate = getEffectiveValue(DescriptorModel.has_document_date).asLiteral().getLexicalForm();
+            if (isAnchoredToDocumentDate) {
+                // the date is used only if relative expressions are anchored to it
+                TemporalAnnotator.checkDocumentDate(documentDate);
+            }
         }
 
         if (this.resource.getProperty(DescriptorModel.has_rule_file) != null) { //TODO support more rule files
             ruleFilePaths.add(Paths.get(getEffectiveValue(DescriptorModel.has_rule_file).asLiteral().toString()));
         }
+
+        parallelism = this.getPropertyValue(DescriptorModel.has_parallelism, Runtime.getRuntime().availableProcessors());
     }
 
     @Override
@@ -67,44 +88,33 @@ public class SUTimeModule extends AbstractModule {
 
     private Model analyzeModel(Model m) {
 
-
-
-        AnnotationPipeline pipeline = loadPipeline();
-
-
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-        List<ReifiedStatement> temporalAnnotationStmts = new LinkedList<>();
-        m.listStatements()
+        List<Statement> literalStatements = m.listStatements()
             .filterDrop(st -> !st.getObject().isLiteral())
-            .toList().forEach(
-            st -> {
-                String objectStr = st.getObject().asLiteral().getLexicalForm();
-
-                ReifiedStatement reifiedSt = m.createReifiedStatement(st);
-                try {
-                    ArrayList<AnnforModel> singleStDates = temporalAnalysis(pipeline, objectStr);
-                    for(AnnforModel s:singleStDates){
-
-                        Model  mm = ModelFactory.createDefaultModel();
-
-                        Literal beginLiteral = mm.createTypedLiteral(s.getDateBegin());
-                        Literal endLiteral = mm.createTypedLiteral(s.getDateEnd());
-                        reifiedSt.addProperty(RDF.type, DescriptorModel.sutime_extraction);
+            .toList();
+        List<String> texts = literalStatements.stream()
+            .map(st -> st.getObject().asLiteral().getLexicalForm())
+            .collect(Collectors.toList());
+        List<List<AnnforModel>> textsDates = ANNOTATOR.annotateAll(texts, getDocumentDate(), parallelism);
 
-                        reifiedSt.addProperty(DescriptorModel.extracted, s.getDateExtracted());
-                        reifiedSt.addProperty(DescriptorModel.beginDate, beginLiteral);
-                        reifiedSt.addProperty(DescriptorModel.endDate, endLiteral);
-                        reifiedSt.addProperty(DescriptorModel.type, s.getDateType());
+        List<ReifiedStatement> temporalAnnotationStmts = new LinkedList<>();
+        for (int i = 0; i < literalStatements.size(); i++) {
+            ReifiedStatement reifiedSt = m.createReifiedStatement(literalStatements.get(i));
+            for (AnnforModel s : textsDates.get(i)) {
 
-                        temporalAnnotationStmts.add(reifiedSt);
-                    }
+                Model mm = ModelFactory.createDefaultModel();
 
+                Literal beginLiteral = mm.createTypedLiteral(s.getDateBegin());
+                Literal endLiteral = mm.createTypedLiteral(s.getDateEnd());
+                reifiedSt.addProperty(RDF.type, DescriptorModel.sutime_extraction);
 
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
+                reifiedSt.addProperty(DescriptorModel.extracted, s.getDateExtracted());
+                reifiedSt.addProperty(DescriptorModel.beginDate, beginLiteral);
+                reifiedSt.addProperty(DescriptorModel.endDate, endLiteral);
+                reifiedSt.addProperty(DescriptorModel.type, s.getDateType());
 
-            });
+                temporalAnnotationStmts.add(reifiedSt);
+            }
+        }
 
         Model outputModel = ModelFactory.createDefaultModel();
         temporalAnnotationStmts.forEach(
@@ -115,14 +125,24 @@ public class SUTimeModule extends AbstractModule {
 
     }
 
-    private ArrayList<AnnforModel> temporalAnalysis(AnnotationPipeline pipeline, String s) throws IOException {
+    /**
+     * @return configured document date if relative expressions are anchored to it, otherwise the current date
+     */
+    private String getDocumentDate() {
+        return (isAnchoredToDocumentDate && documentDate != null) ? documentDate : DATE_FORMAT.get().format(new Date());
+    }
 
-        Calendar cal = Calendar.getInstance();
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd");
-        Annotation annotation = new Annotation(s);
-        annotation.set(CoreAnnotations.DocDateAnnotation.class, sdf.format(cal.getTime()));
-        pipeline.annotate(annotation);
+    public int getParallelism() {
+        return parallelism;
+    }
 
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    private static List<AnnforModel> extractDates(Annotation annotation) {
+
+        SimpleDateFormat sdf = DATE_FORMAT.get();
         ArrayList<AnnforModel> afmArr = new ArrayList<>();
 
         List<CoreMap> timexAnnsAll = annotation.get(TimeAnnotations.TimexAnnotations.class);
@@ -174,7 +194,9 @@ public class SUTimeModule extends AbstractModule {
                         LOG.info("catched in parse exception " + e.getMessage());
                     }
                     afmArr = new ArrayList<>();
-                    afmArr.add(afm);
+                    if (afm != null) {
+                        afmArr.add(afm);
+                    }
                 }
             }
         }
@@ -183,18 +205,6 @@ public class SUTimeModule extends AbstractModule {
 
     }
 
-    private AnnotationPipeline loadPipeline() {
-        Properties props = new Properties();
-        props.setProperty("sutime.includeRange", "true");
-        props.setProperty("sutime.rules", "sutime/defs.txt, sutime/defs.sutime.txt, sutime/english.holidays.sutime.txt, sutime/english.sutime.txt");
-        AnnotationPipeline pipeline = new AnnotationPipeline();
-        pipeline.addAnnotator(new TokenizerAnnotator(false));
-        pipeline.addAnnotator(new WordsToSentencesAnnotator(false));
-        pipeline.addAnnotator(new POSTaggerAnnotator(false));
-        pipeline.addAnnotator(new TimeAnnotator("sutime", props));
-        return pipeline;
-    }
-
 
 
 
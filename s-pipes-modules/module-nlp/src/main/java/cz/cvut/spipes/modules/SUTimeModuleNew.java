@@ -5,13 +5,14 @@ import cz.cvut.spipes.constants.SML;
 import cz.cvut.spipes.engine.ExecutionContext;
 import cz.cvut.spipes.sutime.AnnforModel;
 import cz.cvut.spipes.sutime.DescriptorModel;
+import cz.cvut.spipes.sutime.TemporalAnnotator;
 import cz.cvut.spipes.util.JenaUtils;
+import cz.cvut.spipes.util.QueryCache;
 import cz.cvut.spipes.util.QueryUtils;
 import edu.stanford.nlp.ling.CoreAnnotations;
 import edu.stanford.nlp.ling.CoreLabel;
-import edu.stanford.nlp.pipeline.*;
+import edu.stanford.nlp.pipeline.Annotation;
 import edu.stanford.nlp.time.TimeAnnotations;
-import edu.stanford.nlp.time.TimeAnnotator;
 import edu.stanford.nlp.time.TimeExpression;
 import edu.stanford.nlp.util.CoreMap;
 import org.apache.jena.query.Query;
@@ -21,16 +22,15 @@ import org.apache.jena.rdf.model.*;
 import org.apache.jena.vocabulary.RDF;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.topbraid.spin.arq.ARQFactory;
 import org.topbraid.spin.model.Construct;
 import org.topbraid.spin.vocabulary.SP;
 
-import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.stream.Collectors;
 
 
 public class SUTimeModuleNew extends AbstractModule {
@@ -42,7 +42,14 @@ public class SUTimeModuleNew extends AbstractModule {
     private static final int DEFAULT_PAGE_SIZE = 10000;
     private static final String LIMIT_OFFSET_CLAUSE_MARKER_NAME = "LIMIT_OFFSET";
     private static final Property P_PAGE_SIZE = ResourceFactory.createProperty(TYPE_PREFIX + "page-size");
+    private static final ThreadLocal<SimpleDateFormat> DATE_FORMAT = ThreadLocal.withInitial(() -> new SimpleDateFormat("yyyy-MM-dd"));
+    private static final int CACHE_SIZE = 10000;
+    private static final TemporalAnnotator ANNOTATOR = new TemporalAnnotator(SUTimeModuleNew::extractDates, CACHE_SIZE);
     private Integer pageSize = DEFAULT_PAGE_SIZE;
+    /**
+     * Number of threads annotating literals of one page.
+     */
+    private int parallelism = Runtime.getRuntime().availableProcessors();
     private List<Resource> constructQueries;
     //sml:replace
     private boolean isReplace;
@@ -54,10 +61,14 @@ public class SUTimeModuleNew extends AbstractModule {
     private boolean parseText;
     private List<Path> ruleFilePaths = new LinkedList<>();
     private String documentDate; // TODO support other formats ?
-    private AnnotationPipeline pipeline;
+
+    /**
+     * Whether relative expressions (e.g. "tomorrow") refer to the configured document date.
+     * By default, they refer to the current date even if the document date is configured.
+     */
+    private boolean isAnchoredToDocumentDate;
 
     public SUTimeModuleNew() {
-        pipeline = loadPipeline();
     }
 
     @Override
@@ -73,10 +84,23 @@ public class SUTimeModuleNew extends AbstractModule {
         this.pageSize = pageSize;
     }
 
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
     @Override
     public void loadConfiguration() {
+        isAnchoredToDocumentDate = this.getPropertyValue(DescriptorModel.is_anchored_to_document_date, false);
         if (this.resource.getProperty(DescriptorModel.has_document_date) != null) { // TODO set current date if not specified
-            documentDate = getEffectiveValue(DescriptorModel.has_document_date).asLiteral().toString();
+            documentDate = getEffectiveValue(DescriptorModel.has_document_date).asLiteral().getLexicalForm();
+            if (isAnchoredToDocumentDate) {
+                // the date is used only if relative expressions are anchored to it
+                TemporalAnnotator.checkDocumentDate(documentDate);
+            }
         }
 
         if (this.resource.getProperty(DescriptorModel.has_rule_file) != null) { //TODO support more rule files
@@ -84,6 +108,7 @@ public class SUTimeModuleNew extends AbstractModule {
         }
         parseText = this.getPropertyValue(KBSS_MODULE.is_parse_text, true);
         pageSize = this.getPropertyValue(P_PAGE_SIZE, DEFAULT_PAGE_SIZE);
+        parallelism = this.getPropertyValue(DescriptorModel.has_parallelism, Runtime.getRuntime().availableProcessors());
         constructQueries = getResourcesByProperty(SML.constructQuery);
 
         isReplace = this.getPropertyValue(SML.replace, false);
@@ -116,9 +141,10 @@ public class SUTimeModuleNew extends AbstractModule {
                 Query query;
                 if (parseText) {
                     String queryStr = spinConstructRes.getProperty(SP.text).getLiteral().getString();
+                    // text with substituted markers differs in each iteration, thus it is not cached
                     query = QueryFactory.create(substituteQueryMarkers(count, queryStr));
                 } else {
-                    query = ARQFactory.get().createQuery(spinConstructRes);
+                    query = QueryCache.get().getQuery(spinConstructRes);
                 }
 
                 Model queriedModel = QueryUtils.execConstruct(
@@ -147,41 +173,38 @@ public class SUTimeModuleNew extends AbstractModule {
 
         LOG.debug("Extracting temporal information from model of size {}", m.size());
         SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
-        List<ReifiedStatement> temporalAnnotationStmts = new LinkedList<>();
-        m.listStatements()
+        List<Statement> literalStatements = m.listStatements()
             .filterDrop(st -> !st.getObject().isLiteral())
-            .forEachRemaining(
-                st -> {
-                    String objectStr = st.getObject().asLiteral().getLexicalForm();
-
-                    try {
-                        ArrayList<AnnforModel> singleStDates = temporalAnalysis(pipeline, objectStr);
-
-                        if (!singleStDates.isEmpty()) {
-                            Model mm = ModelFactory.createDefaultModel();
-                            ReifiedStatement reifiedSt = mm.createReifiedStatement(st);
+            .toList();
+        List<String> texts = literalStatements.stream()
+            .map(st -> st.getObject().asLiteral().getLexicalForm())
+            .collect(Collectors.toList());
+        List<List<AnnforModel>> textsDates = ANNOTATOR.annotateAll(texts, getDocumentDate(), parallelism);
 
-                            for (AnnforModel s : singleStDates) {
+        List<ReifiedStatement> temporalAnnotationStmts = new LinkedList<>();
+        for (int i = 0; i < literalStatements.size(); i++) {
+            List<AnnforModel> singleStDates = textsDates.get(i);
 
-                                Literal beginLiteral = mm.createTypedLiteral(sdf.format(s.getDateBegin().getTime()));
-                                Literal endLiteral = mm.createTypedLiteral(sdf.format(s.getDateEnd().getTime()));
-                                reifiedSt.addProperty(RDF.type, DescriptorModel.sutime_extraction);
+            if (!singleStDates.isEmpty()) {
+                Model mm = ModelFactory.createDefaultModel();
+                ReifiedStatement reifiedSt = mm.createReifiedStatement(literalStatements.get(i));
 
-                                reifiedSt.addProperty(DescriptorModel.extracted, s.getDateExtracted());
-                                reifiedSt.addProperty(DescriptorModel.beginDate, beginLiteral);
-                                reifiedSt.addProperty(DescriptorModel.endDate, endLiteral);
-                                reifiedSt.addProperty(DescriptorModel.type, s.getDateType());
+                for (AnnforModel s : singleStDates) {
 
-                                temporalAnnotationStmts.add(reifiedSt);
-                            }
+                    Literal beginLiteral = mm.createTypedLiteral(sdf.format(s.getDateBegin().getTime()));
+                    Literal endLiteral = mm.createTypedLiteral(sdf.format(s.getDateEnd().getTime()));
+                    reifiedSt.addProperty(RDF.type, DescriptorModel.sutime_extraction);
 
-                        }
+                    reifiedSt.addProperty(DescriptorModel.extracted, s.getDateExtracted());
+                    reifiedSt.addProperty(DescriptorModel.beginDate, beginLiteral);
+                    reifiedSt.addProperty(DescriptorModel.endDate, endLiteral);
+                    reifiedSt.addProperty(DescriptorModel.type, s.getDateType());
 
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    }
+                    temporalAnnotationStmts.add(reifiedSt);
+                }
 
-                });
+            }
+        }
 
         Model outputModel = ModelFactory.createDefaultModel();
         temporalAnnotationStmts.forEach(
@@ -189,17 +212,18 @@ public class SUTimeModuleNew extends AbstractModule {
         );
         return outputModel;
 
-
     }
 
-    private ArrayList<AnnforModel> temporalAnalysis(AnnotationPipeline pipeline, String s) throws IOException {
+    /**
+     * @return configured document date if relative expressions are anchored to it, otherwise the current date
+     */
+    private String getDocumentDate() {
+        return (isAnchoredToDocumentDate && documentDate != null) ? documentDate : DATE_FORMAT.get().format(new Date());
+    }
 
-        Calendar cal = Calendar.getInstance();
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd");
-        Annotation annotation = new Annotation(s);
-        annotation.set(CoreAnnotations.DocDateAnnotation.class, sdf.format(cal.getTime()));
-        pipeline.annotate(annotation);
+    private static List<AnnforModel> extractDates(Annotation annotation) {
 
+        SimpleDateFormat sdf = DATE_FORMAT.get();
         ArrayList<AnnforModel> afmArr = new ArrayList<>();
 
         List<CoreMap> timexAnnsAll = annotation.get(TimeAnnotations.TimexAnnotations.class);
@@ -253,7 +277,9 @@ public class SUTimeModuleNew extends AbstractModule {
                         LOG.info("catched in parse exception " + e.getMessage());
                     }
                     afmArr = new ArrayList<>();
-                    afmArr.add(afm);
+                    if (afm != null) {
+                        afmArr.add(afm);
+                    }
                 }
             }
         }
@@ -262,18 +288,6 @@ public class SUTimeModuleNew extends AbstractModule {
 
     }
 
-    private AnnotationPipeline loadPipeline() {
-        Properties props = new Properties();
-        props.setProperty("sutime.includeRange", "true");
-        props.setProperty("sutime.rules", "sutime/defs.txt, sutime/defs.sutime.txt, sutime/english.holidays.sutime.txt, sutime/english.sutime.txt");
-        AnnotationPipeline pipeline = new AnnotationPipeline();
-        pipeline.addAnnotator(new TokenizerAnnotator(false));
-        pipeline.addAnnotator(new WordsToSentencesAnnotator(false));
-        pipeline.addAnnotator(new POSTaggerAnnotator(false));
-        pipeline.addAnnotator(new TimeAnnotator("sutime", props));
-        return pipeline;
-    }
-
     private String substituteQueryMarkers(int currentIteration, String queryStr) {
         int offset = pageSize * (currentIteration - 1);
 
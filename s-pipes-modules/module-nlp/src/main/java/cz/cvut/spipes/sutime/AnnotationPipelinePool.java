@@ -0,0 +1,111 @@
+package cz.cvut.spipes.sutime;
+
+import cz.cvut.spipes.exception.SPipesException;
+import edu.stanford.nlp.pipeline.Annotation;
+import edu.stanford.nlp.pipeline.AnnotationPipeline;
+import edu.stanford.nlp.pipeline.POSTaggerAnnotator;
+import edu.stanford.nlp.pipeline.TokenizerAnnotator;
+import edu.stanford.nlp.pipeline.WordsToSentencesAnnotator;
+import edu.stanford.nlp.time.TimeAnnotator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Pool of SUTime annotation pipelines shared by all modules.
+ * <p>
+ * A pipeline is expensive to create (it loads the tagger model and the rules) and it must not be used
+ * by more threads at the same time. Thus, pipelines are created lazily, at most one per available processor,
+ * and each annotation borrows one of them.
+ */
+public class AnnotationPipelinePool {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AnnotationPipelinePool.class);
+
+    private static final AnnotationPipelinePool INSTANCE = new AnnotationPipelinePool(Runtime.getRuntime().availableProcessors());
+
+    private final int maxSize;
+    private final BlockingQueue<AnnotationPipeline> idlePipelines = new LinkedBlockingQueue<>();
+    private int createdCount; // guarded by this
+
+    AnnotationPipelinePool(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public static AnnotationPipelinePool get() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return maximal number of pipelines, i.e. of annotations running at the same time
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Annotates the annotation by one of the pipelines, waiting until a pipeline is available.
+     */
+    public void annotate(Annotation annotation) {
+        AnnotationPipeline pipeline = borrowPipeline();
+        try {
+            pipeline.annotate(annotation);
+        } finally {
+            idlePipelines.add(pipeline);
+        }
+    }
+
+    private AnnotationPipeline borrowPipeline() {
+        AnnotationPipeline pipeline = idlePipelines.poll();
+        if (pipeline != null) {
+            return pipeline;
+        }
+        if (reservePipeline()) {
+            return createPipelineOrRelease();
+        }
+        try {
+            return idlePipelines.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SPipesException("Interrupted while waiting for annotation pipeline.", e);
+        }
+    }
+
+    /**
+     * @return true if a new pipeline can be created
+     */
+    private synchronized boolean reservePipeline() {
+        if (createdCount >= maxSize) {
+            return false;
+        }
+        createdCount++;
+        return true;
+    }
+
+    private AnnotationPipeline createPipelineOrRelease() {
+        try {
+            LOG.debug("Creating annotation pipeline.");
+            return createPipeline();
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                createdCount--;
+            }
+            throw e;
+        }
+    }
+
+    static AnnotationPipeline createPipeline() {
+        Properties props = new Properties();
+        props.setProperty("sutime.includeRange", "true");
+        props.setProperty("sutime.rules", "sutime/defs.txt, sutime/defs.sutime.txt, sutime/english.holidays.sutime.txt, sutime/english.sutime.txt");
+        AnnotationPipeline pipeline = new AnnotationPipeline();
+        pipeline.addAnnotator(new TokenizerAnnotator(false));
+        pipeline.addAnnotator(new WordsToSentencesAnnotator(false));
+        pipeline.addAnnotator(new POSTaggerAnnotator(false));
+        pipeline.addAnnotator(new TimeAnnotator("sutime", props));
+        return pipeline;
+    }
+}
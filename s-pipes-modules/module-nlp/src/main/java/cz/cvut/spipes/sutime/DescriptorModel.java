@@ -20,7 +20,9 @@ public class DescriptorModel {
     public static final Resource sutime_extraction = resource("sutime-extraction");
 
     public static final Property has_document_date = property("has-document-date");
+    public static final Property is_anchored_to_document_date = property("is-anchored-to-document-date");
     public static final Property has_rule_file = property("has-rule-file");
+    public static final Property has_parallelism = property("has-parallelism");
 
     public static final Property beginDate = property("beginDate");
     public static final Property endDate = property("endDate");
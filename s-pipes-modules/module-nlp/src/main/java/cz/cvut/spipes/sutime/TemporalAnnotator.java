@@ -0,0 +1,130 @@
+package cz.cvut.spipes.sutime;
+
+import cz.cvut.spipes.exception.SPipesException;
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.pipeline.Annotation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Extracts temporal information from texts using pipelines of {@link AnnotationPipelinePool}.
+ * <p>
+ * Extracted information is cached by the text and the document date, since the same texts (e.g. dates
+ * in a column of a table) typically repeat many times. Least recently used entries are evicted when the cache
+ * is full. Returned lists are shared and must not be modified. The class is thread-safe.
+ */
+public class TemporalAnnotator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TemporalAnnotator.class);
+
+    private final Function<Annotation, List<AnnforModel>> extractor;
+    private final int maxCacheSize;
+    private final Map<Map.Entry<String, String>, List<AnnforModel>> cache;
+
+    /**
+     * @param extractor    extracts information from the annotated text
+     * @param maxCacheSize maximal number of cached texts, 0 disables the cache
+     */
+    public TemporalAnnotator(Function<Annotation, List<AnnforModel>> extractor, int maxCacheSize) {
+        this.extractor = extractor;
+        this.maxCacheSize = maxCacheSize;
+        this.cache = new LinkedHashMap<Map.Entry<String, String>, List<AnnforModel>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Map.Entry<String, String>, List<AnnforModel>> eldest) {
+                return size() > TemporalAnnotator.this.maxCacheSize;
+            }
+        };
+    }
+
+    /**
+     * Checks that the document date is in format yyyy-MM-dd required by the annotation.
+     *
+     * @param documentDate date to be checked
+     * @return the checked date
+     * @throws SPipesException if the date is not in the required format
+     */
+    public static String checkDocumentDate(String documentDate) {
+        try {
+            LocalDate.parse(documentDate, DateTimeFormatter.ISO_LOCAL_DATE);
+        } catch (DateTimeParseException e) {
+            throw new SPipesException("Document date \"" + documentDate + "\" is not in format yyyy-MM-dd.", e);
+        }
+        return documentDate;
+    }
+
+    /**
+     * Extracts temporal information from the text.
+     *
+     * @param text         text to be annotated
+     * @param documentDate date in format yyyy-MM-dd that relative expressions refer to
+     */
+    public List<AnnforModel> annotate(String text, String documentDate) {
+        Map.Entry<String, String> key = new AbstractMap.SimpleImmutableEntry<>(text, documentDate);
+        synchronized (cache) {
+            List<AnnforModel> cachedResult = cache.get(key);
+            if (cachedResult != null) {
+                return cachedResult;
+            }
+        }
+        Annotation annotation = new Annotation(text);
+        annotation.set(CoreAnnotations.DocDateAnnotation.class, documentDate);
+        AnnotationPipelinePool.get().annotate(annotation);
+        List<AnnforModel> result = extractor.apply(annotation);
+        if (maxCacheSize > 0) {
+            synchronized (cache) {
+                cache.put(key, result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Extracts temporal information from the texts using the given number of threads.
+     * The number of threads is limited by the number of pipelines of {@link AnnotationPipelinePool},
+     * as additional threads would only wait for them.
+     *
+     * @return extracted information in the order of the texts
+     */
+    public List<List<AnnforModel>> annotateAll(List<String> texts, String documentDate, int parallelism) {
+        List<List<AnnforModel>> results = new ArrayList<>(texts.size());
+        int threadCount = Math.min(parallelism, AnnotationPipelinePool.get().getMaxSize());
+        if (threadCount <= 1) {
+            texts.forEach(text -> results.add(annotate(text, documentDate)));
+            return results;
+        }
+        LOG.debug("Annotating {} texts using {} threads.", texts.size(), threadCount);
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            List<Future<List<AnnforModel>>> futures = new ArrayList<>(texts.size());
+            texts.forEach(text -> futures.add(executor.submit(() -> annotate(text, documentDate))));
+            for (Future<List<AnnforModel>> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SPipesException("Interrupted while annotating texts.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new SPipesException("Annotation of texts failed.", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return results;
+    }
+}
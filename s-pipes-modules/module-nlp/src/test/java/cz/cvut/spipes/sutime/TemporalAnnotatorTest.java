@@ -0,0 +1,112 @@
+package cz.cvut.spipes.sutime;
+
+import cz.cvut.spipes.exception.SPipesException;
+import edu.stanford.nlp.pipeline.Annotation;
+import edu.stanford.nlp.time.TimeAnnotations;
+import edu.stanford.nlp.time.TimeExpression;
+import edu.stanford.nlp.util.CoreMap;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TemporalAnnotatorTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TemporalAnnotatorTest.class);
+
+    private static final String DOCUMENT_DATE = "2016-10-10";
+    private static final String[] TEXTS = {
+        "I should be in school tomorrow by 9 o'clock.",
+        "The contract was signed on 12 March 2015.",
+        "No date in this text.",
+        "The meeting takes place next Friday.",
+        "It happened in 2008."
+    };
+
+    @Test
+    public void annotateAllReturnsSameResultsAsSequentialAnnotation() {
+        List<String> texts = createTexts(20);
+
+        List<List<String>> sequentialResults = toExtractedTexts(
+            new TemporalAnnotator(TemporalAnnotatorTest::extractTexts, 0).annotateAll(texts, DOCUMENT_DATE, 1));
+        List<List<String>> parallelResults = toExtractedTexts(
+            new TemporalAnnotator(TemporalAnnotatorTest::extractTexts, 0).annotateAll(texts, DOCUMENT_DATE, 4));
+
+        assertEquals(sequentialResults, parallelResults);
+        assertFalse(sequentialResults.get(1).isEmpty());
+    }
+
+    @Test
+    public void annotateReturnsCachedResultForSameTextAndDocumentDate() {
+        TemporalAnnotator annotator = new TemporalAnnotator(TemporalAnnotatorTest::extractTexts, 10);
+
+        List<AnnforModel> result = annotator.annotate(TEXTS[1], DOCUMENT_DATE);
+
+        assertSame(result, annotator.annotate(TEXTS[1], DOCUMENT_DATE));
+        assertNotSame(result, annotator.annotate(TEXTS[1], "2017-01-01"));
+    }
+
+    @Test
+    public void checkDocumentDateRejectsOtherFormats() {
+        assertEquals(DOCUMENT_DATE, TemporalAnnotator.checkDocumentDate(DOCUMENT_DATE));
+        assertThrows(SPipesException.class, () -> TemporalAnnotator.checkDocumentDate(DOCUMENT_DATE + "^^xsd:date"));
+        assertThrows(SPipesException.class, () -> TemporalAnnotator.checkDocumentDate("10.10.2016"));
+    }
+
+    /**
+     * Measures throughput for thread counts up to the number of pipelines of the pool,
+     * more threads are not used by the annotator. Run by Maven profile benchmark only.
+     */
+    @Tag("benchmark")
+    @Test
+    public void benchmarkAnnotateAll() {
+        List<String> texts = createTexts(400);
+        int maxThreadCount = AnnotationPipelinePool.get().getMaxSize();
+        // warm up, i.e. create pipelines of the pool
+        new TemporalAnnotator(TemporalAnnotatorTest::extractTexts, 0)
+            .annotateAll(texts.subList(0, 40), DOCUMENT_DATE, maxThreadCount);
+
+        for (int threadCount = 1; threadCount <= maxThreadCount; threadCount *= 2) {
+            TemporalAnnotator annotator = new TemporalAnnotator(TemporalAnnotatorTest::extractTexts, 0);
+            long startTime = System.nanoTime();
+            annotator.annotateAll(texts, DOCUMENT_DATE, threadCount);
+            double seconds = (System.nanoTime() - startTime) / 1e9;
+            LOG.info("Annotated {} literals using {} threads: {} literals/s.",
+                texts.size(), threadCount, String.format("%.1f", texts.size() / seconds));
+        }
+    }
+
+    private static List<String> createTexts(int count) {
+        List<String> texts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            texts.add(TEXTS[i % TEXTS.length]);
+        }
+        return texts;
+    }
+
+    private static List<AnnforModel> extractTexts(Annotation annotation) {
+        List<AnnforModel> result = new ArrayList<>();
+        for (CoreMap cm : annotation.get(TimeAnnotations.TimexAnnotations.class)) {
+            String type = cm.get(TimeExpression.Annotation.class).getTemporal().getTimexType().toString();
+            result.add(new AnnforModel(new GregorianCalendar(), new GregorianCalendar(), type, cm.toString()));
+        }
+        return result;
+    }
+
+    private static List<List<String>> toExtractedTexts(List<List<AnnforModel>> results) {
+        return results.stream()
+            .map(r -> r.stream().map(AnnforModel::getDateExtracted).collect(Collectors.toList()))
+            .collect(Collectors.toList());
+    }
+}
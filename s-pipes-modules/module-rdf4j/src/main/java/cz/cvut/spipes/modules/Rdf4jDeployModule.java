@@ -4,9 +4,9 @@ import cz.cvut.spipes.constants.KBSS_MODULE;
 import cz.cvut.spipes.engine.ExecutionContext;
 import cz.cvut.spipes.engine.ExecutionContextFactory;
 import cz.cvut.spipes.util.CoreConfigProperies;
+import cz.cvut.spipes.util.Rdf4jUtils;
 import org.apache.jena.rdf.model.Property;
 import org.apache.jena.rdf.model.ResourceFactory;
-import org.apache.jena.riot.RDFLanguages;
 import org.eclipse.rdf4j.model.Resource;
 import org.eclipse.rdf4j.repository.Repository;
 import org.eclipse.rdf4j.repository.RepositoryConnection;
@@ -17,16 +17,11 @@ import org.eclipse.rdf4j.repository.manager.RemoteRepositoryManager;
 import org.eclipse.rdf4j.repository.manager.RepositoryManager;
 import org.eclipse.rdf4j.repository.manager.RepositoryProvider;
 import org.eclipse.rdf4j.repository.sail.config.SailRepositoryConfig;
-import org.eclipse.rdf4j.rio.RDFFormat;
-import org.eclipse.rdf4j.rio.RDFParseException;
 import org.eclipse.rdf4j.sail.nativerdf.config.NativeStoreConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
-import java.io.IOException;
-import java.io.StringReader;
-import java.io.StringWriter;
 import java.util.Optional;
 
 /**
@@ -75,6 +70,13 @@ public class Rdf4jDeployModule extends AbstractModule {
     static final Property P_IS_REPLACE_CONTEXT_IRI = getParameter("p-is-replace");
     private boolean isReplaceContext;
 
+    /**
+     * Number of statements sent to the repository at once. Default is 10000.
+     */
+    static final Property P_RDF4J_BATCH_SIZE = getParameter("p-rdf4j-batch-size");
+    private static final int DEFAULT_BATCH_SIZE = 10000;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
     public String getRdf4jServerURL() {
         return rdf4jServerURL;
     }
@@ -99,6 +101,14 @@ public class Rdf4jDeployModule extends AbstractModule {
         this.rdf4jContextIRI = rdf4jContextIRI;
     }
 
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
     public boolean isReplaceContext() {
         return isReplaceContext;
     }
@@ -147,12 +157,13 @@ public class Rdf4jDeployModule extends AbstractModule {
                 connection.clear( rdf4jContextIRIResource );
             }
 
-            StringWriter w = new StringWriter();
-            executionContext.getDefaultModel().write(w, RDFLanguages.NTRIPLES.getName());
-
-            connection.add(new StringReader(w.getBuffer().toString()), "", RDFFormat.N3, rdf4jContextIRIResource);
+            if (rdf4jContextIRIResource == null) {
+                Rdf4jUtils.addModel(connection, executionContext.getDefaultModel(), batchSize);
+            } else {
+                Rdf4jUtils.addModel(connection, executionContext.getDefaultModel(), batchSize, rdf4jContextIRIResource);
+            }
             connection.commit();
-        } catch (final RepositoryException | RDFParseException | RepositoryConfigException | IOException e) {
+        } catch (final RepositoryException | RepositoryConfigException e) {
             LOG.error(e.getMessage(),e);
         } finally {
             try {
@@ -188,6 +199,7 @@ public class Rdf4jDeployModule extends AbstractModule {
             rdf4jContextIRI = getEffectiveValue(P_RDF4J_CONTEXT_IRI).asLiteral().getString();
         }
         isReplaceContext = this.getPropertyValue(P_IS_REPLACE_CONTEXT_IRI, false);
+        batchSize = this.getPropertyValue(P_RDF4J_BATCH_SIZE, DEFAULT_BATCH_SIZE);
         rdf4jSecuredUsernameVariable = Optional.ofNullable(
             getEffectiveValue(P_RDF4J_REPOSITORY_USERNAME)).map(n -> n.asLiteral().getString()
         ).orElse(null);
@@ -1,15 +1,60 @@
 package cz.cvut.spipes.impl;
 
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.query.QueryExecution;
 import org.apache.jena.query.QueryExecutionFactory;
+import org.apache.jena.query.ResultSet;
 import org.apache.jena.rdf.model.Model;
+import org.apache.jena.riot.out.NodeFmtLib;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+
+/**
+ * Downloads a graph from a SPARQL endpoint page by page.
+ * <p>
+ * Pages are selected either by LIMIT/OFFSET, or by keyset pagination (see {@link #setKeysetPagination(boolean)}),
+ * which pages through subjects ordered by their IRI and does not slow down with deep offsets.
+ * Up to {@link #getParallelism()} pages are fetched concurrently, failed queries are retried with an exponential
+ * backoff. Pages are always processed in their order by {@link #processPartialModel(Model)}.
+ * <p>
+ * If the checkpoint file is set, progress is saved to the file after each processed page and the next execution
+ * resumes after the last processed page. The file is deleted once the download is finished.
+ * <p>
+ * Pages selected by LIMIT/OFFSET are ordered by ORDER BY ?s ?p ?o whenever they are fetched concurrently
+ * or checkpointed, as the endpoint does not have to return the same order of triples to each query otherwise.
+ * The order requires the endpoint to sort the graph for each page, so keyset pagination is preferred for large graphs.
+ */
 public abstract class GraphChunkedDownload {
-    
+
     private static final Logger LOG = LoggerFactory.getLogger(GraphChunkedDownload.class);
 
     private static final int DEFAULT_PAGE_SIZE = 10000;
+    private static final int DEFAULT_MAX_RETRIES = 3;
+    private static final long DEFAULT_RETRY_DELAY_MILLIS = 1000;
+
+    private static final String CHECKPOINT_PAGINATION = "pagination";
+    private static final String CHECKPOINT_OFFSET = "offset";
+    private static final String CHECKPOINT_LAST_KEY = "lastKey";
+    private static final String OFFSET_PAGINATION = "offset";
+    private static final String KEYSET_PAGINATION = "keyset";
 
     private String endpointUrl;
 
@@ -17,6 +62,16 @@ public abstract class GraphChunkedDownload {
 
     private Integer pageSize = DEFAULT_PAGE_SIZE;
 
+    private boolean isKeysetPagination;
+
+    private int parallelism = 1;
+
+    private int maxRetries = DEFAULT_MAX_RETRIES;
+
+    private long retryDelayMillis = DEFAULT_RETRY_DELAY_MILLIS;
+
+    private Path checkpointFile;
+
     public GraphChunkedDownload() {
     }
 
@@ -28,27 +83,183 @@ public abstract class GraphChunkedDownload {
         this.endpointUrl = endpointUrl;
         this.namedGraphId = namedGrapheId;
         this.pageSize = pageSize;
-                 
+
     }
 
     public void execute() {
+        Properties checkpoint = loadCheckpoint();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        try {
+            if (isKeysetPagination) {
+                executeWithKeys(executor, checkpoint);
+            } else {
+                executeWithOffsets(executor, checkpoint);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        deleteCheckpoint();
+    }
+
+    private void executeWithOffsets(ExecutorService executor, Properties checkpoint) {
         long offset = 0;
+        if (checkpoint != null) {
+            offset = Long.parseLong(checkpoint.getProperty(CHECKPOINT_OFFSET));
+            LOG.info("Resuming download of (<{}>,<{}>) from offset {}.", endpointUrl, namedGraphId, offset);
+        }
+        executeOffsetPages(executor, offset, this::prepareQuery, o -> createProgress(OFFSET_PAGINATION, null, o));
+    }
+
+    private void executeWithKeys(ExecutorService executor, Properties checkpoint) {
+        String lastKey = null;
+        long blankNodeOffset = -1;
+        if (checkpoint != null) {
+            lastKey = checkpoint.getProperty(CHECKPOINT_LAST_KEY);
+            if (checkpoint.getProperty(CHECKPOINT_OFFSET) != null) {
+                blankNodeOffset = Long.parseLong(checkpoint.getProperty(CHECKPOINT_OFFSET));
+            }
+            LOG.info("Resuming download of (<{}>,<{}>) after subject <{}>.", endpointUrl, namedGraphId, lastKey);
+        }
+        if (blankNodeOffset < 0) {
+            SubjectPages subjectPages = new SubjectPages(executor, lastKey);
+            subjectPages.execute();
+            lastKey = subjectPages.lastKey;
+            blankNodeOffset = 0;
+        }
+        final String subjectsLastKey = lastKey;
+        executeOffsetPages(executor, blankNodeOffset, this::prepareBlankNodeQuery,
+            o -> createProgress(KEYSET_PAGINATION, subjectsLastKey, o));
+    }
+
+    /**
+     * Fetches pages selected by offsets until an empty page is returned.
+     */
+    private void executeOffsetPages(ExecutorService executor,
+                                    long offset,
+                                    LongFunction<String> queryFactory,
+                                    LongFunction<Properties> progressFactory) {
+        Deque<Page> pendingPages = new ArrayDeque<>();
         while (true) {
-            LOG.debug("Executing query for offset: {}", offset);
-            String query = prepareQuery(offset);
-            Model model = executeQuery(query);
+            while (pendingPages.size() < parallelism) {
+                LOG.debug("Executing query for offset: {}", offset);
+                String query = queryFactory.apply(offset);
+                offset += getPageSize();
+                pendingPages.add(new Page(executor.submit(() -> executeQueryWithRetry(query)), progressFactory.apply(offset)));
+            }
+            Page page = pendingPages.poll();
+            Model model = page.getModel();
             if (model.isEmpty()) {
                 break;
             } else {
                 processPartialModel(model);
             }
-            offset += getPageSize();
+            saveCheckpoint(page.progress);
+        }
+    }
+
+    private static Properties createProgress(String pagination, String lastKey, Long offset) {
+        Properties progress = new Properties();
+        progress.setProperty(CHECKPOINT_PAGINATION, pagination);
+        if (lastKey != null) {
+            progress.setProperty(CHECKPOINT_LAST_KEY, lastKey);
+        }
+        if (offset != null) {
+            progress.setProperty(CHECKPOINT_OFFSET, Long.toString(offset));
         }
+        return progress;
     }
-    
+
+    /**
+     * Reads IRIs of subjects by a single ordered key query and fetches triples of each
+     * {@link #getPageSize()} subjects as a page while the following keys are being read.
+     */
+    private class SubjectPages implements Consumer<String> {
+
+        private final ExecutorService executor;
+        private final Deque<Page> pendingPages = new ArrayDeque<>();
+        private List<String> pageKeys = new ArrayList<>();
+        /** Last key that was read, i.e. the key query is resumed after it if it fails. */
+        private String lastKey;
+
+        private SubjectPages(ExecutorService executor, String lastKey) {
+            this.executor = executor;
+            this.lastKey = lastKey;
+        }
+
+        private void execute() {
+            for (int attempt = 0; ; attempt++) {
+                try {
+                    executeKeyQuery(prepareKeyQuery(lastKey), this);
+                    break;
+                } catch (PageProcessingException e) {
+                    throw e.getCause();
+                } catch (RuntimeException e) {
+                    waitBeforeRetry(attempt, e);
+                }
+            }
+            submitPage();
+            while (!pendingPages.isEmpty()) {
+                processPage(pendingPages.poll());
+            }
+        }
+
+        @Override
+        public void accept(String key) {
+            pageKeys.add(key);
+            lastKey = key;
+            if (pageKeys.size() < getPageSize()) {
+                return;
+            }
+            try {
+                submitPage();
+                if (pendingPages.size() >= parallelism) {
+                    processPage(pendingPages.poll());
+                }
+            } catch (RuntimeException e) {
+                throw new PageProcessingException(e);
+            }
+        }
+
+        private void submitPage() {
+            if (pageKeys.isEmpty()) {
+                return;
+            }
+            List<String> keys = pageKeys;
+            pageKeys = new ArrayList<>();
+            String endKey = keys.get(keys.size() - 1);
+            LOG.debug("Executing query for {} subjects up to <{}>", keys.size(), endKey);
+            String query = prepareKeysetQuery(keys);
+            pendingPages.add(new Page(executor.submit(() -> executeQueryWithRetry(query)),
+                createProgress(KEYSET_PAGINATION, endKey, null)));
+        }
+
+        private void processPage(Page page) {
+            Model model = page.getModel();
+            if (!model.isEmpty()) {
+                processPartialModel(model);
+            }
+            saveCheckpoint(page.progress);
+        }
+    }
+
+    /**
+     * Failure of a page while keys are being read, which must not be retried as failure of the key query.
+     */
+    private static class PageProcessingException extends RuntimeException {
+
+        private PageProcessingException(RuntimeException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized RuntimeException getCause() {
+            return (RuntimeException) super.getCause();
+        }
+    }
+
     /**
      * Method called whenever partial model is constructed.
-     * @param partialModel 
+     * @param partialModel
      */
     protected abstract void processPartialModel(Model partialModel);
 
@@ -61,6 +272,88 @@ public abstract class GraphChunkedDownload {
         return QueryExecutionFactory.sparqlService(endpointUrl, query).execConstruct();
     }
 
+    /**
+     * Implementation specific. Results should be streamed, as all subjects of the graph are returned.
+     * @param query select query returning variable ?key
+     * @param keyConsumer consumer of values of the variable ?key in order of the results
+     */
+    protected void executeKeyQuery(String query, Consumer<String> keyConsumer) {
+        try (QueryExecution execution = QueryExecutionFactory.sparqlService(endpointUrl, query)) {
+            ResultSet resultSet = execution.execSelect();
+            while (resultSet.hasNext()) {
+                keyConsumer.accept(resultSet.next().getLiteral("key").getString());
+            }
+        }
+    }
+
+    private Model executeQueryWithRetry(String query) {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return executeQuery(query);
+            } catch (RuntimeException e) {
+                waitBeforeRetry(attempt, e);
+            }
+        }
+    }
+
+    private void waitBeforeRetry(int attempt, RuntimeException e) {
+        if (attempt >= maxRetries) {
+            throw e;
+        }
+        long delay = retryDelayMillis << attempt;
+        LOG.warn("Query to {} failed ({}), retrying in {} ms.", endpointUrl, e.getMessage(), delay);
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw e;
+        }
+    }
+
+    private Properties loadCheckpoint() {
+        if (checkpointFile == null || !Files.exists(checkpointFile)) {
+            return null;
+        }
+        Properties checkpoint = new Properties();
+        try (InputStream is = Files.newInputStream(checkpointFile)) {
+            checkpoint.load(is);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not read checkpoint file " + checkpointFile + ".", e);
+        }
+        String pagination = isKeysetPagination ? KEYSET_PAGINATION : OFFSET_PAGINATION;
+        if (!pagination.equals(checkpoint.getProperty(CHECKPOINT_PAGINATION))) {
+            LOG.warn("Ignoring checkpoint file {} created with different pagination.", checkpointFile);
+            return null;
+        }
+        return checkpoint;
+    }
+
+    private void saveCheckpoint(Properties progress) {
+        if (checkpointFile == null || progress == null) {
+            return;
+        }
+        try {
+            Path tmpFile = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+            try (OutputStream os = Files.newOutputStream(tmpFile)) {
+                progress.store(os, "Download of (<" + endpointUrl + ">,<" + namedGraphId + ">)");
+            }
+            Files.move(tmpFile, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not save checkpoint file " + checkpointFile + ".", e);
+        }
+    }
+
+    private void deleteCheckpoint() {
+        if (checkpointFile == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(checkpointFile);
+        } catch (IOException e) {
+            LOG.warn("Could not delete checkpoint file {}.", checkpointFile, e);
+        }
+    }
+
     public String getNamedGraphId() {
         return namedGraphId;
     }
@@ -86,6 +379,57 @@ public abstract class GraphChunkedDownload {
         this.pageSize = pageSize;
     }
 
+    public boolean isKeysetPagination() {
+        return isKeysetPagination;
+    }
+
+    /**
+     * Sets keyset pagination, in which a page contains all triples of {@link #getPageSize()} subjects
+     * that follow the last subject of the previous page in the order of their IRIs, i.e. the page size
+     * is number of subjects instead of number of triples.
+     * <p>
+     * IRIs of the subjects are read by a single query ordered by the IRIs, pages then select triples
+     * of the subjects by the IRIs, so each page costs the same regardless of its position. Triples with blank node
+     * subjects, which cannot be identified across queries, are downloaded afterwards by LIMIT/OFFSET pages
+     * of {@link #getPageSize()} triples ordered by ORDER BY ?s ?p ?o. Triples of a blank node are thus split
+     * only if they are at the boundary of two pages.
+     */
+    public void setKeysetPagination(boolean isKeysetPagination) {
+        this.isKeysetPagination = isKeysetPagination;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    public long getRetryDelayMillis() {
+        return retryDelayMillis;
+    }
+
+    public void setRetryDelayMillis(long retryDelayMillis) {
+        this.retryDelayMillis = retryDelayMillis;
+    }
+
+    public Path getCheckpointFile() {
+        return checkpointFile;
+    }
+
+    public void setCheckpointFile(Path checkpointFile) {
+        this.checkpointFile = checkpointFile;
+    }
+
     /**
      * Implementation specific.
      * @return
@@ -112,7 +456,90 @@ public abstract class GraphChunkedDownload {
             getOuterConstruct() + "\n } WHERE { {" +
             getInnerSelect() +
             "\n} }" +
+            (isOrderedOffsetPagination() ? "\nORDER BY ?s ?p ?o" : "") +
+            "\nLIMIT " + Integer.toString(this.getPageSize()) +
+            "\nOFFSET " + Long.toString(offset);
+    }
+
+    /**
+     * @return true if offset pages must be ordered, i.e. they are fetched concurrently or checkpointed
+     */
+    private boolean isOrderedOffsetPagination() {
+        return parallelism > 1 || checkpointFile != null;
+    }
+
+    /**
+     * Implementation specific.
+     * @param lastKey IRI of the last subject that was already read, null to read all subjects
+     * @return query selecting ordered IRIs of subjects following the last key
+     */
+    protected String prepareKeyQuery(String lastKey) {
+        return "SELECT DISTINCT ?key WHERE { {" +
+            getInnerSelect() +
+            "\n} FILTER(isIRI(?s)" + (lastKey != null ? " && STR(?s) > " + toLiteral(lastKey) : "") + ")" +
+            "\nBIND(STR(?s) AS ?key) }" +
+            "\nORDER BY ?key";
+    }
+
+    /**
+     * Implementation specific.
+     * @param keys IRIs of subjects of the page
+     * @return query constructing triples of the subjects
+     */
+    protected String prepareKeysetQuery(List<String> keys) {
+        StringBuilder values = new StringBuilder();
+        keys.forEach(k -> values.append(' ').append(NodeFmtLib.str(NodeFactory.createURI(k))));
+        return "CONSTRUCT {\n" +
+            getOuterConstruct() + "\n } WHERE { {" +
+            getInnerSelect() +
+            "\n}\nVALUES ?s {" + values + " } }";
+    }
+
+    /**
+     * Implementation specific.
+     * @param offset number of triples with blank node subjects downloaded by previous pages
+     * @return query constructing the next page of triples with blank node subjects
+     */
+    protected String prepareBlankNodeQuery(long offset) {
+        return "CONSTRUCT {\n" +
+            getOuterConstruct() + "\n } WHERE { {" +
+            getInnerSelect() +
+            "\n} FILTER(isBlank(?s)) }" +
+            "\nORDER BY ?s ?p ?o" +
             "\nLIMIT " + Integer.toString(this.getPageSize()) +
             "\nOFFSET " + Long.toString(offset);
     }
+
+    private static String toLiteral(String value) {
+        return NodeFmtLib.str(NodeFactory.createLiteral(value));
+    }
+
+    private static class Page {
+
+        private final Future<Model> model;
+
+        /**
+         * Progress to checkpoint once the page is processed.
+         */
+        private final Properties progress;
+
+        private Page(Future<Model> model, Properties progress) {
+            this.model = model;
+            this.progress = progress;
+        }
+
+        private Model getModel() {
+            try {
+                return model.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while downloading a page.", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new RuntimeException("Download of a page failed.", e.getCause());
+            }
+        }
+    }
 }
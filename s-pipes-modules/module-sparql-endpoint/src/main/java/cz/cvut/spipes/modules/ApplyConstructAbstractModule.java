@@ -3,7 +3,9 @@ package cz.cvut.spipes.modules;
 import cz.cvut.spipes.constants.KBSS_MODULE;
 import cz.cvut.spipes.constants.SML;
 import cz.cvut.spipes.engine.ExecutionContext;
+import cz.cvut.spipes.util.IncrementalConstructQuery;
 import cz.cvut.spipes.util.JenaUtils;
+import cz.cvut.spipes.util.QueryCache;
 import cz.cvut.spipes.util.QueryUtils;
 import org.apache.jena.query.Query;
 import org.apache.jena.query.QueryFactory;
@@ -13,12 +15,12 @@ import org.apache.jena.rdf.model.ModelFactory;
 import org.apache.jena.rdf.model.Resource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.topbraid.spin.arq.ARQFactory;
 import org.topbraid.spin.model.Construct;
 import org.topbraid.spin.system.SPINModuleRegistry;
 import org.topbraid.spin.vocabulary.SP;
 
 import java.util.List;
+import java.util.stream.Collectors;
 
 public abstract class ApplyConstructAbstractModule extends AnnotatedAbstractModule {
 
@@ -51,6 +53,18 @@ public abstract class ApplyConstructAbstractModule extends AnnotatedAbstractModu
      */
     protected int iterationCount = -1;
 
+    //kbss:isSkipUnaffectedQueries
+    /**
+     * Whether queries unaffected by the previous iteration should be skipped, i.e. in each iteration only queries
+     * whose triple patterns use a predicate of a triple inferred in previous iteration are evaluated again.
+     * Queries with monotonic WHERE clause are evaluated again semi-naively, i.e. only for solutions that use
+     * a triple inferred in previous iteration, see {@link IncrementalConstructQuery}. Other queries are evaluated
+     * against the whole model. The iteration stops as soon as no new triple is inferred.
+     * Applies only to modules that do not change queries between iterations,
+     * see {@link #isSkippingUnaffectedQueriesSupported()}.
+     */
+    protected boolean isSkipUnaffectedQueries;
+
 
     public ApplyConstructAbstractModule() {
         // TODO move elsewhere
@@ -90,6 +104,23 @@ public abstract class ApplyConstructAbstractModule extends AnnotatedAbstractModu
     }
 
 
+    public boolean isSkipUnaffectedQueries() {
+        return isSkipUnaffectedQueries;
+    }
+
+    public void setSkipUnaffectedQueries(boolean skipUnaffectedQueries) {
+        isSkipUnaffectedQueries = skipUnaffectedQueries;
+    }
+
+    /**
+     * Skipping of unaffected queries is sound only if queries and their bindings are the same in all iterations.
+     * Modules overriding {@link #generateIterationBinding} or {@link #substituteQueryMarkers}
+     * to change them should return false.
+     */
+    protected boolean isSkippingUnaffectedQueriesSupported() {
+        return true;
+    }
+
     protected QuerySolution generateIterationBinding(int currentIteration, QuerySolution globalBinding) {
         return globalBinding;
     }
@@ -116,6 +147,13 @@ public abstract class ApplyConstructAbstractModule extends AnnotatedAbstractModu
 
         QuerySolution bindings = executionContext.getVariablesBinding().asQuerySolution();
 
+        if (isSkipUnaffectedQueries) {
+            if (isSkippingUnaffectedQueriesSupported()) {
+                return createOutputContext(isReplace, inferSkippingUnaffectedQueries(defaultModel, bindings));
+            }
+            LOG.warn("Skipping of unaffected queries is not supported by module {}, evaluating all queries.", getLabel());
+        }
+
         int count = 0;
 
         Model inferredModel = ModelFactory.createDefaultModel();
@@ -132,17 +170,10 @@ public abstract class ApplyConstructAbstractModule extends AnnotatedAbstractModu
                 for (Resource constructQueryRes : constructQueries) {
                     Construct spinConstructRes = constructQueryRes.as(Construct.class);
 
-                    Query query;
-                    if (parseText) {
-                        String queryStr = spinConstructRes.getProperty(SP.text).getLiteral().getString();
-                        query = QueryFactory.create(substituteQueryMarkers(count, queryStr));
-                    } else {
-                        query = ARQFactory.get().createQuery(spinConstructRes);
-                    }
-
-                    Model constructedModel = QueryUtils.execConstruct(
-                        query,
-                        JenaUtils.createUnion(defaultModel, inferredModel),
+                    Model constructedModel = executeConstructQuery(
+                        count,
+                        spinConstructRes,
+                        JenaUtils.createDynamicUnion(defaultModel, inferredModel),
                         currentIterationBindings
                     );
 
@@ -157,6 +188,75 @@ public abstract class ApplyConstructAbstractModule extends AnnotatedAbstractModu
         return createOutputContext(isReplace, inferredModel);
     }
 
+    private Model inferSkippingUnaffectedQueries(Model defaultModel, QuerySolution bindings) {
+
+        List<IncrementalConstructQuery> queries = constructQueries.stream()
+            .map(r -> createQuery(1, r.as(Construct.class)))
+            .map(IncrementalConstructQuery::new)
+            .collect(Collectors.toList());
+
+        Model inferredModel = ModelFactory.createDefaultModel();
+        Model deltaModel = null;
+
+        int count = 0;
+
+        if (iterationCount != 0) {
+            while (++count != iterationCount) {
+
+                Model extendedInferredModel = JenaUtils.createDynamicUnion(defaultModel, inferredModel);
+                Model inferredInSingleIterationModel = ModelFactory.createDefaultModel();
+                Model newDeltaModel = ModelFactory.createDefaultModel();
+
+                for (int i = 0; i < queries.size(); i++) {
+
+                    if (!queries.get(i).isAffectedBy(deltaModel)) {
+                        LOG.trace("Skipping query {} in iteration {} as it is not affected by previous iteration.", i + 1, count);
+                        continue;
+                    }
+
+                    Model constructedModel = queries.get(i).execConstruct(extendedInferredModel, deltaModel, bindings);
+
+                    constructedModel.listStatements()
+                        .filterDrop(extendedInferredModel::contains)
+                        .forEachRemaining(newDeltaModel::add);
+                    inferredInSingleIterationModel.add(constructedModel);
+                }
+
+                LOG.debug("Iteration {} inferred {} new triples.", count, newDeltaModel.size());
+
+                inferredModel.add(inferredInSingleIterationModel);
+
+                if (newDeltaModel.isEmpty()) {
+                    break;
+                }
+                deltaModel = newDeltaModel;
+            }
+        }
+
+        return inferredModel;
+    }
+
+    /**
+     * Creates query of the current iteration and executes it.
+     */
+    protected Model executeConstructQuery(int currentIteration, Construct spinConstructRes, Model model, QuerySolution bindings) {
+        Query query = createQuery(currentIteration, spinConstructRes);
+        return QueryUtils.execConstruct(query, model, bindings);
+    }
+
+    protected Query createQuery(int currentIteration, Construct spinConstructRes) {
+        if (parseText) {
+            String queryStr = spinConstructRes.getProperty(SP.text).getLiteral().getString();
+            String substitutedQueryStr = substituteQueryMarkers(currentIteration, queryStr);
+            if (!substitutedQueryStr.equals(queryStr)) {
+                // text with substituted markers differs in each iteration, caching it would only evict other queries
+                return QueryFactory.create(substitutedQueryStr);
+            }
+            return QueryCache.get().getQuery(queryStr);
+        }
+        return QueryCache.get().getQuery(spinConstructRes);
+    }
+
     protected String substituteQueryMarkers(int currentIteration, String queryStr) {
         return queryStr;
     }
@@ -177,6 +277,7 @@ public abstract class ApplyConstructAbstractModule extends AnnotatedAbstractModu
 
         parseText = this.getPropertyValue(KBSS_MODULE.is_parse_text, false);
         iterationCount = this.getPropertyValue(KBSS_MODULE.has_max_iteration_count, -1);
+        isSkipUnaffectedQueries = this.getPropertyValue(KBSS_MODULE.is_skip_unaffected_queries, false);
     }
 
 
@@ -97,6 +97,11 @@ public class ApplyConstructWithChunkedValuesAndScrollableCursorModule extends Ap
     }
 
 
+    @Override
+    protected boolean isSkippingUnaffectedQueriesSupported() {
+        return false;
+    }
+
     @Override
     protected String substituteQueryMarkers(int currentIteration, String queryStr) {
 
@@ -3,7 +3,10 @@ package cz.cvut.spipes.modules;
 import cz.cvut.spipes.constants.KBSS_MODULE;
 import cz.cvut.spipes.constants.SML;
 import cz.cvut.spipes.engine.VariablesBinding;
+import cz.cvut.spipes.recursion.AdaptiveChunkSizeController;
 import cz.cvut.spipes.util.QueryUtils;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 import org.apache.jena.query.Query;
 import org.apache.jena.query.QueryExecution;
@@ -17,9 +20,16 @@ import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.topbraid.spin.arq.ARQFactory;
+import org.topbraid.spin.model.Construct;
 import org.topbraid.spin.model.Select;
 
 /**
+ * Executes construct queries for chunks of values returned by the select query,
+ * values of each chunk are substituted in place of the marker #${VALUES}.
+ * <p>
+ * The chunk size is either fixed, or adapted to the measured time of execution of the chunks
+ * within the configured bounds (see {@link AdaptiveChunkSizeController}).
+ * <p>
  * TODO Order of queries is not enforced.
  */
 public class ApplyConstructWithChunkedValuesModule extends ApplyConstructAbstractModule {
@@ -29,15 +39,46 @@ public class ApplyConstructWithChunkedValuesModule extends ApplyConstructAbstrac
     private static final String TYPE_URI = KBSS_MODULE.uri + "apply-construct-with-chunked-values";
     private static final String TYPE_PREFIX = TYPE_URI + "/";
     private static final int DEFAULT_CHUNK_SIZE = 10;
+    private static final int DEFAULT_MIN_CHUNK_SIZE = 1;
+    private static final int DEFAULT_MAX_CHUNK_SIZE = 10000;
+    private static final int DEFAULT_TARGET_CHUNK_LATENCY = 1000;
     private static final String VALUES_CLAUSE_MARKER_NAME = "VALUES";
     private static final Property P_CHUNK_SIZE = ResourceFactory.createProperty(TYPE_PREFIX + "chunk-size");
+    private static final Property P_IS_ADAPTIVE_CHUNK_SIZE = ResourceFactory.createProperty(TYPE_PREFIX + "is-adaptive-chunk-size");
+    private static final Property P_MIN_CHUNK_SIZE = ResourceFactory.createProperty(TYPE_PREFIX + "min-chunk-size");
+    private static final Property P_MAX_CHUNK_SIZE = ResourceFactory.createProperty(TYPE_PREFIX + "max-chunk-size");
+    private static final Property P_TARGET_CHUNK_LATENCY = ResourceFactory.createProperty(TYPE_PREFIX + "target-chunk-latency");
 
     private Integer chunkSize = DEFAULT_CHUNK_SIZE;
     private Select selectQuery;
 
+    /**
+     * Whether the chunk size is adapted to the time of execution of the chunks, starting with {@link #chunkSize}.
+     * Failed chunks are retried with smaller chunk size.
+     */
+    private boolean isAdaptiveChunkSize;
+    private int minChunkSize = DEFAULT_MIN_CHUNK_SIZE;
+    private int maxChunkSize = DEFAULT_MAX_CHUNK_SIZE;
+
+    /**
+     * Requested time of execution of a chunk in milliseconds.
+     */
+    private int targetChunkLatency = DEFAULT_TARGET_CHUNK_LATENCY;
 
     private ResultSet selectResultSet;
 
+    private AdaptiveChunkSizeController chunkSizeController;
+
+    /**
+     * Values fetched from the result set that were not processed yet, starting with values of the current chunk.
+     */
+    private final List<QuerySolution> pendingValues = new ArrayList<>();
+
+    /**
+     * Number of values in the current chunk.
+     */
+    private int currentChunkSize;
+
     @Override
     public String getTypeURI() {
         return TYPE_URI;
@@ -51,6 +92,38 @@ public class ApplyConstructWithChunkedValuesModule extends ApplyConstructAbstrac
         this.chunkSize = chunkSize;
     }
 
+    public boolean isAdaptiveChunkSize() {
+        return isAdaptiveChunkSize;
+    }
+
+    public void setAdaptiveChunkSize(boolean adaptiveChunkSize) {
+        isAdaptiveChunkSize = adaptiveChunkSize;
+    }
+
+    public int getMinChunkSize() {
+        return minChunkSize;
+    }
+
+    public void setMinChunkSize(int minChunkSize) {
+        this.minChunkSize = minChunkSize;
+    }
+
+    public int getMaxChunkSize() {
+        return maxChunkSize;
+    }
+
+    public void setMaxChunkSize(int maxChunkSize) {
+        this.maxChunkSize = maxChunkSize;
+    }
+
+    public int getTargetChunkLatency() {
+        return targetChunkLatency;
+    }
+
+    public void setTargetChunkLatency(int targetChunkLatency) {
+        this.targetChunkLatency = targetChunkLatency;
+    }
+
     public Select getSelectQuery() {
         return selectQuery;
     }
@@ -69,6 +142,10 @@ public class ApplyConstructWithChunkedValuesModule extends ApplyConstructAbstrac
         LOG.debug("Executing query of chunk provider ...");
 
         selectResultSet = execution.execSelect();
+        pendingValues.clear();
+        chunkSizeController = isAdaptiveChunkSize
+            ? new AdaptiveChunkSizeController(chunkSize, minChunkSize, maxChunkSize, targetChunkLatency)
+            : null;
 
         VariablesBinding variablesBinding = new VariablesBinding();
 
@@ -90,7 +167,7 @@ public class ApplyConstructWithChunkedValuesModule extends ApplyConstructAbstrac
             return true;
         }
 
-        if (! getCurrentResultSetInstance().hasNext()) {
+        if (pendingValues.isEmpty() && ! getCurrentResultSetInstance().hasNext()) {
             return true;
         }
 
@@ -98,10 +175,44 @@ public class ApplyConstructWithChunkedValuesModule extends ApplyConstructAbstrac
     }
 
 
+    @Override
+    protected boolean isSkippingUnaffectedQueriesSupported() {
+        return false;
+    }
+
+    @Override
+    protected Model executeConstructQuery(int currentIteration, Construct spinConstructRes, Model model, QuerySolution bindings) {
+        while (true) {
+            long startTime = System.currentTimeMillis();
+            try {
+                Model constructedModel = super.executeConstructQuery(currentIteration, spinConstructRes, model, bindings);
+                if (chunkSizeController != null) {
+                    chunkSizeController.recordSuccess(currentChunkSize, System.currentTimeMillis() - startTime);
+                }
+                pendingValues.subList(0, currentChunkSize).clear();
+                return constructedModel;
+            } catch (RuntimeException e) {
+                if (chunkSizeController == null || !chunkSizeController.canShrink()) {
+                    throw e;
+                }
+                // values of the failed chunk stay pending and are split to smaller chunks
+                chunkSizeController.recordFailure(currentChunkSize);
+            }
+        }
+    }
+
     @Override
     protected String substituteQueryMarkers(int currentIteration, String queryStr) {
 
-        String markerValue = QueryUtils.nextResultsToValuesClause(getCurrentResultSetInstance(), chunkSize);
+        ResultSet resultSet = getCurrentResultSetInstance();
+        int nextChunkSize = (chunkSizeController != null) ? chunkSizeController.getChunkSize() : chunkSize;
+        while (pendingValues.size() < nextChunkSize && resultSet.hasNext()) {
+            pendingValues.add(resultSet.next());
+        }
+        currentChunkSize = Math.min(nextChunkSize, pendingValues.size());
+
+        String markerValue = QueryUtils.toValuesClause(
+            resultSet.getResultVars(), pendingValues.subList(0, currentChunkSize));
 
         LOG.debug("Creating query with values clause: \n{}.", markerValue );
 
@@ -119,6 +230,10 @@ public class ApplyConstructWithChunkedValuesModule extends ApplyConstructAbstrac
         parseText = this.getPropertyValue(KBSS_MODULE.is_parse_text, true);
         chunkSize = this.getPropertyValue(P_CHUNK_SIZE, DEFAULT_CHUNK_SIZE);
         selectQuery = getPropertyValue(SML.selectQuery).asResource().as(Select.class);
+        isAdaptiveChunkSize = this.getPropertyValue(P_IS_ADAPTIVE_CHUNK_SIZE, false);
+        minChunkSize = this.getPropertyValue(P_MIN_CHUNK_SIZE, DEFAULT_MIN_CHUNK_SIZE);
+        maxChunkSize = this.getPropertyValue(P_MAX_CHUNK_SIZE, DEFAULT_MAX_CHUNK_SIZE);
+        targetChunkLatency = this.getPropertyValue(P_TARGET_CHUNK_LATENCY, DEFAULT_TARGET_CHUNK_LATENCY);
     }
 
     @NotNull
@@ -1,14 +1,42 @@
 package cz.cvut.spipes.modules;
 
 import cz.cvut.spipes.constants.KBSS_MODULE;
+import cz.cvut.spipes.engine.ExecutionContext;
+import cz.cvut.spipes.recursion.ScrollableCursorProvider;
 import cz.cvut.spipes.util.QueryUtils;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.query.Query;
+import org.apache.jena.query.QuerySolution;
 import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
 import org.apache.jena.rdf.model.Property;
 import org.apache.jena.rdf.model.ResourceFactory;
+import org.apache.jena.sparql.engine.binding.Binding;
+import org.apache.jena.sparql.modify.TemplateLib;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.topbraid.spin.model.Construct;
+import org.topbraid.spin.vocabulary.SP;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
+ * Executes construct queries page by page, LIMIT and OFFSET of each page are substituted in place
+ * of the marker #${LIMIT_OFFSET}.
+ * <p>
+ * If the marker is placed in the top-level query, rows of each page are counted and the iteration
+ * terminates right after a page shorter than the page size. Otherwise, it terminates after an empty page.
+ * <p>
+ * Optionally, next pages can be prefetched concurrently while the current page is processed,
+ * see {@link #prefetchPageCount}.
+ * <p>
  * TODO Order of queries is not enforced.
  */
 public class ApplyConstructWithScrollableCursorModule extends ApplyConstructAbstractModule {
@@ -18,11 +46,25 @@ public class ApplyConstructWithScrollableCursorModule extends ApplyConstructAbst
     private static final String TYPE_URI = KBSS_MODULE.uri + "apply-construct-with-scrollable-cursor";
     private static final String TYPE_PREFIX = TYPE_URI + "/";
     private static final int DEFAULT_PAGE_SIZE = 10000;
-    private static final String LIMIT_OFFSET_CLAUSE_MARKER_NAME = "LIMIT_OFFSET";
     private static final Property P_PAGE_SIZE = ResourceFactory.createProperty(TYPE_PREFIX + "page-size");
+    private static final Property P_PREFETCH_PAGE_COUNT = ResourceFactory.createProperty(TYPE_PREFIX + "prefetch-page-count");
 
     private Integer pageSize = DEFAULT_PAGE_SIZE;
 
+    /**
+     * Number of pages following the current page that are executed concurrently.
+     * Prefetched pages are queried over triples inferred before they were started,
+     * thus prefetching should be used only if queries do not depend on results of previous pages,
+     * e.g. if they page through results of a remote endpoint.
+     */
+    private int prefetchPageCount = 0;
+
+    private ScrollableCursorProvider cursorProvider;
+
+    private ExecutorService prefetchExecutor;
+
+    private final Map<String, Future<Page>> prefetchedPages = new HashMap<>();
+
     @Override
     public String getTypeURI() {
         return TYPE_URI;
@@ -36,7 +78,30 @@ public class ApplyConstructWithScrollableCursorModule extends ApplyConstructAbst
         this.pageSize = pageSize;
     }
 
+    public int getPrefetchPageCount() {
+        return prefetchPageCount;
+    }
+
+    public void setPrefetchPageCount(int prefetchPageCount) {
+        this.prefetchPageCount = prefetchPageCount;
+    }
 
+    @Override
+    public ExecutionContext executeSelf() {
+        cursorProvider = new ScrollableCursorProvider(pageSize, iterationCount);
+        if (prefetchPageCount > 0) {
+            prefetchExecutor = Executors.newFixedThreadPool(prefetchPageCount + 1);
+        }
+        try {
+            return super.executeSelf();
+        } finally {
+            if (prefetchExecutor != null) {
+                prefetchExecutor.shutdownNow();
+                prefetchExecutor = null;
+            }
+            prefetchedPages.clear();
+        }
+    }
 
     @Override
     protected boolean shouldTerminate(int currentIteration, Model previousInferredModel, Model currentInferredModel) {
@@ -45,29 +110,95 @@ public class ApplyConstructWithScrollableCursorModule extends ApplyConstructAbst
             throw new IllegalArgumentException("Construct queries with SPIN notations [parseText=false] are not supported as they do not support additions of comments.");
         }
 
-        if (currentIteration == iterationCount) {
-            return true;
-        }
-
-        if ((currentIteration > 1) && (previousInferredModel.size() == currentInferredModel.size())) {
-            return true;
-        }
+        return cursorProvider.shouldTerminate(currentIteration, previousInferredModel, currentInferredModel);
+    }
 
+    @Override
+    protected boolean isSkippingUnaffectedQueriesSupported() {
         return false;
     }
 
     @Override
     protected String substituteQueryMarkers(int currentIteration, String queryStr) {
-        int offset = pageSize * (currentIteration - 1);
+        return cursorProvider.substituteQueryMarkers(currentIteration, queryStr);
+    }
+
+    @Override
+    protected Model executeConstructQuery(int currentIteration, Construct spinConstructRes, Model model, QuerySolution bindings) {
+        Page page;
+        if (prefetchExecutor == null) {
+            page = executePage(currentIteration, spinConstructRes, model, bindings);
+        } else {
+            int lastIteration = currentIteration + prefetchPageCount;
+            if (iterationCount >= 0) {
+                lastIteration = Math.min(lastIteration, iterationCount - 1);
+            }
+            for (int i = currentIteration; i <= lastIteration; i++) {
+                String key = getPageKey(i, spinConstructRes);
+                if (!prefetchedPages.containsKey(key)) {
+                    int iteration = i;
+                    prefetchedPages.put(key, prefetchExecutor.submit(() -> executePage(iteration, spinConstructRes, model, bindings)));
+                }
+            }
+            page = getPrefetchedPage(prefetchedPages.remove(getPageKey(currentIteration, spinConstructRes)));
+        }
+        LOG.debug("Page of iteration {} returned {} rows, {} triples.",
+            currentIteration, page.rowCount >= 0 ? page.rowCount : "unknown number of", page.model.size());
+        cursorProvider.recordPage(currentIteration, page.model.size(), page.rowCount);
+        return page.model;
+    }
 
-        LOG.debug("Creating query with LIMIT {} for OFFSET {}.", pageSize, offset );
-        String markerValue = "\n" + "OFFSET " + offset
-            + "\n" + "LIMIT " + pageSize + "\n";
+    /**
+     * Creates the construct query of the page and executes it. If the page marker was substituted
+     * into LIMIT/OFFSET of the top-level query, solutions of the page are counted, which requires
+     * to instantiate the construct template here instead of by the query execution.
+     */
+    private Page executePage(int currentIteration, Construct spinConstructRes, Model model, QuerySolution bindings) {
+        Query query = createQuery(currentIteration, spinConstructRes);
+        String queryStr = spinConstructRes.getProperty(SP.text).getLiteral().getString();
+        if (!cursorProvider.isTopLevelPage(currentIteration, queryStr, query)) {
+            return new Page(QueryUtils.execConstruct(query, model, bindings), -1);
+        }
+        Query selectQuery = query.cloneQuery();
+        selectQuery.setQuerySelectType();
+        selectQuery.setQueryResultStar(true);
+
+        return QueryUtils.execSelect(selectQuery, model, bindings, resultSet -> {
+            Model constructedModel = ModelFactory.createDefaultModel();
+            Graph constructedGraph = constructedModel.getGraph();
+            long rowCount = 0;
+            while (resultSet.hasNext()) {
+                Binding binding = resultSet.nextBinding();
+                rowCount++;
+                Map<Node, Node> bNodeMap = new HashMap<>();
+                for (Triple templateTriple : query.getConstructTemplate().getTriples()) {
+                    Triple triple = TemplateLib.subst(templateTriple, binding, bNodeMap);
+                    if (triple.isConcrete() && !triple.getSubject().isLiteral() && triple.getPredicate().isURI()) {
+                        constructedGraph.add(triple);
+                    }
+                }
+            }
+            return new Page(constructedModel, rowCount);
+        });
+    }
 
-        return QueryUtils
-            .substituteMarkers(LIMIT_OFFSET_CLAUSE_MARKER_NAME, markerValue, queryStr);
+    private Page getPrefetchedPage(Future<Page> page) {
+        try {
+            return page.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a page of module " + getLabel() + ".", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Execution of a page of module " + getLabel() + " failed.", e.getCause());
+        }
     }
 
+    private String getPageKey(int iteration, Construct spinConstructRes) {
+        return iteration + " " + spinConstructRes;
+    }
 
     @Override
     public void loadConfiguration() {
@@ -75,5 +206,21 @@ public class ApplyConstructWithScrollableCursorModule extends ApplyConstructAbst
         //iterationCount = this.getPropertyValue(KBSS_MODULE.has_max_iteration_count, 1);
         parseText = this.getPropertyValue(KBSS_MODULE.is_parse_text, true);
         pageSize = this.getPropertyValue(P_PAGE_SIZE , DEFAULT_PAGE_SIZE);
+        prefetchPageCount = this.getPropertyValue(P_PREFETCH_PAGE_COUNT, 0);
+    }
+
+    private static class Page {
+
+        private final Model model;
+
+        /**
+         * Number of rows of the page, negative if unknown.
+         */
+        private final long rowCount;
+
+        private Page(Model model, long rowCount) {
+            this.model = model;
+            this.rowCount = rowCount;
+        }
     }
 }
@@ -10,6 +10,7 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ResourceFactory;
 import org.apache.jena.riot.Lang;
@@ -22,6 +23,8 @@ public class DownloadGraphModule extends AnnotatedAbstractModule {
     private static final String TYPE_URI = KBSS_MODULE.uri + "sparql-endpoint-download-graph";
     private static final String TYPE_PREFIX = TYPE_URI + "/";
     private static final int DEFAULT_PAGE_SIZE = 10000;
+    private static final int DEFAULT_MAX_RETRIES = 3;
+    private static final String CHECKPOINT_FILE_SUFFIX = ".checkpoint";
     private static final Logger LOG = LoggerFactory.getLogger(DownloadGraphModule.class);
 
     @Parameter(urlPrefix = TYPE_PREFIX, name = "named-graph-id")
@@ -33,9 +36,29 @@ public class DownloadGraphModule extends AnnotatedAbstractModule {
     @Parameter(urlPrefix = TYPE_PREFIX, name = "output-resource-variable")
     private String outputResourceVariable;
 
+    /** Number of triples in a page, or number of subjects in a page if keyset pagination is used */
     @Parameter(urlPrefix = TYPE_PREFIX, name = "page-size")
     private Integer pageSize = DEFAULT_PAGE_SIZE;
 
+    /** Number of pages downloaded concurrently */
+    @Parameter(urlPrefix = TYPE_PREFIX, name = "parallelism")
+    private Integer parallelism = 1;
+
+    /** If true, pages are selected by subject IRIs instead of LIMIT/OFFSET, see {@link GraphChunkedDownload} */
+    @Parameter(urlPrefix = TYPE_PREFIX, name = "is-keyset-pagination")
+    private Boolean isKeysetPagination = false;
+
+    /** Number of retries of a failed query */
+    @Parameter(urlPrefix = TYPE_PREFIX, name = "max-retries")
+    private Integer maxRetries = DEFAULT_MAX_RETRIES;
+
+    /**
+     * File to save the downloaded graph to. If set, progress of the download is saved next to the file
+     * and an interrupted download is resumed by the next execution. A temporary file is used otherwise.
+     */
+    @Parameter(urlPrefix = TYPE_PREFIX, name = "output-file")
+    private String outputFile;
+
     protected long numberOfDownloadedTriples;
 
     public String getNamedGraphId() {
@@ -74,6 +97,38 @@ public class DownloadGraphModule extends AnnotatedAbstractModule {
         this.outputResourceVariable = outputResourceVariable;
     }
 
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public boolean isKeysetPagination() {
+        return isKeysetPagination;
+    }
+
+    public void setKeysetPagination(boolean isKeysetPagination) {
+        this.isKeysetPagination = isKeysetPagination;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    public String getOutputFile() {
+        return outputFile;
+    }
+
+    public void setOutputFile(String outputFile) {
+        this.outputFile = outputFile;
+    }
+
     public long getNumberOfDownloadedTriples() {
         return numberOfDownloadedTriples;
     }
@@ -85,9 +140,12 @@ public class DownloadGraphModule extends AnnotatedAbstractModule {
     @Override
     ExecutionContext executeSelf() {
 
-        Path file = createTempFile();
+        Path file = (outputFile != null) ? Paths.get(outputFile) : createTempFile();
+        Path checkpointFile = (outputFile != null) ? Paths.get(outputFile + CHECKPOINT_FILE_SUFFIX) : null;
+        // triples of an interrupted download are kept, the download continues after the last saved page
+        boolean isResumed = checkpointFile != null && Files.exists(checkpointFile);
 
-        try (OutputStream os = new FileOutputStream(file.toString())) {
+        try (OutputStream os = new FileOutputStream(file.toString(), isResumed)) {
 
             GraphChunkedDownload downlaoder = new GraphChunkedDownload(endpointUrl, namedGraphId, pageSize) {
                 @Override
@@ -98,6 +156,10 @@ public class DownloadGraphModule extends AnnotatedAbstractModule {
                     RDFDataMgr.write(os, partialModel, Lang.NTRIPLES);
                 }
             };
+            downlaoder.setParallelism(parallelism);
+            downlaoder.setKeysetPagination(isKeysetPagination);
+            downlaoder.setMaxRetries(maxRetries);
+            downlaoder.setCheckpointFile(checkpointFile);
             downlaoder.execute();
 
             VariablesBinding vb = new VariablesBinding(outputResourceVariable,
@@ -0,0 +1,98 @@
+package cz.cvut.spipes.recursion;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Adapts size of chunks of values to the measured time of their processing.
+ * <p>
+ * If a chunk takes longer than the target latency, the chunk size is decreased proportionally.
+ * If a chunk takes less than half of the target latency, the chunk size is increased proportionally,
+ * at most twice at once. If processing of a chunk fails, the chunk size is halved.
+ * The chunk size is always kept within the given bounds.
+ */
+public class AdaptiveChunkSizeController {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AdaptiveChunkSizeController.class);
+
+    private static final int MAX_GROWTH_FACTOR = 2;
+
+    private final int minChunkSize;
+    private final int maxChunkSize;
+    private final long targetLatencyMillis;
+    private int chunkSize;
+
+    /**
+     * @param initialChunkSize    chunk size of the first chunk, adjusted to the bounds
+     * @param minChunkSize        minimal chunk size, must be positive
+     * @param maxChunkSize        maximal chunk size
+     * @param targetLatencyMillis requested time to process one chunk in milliseconds
+     */
+    public AdaptiveChunkSizeController(int initialChunkSize, int minChunkSize, int maxChunkSize, long targetLatencyMillis) {
+        if (minChunkSize < 1 || maxChunkSize < minChunkSize) {
+            throw new IllegalArgumentException(
+                String.format("Invalid chunk size bounds [%d, %d].", minChunkSize, maxChunkSize));
+        }
+        if (targetLatencyMillis < 1) {
+            throw new IllegalArgumentException("Target latency must be positive, got " + targetLatencyMillis + ".");
+        }
+        this.minChunkSize = minChunkSize;
+        this.maxChunkSize = maxChunkSize;
+        this.targetLatencyMillis = targetLatencyMillis;
+        this.chunkSize = bound(initialChunkSize);
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * @return true if the chunk size can be decreased after a failure
+     */
+    public boolean canShrink() {
+        return chunkSize > minChunkSize;
+    }
+
+    /**
+     * Adapts the chunk size to the latency of a successfully processed chunk.
+     *
+     * @param processedChunkSize number of values in the processed chunk
+     * @param latencyMillis      time to process the chunk in milliseconds
+     */
+    public void recordSuccess(int processedChunkSize, long latencyMillis) {
+        long latency = Math.max(1, latencyMillis);
+        if (latency > targetLatencyMillis) {
+            update((int) (processedChunkSize * targetLatencyMillis / latency),
+                processedChunkSize, latency);
+        } else if (latency < targetLatencyMillis / 2 && processedChunkSize >= chunkSize) {
+            // smaller chunks (e.g. the last one) do not tell much about larger chunks
+            long estimate = processedChunkSize * targetLatencyMillis / latency;
+            update((int) Math.min(estimate, (long) chunkSize * MAX_GROWTH_FACTOR), processedChunkSize, latency);
+        }
+    }
+
+    /**
+     * Decreases the chunk size after a chunk failed to be processed.
+     *
+     * @param processedChunkSize number of values in the failed chunk
+     */
+    public void recordFailure(int processedChunkSize) {
+        int newChunkSize = bound(processedChunkSize / 2);
+        LOG.warn("Chunk of {} values failed, changing chunk size from {} to {}.",
+            processedChunkSize, chunkSize, newChunkSize);
+        chunkSize = newChunkSize;
+    }
+
+    private void update(int requestedChunkSize, int processedChunkSize, long latencyMillis) {
+        int newChunkSize = bound(requestedChunkSize);
+        if (newChunkSize != chunkSize) {
+            LOG.debug("Chunk of {} values took {} ms (target {} ms), changing chunk size from {} to {}.",
+                processedChunkSize, latencyMillis, targetLatencyMillis, chunkSize, newChunkSize);
+            chunkSize = newChunkSize;
+        }
+    }
+
+    private int bound(int requestedChunkSize) {
+        return Math.max(minChunkSize, Math.min(maxChunkSize, requestedChunkSize));
+    }
+}
@@ -1,12 +1,17 @@
 package cz.cvut.spipes.recursion;
 
 import cz.cvut.spipes.util.QueryUtils;
+import org.apache.jena.query.Query;
 import org.apache.jena.rdf.model.Model;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * TODO !!! scrolling detects one iteration later than it supposed to. If there is a knowledge about how many results a subquery with LIMIT+OFFSET returned, it would be more clear ...
+ * Provides LIMIT/OFFSET clauses to page through results of queries.
+ * <p>
+ * If results of pages are reported by {@link #recordPage(int, long, long)}, the recursion terminates right after
+ * the first page that is empty or shorter than the page size. Otherwise, the end of data is detected
+ * when an iteration does not infer new triples, i.e. one iteration later.
  */
 public class ScrollableCursorProvider implements QueryTemplateRecursionProvider {
 
@@ -15,6 +20,9 @@ public class ScrollableCursorProvider implements QueryTemplateRecursionProvider
     private final int pageSize;
     private final int iterationCount;
 
+    private int lastRecordedIteration = -1;
+    private boolean isLastRecordedPageExhausted;
+
 
     public ScrollableCursorProvider(int pageSize, int iterationCount) {
         this.pageSize = pageSize;
@@ -32,6 +40,13 @@ public class ScrollableCursorProvider implements QueryTemplateRecursionProvider
             return false;
         }
 
+        if (lastRecordedIteration == currentIteration - 1) {
+            if (isLastRecordedPageExhausted) {
+                LOG.debug("Page of iteration {} is the last one.", lastRecordedIteration);
+            }
+            return isLastRecordedPageExhausted;
+        }
+
         if ((currentIteration > 0) && (previousInferredModel.size() == currentInferredModel.size())) {
             return true;
         }
@@ -50,4 +65,36 @@ public class ScrollableCursorProvider implements QueryTemplateRecursionProvider
         return QueryUtils
             .substituteMarkers(LIMIT_OFFSET_CLAUSE_MARKER_NAME, markerValue, queryStr);
     }
+
+    /**
+     * Returns true if the query is a page of the given iteration created from the query text,
+     * i.e. the marker was substituted into LIMIT/OFFSET of the top-level query and not of a subquery.
+     *
+     * @param currentIteration iteration of the page
+     * @param queryStr         query text with the marker
+     * @param query            query created from the text by {@link #substituteQueryMarkers(int, String)}
+     */
+    public boolean isTopLevelPage(int currentIteration, String queryStr, Query query) {
+        return QueryUtils.containsMarker(LIMIT_OFFSET_CLAUSE_MARKER_NAME, queryStr)
+            && query.getLimit() == pageSize
+            && query.getOffset() == (long) pageSize * (currentIteration - 1);
+    }
+
+    /**
+     * Reports result of a page of one query. If more queries are paged within the iteration,
+     * data are exhausted when pages of all the queries are exhausted.
+     *
+     * @param currentIteration iteration of the page
+     * @param tripleCount      number of triples constructed from the page
+     * @param rowCount         number of rows of the page, negative if unknown
+     */
+    public void recordPage(int currentIteration, long tripleCount, long rowCount) {
+        boolean isExhausted = (rowCount >= 0) ? rowCount < pageSize : tripleCount == 0;
+        if (currentIteration != lastRecordedIteration) {
+            lastRecordedIteration = currentIteration;
+            isLastRecordedPageExhausted = isExhausted;
+        } else {
+            isLastRecordedPageExhausted &= isExhausted;
+        }
+    }
 }
@@ -31,7 +31,7 @@ public class TDBTempFactory {
         Dataset ds = TDBFactory.createDataset(tempDir.toString());
         Model outModel = ds.getNamedModel(getRandomModelUri());
         setUpFinalization(outModel);
-        return ds.getNamedModel(getRandomModelUri());
+        return outModel;
     }
 
 
@@ -9,7 +9,18 @@ import org.apache.jena.vocabulary.RDFS;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
 import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -87,4 +98,183 @@ public class GraphChunkedDownloadTest {
 
     }
 
-}
\ No newline at end of file
+
+    @Test
+    public void executeWithKeysetPaginationInParallelDownloadsWholeGraph() {
+        Dataset ds = createDataset(5000, 50);
+        Model downloadedGraph = ModelFactory.createDefaultModel();
+
+        GraphChunkedDownload downloader = createLocalInstance(ds, downloadedGraph, 0, 100);
+        downloader.setKeysetPagination(true);
+        downloader.setParallelism(4);
+        downloader.execute();
+
+        assertTrue(downloadedGraph.isIsomorphicWith(ds.getNamedModel(GRAPH_URI)));
+    }
+
+    @Test
+    public void executeWithKeysetPaginationReadsKeysByOneQueryAndBoundsPages() {
+        Dataset ds = createDataset(1000, 250);
+        Model downloadedGraph = ModelFactory.createDefaultModel();
+        List<Long> pageSizes = new ArrayList<>();
+
+        LocalGraphChunkedDownload downloader = new LocalGraphChunkedDownload(ds, 0, 100) {
+            @Override
+            protected void processPartialModel(Model partialModel) {
+                pageSizes.add(partialModel.size());
+                downloadedGraph.add(partialModel);
+            }
+        };
+        downloader.setKeysetPagination(true);
+        downloader.setParallelism(4);
+        downloader.execute();
+
+        assertTrue(downloadedGraph.isIsomorphicWith(ds.getNamedModel(GRAPH_URI)));
+        assertEquals(1, downloader.keyQueryCount.get());
+        assertEquals(13, pageSizes.size());
+        assertTrue(pageSizes.stream().allMatch(size -> size <= 100));
+    }
+
+    @Test
+    public void executeWithOffsetsInParallelOrdersPages() {
+        Dataset ds = createDataset(500, 0);
+        Model downloadedGraph = ModelFactory.createDefaultModel();
+        Queue<String> queries = new ConcurrentLinkedQueue<>();
+
+        GraphChunkedDownload downloader = new LocalGraphChunkedDownload(ds, 0, 100) {
+            @Override
+            protected Model executeQuery(String query) {
+                queries.add(query);
+                return super.executeQuery(query);
+            }
+
+            @Override
+            protected void processPartialModel(Model partialModel) {
+                downloadedGraph.add(partialModel);
+            }
+        };
+        downloader.setParallelism(3);
+        downloader.execute();
+
+        assertTrue(downloadedGraph.isIsomorphicWith(ds.getNamedModel(GRAPH_URI)));
+        assertTrue(queries.stream().allMatch(q -> q.contains("ORDER BY ?s ?p ?o")));
+    }
+
+    @Test
+    public void executeRetriesFailedQueries() {
+        Dataset ds = createDataset(500, 0);
+        Model downloadedGraph = ModelFactory.createDefaultModel();
+
+        GraphChunkedDownload downloader = createLocalInstance(ds, downloadedGraph, 2, 100);
+        downloader.setParallelism(3);
+        downloader.setRetryDelayMillis(1);
+        downloader.execute();
+
+        assertEquals(ds.getNamedModel(GRAPH_URI).size(), downloadedGraph.size());
+    }
+
+    @Test
+    public void executeResumesFromCheckpoint() throws IOException {
+        Dataset ds = createDataset(1000, 10);
+        Path checkpointFile = Files.createTempFile("graph-chunked-download-", ".checkpoint");
+        Files.delete(checkpointFile);
+        Model downloadedGraph = ModelFactory.createDefaultModel();
+        AtomicInteger processedPages = new AtomicInteger();
+
+        GraphChunkedDownload failingDownloader = new LocalGraphChunkedDownload(ds, 0, 50) {
+            @Override
+            protected void processPartialModel(Model partialModel) {
+                if (processedPages.incrementAndGet() > 3) {
+                    throw new IllegalStateException("Simulated failure.");
+                }
+                downloadedGraph.add(partialModel);
+            }
+        };
+        failingDownloader.setKeysetPagination(true);
+        failingDownloader.setCheckpointFile(checkpointFile);
+        assertThrows(IllegalStateException.class, failingDownloader::execute);
+        assertTrue(Files.exists(checkpointFile));
+
+        long[] resumedTriples = {0};
+        GraphChunkedDownload downloader = new LocalGraphChunkedDownload(ds, 0, 50) {
+            @Override
+            protected void processPartialModel(Model partialModel) {
+                resumedTriples[0] += partialModel.size();
+                downloadedGraph.add(partialModel);
+            }
+        };
+        downloader.setKeysetPagination(true);
+        downloader.setCheckpointFile(checkpointFile);
+        downloader.execute();
+
+        assertTrue(downloadedGraph.isIsomorphicWith(ds.getNamedModel(GRAPH_URI)));
+        assertEquals(ds.getNamedModel(GRAPH_URI).size() - 3 * 50, resumedTriples[0]);
+        assertFalse(Files.exists(checkpointFile));
+    }
+
+    private static final String GRAPH_URI = "http://example.org/dataset/graph1";
+
+    private Dataset createDataset(int iriSubjectCount, int blankSubjectCount) {
+        Model namedGraph = ModelFactory.createDefaultModel();
+        IntStream.range(0, iriSubjectCount).forEach(i ->
+            namedGraph.add(ResourceFactory.createResource("http://example.org/resource/" + i), RDFS.label, "Resource " + i));
+        IntStream.range(0, blankSubjectCount).forEach(i ->
+            namedGraph.add(namedGraph.createResource(), RDFS.label, "Blank node " + i));
+        Dataset ds = DatasetFactory.createGeneral();
+        ds.addNamedModel(GRAPH_URI, namedGraph);
+        return ds;
+    }
+
+    private GraphChunkedDownload createLocalInstance(Dataset ds, Model downloadedGraph, int failuresPerQuery, int pageSize) {
+        return new LocalGraphChunkedDownload(ds, failuresPerQuery, pageSize) {
+            @Override
+            protected void processPartialModel(Model partialModel) {
+                downloadedGraph.add(partialModel);
+            }
+        };
+    }
+
+    /**
+     * Executes queries against a local dataset, each query fails the given number of times.
+     */
+    private abstract static class LocalGraphChunkedDownload extends GraphChunkedDownload {
+
+        private final Dataset ds;
+        private final int failuresPerQuery;
+        private final Map<String, AtomicInteger> failures = new ConcurrentHashMap<>();
+        private final AtomicInteger keyQueryCount = new AtomicInteger();
+
+        LocalGraphChunkedDownload(Dataset ds, int failuresPerQuery, int pageSize) {
+            super("http://example.org/dataset", GRAPH_URI, pageSize);
+            this.ds = ds;
+            this.failuresPerQuery = failuresPerQuery;
+        }
+
+        @Override
+        protected Model executeQuery(String query) {
+            failIfRequired(query);
+            try (QueryExecution execution = QueryExecutionFactory.create(QueryFactory.create(query), ds)) {
+                return execution.execConstruct();
+            }
+        }
+
+        @Override
+        protected void executeKeyQuery(String query, Consumer<String> keyConsumer) {
+            keyQueryCount.incrementAndGet();
+            failIfRequired(query);
+            try (QueryExecution execution = QueryExecutionFactory.create(QueryFactory.create(query), ds)) {
+                ResultSet resultSet = execution.execSelect();
+                while (resultSet.hasNext()) {
+                    keyConsumer.accept(resultSet.next().getLiteral("key").getString());
+                }
+            }
+        }
+
+        private void failIfRequired(String query) {
+            if (failures.computeIfAbsent(query, q -> new AtomicInteger()).incrementAndGet() <= failuresPerQuery) {
+                throw new IllegalStateException("Simulated failure of the endpoint.");
+            }
+        }
+    }
+
+}
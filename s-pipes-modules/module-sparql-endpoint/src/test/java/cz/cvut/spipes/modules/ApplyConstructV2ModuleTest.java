@@ -0,0 +1,86 @@
+package cz.cvut.spipes.modules;
+
+import cz.cvut.spipes.engine.ExecutionContextFactory;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.vocabulary.RDF;
+import org.junit.jupiter.api.Test;
+import org.topbraid.spin.vocabulary.SP;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ApplyConstructV2ModuleTest {
+
+    private static final String NS = "http://example.org/";
+    private static final String PREFIX = "PREFIX ex: <" + NS + ">\n";
+    private static final int CHAIN_LENGTH = 6;
+
+    private static final String[] RULES = {
+        PREFIX + "CONSTRUCT { ?x ex:ancestor ?y } WHERE { ?x ex:parent ?y }",
+        PREFIX + "CONSTRUCT { ?x ex:ancestor ?z } WHERE { ?x ex:ancestor ?y . ?y ex:parent ?z }",
+        // not affected by inferred triples, thus skipped after the first iteration
+        PREFIX + "CONSTRUCT { ?x a ex:Person } WHERE { ?x ex:parent ?y }"
+    };
+
+    // the first rule depends on triples of the second rule only through NOT EXISTS, thus it must be re-run
+    private static final String[] NOT_EXISTS_RULES = {
+        PREFIX + "CONSTRUCT { ?x ex:is-leaf ?isLeaf } WHERE { ?x ex:parent ?y BIND(NOT EXISTS { ?x ex:has-child ?z } AS ?isLeaf) }",
+        PREFIX + "CONSTRUCT { ?y ex:has-child ?x } WHERE { ?x ex:parent ?y }"
+    };
+
+    @Test
+    public void executeSelfSkippingUnaffectedQueriesReachesSameFixpointAsNaiveEvaluation() {
+        Model naiveOutputModel = executeModule(RULES, false);
+        Model skippingOutputModel = executeModule(RULES, true);
+
+        Property ancestor = naiveOutputModel.createProperty(NS + "ancestor");
+        assertEquals(CHAIN_LENGTH * (CHAIN_LENGTH - 1) / 2,
+            naiveOutputModel.listStatements(null, ancestor, (RDFNode) null).toList().size());
+        assertTrue(naiveOutputModel.isIsomorphicWith(skippingOutputModel));
+    }
+
+    @Test
+    public void executeSelfSkippingUnaffectedQueriesReRunsQueryWithNotExistsInBind() {
+        Model naiveOutputModel = executeModule(NOT_EXISTS_RULES, false);
+        Model skippingOutputModel = executeModule(NOT_EXISTS_RULES, true);
+
+        Property isLeaf = naiveOutputModel.createProperty(NS + "is-leaf");
+        assertTrue(naiveOutputModel.containsLiteral(naiveOutputModel.createResource(NS + "person-1"), isLeaf, false));
+        assertTrue(naiveOutputModel.isIsomorphicWith(skippingOutputModel));
+    }
+
+    private Model executeModule(String[] rules, boolean isSkipUnaffectedQueries) {
+        Model queryModel = ModelFactory.createDefaultModel();
+        List<Resource> queries = new ArrayList<>();
+        for (String rule : rules) {
+            queries.add(queryModel.createResource()
+                .addProperty(RDF.type, SP.Construct)
+                .addProperty(SP.text, rule));
+        }
+
+        ApplyConstructV2Module module = new ApplyConstructV2Module();
+        module.setConstructQueries(queries);
+        module.setParseText(true);
+        module.setReplace(true);
+        module.setIterationCount(-1);
+        module.setSkipUnaffectedQueries(isSkipUnaffectedQueries);
+        module.setInputContext(ExecutionContextFactory.createContext(createChainModel()));
+        return module.executeSelf().getDefaultModel();
+    }
+
+    private Model createChainModel() {
+        Model model = ModelFactory.createDefaultModel();
+        Property parent = model.createProperty(NS + "parent");
+        for (int i = 0; i < CHAIN_LENGTH - 1; i++) {
+            model.add(model.createResource(NS + "person-" + i), parent, model.createResource(NS + "person-" + (i + 1)));
+        }
+        return model;
+    }
+}
@@ -0,0 +1,188 @@
+package cz.cvut.spipes.modules;
+
+import cz.cvut.spipes.engine.ExecutionContextFactory;
+import org.apache.jena.query.Query;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.sparql.engine.http.QueryExceptionHTTP;
+import org.apache.jena.vocabulary.RDF;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.topbraid.spin.model.Construct;
+import org.topbraid.spin.model.Select;
+import org.topbraid.spin.vocabulary.SP;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ApplyConstructWithChunkedValuesModuleTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ApplyConstructWithChunkedValuesModuleTest.class);
+
+    private static final String NS = "http://example.org/";
+    private static final String PREFIX = "PREFIX ex: <" + NS + ">\n";
+    private static final int VALUE_COUNT = 10;
+
+    @Test
+    public void executeSelfWithAdaptiveChunkSizeRetriesValuesOfFailedChunk() {
+        FailingModule module = createModule(1);
+        module.setAdaptiveChunkSize(true);
+        module.setMinChunkSize(1);
+        module.setMaxChunkSize(4);
+        module.setTargetChunkLatency(60000);
+
+        Model outputModel = module.executeSelf().getDefaultModel();
+
+        // values of the failed chunk are retried in a smaller chunk, the chunk size then grows again
+        assertEquals(Arrays.asList(4, 2, 4, 4), module.chunkSizes);
+        Property processed = outputModel.createProperty(NS + "processed");
+        assertEquals(VALUE_COUNT, outputModel.listStatements(null, processed, (RDFNode) null).toList().size());
+    }
+
+    @Test
+    public void executeSelfWithFixedChunkSizeFailsOnFailedChunk() {
+        FailingModule module = createModule(1);
+
+        assertThrows(QueryExceptionHTTP.class, module::executeSelf);
+    }
+
+    /**
+     * Compares throughput of fixed and adaptive chunk sizes against a simulated endpoint,
+     * see {@link SimulatedEndpointModule}. Run by Maven profile benchmark only.
+     */
+    @Tag("benchmark")
+    @Test
+    public void benchmarkFixedAndAdaptiveChunkSize() {
+        int valueCount = 2000;
+        for (int fixedChunkSize : new int[]{10, 50, SimulatedEndpointModule.MAX_VALUE_COUNT}) {
+            SimulatedEndpointModule module = configureModule(new SimulatedEndpointModule(), valueCount);
+            module.setChunkSize(fixedChunkSize);
+            logThroughput("fixed chunk size " + fixedChunkSize, module, valueCount);
+        }
+        SimulatedEndpointModule module = configureModule(new SimulatedEndpointModule(), valueCount);
+        module.setChunkSize(10);
+        module.setAdaptiveChunkSize(true);
+        module.setMinChunkSize(1);
+        module.setMaxChunkSize(valueCount);
+        module.setTargetChunkLatency(100);
+        logThroughput("adaptive chunk size", module, valueCount);
+    }
+
+    private void logThroughput(String name, ApplyConstructWithChunkedValuesModule module, int valueCount) {
+        long startTime = System.nanoTime();
+        Model outputModel = module.executeSelf().getDefaultModel();
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        Property processed = outputModel.createProperty(NS + "processed");
+        assertEquals(valueCount, outputModel.listStatements(null, processed, (RDFNode) null).toList().size());
+        LOG.info("Processed {} values with {}: {} values/s.", valueCount, name, String.format("%.0f", valueCount / seconds));
+    }
+
+    private FailingModule createModule(int failureCount) {
+        // the module initializes SPIN, which is needed to create the select query
+        return configureModule(new FailingModule(failureCount), VALUE_COUNT);
+    }
+
+    private <T extends ApplyConstructWithChunkedValuesModule> T configureModule(T module, int valueCount) {
+
+        Model queryModel = ModelFactory.createDefaultModel();
+        Select selectQuery = queryModel.createResource()
+            .addProperty(RDF.type, SP.Select)
+            .addProperty(SP.text, PREFIX + "SELECT ?s WHERE { ?s ex:value ?v } ORDER BY ?v")
+            .as(Select.class);
+        Resource constructQuery = queryModel.createResource()
+            .addProperty(RDF.type, SP.Construct)
+            .addProperty(SP.text, PREFIX + "CONSTRUCT { ?s ex:processed true } WHERE {\n#${VALUES}\n?s ex:value ?v }");
+
+        module.setSelectQuery(selectQuery);
+        module.setConstructQueries(Collections.singletonList(constructQuery));
+        module.setParseText(true);
+        module.setReplace(true);
+        module.setChunkSize(4);
+        module.setInputContext(ExecutionContextFactory.createContext(createInputModel(valueCount)));
+        return module;
+    }
+
+    private Model createInputModel(int valueCount) {
+        Model model = ModelFactory.createDefaultModel();
+        Property value = model.createProperty(NS + "value");
+        for (int i = 0; i < valueCount; i++) {
+            model.addLiteral(model.createResource(NS + "s-" + i), value, i);
+        }
+        return model;
+    }
+
+    /**
+     * Fails execution of the first chunks, e.g. as a remote endpoint would, and records sizes of all chunks.
+     */
+    private static class FailingModule extends ApplyConstructWithChunkedValuesModule {
+
+        private final List<Integer> chunkSizes = new ArrayList<>();
+        private int failureCount;
+
+        private FailingModule(int failureCount) {
+            this.failureCount = failureCount;
+        }
+
+        @Override
+        protected String substituteQueryMarkers(int currentIteration, String queryStr) {
+            String substitutedQueryStr = super.substituteQueryMarkers(currentIteration, queryStr);
+            chunkSizes.add(substitutedQueryStr.split("<" + NS + "s-", -1).length - 1);
+            return substitutedQueryStr;
+        }
+
+        @Override
+        protected Query createQuery(int currentIteration, Construct spinConstructRes) {
+            Query query = super.createQuery(currentIteration, spinConstructRes);
+            if (failureCount > 0) {
+                failureCount--;
+                throw new QueryExceptionHTTP(503, "Service unavailable.");
+            }
+            return query;
+        }
+    }
+
+    /**
+     * Simulates a remote endpoint, which takes a fixed time per request and a time per value,
+     * and rejects requests with more than {@link #MAX_VALUE_COUNT} values after the same time.
+     */
+    private static class SimulatedEndpointModule extends ApplyConstructWithChunkedValuesModule {
+
+        private static final int MAX_VALUE_COUNT = 200;
+        private static final long REQUEST_MILLIS = 20;
+        private static final double VALUE_MILLIS = 0.5;
+
+        private int lastChunkSize;
+
+        @Override
+        protected String substituteQueryMarkers(int currentIteration, String queryStr) {
+            String substitutedQueryStr = super.substituteQueryMarkers(currentIteration, queryStr);
+            lastChunkSize = substitutedQueryStr.split("<" + NS + "s-", -1).length - 1;
+            return substitutedQueryStr;
+        }
+
+        @Override
+        protected Query createQuery(int currentIteration, Construct spinConstructRes) {
+            Query query = super.createQuery(currentIteration, spinConstructRes);
+            try {
+                Thread.sleep(REQUEST_MILLIS + (long) (lastChunkSize * VALUE_MILLIS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+            if (lastChunkSize > MAX_VALUE_COUNT) {
+                throw new QueryExceptionHTTP(503, "Request too large.");
+            }
+            return query;
+        }
+    }
+}
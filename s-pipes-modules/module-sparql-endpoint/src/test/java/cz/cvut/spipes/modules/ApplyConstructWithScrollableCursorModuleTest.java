@@ -0,0 +1,98 @@
+package cz.cvut.spipes.modules;
+
+import cz.cvut.spipes.engine.ExecutionContextFactory;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.ResourceFactory;
+import org.apache.jena.vocabulary.RDF;
+import org.junit.jupiter.api.Test;
+import org.topbraid.spin.vocabulary.SP;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ApplyConstructWithScrollableCursorModuleTest {
+
+    private static final String NS = "http://example.org/";
+    private static final Property VALUE = ResourceFactory.createProperty(NS + "value");
+    private static final Property LARGE_VALUE = ResourceFactory.createProperty(NS + "large-value");
+    private static final int PAGE_SIZE = 10;
+    private static final int SUBJECT_COUNT = 25;
+
+    // first page constructs no triple, thus only counting of its rows shows that it is not the last one
+    private static final String TOP_LEVEL_PAGE_QUERY = "PREFIX ex: <" + NS + ">\n"
+        + "CONSTRUCT { ?s ex:large-value ?large }\n"
+        + "WHERE {\n"
+        + "  ?s ex:value ?v .\n"
+        + "  BIND(IF(?v >= " + PAGE_SIZE + ", ?v, ?unbound) AS ?large)\n"
+        + "}\n"
+        + "ORDER BY ?v\n"
+        + "#${LIMIT_OFFSET}";
+
+    // top-level LIMIT does not limit the page, thus rows of the page must not be counted
+    private static final String SUBQUERY_PAGE_QUERY = "PREFIX ex: <" + NS + ">\n"
+        + "CONSTRUCT { ?s ex:large-value ?v }\n"
+        + "WHERE {\n"
+        + "  {\n"
+        + "    SELECT ?s ?v\n"
+        + "    WHERE { ?s ex:value ?v }\n"
+        + "    ORDER BY ?v\n"
+        + "    #${LIMIT_OFFSET}\n"
+        + "  }\n"
+        + "  FILTER(?v >= 5)\n"
+        + "}\n"
+        + "LIMIT 1000";
+
+    @Test
+    public void executeSelfWithMarkerInTopLevelQueryCountsRowsOfPages() {
+        Model outputModel = executeModule(TOP_LEVEL_PAGE_QUERY, 0);
+
+        assertEquals(SUBJECT_COUNT - PAGE_SIZE, outputModel.listStatements(null, LARGE_VALUE, (RDFNode) null).toList().size());
+    }
+
+    @Test
+    public void executeSelfWithMarkerInSubqueryPagesUntilEmptyPage() {
+        Model outputModel = executeModule(SUBQUERY_PAGE_QUERY, 0);
+
+        assertEquals(SUBJECT_COUNT - 5, outputModel.listStatements(null, LARGE_VALUE, (RDFNode) null).toList().size());
+    }
+
+    @Test
+    public void executeSelfWithPrefetchReturnsSameModelAsWithoutPrefetch() {
+        for (String query : new String[]{TOP_LEVEL_PAGE_QUERY, SUBQUERY_PAGE_QUERY}) {
+            Model outputModel = executeModule(query, 0);
+            Model prefetchedOutputModel = executeModule(query, 2);
+
+            assertTrue(outputModel.isIsomorphicWith(prefetchedOutputModel));
+        }
+    }
+
+    private Model executeModule(String queryText, int prefetchPageCount) {
+        Model queryModel = ModelFactory.createDefaultModel();
+        Resource query = queryModel.createResource()
+            .addProperty(RDF.type, SP.Construct)
+            .addProperty(SP.text, queryText);
+
+        ApplyConstructWithScrollableCursorModule module = new ApplyConstructWithScrollableCursorModule();
+        module.setConstructQueries(Collections.singletonList(query));
+        module.setParseText(true);
+        module.setReplace(true);
+        module.setPageSize(PAGE_SIZE);
+        module.setPrefetchPageCount(prefetchPageCount);
+        module.setInputContext(ExecutionContextFactory.createContext(createInputModel()));
+        return module.executeSelf().getDefaultModel();
+    }
+
+    private Model createInputModel() {
+        Model model = ModelFactory.createDefaultModel();
+        for (int i = 0; i < SUBJECT_COUNT; i++) {
+            model.addLiteral(model.createResource(NS + "s-" + i), VALUE, i);
+        }
+        return model;
+    }
+}
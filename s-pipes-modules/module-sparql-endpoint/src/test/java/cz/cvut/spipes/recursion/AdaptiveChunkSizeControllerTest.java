@@ -0,0 +1,59 @@
+package cz.cvut.spipes.recursion;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdaptiveChunkSizeControllerTest {
+
+    @Test
+    public void recordSuccessGrowsFastChunksAtMostTwice() {
+        AdaptiveChunkSizeController controller = new AdaptiveChunkSizeController(10, 1, 100, 1000);
+
+        controller.recordSuccess(10, 1);
+        assertEquals(20, controller.getChunkSize());
+
+        controller.recordSuccess(20, 1);
+        controller.recordSuccess(40, 1);
+        controller.recordSuccess(80, 1);
+        assertEquals(100, controller.getChunkSize());
+    }
+
+    @Test
+    public void recordSuccessShrinksSlowChunksProportionally() {
+        AdaptiveChunkSizeController controller = new AdaptiveChunkSizeController(100, 1, 1000, 1000);
+
+        controller.recordSuccess(100, 4000);
+
+        assertEquals(25, controller.getChunkSize());
+    }
+
+    @Test
+    public void recordSuccessKeepsChunkSizeWithinTargetLatency() {
+        AdaptiveChunkSizeController controller = new AdaptiveChunkSizeController(100, 1, 1000, 1000);
+
+        controller.recordSuccess(100, 700);
+        controller.recordSuccess(30, 1);
+
+        assertEquals(100, controller.getChunkSize());
+    }
+
+    @Test
+    public void recordFailureHalvesChunkSizeUntilMinimum() {
+        AdaptiveChunkSizeController controller = new AdaptiveChunkSizeController(8, 2, 100, 1000);
+
+        controller.recordFailure(8);
+        assertEquals(4, controller.getChunkSize());
+        assertTrue(controller.canShrink());
+
+        controller.recordFailure(4);
+        assertEquals(2, controller.getChunkSize());
+        assertFalse(controller.canShrink());
+    }
+
+    @Test
+    public void constructorRejectsInvalidBounds() {
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveChunkSizeController(10, 0, 100, 1000));
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveChunkSizeController(10, 50, 20, 1000));
+    }
+}
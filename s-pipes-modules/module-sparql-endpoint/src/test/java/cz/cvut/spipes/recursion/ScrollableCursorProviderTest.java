@@ -0,0 +1,46 @@
+package cz.cvut.spipes.recursion;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ScrollableCursorProviderTest {
+
+    private final Model emptyModel = ModelFactory.createDefaultModel();
+
+    @Test
+    public void shouldTerminateRightAfterShortPage() {
+        ScrollableCursorProvider provider = new ScrollableCursorProvider(10, -1);
+
+        assertFalse(provider.shouldTerminate(1, emptyModel, emptyModel));
+        provider.recordPage(1, 30, 10);
+        assertFalse(provider.shouldTerminate(2, emptyModel, emptyModel));
+        provider.recordPage(2, 12, 4);
+        assertTrue(provider.shouldTerminate(3, emptyModel, emptyModel));
+    }
+
+    @Test
+    public void shouldTerminateAfterEmptyPageIfRowCountIsUnknown() {
+        ScrollableCursorProvider provider = new ScrollableCursorProvider(10, -1);
+
+        provider.recordPage(1, 30, -1);
+        assertFalse(provider.shouldTerminate(2, emptyModel, emptyModel));
+        provider.recordPage(2, 0, -1);
+        assertTrue(provider.shouldTerminate(3, emptyModel, emptyModel));
+    }
+
+    @Test
+    public void shouldTerminateWhenPagesOfAllQueriesAreExhausted() {
+        ScrollableCursorProvider provider = new ScrollableCursorProvider(10, -1);
+
+        provider.recordPage(1, 5, 3);
+        provider.recordPage(1, 30, 10);
+        assertFalse(provider.shouldTerminate(2, emptyModel, emptyModel));
+        provider.recordPage(2, 5, 3);
+        provider.recordPage(2, 0, 0);
+        assertTrue(provider.shouldTerminate(3, emptyModel, emptyModel));
+    }
+}
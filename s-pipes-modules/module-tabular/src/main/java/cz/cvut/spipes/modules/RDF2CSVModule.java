@@ -5,9 +5,16 @@ import cz.cvut.spipes.constants.KBSS_CSVW;
 import cz.cvut.spipes.constants.KBSS_MODULE;
 import cz.cvut.spipes.engine.ExecutionContext;
 import cz.cvut.spipes.engine.ExecutionContextFactory;
+import cz.cvut.spipes.exception.SPipesException;
+import cz.cvut.spipes.modules.exception.TableSchemaException;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
 import org.apache.jena.rdf.model.*;
 import org.apache.jena.riot.RDFDataMgr;
 import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.util.iterator.ExtendedIterator;
 import org.apache.jena.vocabulary.RDF;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -16,10 +23,15 @@ import org.supercsv.prefs.CsvPreference;
 
 import java.io.FileWriter;
 import java.io.IOException;
+import java.math.BigInteger;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 
 /**
@@ -28,6 +40,13 @@ import java.util.stream.Collectors;
  * The module is responsible for converting the input RDF data into a CSV format and saving the output to a file.
  * The table is constructed from column and row resources defined in TableSchema and saves it as a new CSV file.
  * </p>
+ * <p>
+ * Rows are ordered by their row numbers and written to the file one by one. Only row numbers and row nodes
+ * are kept in memory while the values of each row are read just before the row is written.
+ * Each row must have a single integer row number and describe a resource. Values of a row are read by a single
+ * lookup of each described resource, so the export uses only indexed access to the data,
+ * which works also for models backed by TDB.
+ * </p>
  */
 public class RDF2CSVModule extends AnnotatedAbstractModule {
 
@@ -49,14 +68,16 @@ public class RDF2CSVModule extends AnnotatedAbstractModule {
                         CsvPreference.STANDARD_PREFERENCE)
         ){
 
-            Resource table =  inputRDF.listResourcesWithProperty(RDF.type, CSVW.Table)
-                    .next();
-            if (table == null) {
+            ResIterator tableIt = inputRDF.listResourcesWithProperty(RDF.type, CSVW.Table);
+            if (!tableIt.hasNext()) {
                 LOG.warn("No Table resource found in the input RDF.");
                 return ExecutionContextFactory.createContext(inputRDF);
             }
+            Resource table = tableIt.next();
+            tableIt.close();
 
-            Resource tableSchema = table.getProperty(CSVW.tableSchema).getObject().asResource();
+            Statement tableSchemaStatement = table.getProperty(CSVW.tableSchema);
+            Resource tableSchema = tableSchemaStatement == null ? null : tableSchemaStatement.getObject().asResource();
 
             if (tableSchema == null) {
                 LOG.warn("No TableSchema resource found in the input RDF.");
@@ -76,7 +97,8 @@ public class RDF2CSVModule extends AnnotatedAbstractModule {
                 return ExecutionContextFactory.createContext(inputRDF);
             }
 
-            List<String> header = columns.asJavaList().stream()
+            List<RDFNode> columnList = columns.asJavaList();
+            List<String> header = columnList.stream()
                     .map(rdfNode -> {
                         Resource columnResource = rdfNode.asResource();
                         Statement nameStatement = columnResource.getProperty(CSVW.name);
@@ -93,27 +115,31 @@ public class RDF2CSVModule extends AnnotatedAbstractModule {
                     })
                     .collect(Collectors.toList());
 
-            simpleWriter.write(header);
-
-            List<RDFNode> rowList = table.listProperties(CSVW.row)
-                    .mapWith(Statement::getObject)
-                    .toList();
+            Map<Node, List<Integer>> columnIndexes = getColumnIndexes(columnList);
+            String[] row = new String[columnList.size()];
+            Graph graph = inputRDF.getGraph();
+            Node tableNode = table.asNode();
+            SortedMap<Long, List<Node>> rowNum2RowsMap = getRowsByRowNumber(graph, tableNode);
 
-            rowList.sort(Comparator.comparingInt(o -> o.asResource().getProperty(CSVW.rowNum).getInt()));
-
-            for (RDFNode node: rowList){
-                List<String> row = new ArrayList<>();
-                Resource rowResource = node.asResource();
-                Resource res = rowResource.getProperty(CSVW.describes).getObject().asResource();
+            simpleWriter.write(header);
 
-                for (RDFNode col : columns.asJavaList()) {
-                    Property property = inputRDF.getProperty(col.asResource().getProperty(KBSS_CSVW.property).getObject().toString());
-                    row.add(res.hasProperty(property) ? getObjectValueFromStatement(res.getProperty(property)) : "");
+            for (List<Node> rowNodes : rowNum2RowsMap.values()) {
+                for (Node rowNode : rowNodes) {
+                    Arrays.fill(row, null);
+                    // values of all resources described by the row, the first value of a column is used
+                    graph.find(rowNode, CSVW.describes.asNode(), Node.ANY)
+                        .forEachRemaining(t -> fillRow(row, columnIndexes, graph, t.getObject(), inputRDF));
+                    for (int i = 0; i < row.length; i++) {
+                        if (row[i] == null) {
+                            row[i] = "";
+                        }
+                    }
+                    simpleWriter.write(row);
                 }
-                simpleWriter.write(row);
             }
-        }catch (IOException e){
-            e.printStackTrace();
+        } catch (IOException e) {
+            LOG.error("Could not write table to file {}.", fileOutputPath, e);
+            throw new SPipesException("Could not write table to file " + fileOutputPath + ".", e);
         }
         return ExecutionContextFactory.createContext(inputRDF);
     }
@@ -123,13 +149,81 @@ public class RDF2CSVModule extends AnnotatedAbstractModule {
         return TYPE_URI;
     }
 
-    private String getObjectValueFromStatement(Statement st){
-        if (st == null) return "";
-        RDFNode node = st.getObject();
-        if(node == null) return "";
+    public String getFileOutputPath() {
+        return fileOutputPath;
+    }
+
+    public void setFileOutputPath(String fileOutputPath) {
+        this.fileOutputPath = fileOutputPath;
+    }
+
+    /**
+     * Checks that each row of the table has a single integer row number and describes a resource.
+     *
+     * @return rows of the table ordered by their row numbers
+     * @throws TableSchemaException if a row does not meet the conditions
+     */
+    private SortedMap<Long, List<Node>> getRowsByRowNumber(Graph graph, Node table) {
+        SortedMap<Long, List<Node>> rowNum2RowsMap = new TreeMap<>();
+        ExtendedIterator<Triple> it = graph.find(table, CSVW.row.asNode(), Node.ANY);
+        try {
+            while (it.hasNext()) {
+                Node row = it.next().getObject();
+                List<Node> rowNums = graph.find(row, CSVW.rowNum.asNode(), Node.ANY).mapWith(Triple::getObject).toList();
+                if (rowNums.size() != 1) {
+                    throw new TableSchemaException(
+                        "Row " + row + " has " + rowNums.size() + " row numbers instead of one.", this);
+                }
+                if (!graph.contains(row, CSVW.describes.asNode(), Node.ANY)) {
+                    throw new TableSchemaException("Row " + row + " does not describe any resource.", this);
+                }
+                Node rowNum = rowNums.get(0);
+                Object rowNumValue = rowNum.isLiteral() ? rowNum.getLiteralValue() : null;
+                if (!(rowNumValue instanceof Integer || rowNumValue instanceof Long || rowNumValue instanceof BigInteger)) {
+                    throw new TableSchemaException(
+                        "Row number " + rowNum + " of row " + row + " is not an integer.", this);
+                }
+                rowNum2RowsMap.computeIfAbsent(((Number) rowNumValue).longValue(), n -> new ArrayList<>(1)).add(row);
+            }
+        } finally {
+            it.close();
+        }
+        return rowNum2RowsMap;
+    }
+
+    private void fillRow(String[] row, Map<Node, List<Integer>> columnIndexes, Graph graph, Node res, Model model) {
+        ExtendedIterator<Triple> it = graph.find(res, Node.ANY, Node.ANY);
+        try {
+            while (it.hasNext()) {
+                Triple t = it.next();
+                List<Integer> indexes = columnIndexes.get(t.getPredicate());
+                if (indexes == null) {
+                    continue;
+                }
+                for (int i : indexes) {
+                    if (row[i] == null) {
+                        row[i] = getObjectValue(model, t.getObject());
+                    }
+                }
+            }
+        } finally {
+            it.close();
+        }
+    }
+
+    private Map<Node, List<Integer>> getColumnIndexes(List<RDFNode> columnList) {
+        Map<Node, List<Integer>> columnIndexes = new HashMap<>();
+        for (int i = 0; i < columnList.size(); i++) {
+            Node property = NodeFactory.createURI(
+                    columnList.get(i).asResource().getProperty(KBSS_CSVW.property).getObject().toString());
+            columnIndexes.computeIfAbsent(property, p -> new ArrayList<>(1)).add(i);
+        }
+        return columnIndexes;
+    }
 
+    private String getObjectValue(Model model, Node node){
         return node.isLiteral()
-                ? Optional.ofNullable(node.asNode().getLiteralValue().toString()).orElse("")
-                : Optional.ofNullable(node.toString()).orElse("");
+                ? Optional.ofNullable(node.getLiteralValue().toString()).orElse("")
+                : Optional.ofNullable(model.asRDFNode(node).toString()).orElse("");
     }
 }
@@ -11,16 +11,28 @@ import cz.cvut.spipes.engine.ExecutionContext;
 import cz.cvut.spipes.engine.ExecutionContextFactory;
 import cz.cvut.spipes.exception.ResourceNotFoundException;
 import cz.cvut.spipes.exception.ResourceNotUniqueException;
+import cz.cvut.spipes.exception.SPipesException;
 import cz.cvut.spipes.modules.annotations.SPipesModule;
 import cz.cvut.spipes.modules.model.*;
 import cz.cvut.spipes.modules.util.BNodesTransformer;
+import cz.cvut.spipes.modules.util.CsvRecordChunker;
 import cz.cvut.spipes.modules.util.HTML2TSVConvertor;
 import cz.cvut.spipes.modules.util.JopaPersistenceUtils;
 import cz.cvut.spipes.registry.StreamResource;
 import cz.cvut.spipes.registry.StreamResourceRegistry;
 import cz.cvut.spipes.util.JenaUtils;
 import org.apache.commons.cli.MissingArgumentException;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.GraphUtil;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
 import org.apache.jena.rdf.model.*;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.apache.jena.sparql.graph.GraphFactory;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -29,12 +41,17 @@ import org.supercsv.io.ICsvListReader;
 import org.supercsv.prefs.CsvPreference;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.Reader;
-import java.io.StringReader;
 import java.net.URI;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.Supplier;
 
 /**
@@ -84,6 +101,21 @@ import java.util.function.Supplier;
  * and then processed as usual.
  * Take a look at the option {@link TabularModule#processHTMLFile} and class {@link HTML2TSVConvertor} for more details.
  * <p>
+ * Large inputs can be converted by multiple threads, see option {@link TabularModule#parallelism}.
+ * The input is split to chunks of whole records (see {@link CsvRecordChunker}), which are converted independently.
+ * The output, including row numbers, is the same as the output of the sequential conversion.
+ * <p>
+ * The input is read as a stream and cell statements are added to the output model as rows are read.
+ * However, the output model itself is kept in memory, so the memory used by the conversion grows linearly
+ * with the number of rows, i.e. the module is not suitable for tables whose RDF does not fit in memory.
+ * In {@link Mode#STANDARD} mode, a description of each row is kept as well until it is added to the output,
+ * in other modes rows are not kept.
+ * <p>
+ * For such tables, a caller can set an output sink (see {@link TabularModule#setOutputSink(StreamRDF)}),
+ * e.g. a stream writing to a TDB dataset or to a file. Cell statements are then sent to the sink as rows are read,
+ * rows are not described (not even in {@link Mode#STANDARD} mode) and the output model contains only
+ * the description of the table and its columns, thus the memory used does not grow with the number of rows.
+ * <p>
  * <b>Important notes (differences from the recommendation):</b><br/>
  * Does not support custom table group URIs.<br/>
  * Does not support custom table URIs. <br/>
@@ -104,6 +136,22 @@ public class TabularModule extends AbstractModule {
     private final Property P_SOURCE_RESOURCE_URI = getSpecificParameter("source-resource-uri");
     private final Property P_SKIP_HEADER = getSpecificParameter("skip-header");
     private final Property P_PROCESS_HTML_FILE = getSpecificParameter("process-html-file");
+    private final Property P_PARALLELISM = getSpecificParameter("parallelism");
+
+    /**
+     * Number of chunks processed by each thread in the parallel conversion, more chunks balance the load better.
+     */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    /**
+     * Minimal size of the content in bytes to be converted in parallel.
+     */
+    private static final int MIN_PARALLEL_CONTENT_SIZE = 1 << 16;
+
+    /**
+     * Maximal size of the content in bytes of a chunk converted in parallel with output sink.
+     */
+    private static final int MAX_SINK_CHUNK_SIZE = 1 << 22;
 
     //sml:replace
     private boolean isReplace;
@@ -132,6 +180,14 @@ public class TabularModule extends AbstractModule {
     //:accept-invalid-quoting
     private boolean acceptInvalidQuoting;
 
+    //:parallelism
+    private int parallelism = 1;
+
+    /**
+     * Receives cell statements instead of the output model, if set.
+     */
+    private StreamRDF outputSink;
+
     /**
      * Represent a group of tables.
      */
@@ -173,7 +229,6 @@ public class TabularModule extends AbstractModule {
         table = onTable(null);
 
         List<Column> outputColumns = new ArrayList<>();
-        List<Statement> rowStatements = new ArrayList<>();
 
         CsvPreference csvPreference = new CsvPreference.Builder(
                 quoteCharacter,
@@ -227,48 +282,42 @@ public class TabularModule extends AbstractModule {
                 if(isDuplicate) throwNotUniqueException(schemaColumn,columnTitle, columnName);
             }
 
-            List<String> row;
+            // resolve column properties once per execution
+            Node[] columnProperties = new Node[header.length];
+            for (int i = 0; i < header.length; i++) {
+                columnProperties[i] = NodeFactory.createURI(outputColumns.get(i).getPropertyUrl());
+            }
+            StreamRDF cellSink = (outputSink != null) ? outputSink : StreamRDFLib.graph(outputModel.getGraph());
+            cellSink.start();
+
             int rowNumber = 0;
-            //for each row
-            while( (row = listReader.read()) != null ) {
-                rowNumber++;
-                // 4.6.1 and 4.6.3
-                Row r = new Row();
-
-                if (outputMode == Mode.STANDARD) {
-                    // 4.6.2
-                    table.getRows().add(r);
-                    // 4.6.4
-                    r.setRownum(rowNumber);
-                    // 4.6.5
-                    r.setUrl(sourceResource.getUri() + "#row=" + (rowNumber + 1));
+            long startTime = System.currentTimeMillis();
+            if (isParallelConversion(csvPreference)) {
+                listReader.close();
+                rowNumber = convertRowsInParallel(cellSink, columnProperties, csvPreference);
+                if (isDescribingRows()) {
+                    for (int i = 1; i <= rowNumber; i++) {
+                        onRow(i, tableSchema.createAboutUrl(i));
+                    }
                 }
-
-                // 4.6.6 - Add titles.
-                // We do not support titles.
-
-                // 4.6.7
-                // In standard mode only, emit the triples generated by running
-                // the algorithm specified in section 6. JSON-LD to RDF over any
-                // non-core annotations specified for the row, with node R as
-                // an initial subject, the non-core annotation as property, and the
-                // value of the non-core annotation as value.
-
-                for (int i = 0; i < header.length; i++) {
-                    // 4.6.8.1
-                    Column column = outputColumns.get(i);
-                    String cellValue = row.get(i);
-                    if (cellValue != null) rowStatements.add(createRowResource(cellValue, rowNumber, column));
-                    // 4.6.8.2
-                    r.setDescribes(tableSchema.createAboutUrl(rowNumber));
-                    //TODO: URITemplate
-
-                    // 4.6.8.5 - else, if value is list and cellOrdering == true
-                    // 4.6.8.6 - else, if value is list
-                    // 4.6.8.7 - else, if cellValue is not null
+            } else {
+                List<Triple> rowTriples = new ArrayList<>(header.length);
+                List<String> row;
+                //for each row
+                while( (row = listReader.read()) != null ) {
+                    rowNumber++;
+                    String rowAboutUrl = tableSchema.createAboutUrl(rowNumber);
+                    onRow(rowNumber, rowAboutUrl);
+                    addCellTriples(rowTriples, NodeFactory.createURI(rowAboutUrl), row, columnProperties);
+
+                    // cell statements are added to the output right away instead of collecting rows first
+                    rowTriples.forEach(cellSink::triple);
+                    rowTriples.clear();
                 }
+                listReader.close();
             }
-            listReader.close();
+            cellSink.finish();
+            logConversionRate(rowNumber, System.currentTimeMillis() - startTime);
         } catch (IOException | MissingArgumentException e) {
             LOG.error("Error while reading file from resource uri {}", sourceResource, e);
         }
@@ -285,29 +334,169 @@ public class TabularModule extends AbstractModule {
         em.getEntityManagerFactory().close();
 
         tableSchema.addColumnsList(persistedModel, outputColumns);
-        outputModel.add(rowStatements);
         outputModel.add(bNodesTransformer.transferJOPAEntitiesToBNodes(persistedModel));
 
         return getExecutionContext(inputModel, outputModel);
     }
 
-    private ICsvListReader getCsvListReader(CsvPreference csvPreference) {
-        if (acceptInvalidQuoting) {
-            if (getQuote() == '\0') {
-                return null;
-            }else
-                return new CsvListReader(new InvalidQuotingTokenizer(getReader(), csvPreference), csvPreference);
+    /**
+     * Rows are described only in the standard mode without output sink, otherwise they are not created at all.
+     */
+    private boolean isDescribingRows() {
+        return outputMode == Mode.STANDARD && outputSink == null;
+    }
+
+    private void onRow(int rowNumber, String rowAboutUrl) {
+        if (!isDescribingRows()) {
+            return;
+        }
+        // 4.6.1 and 4.6.3
+        Row r = new Row();
+
+        // 4.6.2
+        table.getRows().add(r);
+        // 4.6.4
+        r.setRownum(rowNumber);
+        // 4.6.5
+        r.setUrl(sourceResource.getUri() + "#row=" + (rowNumber + 1));
+
+        // 4.6.6 - Add titles.
+        // We do not support titles.
+
+        // 4.6.7
+        // In standard mode only, emit the triples generated by running
+        // the algorithm specified in section 6. JSON-LD to RDF over any
+        // non-core annotations specified for the row, with node R as
+        // an initial subject, the non-core annotation as property, and the
+        // value of the non-core annotation as value.
+
+        // 4.6.8.2
+        r.setDescribes(rowAboutUrl);
+    }
+
+    private static void addCellTriples(List<Triple> rowTriples, Node rowNode, List<String> row, Node[] columnProperties) {
+        for (int i = 0; i < columnProperties.length; i++) {
+            // 4.6.8.1
+            String cellValue = row.get(i);
+            if (cellValue != null) {
+                rowTriples.add(Triple.create(rowNode, columnProperties[i], NodeFactory.createLiteral(cellValue)));
+            }
+            //TODO: URITemplate
+
+            // 4.6.8.5 - else, if value is list and cellOrdering == true
+            // 4.6.8.6 - else, if value is list
+            // 4.6.8.7 - else, if cellValue is not null
         }
-        return new CsvListReader(getReader(), csvPreference);
     }
 
-    private Statement createRowResource(String cellValue, int rowNumber, Column column) {
-        Resource rowResource = ResourceFactory.createResource(tableSchema.createAboutUrl(rowNumber));
+    private boolean isParallelConversion(CsvPreference csvPreference) {
+        return parallelism > 1
+            && sourceResource.getContentLength() >= MIN_PARALLEL_CONTENT_SIZE
+            && CsvRecordChunker.isSupported(inputCharset, csvPreference.getQuoteChar(), csvPreference.getDelimiterChar());
+    }
 
-        return ResourceFactory.createStatement(
-                rowResource,
-                ResourceFactory.createProperty(column.getPropertyUrl()),
-                ResourceFactory.createPlainLiteral(cellValue));
+    /**
+     * Splits the content to chunks of whole records and converts the chunks by a pool of threads.
+     * Triples of the chunks are sent to the sink in the order of the chunks,
+     * row numbers are the same as in the sequential conversion. At most {@link #CHUNKS_PER_THREAD} chunks
+     * per thread are converted ahead of the sink. With output sink, chunks are not larger than
+     * {@link #MAX_SINK_CHUNK_SIZE}, so the memory used does not grow with the size of the content.
+     *
+     * @return number of converted rows
+     */
+    private int convertRowsInParallel(StreamRDF cellSink, Node[] columnProperties, CsvPreference csvPreference) {
+        int chunkCount = parallelism * CHUNKS_PER_THREAD;
+        if (outputSink != null) {
+            chunkCount = (int) Math.max(chunkCount, sourceResource.getContentLength() / MAX_SINK_CHUNK_SIZE + 1);
+        }
+        List<CsvRecordChunker.Chunk> chunks;
+        try (InputStream content = sourceResource.getInputStream()) {
+            chunks = new CsvRecordChunker(csvPreference.getQuoteChar(), csvPreference.getDelimiterChar(), acceptInvalidQuoting)
+                .split(content, sourceResource.getContentLength(), !skipHeader, chunkCount);
+        } catch (IOException e) {
+            throw new SPipesException("Could not read content of stream resource " + sourceResource.getUri() + ".", e);
+        }
+        LOG.debug("Converting {} bytes of {} in {} chunks using {} threads.",
+            sourceResource.getContentLength(), sourceResource.getUri(), chunks.size(), parallelism);
+
+        // compile the row url template before it is shared by the threads
+        tableSchema.createAboutUrl(0);
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        try {
+            int maxPendingChunkCount = parallelism * CHUNKS_PER_THREAD;
+            Deque<Future<Graph>> results = new ArrayDeque<>(maxPendingChunkCount);
+            int rowCount = 0;
+            for (CsvRecordChunker.Chunk chunk : chunks) {
+                if (results.size() == maxPendingChunkCount) {
+                    sendChunkGraph(results.poll().get(), cellSink);
+                }
+                results.add(executor.submit(() -> convertChunk(chunk, columnProperties, csvPreference)));
+                rowCount += chunk.getRowCount();
+            }
+            while (!results.isEmpty()) {
+                sendChunkGraph(results.poll().get(), cellSink);
+            }
+            return rowCount;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while converting " + sourceResource.getUri() + ".", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Conversion of " + sourceResource.getUri() + " failed.", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void sendChunkGraph(Graph chunkGraph, StreamRDF cellSink) {
+        chunkGraph.find().forEachRemaining(cellSink::triple);
+        chunkGraph.close();
+    }
+
+    private Graph convertChunk(CsvRecordChunker.Chunk chunk, Node[] columnProperties,
+                               CsvPreference csvPreference) throws IOException {
+        Graph graph = GraphFactory.createDefaultGraph();
+        List<Triple> rowTriples = new ArrayList<>(columnProperties.length);
+        InputStream content = sourceResource.getInputStream();
+        try {
+            IOUtils.skipFully(content, chunk.getStart());
+        } catch (IOException e) {
+            content.close();
+            throw e;
+        }
+        Reader reader = new InputStreamReader(new BoundedInputStream(content, chunk.getLength()), inputCharset);
+        int rowNumber = chunk.getFirstRowIndex();
+        try (ICsvListReader listReader = createCsvListReader(reader, csvPreference)) {
+            List<String> row;
+            while ((row = listReader.read()) != null) {
+                rowNumber++;
+                addCellTriples(rowTriples, NodeFactory.createURI(tableSchema.createAboutUrl(rowNumber)), row, columnProperties);
+                GraphUtil.add(graph, rowTriples);
+                rowTriples.clear();
+            }
+        }
+        if (rowNumber - chunk.getFirstRowIndex() != chunk.getRowCount()) {
+            throw new IllegalStateException(String.format(
+                "Chunk of %s starting at byte %d contains %d rows, expected %d rows.",
+                sourceResource.getUri(), chunk.getStart(), rowNumber - chunk.getFirstRowIndex(), chunk.getRowCount()));
+        }
+        return graph;
+    }
+
+    private ICsvListReader getCsvListReader(CsvPreference csvPreference) {
+        if (acceptInvalidQuoting && getQuote() == '\0') {
+            return null;
+        }
+        return createCsvListReader(getReader(), csvPreference);
+    }
+
+    private ICsvListReader createCsvListReader(Reader reader, CsvPreference csvPreference) {
+        if (acceptInvalidQuoting) {
+            return new CsvListReader(new InvalidQuotingTokenizer(reader, csvPreference), csvPreference);
+        }
+        return new CsvListReader(reader, csvPreference);
     }
 
     private boolean hasInputSchema(TableSchema inputTableSchema) {
@@ -369,6 +558,7 @@ public class TabularModule extends AbstractModule {
         skipHeader = getPropertyValue(P_SKIP_HEADER, false);
         processHTMLFile = getPropertyValue(P_PROCESS_HTML_FILE, false);
         acceptInvalidQuoting = getPropertyValue(P_ACCEPT_INVALID_QUOTING, false);
+        parallelism = getPropertyValue(P_PARALLELISM, 1);
         quoteCharacter = getPropertyValue(P_QUOTE_CHARACTER, getDefaultQuoteCharacterSupplier(delimiter));
         dataPrefix = getEffectiveValue(P_DATE_PREFIX).asLiteral().toString();
         sourceResource = getResourceByUri(getEffectiveValue(P_SOURCE_RESOURCE_URI).asLiteral().toString());
@@ -469,7 +659,19 @@ public class TabularModule extends AbstractModule {
     }
 
     private Reader getReader() {
-        return new StringReader(new String(sourceResource.getContent(), inputCharset));
+        // decode the content while it is read instead of creating its copy in a string
+        try {
+            return new InputStreamReader(sourceResource.getInputStream(), inputCharset);
+        } catch (IOException e) {
+            throw new SPipesException("Could not read content of stream resource " + sourceResource.getUri() + ".", e);
+        }
+    }
+
+    private void logConversionRate(int rowCount, long durationMillis) {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Converted {} rows in {} ms ({} rows/s).",
+                rowCount, durationMillis, durationMillis > 0 ? rowCount * 1000L / durationMillis : rowCount);
+        }
     }
 
     @NotNull
@@ -539,6 +741,32 @@ public class TabularModule extends AbstractModule {
         this.processHTMLFile = processHTMLFile;
     }
 
+    public void setAcceptInvalidQuoting(boolean acceptInvalidQuoting) {
+        this.acceptInvalidQuoting = acceptInvalidQuoting;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public StreamRDF getOutputSink() {
+        return outputSink;
+    }
+
+    /**
+     * Sets the sink receiving cell statements instead of the output model, e.g. a stream writing to a TDB dataset,
+     * see {@link org.apache.jena.riot.system.StreamRDFLib}. The module calls start and finish of the sink.
+     *
+     * @param outputSink sink of cell statements or null to add them to the output model
+     */
+    public void setOutputSink(StreamRDF outputSink) {
+        this.outputSink = outputSink;
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
     private String[] getHeaderFromSchema(Model inputModel, String[] header, boolean hasInputSchema) {
         if (hasInputSchema) {
             List<String> orderList = new ArrayList<>();
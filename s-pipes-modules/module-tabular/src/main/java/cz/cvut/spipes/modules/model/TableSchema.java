@@ -14,6 +14,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 /**
@@ -32,6 +33,8 @@ public class TableSchema extends AbstractEntity {
 
     private static final Logger LOG = LoggerFactory.getLogger(TableSchema.class);
 
+    private static final String ROW_SLOT_REGEX = Pattern.quote("{_row}");
+
     @OWLDataProperty(iri = CSVW.aboutUrlUri, datatype = CSVW.uriTemplate)
     private String aboutUrl;
 
@@ -48,6 +51,13 @@ public class TableSchema extends AbstractEntity {
 
     private transient List<String> orderList;
 
+    /**
+     * About url template split around the row slots.
+     */
+    private transient String[] aboutUrlParts;
+
+    private transient String compiledAboutUrl;
+
     public String getAboutUrl() {
         return aboutUrl;
     }
@@ -231,11 +241,21 @@ public class TableSchema extends AbstractEntity {
     public String createAboutUrl(int rowNumber) {
         String columnAboutUrlStr = aboutUrl;
         if (columnAboutUrlStr == null) columnAboutUrlStr = getAboutUrl();
-        columnAboutUrlStr = columnAboutUrlStr.replace(
-                "{_row}",
-                Integer.toString(rowNumber + 1)
-        );
-        return columnAboutUrlStr;
+        if (!columnAboutUrlStr.equals(compiledAboutUrl)) {
+            // split the template once, instead of searching for the row slot for every row
+            aboutUrlParts = columnAboutUrlStr.split(ROW_SLOT_REGEX, -1);
+            compiledAboutUrl = columnAboutUrlStr;
+        }
+        if (aboutUrlParts.length == 1) {
+            return columnAboutUrlStr;
+        }
+        String rowStr = Integer.toString(rowNumber + 1);
+        StringBuilder sb = new StringBuilder(columnAboutUrlStr.length() + rowStr.length() * (aboutUrlParts.length - 1));
+        sb.append(aboutUrlParts[0]);
+        for (int i = 1; i < aboutUrlParts.length; i++) {
+            sb.append(rowStr).append(aboutUrlParts[i]);
+        }
+        return sb.toString();
     }
 
     public void setOrderList(List<String> orderList) {
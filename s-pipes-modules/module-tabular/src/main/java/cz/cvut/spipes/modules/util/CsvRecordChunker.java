@@ -0,0 +1,224 @@
+package cz.cvut.spipes.modules.util;
+
+import cz.cvut.spipes.InvalidQuotingTokenizer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits content of a CSV (or TSV) file into byte ranges aligned to record boundaries,
+ * so that each range can be parsed independently. The content is read once as a stream.
+ * <p>
+ * Line breaks inside quoted values do not end a record. Quotes are tracked the same way
+ * as the Super CSV tokenizer does, i.e. any quote character starts a quoted section and two
+ * consecutive quote characters inside the quoted section represent an escaped quote.
+ * If invalid quoting is accepted, only quotes next to a delimiter or at the start/end of the line
+ * are considered, which is compatible with {@link InvalidQuotingTokenizer}.
+ * <p>
+ * Empty lines are not counted as records as they are skipped by the Super CSV tokenizer.
+ * The content must be encoded in a charset in which line breaks, the delimiter and the quote character
+ * are represented as single ASCII bytes, see {@link #isSupported(Charset, char, int)}.
+ */
+public class CsvRecordChunker {
+
+    private final char quoteCharacter;
+    private final int delimiter;
+    private final boolean acceptInvalidQuoting;
+
+    /**
+     * @param quoteCharacter       quote character, '\0' if values are not quoted
+     * @param delimiter            delimiter of the values
+     * @param acceptInvalidQuoting true if the content is parsed by {@link InvalidQuotingTokenizer}
+     */
+    public CsvRecordChunker(char quoteCharacter, int delimiter, boolean acceptInvalidQuoting) {
+        this.quoteCharacter = quoteCharacter;
+        this.delimiter = delimiter;
+        this.acceptInvalidQuoting = acceptInvalidQuoting;
+    }
+
+    /**
+     * Returns true if records of content encoded in the charset can be detected by this class.
+     */
+    public static boolean isSupported(Charset charset, char quoteCharacter, int delimiter) {
+        return isSingleAsciiByte(charset, '\n')
+            && isSingleAsciiByte(charset, '\r')
+            && isSingleAsciiByte(charset, (char) delimiter)
+            && (quoteCharacter == '\0' || isSingleAsciiByte(charset, quoteCharacter));
+    }
+
+    /**
+     * Splits the content into chunks of approximately the same size.
+     *
+     * @param content       content to split, the stream is not closed
+     * @param contentLength length of the content in bytes
+     * @param hasHeader     true if the first record is a header, which is not included in any chunk
+     * @param chunkCount    requested number of chunks, fewer chunks are returned if there are not enough records
+     * @return chunks in the order of the content
+     */
+    public List<Chunk> split(InputStream content, long contentLength, boolean hasHeader, int chunkCount) throws IOException {
+        ByteScanner scanner = new ByteScanner(content);
+        if (hasHeader) {
+            while (scanner.peek() >= 0) {
+                boolean isEmpty = isEmptyLine(scanner);
+                skipRecord(scanner);
+                if (!isEmpty) {
+                    break;
+                }
+            }
+        }
+
+        long chunkSize = Math.max(1, (contentLength - scanner.position + chunkCount - 1) / chunkCount);
+        List<Chunk> chunks = new ArrayList<>(chunkCount);
+        long chunkStart = scanner.position;
+        int firstRowIndex = 0;
+        int rowCount = 0;
+        while (scanner.peek() >= 0) {
+            if (!isEmptyLine(scanner)) {
+                rowCount++;
+            }
+            skipRecord(scanner);
+            if (scanner.position - chunkStart >= chunkSize) {
+                chunks.add(new Chunk(chunkStart, scanner.position, firstRowIndex, rowCount));
+                firstRowIndex += rowCount;
+                rowCount = 0;
+                chunkStart = scanner.position;
+            }
+        }
+        if (chunkStart < scanner.position) {
+            chunks.add(new Chunk(chunkStart, scanner.position, firstRowIndex, rowCount));
+        }
+        return chunks;
+    }
+
+    /**
+     * Reads the record at the position of the scanner including the line break that ends it.
+     */
+    private void skipRecord(ByteScanner scanner) throws IOException {
+        boolean isQuoted = false;
+        // byte preceding the current byte on the line, -1 at the start of the line
+        int previous = -1;
+        int b;
+        while ((b = scanner.next()) >= 0) {
+            if (b == '\n' || b == '\r') {
+                if (b == '\r' && scanner.peek() == '\n') {
+                    scanner.next();
+                }
+                if (!isQuoted) {
+                    return;
+                }
+                previous = -1;
+                continue;
+            }
+            if (quoteCharacter != '\0' && b == quoteCharacter
+                && (!acceptInvalidQuoting || isValidQuote(previous, scanner.peek()))) {
+                isQuoted = !isQuoted;
+            }
+            previous = b;
+        }
+    }
+
+    private boolean isValidQuote(int previous, int next) {
+        boolean validCharBefore = previous == -1 || previous == delimiter;
+        boolean validCharAfter = next == -1
+            || next == delimiter
+            || next == '\n'
+            || next == '\r';
+        return validCharBefore || validCharAfter;
+    }
+
+    private static boolean isEmptyLine(ByteScanner scanner) throws IOException {
+        int b = scanner.peek();
+        return b == '\n' || b == '\r';
+    }
+
+    private static boolean isSingleAsciiByte(Charset charset, char c) {
+        if (c >= 128 || !charset.canEncode()) {
+            return false;
+        }
+        byte[] bytes = String.valueOf(c).getBytes(charset);
+        return bytes.length == 1 && bytes[0] == c;
+    }
+
+    /**
+     * Range of the content containing whole records.
+     */
+    public static class Chunk {
+
+        private final long start;
+        private final long end;
+        private final int firstRowIndex;
+        private final int rowCount;
+
+        Chunk(long start, long end, int firstRowIndex, int rowCount) {
+            this.start = start;
+            this.end = end;
+            this.firstRowIndex = firstRowIndex;
+            this.rowCount = rowCount;
+        }
+
+        public long getStart() {
+            return start;
+        }
+
+        public long getLength() {
+            return end - start;
+        }
+
+        /**
+         * @return number of rows that precede this chunk
+         */
+        public int getFirstRowIndex() {
+            return firstRowIndex;
+        }
+
+        public int getRowCount() {
+            return rowCount;
+        }
+    }
+
+    /**
+     * Buffered reader of bytes with a single byte look-ahead, which tracks the position in the content.
+     */
+    private static class ByteScanner {
+
+        private final InputStream content;
+        private final byte[] buffer = new byte[8192];
+        private int length;
+        private int index;
+        private long position;
+
+        private ByteScanner(InputStream content) {
+            this.content = content;
+        }
+
+        /**
+         * @return next byte without consuming it, -1 at the end of the content
+         */
+        private int peek() throws IOException {
+            while (index == length) {
+                length = content.read(buffer);
+                index = 0;
+                if (length < 0) {
+                    length = 0;
+                    return -1;
+                }
+            }
+            return buffer[index] & 0xFF;
+        }
+
+        /**
+         * @return next byte, -1 at the end of the content
+         */
+        private int next() throws IOException {
+            int b = peek();
+            if (b >= 0) {
+                index++;
+                position++;
+            }
+            return b;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package cz.cvut.spipes.modules.util;
 
 import cz.cvut.spipes.constants.HTML;
+import cz.cvut.spipes.exception.SPipesException;
 import cz.cvut.spipes.registry.StreamResource;
 import cz.cvut.spipes.registry.StringStreamResource;
 import org.jsoup.Jsoup;
@@ -8,6 +9,10 @@ import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
 /**
  * Module for converting tabular data (e.g. CSV, TSV, table represented in HTML) to RDF
  * <p>
@@ -31,7 +36,12 @@ public class HTML2TSVConvertor {
     public StringStreamResource convertToTSV(StreamResource streamResource) {
         StringBuilder tsvStringBuilder = new StringBuilder();
 
-        Document doc = Jsoup.parseBodyFragment(new String(streamResource.getContent()));
+        Document doc;
+        try (InputStream is = streamResource.getInputStream()) {
+            doc = Jsoup.parse(is, Charset.defaultCharset().name(), "");
+        } catch (IOException e) {
+            throw new SPipesException("Could not read content of stream resource " + streamResource.getUri() + ".", e);
+        }
         doc.outputSettings(new Document.OutputSettings().prettyPrint(false));
         Elements rows = doc.getElementsByTag(HTML.TABLE_ROW_TAG);
 
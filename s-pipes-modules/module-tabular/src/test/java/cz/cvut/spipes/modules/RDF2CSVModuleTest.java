@@ -0,0 +1,139 @@
+package cz.cvut.spipes.modules;
+
+import cz.cvut.spipes.constants.CSVW;
+import cz.cvut.spipes.constants.KBSS_CSVW;
+import cz.cvut.spipes.engine.ExecutionContextFactory;
+import cz.cvut.spipes.modules.exception.TableSchemaException;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.vocabulary.RDF;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RDF2CSVModuleTest {
+
+    private static final String NS = "http://example.org/";
+
+    private Path outputFile;
+    private Model model;
+    private Resource table;
+    private Property propertyA;
+    private Property propertyB;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        outputFile = Files.createTempFile("rdf2csv-", ".csv");
+
+        model = ModelFactory.createDefaultModel();
+        propertyA = model.createProperty(NS + "a");
+        propertyB = model.createProperty(NS + "b");
+        // columns are in different order than their names
+        Resource columnB = model.createResource(NS + "column-b")
+            .addProperty(CSVW.name, "b")
+            .addProperty(KBSS_CSVW.property, propertyB);
+        Resource columnA = model.createResource(NS + "column-a")
+            .addProperty(CSVW.name, "a")
+            .addProperty(KBSS_CSVW.property, propertyA);
+        Resource tableSchema = model.createResource(NS + "table-schema")
+            .addProperty(CSVW.columns, model.createList(columnB, columnA));
+        table = model.createResource(NS + "table")
+            .addProperty(RDF.type, CSVW.Table)
+            .addProperty(CSVW.tableSchema, tableSchema);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(outputFile);
+    }
+
+    @Test
+    void executeSelfWritesRowsInOrderOfRowNumbers() throws IOException {
+        addRow(3, createResource("r-3", "a3", "b3"));
+        addRow(1, createResource("r-1", "a1", "b1"));
+        addRow(2, createResource("r-2", "a2", "b2"));
+
+        assertEquals(Arrays.asList("b,a", "b1,a1", "b2,a2", "b3,a3"), executeModule());
+    }
+
+    @Test
+    void executeSelfWritesRowsWithSparseRowNumbers() throws IOException {
+        addRow(1_000_000_000, createResource("r-2", "a2", "b2"));
+        addRow(1, createResource("r-1", "a1", "b1"));
+
+        assertEquals(Arrays.asList("b,a", "b1,a1", "b2,a2"), executeModule());
+    }
+
+    @Test
+    void executeSelfWritesRowDescribingMoreResourcesOnce() throws IOException {
+        Resource row = addRow(1, createResource("r-1a", "a1", null));
+        row.addProperty(CSVW.describes, createResource("r-1b", null, "b1"));
+
+        assertEquals(Arrays.asList("b,a", "b1,a1"), executeModule());
+    }
+
+    @Test
+    void executeSelfWritesEmptyAndMissingValuesAsEmptyCells() throws IOException {
+        addRow(1, createResource("r-1", "", null));
+
+        assertEquals(Arrays.asList("b,a", ","), executeModule());
+    }
+
+    @Test
+    void executeSelfWithRowWithoutRowNumberThrowsTableSchemaException() {
+        addRow(1, createResource("r-1", "a1", "b1"));
+        Resource row = model.createResource(NS + "row-without-number")
+            .addProperty(CSVW.describes, createResource("r-2", "a2", "b2"));
+        table.addProperty(CSVW.row, row);
+
+        assertThrows(TableSchemaException.class, this::executeModule);
+    }
+
+    @Test
+    void executeSelfWithRowWithoutDescribedResourceThrowsTableSchemaException() {
+        addRow(1, createResource("r-1", "a1", "b1"));
+        Resource row = model.createResource(NS + "row-without-resource")
+            .addLiteral(CSVW.rowNum, model.createTypedLiteral(2));
+        table.addProperty(CSVW.row, row);
+
+        assertThrows(TableSchemaException.class, this::executeModule);
+    }
+
+    private List<String> executeModule() throws IOException {
+        RDF2CSVModule module = new RDF2CSVModule();
+        module.setFileOutputPath(outputFile.toString());
+        module.setInputContext(ExecutionContextFactory.createContext(model));
+        module.executeSelf();
+        return Files.readAllLines(outputFile);
+    }
+
+    private Resource addRow(int rowNum, Resource describedResource) {
+        Resource row = model.createResource(NS + "row-" + rowNum)
+            .addLiteral(CSVW.rowNum, model.createTypedLiteral(rowNum))
+            .addProperty(CSVW.describes, describedResource);
+        table.addProperty(CSVW.row, row);
+        return row;
+    }
+
+    private Resource createResource(String localName, String valueA, String valueB) {
+        Resource resource = model.createResource(NS + localName);
+        if (valueA != null) {
+            resource.addProperty(propertyA, valueA);
+        }
+        if (valueB != null) {
+            resource.addProperty(propertyB, valueB);
+        }
+        return resource;
+    }
+}
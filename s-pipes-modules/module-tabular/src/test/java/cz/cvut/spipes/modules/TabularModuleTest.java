@@ -6,24 +6,43 @@ import cz.cvut.spipes.engine.ExecutionContext;
 import cz.cvut.spipes.engine.ExecutionContextFactory;
 import cz.cvut.spipes.exception.ResourceNotUniqueException;
 import cz.cvut.spipes.modules.exception.TableSchemaException;
+import cz.cvut.spipes.registry.StreamResource;
+import cz.cvut.spipes.registry.StringStreamResource;
 import cz.cvut.spipes.test.JenaTestUtils;
 import cz.cvut.spipes.util.JenaUtils;
 import cz.cvut.spipes.util.StreamResourceUtils;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
 import org.apache.jena.rdf.model.*;
+import org.apache.jena.riot.system.StreamRDFBase;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.apache.jena.sparql.graph.GraphFactory;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.supercsv.io.CsvListReader;
+import org.supercsv.io.ICsvListReader;
+import org.supercsv.prefs.CsvPreference;
 
 import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
 import java.net.URISyntaxException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.junit.jupiter.api.Assumptions.assumeTrue;
@@ -228,6 +247,286 @@ import static org.junit.jupiter.api.Assumptions.assumeTrue;
         }
      }
 
+    @DisplayName("Executes Tabular module in parallel with the same output as the sequential execution.")
+    @ParameterizedTest(name = "{index} => acceptInvalidQuoting={0}")
+    @ValueSource(booleans = {false, true})
+    void executeSelfInParallelReturnsSameOutputAsSequentialExecution(boolean acceptInvalidQuoting) {
+        StringStreamResource sourceResource = createMultilineCsvResource(5000);
+
+        Model sequentialModel = createCsvModule(sourceResource, acceptInvalidQuoting, 1)
+                .executeSelf().getDefaultModel();
+        Model parallelModel = createCsvModule(sourceResource, acceptInvalidQuoting, 4)
+                .executeSelf().getDefaultModel();
+
+        Resource lastRow = ResourceFactory.createResource(DATA_PREFIX + "#row-5001");
+        assertTrue(parallelModel.contains(lastRow, null, (RDFNode) null));
+        assertIsomorphic(parallelModel, sequentialModel);
+    }
+
+    @DisplayName("Executes Tabular module with output sink, which receives all cell statements.")
+    @ParameterizedTest(name = "{index} => parallelism={0}")
+    @ValueSource(ints = {1, 4})
+    void executeSelfWithOutputSinkSendsCellStatementsToSink(int parallelism) {
+        StringStreamResource sourceResource = createMultilineCsvResource(5000);
+        TabularModule expectedModule = createCsvModule(sourceResource, false, 1);
+        expectedModule.setOutputMode(Mode.MINIMAL);
+        Model expectedModel = expectedModule.executeSelf().getDefaultModel();
+
+        Graph sinkGraph = GraphFactory.createDefaultGraph();
+        TabularModule sinkModule = createCsvModule(sourceResource, false, parallelism);
+        sinkModule.setOutputMode(Mode.MINIMAL);
+        sinkModule.setOutputSink(StreamRDFLib.graph(sinkGraph));
+        Model outputModel = sinkModule.executeSelf().getDefaultModel();
+
+        Resource lastRow = ResourceFactory.createResource(DATA_PREFIX + "#row-5001");
+        assertFalse(outputModel.contains(lastRow, null, (RDFNode) null));
+        assertTrue(sinkGraph.contains(lastRow.asNode(), Node.ANY, Node.ANY));
+        assertIsomorphic(ModelFactory.createModelForGraph(sinkGraph).union(outputModel), expectedModel);
+    }
+
+    @Test
+    void executeSelfWithOutputSinkDoesNotDescribeRows() {
+        Graph sinkGraph = GraphFactory.createDefaultGraph();
+        TabularModule sinkModule = createCsvModule(createMultilineCsvResource(10), false, 1);
+        sinkModule.setOutputSink(StreamRDFLib.graph(sinkGraph));
+        Model outputModel = sinkModule.executeSelf().getDefaultModel();
+
+        assertFalse(sinkGraph.isEmpty());
+        assertFalse(outputModel.contains(null, CSVW.row));
+        assertTrue(outputModel.contains(null, CSVW.tableSchema));
+    }
+
+    /**
+     * Measures conversion throughput and peak heap of the conversion to an output sink
+     * for the given number of rows generated while they are read. Run by Maven profile benchmark only.
+     */
+    @Tag("benchmark")
+    @ParameterizedTest(name = "{index} => rowCount={0}")
+    @ValueSource(ints = {1_000_000, 10_000_000, 50_000_000})
+    void benchmarkExecuteSelfWithOutputSink(int rowCount) {
+        TabularModule csvModule = createCsvModule(new GeneratedCsvStreamResource(rowCount), false, 1);
+        AtomicLong tripleCount = new AtomicLong();
+        csvModule.setOutputSink(new StreamRDFBase() {
+            @Override
+            public void triple(Triple triple) {
+                tripleCount.incrementAndGet();
+            }
+        });
+        List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+            .filter(p -> p.getType() == MemoryType.HEAP)
+            .collect(Collectors.toList());
+        System.gc();
+        heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+
+        long startTime = System.nanoTime();
+        csvModule.executeSelf();
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+
+        long peakHeap = heapPools.stream().mapToLong(p -> p.getPeakUsage().getUsed()).sum();
+        LOG.info("Converted {} rows to {} cell triples: {} rows/s, peak heap {} MB.",
+            rowCount, tripleCount.get(), String.format("%.0f", rowCount / seconds), peakHeap / (1024 * 1024));
+    }
+
+    /**
+     * Measures conversion throughput, e.g. to compare implementations of the conversion loop.
+     * Run by Maven profile benchmark only.
+     */
+    @Tag("benchmark")
+    @Test
+    void benchmarkExecuteSelf() {
+        int rowCount = 200000;
+        StringStreamResource sourceResource = createMultilineCsvResource(rowCount);
+
+        for (Mode outputMode : new Mode[]{Mode.STANDARD, Mode.MINIMAL}) {
+            for (int parallelism : new int[]{1, 4}) {
+                TabularModule csvModule = createCsvModule(sourceResource, false, parallelism);
+                csvModule.setOutputMode(outputMode);
+                long startTime = System.nanoTime();
+                Model outputModel = csvModule.executeSelf().getDefaultModel();
+                double seconds = (System.nanoTime() - startTime) / 1e9;
+                LOG.info("Converted {} rows to {} triples in {} mode using {} threads: {} rows/s.",
+                    rowCount, outputModel.size(), outputMode, parallelism, String.format("%.0f", rowCount / seconds));
+            }
+        }
+    }
+
+    /**
+     * Compares conversion of a wide table with precompiled row URL and column properties to creation
+     * of the row URL and the property for every cell, as it was done before. Run by Maven profile benchmark only.
+     */
+    @Tag("benchmark")
+    @Test
+    void benchmarkExecuteSelfWithWideTable() throws IOException {
+        int rowCount = 10000;
+        int columnCount = 200;
+        StringBuilder sb = new StringBuilder();
+        for (int j = 0; j < columnCount; j++) {
+            sb.append(j == 0 ? "" : ",").append("column").append(j);
+        }
+        sb.append("\n");
+        for (int i = 1; i <= rowCount; i++) {
+            for (int j = 0; j < columnCount; j++) {
+                sb.append(j == 0 ? "" : ",").append("value ").append(i).append('-').append(j);
+            }
+            sb.append("\n");
+        }
+        byte[] content = sb.toString().getBytes(StandardCharsets.UTF_8);
+        StringStreamResource sourceResource = new StringStreamResource(DATA_PREFIX, content, "text/csv");
+
+        for (int round = 0; round < 3; round++) {
+            long startTime = System.nanoTime();
+            Model perCellModel = convertCreatingUrlsPerCell(content);
+            double perCellSeconds = (System.nanoTime() - startTime) / 1e9;
+
+            TabularModule csvModule = createCsvModule(sourceResource, false, 1);
+            csvModule.setOutputMode(Mode.MINIMAL);
+            startTime = System.nanoTime();
+            Model outputModel = csvModule.executeSelf().getDefaultModel();
+            double compiledSeconds = (System.nanoTime() - startTime) / 1e9;
+
+            assertTrue(outputModel.containsAll(perCellModel));
+            LOG.info("Converted {} rows with {} columns: {} rows/s with URLs created per cell, {} rows/s by module.",
+                rowCount, columnCount, String.format("%.0f", rowCount / perCellSeconds),
+                String.format("%.0f", rowCount / compiledSeconds));
+        }
+    }
+
+    /**
+     * Converts cells of the CSV content the way the module did before row URL and column properties were precompiled.
+     */
+    private Model convertCreatingUrlsPerCell(byte[] content) throws IOException {
+        String aboutUrl = DATA_PREFIX + "#row-{_row}";
+        Model model = ModelFactory.createDefaultModel();
+        try (ICsvListReader listReader = new CsvListReader(
+            new InputStreamReader(new ByteArrayInputStream(content), StandardCharsets.UTF_8), CsvPreference.STANDARD_PREFERENCE)) {
+            String[] header = listReader.getHeader(true);
+            List<String> row;
+            int rowNumber = 0;
+            while ((row = listReader.read()) != null) {
+                rowNumber++;
+                for (int i = 0; i < header.length; i++) {
+                    String cellValue = row.get(i);
+                    if (cellValue != null) {
+                        // row number 1 is the header
+                        model.add(ResourceFactory.createStatement(
+                            ResourceFactory.createResource(aboutUrl.replace("{_row}", Integer.toString(rowNumber + 1))),
+                            ResourceFactory.createProperty(DATA_PREFIX + URLEncoder.encode(header[i], "UTF-8")),
+                            ResourceFactory.createPlainLiteral(cellValue)));
+                    }
+                }
+            }
+        }
+        return model;
+    }
+
+    private TabularModule createCsvModule(StreamResource sourceResource, boolean acceptInvalidQuoting, int parallelism) {
+        TabularModule csvModule = new TabularModule();
+        csvModule.setReplace(true);
+        csvModule.setDelimiter(',');
+        csvModule.setQuoteCharacter('"');
+        csvModule.setAcceptInvalidQuoting(acceptInvalidQuoting);
+        csvModule.setDataPrefix(DATA_PREFIX);
+        csvModule.setOutputMode(Mode.STANDARD);
+        csvModule.setParallelism(parallelism);
+        csvModule.setSourceResource(sourceResource);
+        csvModule.setInputContext(ExecutionContextFactory.createEmptyContext());
+        return csvModule;
+    }
+
+    private StringStreamResource createMultilineCsvResource(int rowCount) {
+        StringBuilder sb = new StringBuilder("id,name,description,note\n");
+        for (int i = 1; i <= rowCount; i++) {
+            sb.append(i).append(",\"Name \"\"").append(i).append("\"\" quoted\",")
+                .append("\"first line of ").append(i).append("\nsecond line, with comma\",")
+                .append("note ").append(i).append("\r\n");
+            if (i % 100 == 0) {
+                sb.append("\n");
+            }
+        }
+        return new StringStreamResource(DATA_PREFIX, sb.toString().getBytes(StandardCharsets.UTF_8), "text/csv");
+    }
+
+    /**
+     * CSV resource whose rows are generated as its content is read, so that the content is never held in memory.
+     */
+    private class GeneratedCsvStreamResource implements StreamResource {
+
+        private static final String HEADER = "id,name,description,note\n";
+
+        private final int rowCount;
+
+        GeneratedCsvStreamResource(int rowCount) {
+            this.rowCount = rowCount;
+        }
+
+        private byte[] getLine(int lineNumber) {
+            String line = (lineNumber == 0) ? HEADER
+                : lineNumber + ",Name " + lineNumber + ",description of " + lineNumber + ",note " + lineNumber + "\n";
+            return line.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public String getUri() {
+            return DATA_PREFIX;
+        }
+
+        @Override
+        public byte[] getContent() {
+            throw new UnsupportedOperationException("Content of generated resource is available only as a stream.");
+        }
+
+        @Override
+        public String getContentType() {
+            return "text/csv";
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return new InputStream() {
+                private int lineNumber = 0;
+                private byte[] line = getLine(0);
+                private int position = 0;
+
+                @Override
+                public int read() {
+                    byte[] b = new byte[1];
+                    return (read(b, 0, 1) == -1) ? -1 : (b[0] & 0xff);
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    if (len == 0) {
+                        return 0;
+                    }
+                    int count = 0;
+                    while (count < len) {
+                        if (position == line.length) {
+                            if (lineNumber == rowCount) {
+                                break;
+                            }
+                            line = getLine(++lineNumber);
+                            position = 0;
+                        }
+                        int n = Math.min(len - count, line.length - position);
+                        System.arraycopy(line, position, b, off + count, n);
+                        position += n;
+                        count += n;
+                    }
+                    return (count == 0) ? -1 : count;
+                }
+            };
+        }
+
+        @Override
+        public long getContentLength() {
+            long length = 0;
+            for (int i = 0; i <= rowCount; i++) {
+                length += getLine(i).length;
+            }
+            return length;
+        }
+    }
+
     void assertIsomorphic(Model actualModel, Model expectedModel){
         if (! actualModel.isIsomorphicWith(expectedModel)) {
             LOG.debug("Saving actual model ... ");
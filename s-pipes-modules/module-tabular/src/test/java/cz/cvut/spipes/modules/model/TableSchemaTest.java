@@ -0,0 +1,63 @@
+package cz.cvut.spipes.modules.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class TableSchemaTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TableSchemaTest.class);
+
+    @Test
+    public void createAboutUrlReplacesAllRowSlots() {
+        TableSchema tableSchema = new TableSchema();
+        tableSchema.setAboutUrl("http://example.org/table/{_row}#row-{_row}");
+
+        assertEquals("http://example.org/table/1#row-1", tableSchema.createAboutUrl(0));
+        assertEquals("http://example.org/table/42#row-42", tableSchema.createAboutUrl(41));
+    }
+
+    @Test
+    public void createAboutUrlReturnsTemplateWithoutRowSlot() {
+        TableSchema tableSchema = new TableSchema();
+        tableSchema.setAboutUrl("http://example.org/table");
+
+        assertEquals("http://example.org/table", tableSchema.createAboutUrl(5));
+    }
+
+    /**
+     * Compares creation of row URLs from the precompiled template with replacement of the row slot
+     * in the template for every row, as it was done before. Run by Maven profile benchmark only.
+     */
+    @Tag("benchmark")
+    @Test
+    public void benchmarkCreateAboutUrl() {
+        String aboutUrl = "http://onto.fel.cvut.cz/data/example/table/sheet-1#row-{_row}";
+        TableSchema tableSchema = new TableSchema();
+        tableSchema.setAboutUrl(aboutUrl);
+        int rowCount = 5_000_000;
+
+        for (int round = 0; round < 3; round++) {
+            long startTime = System.nanoTime();
+            long length = 0;
+            for (int row = 1; row <= rowCount; row++) {
+                length += aboutUrl.replace("{_row}", Integer.toString(row)).length();
+            }
+            double replaceSeconds = (System.nanoTime() - startTime) / 1e9;
+
+            startTime = System.nanoTime();
+            long compiledLength = 0;
+            for (int row = 1; row <= rowCount; row++) {
+                // createAboutUrl takes zero-based row index and puts row number (index + 1) into the URL
+                compiledLength += tableSchema.createAboutUrl(row - 1).length();
+            }
+            double compiledSeconds = (System.nanoTime() - startTime) / 1e9;
+
+            assertEquals(length, compiledLength);
+            LOG.info("Created {} row URLs: {} URLs/s by replacement, {} URLs/s by precompiled template.",
+                rowCount, String.format("%.0f", rowCount / replaceSeconds), String.format("%.0f", rowCount / compiledSeconds));
+        }
+    }
+}
@@ -3,17 +3,19 @@ package cz.cvut.spipes.modules;
 import cz.cvut.spipes.constants.KBSS_MODULE;
 import cz.cvut.spipes.engine.ExecutionContext;
 import cz.cvut.spipes.engine.ExecutionContextFactory;
+import cz.cvut.spipes.exception.SPipesException;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
 import org.apache.jena.rdf.model.Property;
 import org.apache.jena.rdf.model.ResourceFactory;
-import org.deri.tarql.tarql;
+import org.deri.tarql.InputStreamSource;
+import org.deri.tarql.TarqlParser;
+import org.deri.tarql.TarqlQuery;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.*;
-import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.io.IOException;
+import java.io.StringReader;
 
 @Deprecated //TODO merge with TarqlModule functionality
 public class ModuleTarql extends AbstractModule {
@@ -55,28 +57,12 @@ public class ModuleTarql extends AbstractModule {
         LOG.info("Running TARQL on " + inputFile);
         Model model = ModelFactory.createDefaultModel();
 
+        final String queryString = tarqlString.replaceAll("\\?__FN__", "\"" + ontologyIRI + "\"");
         try {
-            final File output = File.createTempFile("output", ".nt");
-
-            try (PrintStream s = new PrintStream(new FileOutputStream(output))) {
-                final File queryFile = File.createTempFile("query", ".tarql");
-                final String queryString = tarqlString.replaceAll("\\?__FN__", "\"" + ontologyIRI + "\"");
-                Files.write(Paths.get(queryFile.toURI()), queryString.getBytes());
-
-                final PrintStream origStream = System.out;
-                System.setOut(s);
-                tarql.main(
-                        "--ntriples",
-//                        noHeader ? "-H" : "",
-                        queryFile.getAbsolutePath(),
-                        inputFile
-                );
-                System.setOut(origStream);
-
-                model.read(new FileInputStream(output), "", "N-TRIPLE");
-            }
+            TarqlQuery tarqlQuery = new TarqlParser(new StringReader(queryString), null).getResult();
+            TarqlModule.execTarql(tarqlQuery, InputStreamSource.fromFilenameOrIRI(inputFile), model.getGraph());
         } catch (IOException e) {
-            e.printStackTrace();
+            throw new SPipesException("Could not read tabular data from " + inputFile + ".", e);
         }
         return ExecutionContextFactory.createContext(model);
     }
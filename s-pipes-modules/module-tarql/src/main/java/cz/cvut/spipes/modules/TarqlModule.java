@@ -5,24 +5,26 @@ import cz.cvut.spipes.constants.KBSS_MODULE;
 import cz.cvut.spipes.constants.SML;
 import cz.cvut.spipes.engine.ExecutionContext;
 import cz.cvut.spipes.engine.ExecutionContextFactory;
+import cz.cvut.spipes.exception.SPipesException;
 import cz.cvut.spipes.registry.StreamResource;
 import cz.cvut.spipes.registry.StreamResourceRegistry;
-import org.apache.jena.ext.com.google.common.io.Files;
-import org.apache.jena.query.Query;
+import cz.cvut.spipes.util.QueryCache;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Triple;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
 import org.apache.jena.rdf.model.Resource;
-import org.apache.jena.util.FileUtils;
-import org.deri.tarql.tarql;
+import org.deri.tarql.CSVOptions;
+import org.deri.tarql.InputStreamSource;
+import org.deri.tarql.TarqlQuery;
+import org.deri.tarql.TarqlQueryExecutionFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.topbraid.spin.arq.ARQFactory;
 import org.topbraid.spin.model.Construct;
 
-import java.io.*;
-import java.nio.charset.Charset;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -37,8 +39,6 @@ public class TarqlModule extends AbstractModule {
     //sml:constructQuery
     private List<Resource> constructQueries;
 
-    private String tableFilePath;
-
     //sml:replace
     private boolean isReplace;
 
@@ -62,8 +62,6 @@ public class TarqlModule extends AbstractModule {
         //      (naive solution would be to create s,p,o columns in new CSV file),
         //      but this has problems with blank nodes
 
-        Path p = Paths.get("/home/blcha/s-pipes-log.txt");
-
         Model mergedModel = ModelFactory.createDefaultModel();
         if (! isReplace) { // TODO mozno sa mozu zmenit blank nody (asi by som mal mergovat do defaultneho modelu ?)
             if (executionContext.getDefaultModel() != null) {
@@ -73,65 +71,50 @@ public class TarqlModule extends AbstractModule {
 
 
         StreamResource res = StreamResourceRegistry.getInstance().getResourceByUrl(sourceFilePath);
-        String tabularDataFilePath = null;
+        final InputStreamSource tabularDataSource;
         if (res != null) {
-
-            try {
-                File tabularDataFile = File.createTempFile("output", ".tabular.txt");
-                Files.write(res.getContent(), tabularDataFile);
-                tabularDataFilePath = tabularDataFile.getAbsolutePath();
-            } catch (IOException e) {
-                throw new RuntimeException("Could not write tabular data stream to temporary file: {}", e);
-            }
+            tabularDataSource = new InputStreamSource() {
+                @Override
+                public InputStream open() throws IOException {
+                    return res.getInputStream();
+                }
+            };
         } else {
-            tabularDataFilePath = sourceFilePath;
+            tabularDataSource = InputStreamSource.fromFilenameOrIRI(sourceFilePath);
         }
 
-        LOG.debug("Processing tabular data from file path {}.", tabularDataFilePath);
+        LOG.debug("Processing tabular data from {}.", sourceFilePath);
 
-        //      set up variable bindings
+        // all queries are evaluated by one execution, queries are cloned as Tarql modifies them
+        TarqlQuery tarqlQuery = new TarqlQuery();
         for (Resource constructQueryRes : constructQueries) {
             Construct spinConstructRes = constructQueryRes.as(Construct.class);
+            tarqlQuery.addQuery(QueryCache.get().getQuery(spinConstructRes).cloneQuery());
+        }
 
-            Query query = ARQFactory.get().createQuery(spinConstructRes);
-
-            try {
-                // save string query to temporary file
-                final File queryFile = File.createTempFile("query", ".tarql");
-                final String queryString = query.toString();
-                //final String queryString = query.toString().replaceAll("\\?__FN__", "\"" + ontologyIRI + "\"");
-                Files.append(query.toString(), queryFile, Charset.defaultCharset());
-                //java.nio.file.Files.write(Paths.get(queryFile.toURI()), queryString.getBytes());
-
-                // execute tarql query.sparql table.csv
-                final File outputFile = File.createTempFile("output", ".ttl");
-
-                try (PrintStream s = new PrintStream(new FileOutputStream(outputFile))) {
-
-                    final PrintStream origStream = System.out;
-                    System.setOut(s);
-                    tarql.main(
-//                            "--ntriples",
-//                        noHeader ? "-H" : "",
-                            queryFile.getAbsolutePath(),
-                            tabularDataFilePath
-                    );
-                    System.setOut(origStream);
-
-                    // merge output to model
-                    mergedModel.read(new FileInputStream(outputFile), null, FileUtils.langTurtle);
-                }
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+        try {
+            execTarql(tarqlQuery, tabularDataSource, mergedModel.getGraph());
+        } catch (IOException e) {
+            throw new SPipesException("Could not read tabular data from " + sourceFilePath + ".", e);
         }
-        //newModel.write(System.out, FileUtils.langTurtle);
 
         //TODO should return only Model ???
         ExecutionContext ec = ExecutionContextFactory.createContext(mergedModel);
         return ec;
     }
 
+    /**
+     * Executes the Tarql query over the tabular data and adds constructed triples to the graph.
+     * Unlike {@link org.deri.tarql.tarql#main(String...)}, it does not use any global state,
+     * thus it can be called concurrently.
+     */
+    static void execTarql(TarqlQuery tarqlQuery, InputStreamSource tabularDataSource, Graph outputGraph) throws IOException {
+        Iterator<Triple> triples = TarqlQueryExecutionFactory.create(tarqlQuery, tabularDataSource, new CSVOptions()).execTriples();
+        while (triples.hasNext()) {
+            outputGraph.add(triples.next());
+        }
+    }
+
     @Override
     public String getTypeURI() {
         return KBSS_MODULE.getURI()+"tarql";
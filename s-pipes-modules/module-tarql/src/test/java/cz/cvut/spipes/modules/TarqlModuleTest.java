@@ -0,0 +1,63 @@
+package cz.cvut.spipes.modules;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.ResourceFactory;
+import org.apache.jena.vocabulary.RDF;
+import org.deri.tarql.InputStreamSource;
+import org.deri.tarql.TarqlParser;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TarqlModuleTest {
+
+    private static final String TARQL_FILE = "src/test/resources/test-1.tarql";
+    private static final String CSV_FILE = "src/test/resources/test-1.csv";
+
+    @Test
+    public void execTarqlAddsConstructedTriplesToGraph() throws Exception {
+        Model model = execTarql();
+
+        assertEquals(2, model.listStatements(null, RDF.type,
+            ResourceFactory.createResource("http://onto.fel.cvut.cz/ontologies/example/model/person")).toList().size());
+    }
+
+    @Test
+    public void execTarqlCanBeCalledConcurrently() throws Exception {
+        Model expectedModel = execTarql();
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Model>> models = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                models.add(executor.submit(this::execTarql));
+            }
+            for (Future<Model> model : models) {
+                assertTrue(expectedModel.isIsomorphicWith(model.get()));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Model execTarql() throws Exception {
+        Model model = ModelFactory.createDefaultModel();
+        Graph graph = model.getGraph();
+        TarqlModule.execTarql(
+            new TarqlParser(new File(TARQL_FILE).getAbsolutePath()).getResult(),
+            InputStreamSource.fromFilenameOrIRI(new File(CSV_FILE).getAbsolutePath()),
+            graph
+        );
+        return model;
+    }
+}
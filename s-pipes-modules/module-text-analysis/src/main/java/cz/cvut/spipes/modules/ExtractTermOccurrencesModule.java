@@ -3,6 +3,7 @@ package cz.cvut.spipes.modules;
 import cz.cvut.spipes.constants.KBSS_MODULE;
 import cz.cvut.spipes.constants.SML;
 import cz.cvut.spipes.engine.ExecutionContext;
+import cz.cvut.spipes.exception.SPipesException;
 import cz.cvut.spipes.modules.constants.Termit;
 import cz.cvut.spipes.modules.textAnalysis.Extraction;
 import org.apache.commons.codec.digest.DigestUtils;
@@ -17,9 +18,17 @@ import org.jsoup.nodes.TextNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.apache.jena.rdf.model.ResourceFactory.createStatement;
+import static org.apache.jena.rdf.model.ResourceFactory.createTypedLiteral;
 
 /**
  * Module extracts term occurrences from annotated literals of input RDF.
@@ -81,6 +90,13 @@ public class ExtractTermOccurrencesModule extends AnnotatedAbstractModule {
     @Parameter(urlPrefix = SML.uri, name = "replace")
     private boolean isReplace;
 
+    /** The number of threads extracting term occurrences from literals. */
+    @Parameter(urlPrefix = TYPE_PREFIX, name = "parallelism")
+    private Integer parallelism = Runtime.getRuntime().availableProcessors();
+
+    // literals are split to more partitions than threads, so that threads are evenly loaded
+    private static final int PARTITIONS_PER_THREAD = 4;
+
     Extraction extraction = new Extraction();
 
     @Override
@@ -88,58 +104,94 @@ public class ExtractTermOccurrencesModule extends AnnotatedAbstractModule {
         Model inputRDF = this.getExecutionContext().getDefaultModel();
         Model outputModel = ModelFactory.createDefaultModel();
 
-        Map<String, List<Element>> annotatedElements = new HashMap<>();
-
         extraction.addPrefix("ddo", Termit.uri);
 
-        inputRDF.listObjects().
+        List<String> texts = inputRDF.listObjects().
                 filterKeep(o -> o.isLiteral() && o.asLiteral().getDatatype() instanceof XSDBaseStringType)
-                .forEach(
-                        str -> {
-                            String text = str.asLiteral().getString();
-                            Document doc = Jsoup.parse(StringEscapeUtils.unescapeJava(text));
-                            annotatedElements.putAll(extraction.getTermOccurrences(doc.root()));
-                        }
-                );
-
-        annotatedElements.forEach((key, el) -> createTermOccurrenceResources(outputModel, el.get(0)));
+                .mapWith(o -> o.asLiteral().getString())
+                // literals are unescaped by the workers, the check accounts for escaped markup
+                .filterKeep(Extraction::mayContainTermOccurrence)
+                .toList();
+        LOG.debug("Extracting term occurrences from {} literals using {} threads.", texts.size(), parallelism);
+
+        // occurrences with the same identifier are taken from the last literal
+        Map<String, TermOccurrence> termOccurrences = new ConcurrentHashMap<>();
+        int partitionSize = Math.max(1, (texts.size() + parallelism * PARTITIONS_PER_THREAD - 1) / (parallelism * PARTITIONS_PER_THREAD));
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int start = 0; start < texts.size(); start += partitionSize) {
+                int partitionStart = start;
+                int partitionEnd = Math.min(start + partitionSize, texts.size());
+                futures.add(executor.submit(() -> extractTermOccurrences(texts, partitionStart, partitionEnd, termOccurrences)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SPipesException("Interrupted while extracting term occurrences.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new SPipesException("Extraction of term occurrences failed.", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        termOccurrences.values().forEach(o -> outputModel.add(o.statements));
         return this.createOutputContext(isReplace,  outputModel);
     }
 
-    private void createTermOccurrenceResources(Model outputModel, Element e) {
+    private void extractTermOccurrences(List<String> texts, int start, int end, Map<String, TermOccurrence> sink) {
+        for (int i = start; i < end; i++) {
+            Document doc = Jsoup.parse(StringEscapeUtils.unescapeJava(texts.get(i)));
+            int textIndex = i;
+            extraction.getTermOccurrences(doc.root()).forEach((key, el) -> sink.merge(
+                key,
+                new TermOccurrence(textIndex, createTermOccurrenceStatements(el.get(0))),
+                (o1, o2) -> (o1.textIndex > o2.textIndex) ? o1 : o2
+            ));
+        }
+    }
+
+    private List<Statement> createTermOccurrenceStatements(Element e) {
         assert e.parentNode() != null;
+        List<Statement> statements = new ArrayList<>();
         String hash = DigestUtils.md5Hex(StringEscapeUtils.unescapeJava(e.toString()));
-        Resource termOccurrence = outputModel.createResource(Termit.VYSKYT_TERMU + "/instance" + hash);
-        Resource occurrenceTarget = outputModel.createResource();
-        Resource positionSelector = outputModel.createResource();
-        Resource textSelector = outputModel.createResource();
-
-        termOccurrence.addProperty(RDF.type, Termit.VYSKYT_TERMU_RESOURCE);
-        termOccurrence.addProperty(Termit.JE_PRIRAZENIM_TERMU, outputModel.createResource(fullIri(e.attr(Termit.RDFa.RESOURCE))));
-        termOccurrence.addProperty(Termit.MA_CIL, occurrenceTarget);
-        termOccurrence.addLiteral(Termit.ODKAZUJE_NA_ANOTOVANY_TEXT, StringEscapeUtils.unescapeJava(((Element) e.parentNode()).html()));
-        termOccurrence.addLiteral(Termit.ODKAZUJE_NA_ANOTACI, StringEscapeUtils.unescapeJava(e.toString()));
+        Resource termOccurrence = ResourceFactory.createResource(Termit.VYSKYT_TERMU + "/instance" + hash);
+        Resource occurrenceTarget = ResourceFactory.createResource();
+        Resource positionSelector = ResourceFactory.createResource();
+        Resource textSelector = ResourceFactory.createResource();
+
+        statements.add(createStatement(termOccurrence, RDF.type, Termit.VYSKYT_TERMU_RESOURCE));
+        statements.add(createStatement(termOccurrence, Termit.JE_PRIRAZENIM_TERMU, ResourceFactory.createResource(fullIri(e.attr(Termit.RDFa.RESOURCE)))));
+        statements.add(createStatement(termOccurrence, Termit.MA_CIL, occurrenceTarget));
+        statements.add(createStatement(termOccurrence, Termit.ODKAZUJE_NA_ANOTOVANY_TEXT, createTypedLiteral(StringEscapeUtils.unescapeJava(((Element) e.parentNode()).html()))));
+        statements.add(createStatement(termOccurrence, Termit.ODKAZUJE_NA_ANOTACI, createTypedLiteral(StringEscapeUtils.unescapeJava(e.toString()))));
         if(e.hasAttr(Termit.SCORE)){
-            termOccurrence.addLiteral(Termit.MA_SKORE, outputModel.createTypedLiteral(Float.valueOf(e.attr(Termit.SCORE))));
+            statements.add(createStatement(termOccurrence, Termit.MA_SKORE, createTypedLiteral(Float.valueOf(e.attr(Termit.SCORE)))));
         }
 
-        occurrenceTarget.addProperty(RDF.type, Termit.CIL_VYSKYTU);
-        occurrenceTarget.addProperty(Termit.MA_SELEKTOR, textSelector);
-        occurrenceTarget.addProperty(Termit.MA_SELEKTOR, positionSelector);
+        statements.add(createStatement(occurrenceTarget, RDF.type, Termit.CIL_VYSKYTU));
+        statements.add(createStatement(occurrenceTarget, Termit.MA_SELEKTOR, textSelector));
+        statements.add(createStatement(occurrenceTarget, Termit.MA_SELEKTOR, positionSelector));
 
-        positionSelector.addProperty(RDF.type, Termit.SELEKTOR_POZICI_V_TEXTU);
-        textSelector.addProperty(RDF.type, Termit.SELEKTOR_TEXT_QUOTE);
+        statements.add(createStatement(positionSelector, RDF.type, Termit.SELEKTOR_POZICI_V_TEXTU));
+        statements.add(createStatement(textSelector, RDF.type, Termit.SELEKTOR_TEXT_QUOTE));
 
         String parentTag = ((Element) e.parentNode()).text();
         String textQuote = ((TextNode) e.childNodes().get(0)).text();
         String prefix = parentTag.substring(0, parentTag.indexOf(textQuote));
         String suffix = parentTag.substring(parentTag.indexOf(textQuote) + textQuote.length());
 
-        positionSelector.addLiteral(Termit.MA_STARTOVNI_POZICI, Integer.valueOf(parentTag.indexOf(e.text())));
-        positionSelector.addLiteral(Termit.MA_KONCOVOU_POZICI, Integer.valueOf(parentTag.indexOf(e.text()) + e.text().length()));
-        textSelector.addLiteral(Termit.MA_PRESNY_TEXT_QUOTE, textQuote);
-        textSelector.addLiteral(Termit.MA_PREFIX_TEXT_QUOTE, prefix);
-        textSelector.addLiteral(Termit.MA_SUFFIX_TEXT_QUOTE, suffix);
+        statements.add(createStatement(positionSelector, Termit.MA_STARTOVNI_POZICI, createTypedLiteral(Integer.valueOf(parentTag.indexOf(e.text())))));
+        statements.add(createStatement(positionSelector, Termit.MA_KONCOVOU_POZICI, createTypedLiteral(Integer.valueOf(parentTag.indexOf(e.text()) + e.text().length()))));
+        statements.add(createStatement(textSelector, Termit.MA_PRESNY_TEXT_QUOTE, createTypedLiteral(textQuote)));
+        statements.add(createStatement(textSelector, Termit.MA_PREFIX_TEXT_QUOTE, createTypedLiteral(prefix)));
+        statements.add(createStatement(textSelector, Termit.MA_SUFFIX_TEXT_QUOTE, createTypedLiteral(suffix)));
+        return statements;
     }
 
     @Override
@@ -155,6 +207,14 @@ public class ExtractTermOccurrencesModule extends AnnotatedAbstractModule {
         isReplace = replace;
     }
 
+    public Integer getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(Integer parallelism) {
+        this.parallelism = parallelism;
+    }
+
     private String fullIri(String possiblyPrefixed) {
         possiblyPrefixed = possiblyPrefixed.trim();
         final int colonIndex = possiblyPrefixed.indexOf(':');
@@ -168,4 +228,15 @@ public class ExtractTermOccurrencesModule extends AnnotatedAbstractModule {
         final String localName = possiblyPrefixed.substring(colonIndex + 1);
         return extraction.getPrefixes().get(prefix) + localName;
     }
+
+    private static class TermOccurrence {
+
+        private final int textIndex;
+        private final List<Statement> statements;
+
+        private TermOccurrence(int textIndex, List<Statement> statements) {
+            this.textIndex = textIndex;
+            this.statements = statements;
+        }
+    }
 }
@@ -3,32 +3,30 @@ package cz.cvut.spipes.modules;
 import cz.cvut.spipes.constants.KBSS_MODULE;
 import cz.cvut.spipes.constants.SML;
 import cz.cvut.spipes.engine.ExecutionContext;
+import cz.cvut.spipes.exception.SPipesException;
 import cz.cvut.spipes.modules.annotations.SPipesModule;
 import cz.cvut.spipes.modules.constants.Termit;
-import org.apache.http.HttpResponse;
-import org.apache.http.client.methods.HttpPost;
-import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClientBuilder;
-import org.apache.http.util.EntityUtils;
+import cz.cvut.spipes.modules.textAnalysis.AnnotationServiceClient;
 import org.apache.jena.datatypes.xsd.impl.XSDBaseStringType;
 import org.apache.jena.query.*;
 import org.apache.jena.rdf.model.*;
 import org.apache.jena.vocabulary.RDF;
-import org.jetbrains.annotations.NotNull;
-import org.json.JSONObject;
 import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.topbraid.spin.arq.ARQFactory;
 import org.topbraid.spin.model.Select;
 
-import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
 
 import static org.apache.commons.lang.StringEscapeUtils.escapeHtml;
 import static org.apache.commons.lang.StringEscapeUtils.unescapeHtml;
@@ -72,6 +70,18 @@ public class TextAnalysisModule extends AnnotatedAbstractModule{
     @Parameter(urlPrefix = TYPE_PREFIX, name = "literals-per-request")
     private Integer literalsPerRequest;
 
+    /** The maximal number of requests sent to the web service at the same time. */
+    @Parameter(urlPrefix = TYPE_PREFIX, name = "max-in-flight-requests")
+    private Integer maxInFlightRequests = 4;
+
+    /** The maximal number of retries of a request that failed due to a transient error. */
+    @Parameter(urlPrefix = TYPE_PREFIX, name = "max-retries")
+    private Integer maxRetries = 3;
+
+    /** The delay in milliseconds before the first retry of a failed request, doubled with each next retry. */
+    @Parameter(urlPrefix = TYPE_PREFIX, name = "retry-delay")
+    private Integer retryDelayMillis = 1000;
+
     /** The SPARQL query to be used for selecting literals from the repository.
      * <p>
      * Example:
@@ -95,12 +105,16 @@ public class TextAnalysisModule extends AnnotatedAbstractModule{
             return executionContext;
         }
 
+        AnnotationServiceClient client = new AnnotationServiceClient(
+            serviceUrl, vocabularyRepository, language, vocabularyIri, maxRetries, retryDelayMillis);
+        ExecutorService executor = Executors.newFixedThreadPool(maxInFlightRequests);
+        // batches are completed in the order they were sent, so that annotations are created in the order of literals
+        Deque<Batch> pendingBatches = new ArrayDeque<>();
+
         Query query = ARQFactory.get().createQuery(selectQuery);
         try (QueryExecution queryExecution = QueryExecutionFactory.create(query, inputModel)) {
             ResultSet resultSet = queryExecution.execSelect();
-            List<RDFNode> listOfObjects = new ArrayList<>();
-            StringBuilder sb = new StringBuilder();
-            int counter = 0;
+            List<String> texts = new ArrayList<>();
             int totalCounter = 0;
 
             while (resultSet.hasNext()) {
@@ -114,46 +128,67 @@ public class TextAnalysisModule extends AnnotatedAbstractModule{
                         continue;
                     }
 
-                    Literal literal = object.asLiteral();
-                    String textElement = escapeHtml(literal.getString());
-                    if (counter >= literalsPerRequest) {
-                        LOG.debug("Annotating {} literals. Progress {}%.", literalsPerRequest, totalCounter * 100L / inputModel.size());
-                        String annotatedText = annotateObjectLiteral(sb.toString());
-                        String[] elements = splitAnnotatedText(annotatedText);
-
-                        for (int i = 0; i < listOfObjects.size(); i++) {
-                            String annotatedTerm = unescapeHtml(elements[i]);
-                            createAnnotatedResource(outputModel, textElement, annotatedTerm);
-                        }
-                        listOfObjects.clear();
-                        sb = new StringBuilder();
-                        counter = 0;
-                    }
-
-                    listOfObjects.add(object);
-                    sb.append(textElement);
-                    sb.append("<br>");
-                    counter++;
+                    texts.add(object.asLiteral().getString());
                     totalCounter++;
+                    if (texts.size() >= literalsPerRequest) {
+                        LOG.debug("Annotating {} literals. Progress {}%.", texts.size(), totalCounter * 100L / inputModel.size());
+                        sendBatch(texts, client, executor, pendingBatches, outputModel);
+                        texts = new ArrayList<>();
+                    }
                 }
             }
 
-            if (counter > 0) {
-                LOG.debug("Annotating {} literals. Progress {}%.", literalsPerRequest, totalCounter * 100L / inputModel.size());
-                String annotatedText = annotateObjectLiteral(sb.toString());
-                String[] elements = splitAnnotatedText(annotatedText);
-
-                for (int i = 0; i < listOfObjects.size(); i++) {
-                    RDFNode obj = listOfObjects.get(i);
-                    String textElement = obj.asLiteral().getString();
-                    String annotatedTerm = elements[i];
-                    createAnnotatedResource(outputModel, textElement, annotatedTerm);
-                }
+            if (!texts.isEmpty()) {
+                LOG.debug("Annotating {} literals. Progress {}%.", texts.size(), totalCounter * 100L / inputModel.size());
+                sendBatch(texts, client, executor, pendingBatches, outputModel);
             }
+            while (!pendingBatches.isEmpty()) {
+                completeBatch(pendingBatches.removeFirst(), outputModel);
+            }
+        } finally {
+            executor.shutdownNow();
         }
         return createOutputContext(isReplace, outputModel);
     }
 
+    /**
+     * Sends the batch of texts to the annotation service, waiting for the oldest batch
+     * if the maximal number of batches is already in flight.
+     */
+    private void sendBatch(List<String> texts, AnnotationServiceClient client, ExecutorService executor,
+                           Deque<Batch> pendingBatches, Model outputModel) {
+        if (pendingBatches.size() >= maxInFlightRequests) {
+            completeBatch(pendingBatches.removeFirst(), outputModel);
+        }
+        String content = texts.stream()
+            .map(text -> escapeHtml(text) + "<br>")
+            .collect(Collectors.joining());
+        pendingBatches.addLast(new Batch(texts, executor.submit(() -> client.annotate(content))));
+    }
+
+    private void completeBatch(Batch batch, Model outputModel) {
+        String annotatedText;
+        try {
+            annotatedText = Jsoup.parse(batch.annotatedText.get()).body().html();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SPipesException("Interrupted while waiting for annotation service.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new SPipesException("Annotation of literals failed.", e.getCause());
+        }
+        String[] elements = splitAnnotatedText(annotatedText);
+        if (elements.length < batch.texts.size()) {
+            throw new SPipesException(String.format("Annotation service returned %d annotated texts for %d literals.",
+                elements.length, batch.texts.size()));
+        }
+        for (int i = 0; i < batch.texts.size(); i++) {
+            createAnnotatedResource(outputModel, batch.texts.get(i), unescapeHtml(elements[i]));
+        }
+    }
+
     private void createAnnotatedResource(Model outputModel, String originalText, String annotatedText) {
         Resource annotatedResource = outputModel.createResource();
 
@@ -166,30 +201,28 @@ public class TextAnalysisModule extends AnnotatedAbstractModule{
         return Jsoup.parse(annotatedText).body().html().split(" <br>");
     }
 
-    @NotNull
-    private String annotateObjectLiteral(String objectValue) {
-        HttpPost request = new HttpPost(serviceUrl);
-        JSONObject jsonObject = new JSONObject();
+    public void setServiceUrl(String serviceUrl) {
+        this.serviceUrl = serviceUrl;
+    }
 
-        jsonObject.put("content", objectValue);
-        jsonObject.put("vocabularyRepository", vocabularyRepository);
-        jsonObject.put("language", language);
-        jsonObject.append("vocabularyContexts", vocabularyIri);
+    public void setLiteralsPerRequest(Integer literalsPerRequest) {
+        this.literalsPerRequest = literalsPerRequest;
+    }
 
-        request.setHeader("Content-Type", "application/json");
-        request.setEntity(new StringEntity(jsonObject.toString(), "UTF-8"));
+    public void setMaxInFlightRequests(Integer maxInFlightRequests) {
+        this.maxInFlightRequests = maxInFlightRequests;
+    }
 
-        String annotatedText;
-        try (CloseableHttpClient httpClient = HttpClientBuilder.create().build()) {
-            HttpResponse response = httpClient.execute(request);
-
-            Document doc = Jsoup.parse(EntityUtils.toString(response.getEntity()));
-            Element body = doc.body();
-            annotatedText = body.html();
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
-        return annotatedText;
+    public void setMaxRetries(Integer maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    public void setRetryDelayMillis(Integer retryDelayMillis) {
+        this.retryDelayMillis = retryDelayMillis;
+    }
+
+    public void setSelectQuery(Select selectQuery) {
+        this.selectQuery = selectQuery;
     }
 
     @Override
@@ -202,4 +235,15 @@ public class TextAnalysisModule extends AnnotatedAbstractModule{
     public String getTypeURI() {
         return TYPE_URI;
     }
+
+    private static class Batch {
+
+        private final List<String> texts;
+        private final Future<String> annotatedText;
+
+        private Batch(List<String> texts, Future<String> annotatedText) {
+            this.texts = texts;
+            this.annotatedText = annotatedText;
+        }
+    }
 }
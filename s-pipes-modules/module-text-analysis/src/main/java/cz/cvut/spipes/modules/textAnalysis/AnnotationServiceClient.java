@@ -0,0 +1,114 @@
+package cz.cvut.spipes.modules.textAnalysis;
+
+import cz.cvut.spipes.exception.SPipesException;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+
+/**
+ * Client of the text annotation service.
+ * <p>
+ * Requests of all instances are sent through one pool of persistent connections, thus consecutive
+ * and concurrent requests do not need to open new connections. Requests that fail due to an I/O error
+ * or a transient HTTP status (429, 5xx) are retried with exponentially increasing delay.
+ * The client is thread-safe.
+ */
+public class AnnotationServiceClient {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AnnotationServiceClient.class);
+
+    private static final int MAX_CONNECTIONS = 64;
+    private static final int MAX_CONNECTIONS_PER_ROUTE = 16;
+    private static final CloseableHttpClient HTTP_CLIENT = createHttpClient();
+
+    private final String serviceUrl;
+    private final String vocabularyRepository;
+    private final String language;
+    private final String vocabularyIri;
+    private final int maxRetries;
+    private final long retryDelayMillis;
+
+    /**
+     * @param maxRetries       maximal number of retries of a failed request
+     * @param retryDelayMillis delay before the first retry, doubled with each next retry
+     */
+    public AnnotationServiceClient(String serviceUrl, String vocabularyRepository, String language, String vocabularyIri,
+                                   int maxRetries, long retryDelayMillis) {
+        this.serviceUrl = serviceUrl;
+        this.vocabularyRepository = vocabularyRepository;
+        this.language = language;
+        this.vocabularyIri = vocabularyIri;
+        this.maxRetries = maxRetries;
+        this.retryDelayMillis = retryDelayMillis;
+    }
+
+    /**
+     * Annotates the HTML content.
+     *
+     * @return body of the response
+     */
+    public String annotate(String content) {
+        JSONObject jsonObject = new JSONObject();
+        jsonObject.put("content", content);
+        jsonObject.put("vocabularyRepository", vocabularyRepository);
+        jsonObject.put("language", language);
+        jsonObject.append("vocabularyContexts", vocabularyIri);
+        String requestBody = jsonObject.toString();
+
+        for (int attempt = 0; ; attempt++) {
+            HttpPost request = new HttpPost(serviceUrl);
+            request.setHeader("Content-Type", "application/json");
+            request.setEntity(new StringEntity(requestBody, "UTF-8"));
+
+            String failure;
+            try (CloseableHttpResponse response = HTTP_CLIENT.execute(request)) {
+                int statusCode = response.getStatusLine().getStatusCode();
+                String responseBody = EntityUtils.toString(response.getEntity(), "UTF-8");
+                if (!isTransientFailure(statusCode)) {
+                    return responseBody;
+                }
+                failure = "HTTP status " + statusCode;
+            } catch (IOException e) {
+                if (attempt >= maxRetries) {
+                    throw new SPipesException("Request to annotation service " + serviceUrl + " failed.", e);
+                }
+                failure = e.toString();
+            }
+            if (attempt >= maxRetries) {
+                throw new SPipesException("Request to annotation service " + serviceUrl + " failed with " + failure + ".");
+            }
+            long delayMillis = retryDelayMillis << attempt;
+            LOG.warn("Request to annotation service {} failed with {}, retrying in {} ms.", serviceUrl, failure, delayMillis);
+            sleep(delayMillis);
+        }
+    }
+
+    private boolean isTransientFailure(int statusCode) {
+        return statusCode == 429 || statusCode >= 500;
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SPipesException("Interrupted while waiting to retry request to annotation service " + serviceUrl + ".", e);
+        }
+    }
+
+    private static CloseableHttpClient createHttpClient() {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(MAX_CONNECTIONS);
+        connectionManager.setDefaultMaxPerRoute(MAX_CONNECTIONS_PER_ROUTE);
+        return HttpClients.custom().setConnectionManager(connectionManager).build();
+    }
+}
@@ -1,19 +1,40 @@
 package cz.cvut.spipes.modules.textAnalysis;
 
 import cz.cvut.spipes.modules.constants.Termit;
+import org.apache.commons.lang.StringUtils;
 import org.jsoup.nodes.Element;
+import org.jsoup.select.Collector;
 import org.jsoup.select.Elements;
+import org.jsoup.select.Evaluator;
+import org.jsoup.select.QueryParser;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 
+/**
+ * Extracts term occurrences from RDFa annotated HTML. The class is thread-safe.
+ */
 public class Extraction {
 
-    private Map<String, String> prefixes = new HashMap<>();
+    private static final Evaluator ANNOTATION_SELECTOR = QueryParser.parse("[" + Termit.RDFa.ABOUT + "]");
+
+    private final Map<String, String> prefixes = new ConcurrentHashMap<>();
+
+    /**
+     * Cheap check to be done before the text is unescaped and parsed. The markup of the text may be escaped
+     * by Java escape sequences, thus an escaped '&lt;' counts as well.
+     *
+     * @return false if the text certainly does not contain any term occurrence
+     */
+    public static boolean mayContainTermOccurrence(String text) {
+        return (text.indexOf('<') != -1 || StringUtils.containsIgnoreCase(text, "\\u003c") || text.contains("\\74"))
+            && StringUtils.containsIgnoreCase(text, Termit.RDFa.ABOUT);
+    }
 
     public Map<String, List<Element>> getTermOccurrences(Element rootElement) {
         Map<String, List<Element>> annotatedElements = new HashMap<>();
-        final Elements elements = rootElement.getElementsByAttribute(Termit.RDFa.ABOUT);
+        final Elements elements = Collector.collect(ANNOTATION_SELECTOR, rootElement);
         for (Element element : elements) {
             if (isNotTermOccurrence(element)) {
                 continue;
@@ -0,0 +1,84 @@
+package cz.cvut.spipes.modules;
+
+import cz.cvut.spipes.engine.ExecutionContextFactory;
+import cz.cvut.spipes.modules.constants.Termit;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.ResourceFactory;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ExtractTermOccurrencesModuleTest {
+
+    private static final String TERM_IRI = "http://onto.fel.cvut.cz/ontologies/slovnik/slovnik-komponent-a-zavad---novy/pojem/cvr-ulb";
+
+    @Test
+    public void executeSelfExtractsTermOccurrence() {
+        Model inputModel = ModelFactory.createDefaultModel();
+        addLiteral(inputModel, 0, createAnnotatedText(0));
+        addLiteral(inputModel, 1, "in the cockpit");
+
+        Model outputModel = executeModule(inputModel, 1);
+
+        List<Resource> termOccurrences = outputModel.listSubjectsWithProperty(RDF.type, Termit.VYSKYT_TERMU_RESOURCE).toList();
+        assertEquals(1, termOccurrences.size());
+        Resource termOccurrence = termOccurrences.get(0);
+        assertEquals(TERM_IRI, termOccurrence.getPropertyResourceValue(Termit.JE_PRIRAZENIM_TERMU).getURI());
+        assertEquals(0.25f, termOccurrence.getProperty(Termit.MA_SKORE).getFloat());
+        Resource textSelector = outputModel.listSubjectsWithProperty(RDF.type, Termit.SELEKTOR_TEXT_QUOTE).next();
+        assertEquals("in the ", textSelector.getProperty(Termit.MA_PREFIX_TEXT_QUOTE).getString());
+        assertEquals("cockpit", textSelector.getProperty(Termit.MA_PRESNY_TEXT_QUOTE).getString());
+        Resource positionSelector = outputModel.listSubjectsWithProperty(RDF.type, Termit.SELEKTOR_POZICI_V_TEXTU).next();
+        assertEquals(7, positionSelector.getProperty(Termit.MA_STARTOVNI_POZICI).getInt());
+        assertEquals(14, positionSelector.getProperty(Termit.MA_KONCOVOU_POZICI).getInt());
+    }
+
+    @Test
+    public void executeSelfExtractsTermOccurrenceFromEscapedMarkup() {
+        Model inputModel = ModelFactory.createDefaultModel();
+        addLiteral(inputModel, 0, createAnnotatedText(0).replace("<", "\\u003c").replace(">", "\\u003e"));
+
+        Model outputModel = executeModule(inputModel, 1);
+
+        List<Resource> termOccurrences = outputModel.listSubjectsWithProperty(RDF.type, Termit.VYSKYT_TERMU_RESOURCE).toList();
+        assertEquals(1, termOccurrences.size());
+        assertEquals(TERM_IRI, termOccurrences.get(0).getPropertyResourceValue(Termit.JE_PRIRAZENIM_TERMU).getURI());
+    }
+
+    @Test
+    public void executeSelfInParallelReturnsSameModelAsSequentialExecution() {
+        Model inputModel = ModelFactory.createDefaultModel();
+        for (int i = 0; i < 200; i++) {
+            addLiteral(inputModel, i, (i % 3 == 0) ? "no annotation " + i : createAnnotatedText(i));
+        }
+
+        Model sequentialOutputModel = executeModule(inputModel, 1);
+        Model parallelOutputModel = executeModule(inputModel, 4);
+
+        assertEquals(133, sequentialOutputModel.listSubjectsWithProperty(RDF.type, Termit.VYSKYT_TERMU_RESOURCE).toList().size());
+        assertTrue(sequentialOutputModel.isIsomorphicWith(parallelOutputModel));
+    }
+
+    private Model executeModule(Model inputModel, int parallelism) {
+        ExtractTermOccurrencesModule module = new ExtractTermOccurrencesModule();
+        module.setParallelism(parallelism);
+        module.setInputContext(ExecutionContextFactory.createContext(inputModel));
+        return module.executeSelf().getDefaultModel();
+    }
+
+    private void addLiteral(Model model, int index, String text) {
+        model.add(ResourceFactory.createResource("http://example.org/row-" + index), RDFS.label, text);
+    }
+
+    private String createAnnotatedText(int index) {
+        return "in the <span about=\"_:a" + index + "\" property=\"ddo:je-výskytem-termu\" resource=\"" + TERM_IRI + "\""
+            + " typeof=\"ddo:výskyt-termu\" score=\"0.25\">cockpit</span> " + index;
+    }
+}
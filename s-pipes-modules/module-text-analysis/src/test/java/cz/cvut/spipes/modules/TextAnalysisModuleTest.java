@@ -0,0 +1,153 @@
+package cz.cvut.spipes.modules;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import cz.cvut.spipes.engine.ExecutionContextFactory;
+import cz.cvut.spipes.modules.constants.Termit;
+import org.apache.commons.io.IOUtils;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.ResourceFactory;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.topbraid.spin.model.Select;
+import org.topbraid.spin.system.SPINModuleRegistry;
+import org.topbraid.spin.vocabulary.SP;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the module against a local stand-in of the annotation service, which echoes the content
+ * of each request after a simulated latency.
+ */
+public class TextAnalysisModuleTest {
+
+    private static final int LITERAL_COUNT = 60;
+    private static final int LATENCY_MILLIS = 100;
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private final AtomicInteger inFlightRequestCount = new AtomicInteger();
+    private final AtomicInteger maxInFlightRequestCount = new AtomicInteger();
+    private volatile int failingRequestCount;
+
+    @BeforeAll
+    public static void initSpin() {
+        SPINModuleRegistry.get().init();
+    }
+
+    @BeforeEach
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/annotate", this::handleAnnotate);
+        serverExecutor = Executors.newFixedThreadPool(8);
+        server.setExecutor(serverExecutor);
+        server.start();
+    }
+
+    @AfterEach
+    public void stopServer() {
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Test
+    public void executeSelfAnnotatesLiteralsInOrderWithConcurrentRequests() {
+        TextAnalysisModule module = createModule(4);
+
+        Model outputModel = module.executeSelf().getDefaultModel();
+
+        assertAnnotationsOfAllLiterals(outputModel);
+        assertEquals(LITERAL_COUNT / 5, requestCount.get());
+        assertTrue(maxInFlightRequestCount.get() > 1, "Requests were not sent concurrently.");
+        assertTrue(maxInFlightRequestCount.get() <= 4, "Too many requests were sent concurrently.");
+    }
+
+    @Test
+    public void executeSelfRetriesTransientFailures() {
+        failingRequestCount = 2;
+        TextAnalysisModule module = createModule(1);
+
+        Model outputModel = module.executeSelf().getDefaultModel();
+
+        assertAnnotationsOfAllLiterals(outputModel);
+        assertEquals(LITERAL_COUNT / 5 + 2, requestCount.get());
+    }
+
+    private TextAnalysisModule createModule(int maxInFlightRequests) {
+        Model inputModel = ModelFactory.createDefaultModel();
+        for (int i = 0; i < LITERAL_COUNT; i++) {
+            inputModel.add(ResourceFactory.createResource("http://example.org/s" + i), RDFS.label, "literal-" + i);
+        }
+        Select selectQuery = inputModel.createResource()
+            .addProperty(RDF.type, SP.Select)
+            .addProperty(SP.text, "SELECT ?literal WHERE { ?s ?p ?literal }")
+            .as(Select.class);
+
+        TextAnalysisModule module = new TextAnalysisModule();
+        module.setServiceUrl("http://localhost:" + server.getAddress().getPort() + "/annotate");
+        module.setLiteralsPerRequest(5);
+        module.setMaxInFlightRequests(maxInFlightRequests);
+        module.setRetryDelayMillis(10);
+        module.setSelectQuery(selectQuery);
+        module.setInputContext(ExecutionContextFactory.createContext(inputModel));
+        return module;
+    }
+
+    private void assertAnnotationsOfAllLiterals(Model outputModel) {
+        List<Resource> annotations = outputModel.listSubjectsWithProperty(RDF.type, Termit.ANNOTATION).toList();
+        assertEquals(LITERAL_COUNT, annotations.size());
+        for (Resource annotation : annotations) {
+            String originalText = annotation.getProperty(Termit.ORIGINAL_TEXT).getString();
+            String annotatedText = annotation.getProperty(Termit.ANNOTATED_TEXT).getString();
+            assertEquals(originalText, annotatedText.trim());
+        }
+    }
+
+    private void handleAnnotate(HttpExchange exchange) throws IOException {
+        requestCount.incrementAndGet();
+        int inFlight = inFlightRequestCount.incrementAndGet();
+        maxInFlightRequestCount.accumulateAndGet(inFlight, Math::max);
+        try {
+            String content = new JSONObject(IOUtils.toString(exchange.getRequestBody(), StandardCharsets.UTF_8))
+                .getString("content");
+            Thread.sleep(LATENCY_MILLIS);
+
+            synchronized (this) {
+                if (failingRequestCount > 0) {
+                    failingRequestCount--;
+                    exchange.sendResponseHeaders(503, -1);
+                    return;
+                }
+            }
+            byte[] response = ("<html><body>" + content.replace("<br>", " <br>") + "</body></html>")
+                .getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(response);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            inFlightRequestCount.decrementAndGet();
+            exchange.close();
+        }
+    }
+}
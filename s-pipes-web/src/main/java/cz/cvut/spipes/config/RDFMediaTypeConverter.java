@@ -1,9 +1,15 @@
 package cz.cvut.spipes.config;
 
 import cz.cvut.spipes.util.RDFMimeType;
+import cz.cvut.spipes.util.SpillingStreamRDF;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
 import org.apache.jena.riot.RDFLanguages;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFOps;
+import org.apache.jena.riot.system.StreamRDFWriter;
 import org.slf4j.Logger;
 import org.springframework.http.HttpInputMessage;
 import org.springframework.http.HttpMessage;
@@ -15,6 +21,7 @@ import org.springframework.http.converter.HttpMessageNotWritableException;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 
 @Component
@@ -22,14 +29,34 @@ public class RDFMediaTypeConverter extends AbstractHttpMessageConverter {
 
     private static final Logger LOG = org.slf4j.LoggerFactory.getLogger(RDFMediaTypeConverter.class);
 
+    private final boolean isStreamingResponse;
+    private final long inputSpillThreshold;
+
     public RDFMediaTypeConverter() {
+        this(ServiceConfig.isStreamingResponse(), ServiceConfig.getInputSpillThreshold());
+    }
+
+    public RDFMediaTypeConverter(boolean isStreamingResponse) {
+        this(isStreamingResponse, ServiceConfig.getInputSpillThreshold());
+    }
+
+    /**
+     * @param isStreamingResponse if true, models are written to the response triple by triple
+     *                            in formats that support streaming.
+     * @param inputSpillThreshold number of triples after which a model being read is moved
+     *                            to a temporary TDB dataset, zero or negative number disables it.
+     */
+    public RDFMediaTypeConverter(boolean isStreamingResponse, long inputSpillThreshold) {
         super(
                 RDFMimeType.transform(RDFLanguages.N3),
                 RDFMimeType.transform(RDFLanguages.NTRIPLES),
+                RDFMimeType.transform(RDFLanguages.NQUADS),
                 RDFMimeType.transform(RDFLanguages.TURTLE),
                 RDFMimeType.transform(RDFLanguages.RDFXML),
                 RDFMimeType.transform(RDFLanguages.JSONLD)
         );
+        this.isStreamingResponse = isStreamingResponse;
+        this.inputSpillThreshold = inputSpillThreshold;
     }
 
     private String getRDFLanguageForContentType( final HttpMessage m, final String defaultValue) {
@@ -45,9 +72,10 @@ public class RDFMediaTypeConverter extends AbstractHttpMessageConverter {
         if (  ! aClass.isAssignableFrom( Model.class ) ) {
             throw new UnsupportedOperationException();
         }
-        Model inputDataModel = ModelFactory.createDefaultModel();
-        inputDataModel.read(httpInputMessage.getBody(), "", getRDFLanguageForContentType(httpInputMessage, RDFMimeType.N_TRIPLES_STRING));
-        return inputDataModel;
+        Lang lang = RDFLanguages.nameToLang(getRDFLanguageForContentType(httpInputMessage, RDFMimeType.N_TRIPLES_STRING));
+        SpillingStreamRDF inputStream = new SpillingStreamRDF(ModelFactory.createDefaultModel(), inputSpillThreshold);
+        RDFDataMgr.parse(inputStream, httpInputMessage.getBody(), "", lang);
+        return inputStream.getModel();
     }
 
     @Override
@@ -60,7 +88,25 @@ public class RDFMediaTypeConverter extends AbstractHttpMessageConverter {
         } else {
             throw new UnsupportedOperationException();
         }
-        ((Model) o).write(httpOutputMessage.getBody(), getRDFLanguageForContentType(httpOutputMessage, RDFMimeType.LD_JSON_STRING));
+        String lang = getRDFLanguageForContentType(httpOutputMessage, RDFMimeType.LD_JSON_STRING);
+        Lang rdfLang = RDFLanguages.nameToLang(lang);
+        if (isStreamingResponse && rdfLang != null && StreamRDFWriter.registered(rdfLang)) {
+            writeStreaming((Model) o, httpOutputMessage.getBody(), rdfLang);
+        } else {
+            ((Model) o).write(httpOutputMessage.getBody(), lang);
+        }
+    }
+
+    /**
+     * Writes the model without building serialized document in memory, i.e. triples are sent
+     * to the output (using chunked transfer) as they are iterated from the model.
+     * For Turtle, the output is grouped into blocks by subject instead of pretty-printed.
+     */
+    private void writeStreaming(Model model, OutputStream outputStream, Lang lang) {
+        long startTime = System.currentTimeMillis();
+        StreamRDF stream = StreamRDFWriter.getWriterStream(outputStream, lang);
+        StreamRDFOps.graphToStream(model.getGraph(), stream);
+        LOG.debug("Streamed model in {} ms using {}.", System.currentTimeMillis() - startTime, StreamRDFWriter.defaultSerialization(lang));
     }
 
     @Override
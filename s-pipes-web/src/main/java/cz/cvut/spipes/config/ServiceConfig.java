@@ -0,0 +1,22 @@
+package cz.cvut.spipes.config;
+
+import cz.cvut.spipes.util.CoreConfigProperies;
+
+public class ServiceConfig {
+
+    /**
+     * @return true if RDF responses in formats supporting streaming (N-Triples, N-Quads, Turtle)
+     * should be written triple by triple as they are read from the output model.
+     */
+    public static boolean isStreamingResponse() {
+        return Boolean.parseBoolean(CoreConfigProperies.get("service.streamingResponse", "false"));
+    }
+
+    /**
+     * @return number of triples of an input graph after which the graph is moved from memory
+     * to a temporary TDB dataset, zero or negative number disables it.
+     */
+    public static long getInputSpillThreshold() {
+        return Long.parseLong(CoreConfigProperies.get("service.inputSpillThreshold", "1000000"));
+    }
+}
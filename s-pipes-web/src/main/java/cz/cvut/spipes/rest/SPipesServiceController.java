@@ -1,13 +1,14 @@
 package cz.cvut.spipes.rest;
 
 import cz.cvut.spipes.config.ExecutionConfig;
+import cz.cvut.spipes.config.ServiceConfig;
 import cz.cvut.spipes.engine.*;
 import cz.cvut.spipes.exception.SPipesServiceException;
 import cz.cvut.spipes.manager.SPipesScriptManager;
 import cz.cvut.spipes.modules.Module;
 import cz.cvut.spipes.rest.util.*;
-import cz.cvut.spipes.util.JenaUtils;
 import cz.cvut.spipes.util.RDFMimeType;
+import cz.cvut.spipes.util.SpillingStreamRDF;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
 import org.apache.jena.query.QuerySolution;
@@ -15,6 +16,8 @@ import org.apache.jena.query.QuerySolutionMap;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
 import org.apache.jena.rdf.model.ResourceFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
 import org.apache.jena.util.FileUtils;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
@@ -54,6 +57,7 @@ public class SPipesServiceController {
         produces = {
             RDFMimeType.LD_JSON_STRING,
             RDFMimeType.N_TRIPLES_STRING,
+            RDFMimeType.N_QUADS_STRING,
             RDFMimeType.RDF_XML_STRING,
             RDFMimeType.TURTLE_STRING
         }
@@ -77,6 +81,7 @@ public class SPipesServiceController {
         produces = {
             RDFMimeType.LD_JSON_STRING,
             RDFMimeType.N_TRIPLES_STRING,
+            RDFMimeType.N_QUADS_STRING,
             RDFMimeType.RDF_XML_STRING,
             RDFMimeType.TURTLE_STRING
         }
@@ -115,6 +120,7 @@ public class SPipesServiceController {
         produces = {
             RDFMimeType.LD_JSON_STRING + ";charset=utf-8",
             RDFMimeType.N_TRIPLES_STRING,
+            RDFMimeType.N_QUADS_STRING,
             RDFMimeType.RDF_XML_STRING,
             RDFMimeType.TURTLE_STRING
         }
@@ -136,6 +142,7 @@ public class SPipesServiceController {
         produces = {
             RDFMimeType.LD_JSON_STRING + ";charset=utf-8",
             RDFMimeType.N_TRIPLES_STRING,
+            RDFMimeType.N_QUADS_STRING,
             RDFMimeType.RDF_XML_STRING,
             RDFMimeType.TURTLE_STRING
         }
@@ -263,7 +270,7 @@ public class SPipesServiceController {
         LOG.info("- input variable binding ={}", inputVariablesBinding);
 
         Model unionModel = Optional.ofNullable(inputGraphURL)
-            .map(url -> JenaUtils.createUnion(inputDataModel, loadModelFromUrl(url.toString())))
+            .map(url -> loadModelFromUrl(url.toString(), inputDataModel))
             .orElse(inputDataModel);
 
         return ExecutionContextFactory.createContext(unionModel, inputVariablesBinding);
@@ -356,6 +363,23 @@ public class SPipesServiceController {
         return outputModel;
     }
 
+    /**
+     * Reads model from the URL directly into the input model, which is moved to a temporary TDB dataset
+     * if it grows too large.
+     *
+     * @return model containing triples of the input model and the model from the URL
+     */
+    private @NotNull
+    Model loadModelFromUrl(@NotNull String modelUrl, @NotNull Model inputModel) {
+        SpillingStreamRDF inputStream = new SpillingStreamRDF(inputModel, ServiceConfig.getInputSpillThreshold());
+        try {
+            RDFDataMgr.parse(inputStream, modelUrl, Lang.TURTLE);
+        } catch (Exception e) {
+            throw new SPipesServiceException("Could not load model from URL " + modelUrl + ".");
+        }
+        return inputStream.getModel();
+    }
+
     private void extendBindingFromURL(VariablesBinding inputVariablesBinding, URL inputBindingURL) {
         try {
             final VariablesBinding vb2 = new VariablesBinding();
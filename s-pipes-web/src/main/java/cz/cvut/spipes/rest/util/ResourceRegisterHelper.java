@@ -3,7 +3,6 @@ package cz.cvut.spipes.rest.util;
 import cz.cvut.spipes.registry.StreamResource;
 import cz.cvut.spipes.registry.StreamResourceRegistry;
 import cz.cvut.spipes.rest.StreamResourceDTO;
-import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
@@ -27,13 +26,12 @@ public class ResourceRegisterHelper {
 
         LOG.info("Registering new stream resource with id {} and url {} ", res.getId(), res.getPersistentUri());
 
-        final byte[] data;
         try {
-            data = IOUtils.toByteArray(body);
+            // the content is streamed to a file, so that it is never held in memory
             StreamResource streamResource = StreamResourceRegistry.getInstance()
-                .registerResource(res.getId(), data, contentType);
+                .registerResource(res.getId(), body, contentType);
             res.attachStreamResource(streamResource);
-            LOG.info("Resource content size: {}", data.length);
+            LOG.info("Resource content size: {}", streamResource.getContentLength());
         } catch (IOException e) {
             LOG.error("Unable to read payload: ", e);
         }
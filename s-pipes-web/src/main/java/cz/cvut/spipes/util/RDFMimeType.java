@@ -7,6 +7,7 @@ public class RDFMimeType {
     public static final String TURTLE_STRING = "text/turtle";
     public static final String RDF_XML_STRING = "application/rdf+xml";
     public static final String N_TRIPLES_STRING = "application/n-triples";
+    public static final String N_QUADS_STRING = "application/n-quads";
     public static final String LD_JSON_STRING = "application/ld+json";
 
     public static MediaType transform(Lang contentType) {
@@ -14,7 +15,6 @@ public class RDFMimeType {
     }
 //    TODO ?
 //    text/trig
-//    application/n-quads
 //    application/trix+xml
 //    application/rdf+thrift
 }
@@ -0,0 +1,95 @@
+package cz.cvut.spipes.util;
+
+import cz.cvut.spipes.tdb.TDBTempFactory;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.GraphUtil;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.riot.system.StreamRDFBase;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.tdb.TDB;
+import org.apache.jena.tdb.store.GraphTDB;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stream of parsed triples that are added to a model, which is kept in memory until it reaches
+ * a threshold number of triples. Afterwards, triples of the model are moved to a temporary TDB dataset
+ * and all subsequent triples are added there.
+ * <p>
+ * Quads are added to the model as triples, i.e. graph names are ignored.
+ */
+public class SpillingStreamRDF extends StreamRDFBase {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SpillingStreamRDF.class);
+
+    private final long spillThreshold;
+    private Model model;
+    private Graph graph;
+    private long size;
+    private boolean isSpilled;
+
+    /**
+     * @param model          model to add parsed triples to
+     * @param spillThreshold number of triples after which the model is moved to TDB,
+     *                       zero or negative number means the model is never moved
+     */
+    public SpillingStreamRDF(Model model, long spillThreshold) {
+        this.model = model;
+        this.graph = model.getGraph();
+        this.spillThreshold = spillThreshold;
+        this.isSpilled = graph instanceof GraphTDB;
+        this.size = (spillThreshold > 0 && !isSpilled) ? graph.size() : 0;
+    }
+
+    @Override
+    public void triple(Triple triple) {
+        graph.add(triple);
+        if (spillThreshold > 0 && !isSpilled && ++size > spillThreshold) {
+            spill();
+        }
+    }
+
+    @Override
+    public void quad(Quad quad) {
+        triple(quad.asTriple());
+    }
+
+    @Override
+    public void prefix(String prefix, String iri) {
+        model.setNsPrefix(prefix, iri);
+    }
+
+    @Override
+    public void finish() {
+        if (isSpilled) {
+            TDB.sync(model);
+        }
+    }
+
+    /**
+     * @return model containing all triples received so far.
+     */
+    public Model getModel() {
+        return model;
+    }
+
+    /**
+     * @return true if the model was moved to TDB.
+     */
+    public boolean isSpilled() {
+        return isSpilled;
+    }
+
+    private void spill() {
+        long startTime = System.currentTimeMillis();
+        Model tdbModel = TDBTempFactory.createTDBModel();
+        GraphUtil.addInto(tdbModel.getGraph(), graph);
+        tdbModel.setNsPrefixes(model.getNsPrefixMap());
+        LOG.info("Input model exceeded {} triples, moved to temporary TDB dataset in {} ms.",
+            spillThreshold, System.currentTimeMillis() - startTime);
+        model = tdbModel;
+        graph = tdbModel.getGraph();
+        isSpilled = true;
+    }
+}
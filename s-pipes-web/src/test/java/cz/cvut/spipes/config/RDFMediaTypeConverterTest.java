@@ -0,0 +1,152 @@
+package cz.cvut.spipes.config;
+
+import cz.cvut.spipes.util.RDFMimeType;
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+public class RDFMediaTypeConverterTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RDFMediaTypeConverterTest.class);
+
+    @Test
+    public void writeStreamsTurtle() throws Exception {
+        writeAndRead(RDFMimeType.TURTLE_STRING, Lang.TURTLE);
+    }
+
+    @Test
+    public void writeStreamsNTriples() throws Exception {
+        writeAndRead(RDFMimeType.N_TRIPLES_STRING, Lang.NTRIPLES);
+    }
+
+    @Test
+    public void writeStreamsNQuads() throws Exception {
+        writeAndRead(RDFMimeType.N_QUADS_STRING, Lang.NQUADS);
+    }
+
+    @Test
+    public void writeJsonLdWhenStreamingIsEnabled() throws Exception {
+        writeAndRead(RDFMimeType.LD_JSON_STRING, Lang.JSONLD);
+    }
+
+    /**
+     * Compares time to first byte, total time and peak heap of writing a large model with and without streaming.
+     * Run by Maven profile benchmark only.
+     */
+    @Tag("benchmark")
+    @Test
+    public void benchmarkStreamingResponse() throws Exception {
+        Model model = createModel(500_000);
+        for (String mediaType : new String[]{RDFMimeType.TURTLE_STRING, RDFMimeType.N_TRIPLES_STRING}) {
+            for (int round = 0; round < 2; round++) {
+                logWrite(model, mediaType, false);
+                logWrite(model, mediaType, true);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void logWrite(Model model, String mediaType, boolean isStreamingResponse) throws Exception {
+        RDFMediaTypeConverter converter = new RDFMediaTypeConverter(isStreamingResponse);
+        TimingOutputMessage outputMessage = new TimingOutputMessage();
+        List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+            .filter(p -> p.getType() == MemoryType.HEAP)
+            .collect(Collectors.toList());
+        System.gc();
+        heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+
+        long startTime = System.nanoTime();
+        outputMessage.startTime = startTime;
+        converter.write(model, MediaType.parseMediaType(mediaType), outputMessage);
+        double totalMillis = (System.nanoTime() - startTime) / 1e6;
+
+        long peakHeap = heapPools.stream().mapToLong(p -> p.getPeakUsage().getUsed()).sum();
+        LOG.info("Wrote {} triples as {} {} streaming: first byte after {} ms, total {} ms, {} bytes, peak heap {} MB.",
+            model.size(), mediaType, isStreamingResponse ? "with" : "without",
+            String.format("%.1f", outputMessage.firstByteMillis), String.format("%.1f", totalMillis),
+            outputMessage.byteCount, peakHeap / (1024 * 1024));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void writeAndRead(String mediaType, Lang lang) throws Exception {
+        Model model = createModel();
+        RDFMediaTypeConverter converter = new RDFMediaTypeConverter(true);
+        MockHttpOutputMessage outputMessage = new MockHttpOutputMessage();
+
+        converter.write(model, MediaType.parseMediaType(mediaType), outputMessage);
+
+        Model readModel = ModelFactory.createDefaultModel();
+        RDFDataMgr.read(readModel, new ByteArrayInputStream(outputMessage.getBodyAsBytes()), lang);
+        assertTrue(model.isIsomorphicWith(readModel), "Written model differs from the original one.");
+    }
+
+    private Model createModel() {
+        return createModel(100);
+    }
+
+    private Model createModel(int resourceCount) {
+        Model model = ModelFactory.createDefaultModel();
+        model.setNsPrefix("ex", "http://example.org/");
+        for (int i = 0; i < resourceCount; i++) {
+            Resource r = model.createResource("http://example.org/resource-" + i);
+            r.addProperty(RDF.type, RDFS.Resource);
+            r.addProperty(RDFS.label, "Resource " + i);
+            r.addProperty(RDFS.seeAlso, model.createResource());
+        }
+        return model;
+    }
+
+    /**
+     * Discards the written body, recording its size and time when its first byte was written.
+     */
+    private static class TimingOutputMessage implements HttpOutputMessage {
+
+        private final HttpHeaders headers = new HttpHeaders();
+        private long startTime;
+        private double firstByteMillis = -1;
+        private long byteCount;
+
+        @Override
+        public OutputStream getBody() {
+            return new OutputStream() {
+                @Override
+                public void write(int b) {
+                    write(new byte[]{(byte) b}, 0, 1);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                    if (byteCount == 0 && len > 0) {
+                        firstByteMillis = (System.nanoTime() - startTime) / 1e6;
+                    }
+                    byteCount += len;
+                }
+            };
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package cz.cvut.spipes.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.tdb.store.GraphTDB;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+public class SpillingStreamRDFTest {
+
+    @Test
+    public void parseBelowThresholdKeepsModelInMemory() {
+        Model model = createModel(10);
+
+        SpillingStreamRDF stream = parse(model, ModelFactory.createDefaultModel(), 100);
+
+        assertFalse(stream.isSpilled());
+        assertFalse(stream.getModel().getGraph() instanceof GraphTDB);
+        assertTrue(model.isIsomorphicWith(stream.getModel()));
+    }
+
+    @Test
+    public void parseAboveThresholdMovesModelToTDB() {
+        Model model = createModel(100);
+
+        SpillingStreamRDF stream = parse(model, ModelFactory.createDefaultModel(), 50);
+
+        assertTrue(stream.isSpilled());
+        assertTrue(stream.getModel().getGraph() instanceof GraphTDB);
+        assertTrue(model.isIsomorphicWith(stream.getModel()));
+        assertEquals("http://example.org/", stream.getModel().getNsPrefixURI("ex"));
+    }
+
+    @Test
+    public void parseCountsTriplesOfInitialModel() {
+        Model initialModel = createModel(40);
+        Model model = createModel(20);
+
+        SpillingStreamRDF stream = parse(model, initialModel, 50);
+
+        assertTrue(stream.isSpilled());
+        assertEquals(60, stream.getModel().size());
+    }
+
+    private SpillingStreamRDF parse(Model model, Model initialModel, long spillThreshold) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        RDFDataMgr.write(out, model, Lang.TURTLE);
+
+        SpillingStreamRDF stream = new SpillingStreamRDF(initialModel, spillThreshold);
+        RDFDataMgr.parse(stream, new ByteArrayInputStream(out.toByteArray()), Lang.TURTLE);
+        return stream;
+    }
+
+    private Model createModel(int resourceCount) {
+        Model model = ModelFactory.createDefaultModel();
+        model.setNsPrefix("ex", "http://example.org/");
+        String namespace = "http://example.org/" + model.hashCode() + "/resource-";
+        for (int i = 0; i < resourceCount; i++) {
+            Resource r = model.createResource(namespace + i);
+            r.addProperty(RDF.type, RDFS.Resource);
+        }
+        return model;
+    }
+}